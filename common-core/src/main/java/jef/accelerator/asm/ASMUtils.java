@@ -232,7 +232,13 @@ public class ASMUtils {
 			mw.visitInsn(Opcodes.ICONST_5);
 			break;
 		default:
-			mw.visitIntInsn(Opcodes.BIPUSH, s);
+			if (s >= Byte.MIN_VALUE && s <= Byte.MAX_VALUE) {
+				mw.visitIntInsn(Opcodes.BIPUSH, s);
+			} else if (s >= Short.MIN_VALUE && s <= Short.MAX_VALUE) {
+				mw.visitIntInsn(Opcodes.SIPUSH, s);
+			} else {
+				mw.visitLdcInsn(s);
+			}
 		}
 	}
 
@@ -137,6 +137,68 @@ public abstract class BeanAccessor {
 	 */
 	public abstract void initNthGenericType(int index,Class<?> raw,Type type,int total,String fieldName);
 	
+	/**
+	 * 得到属性的序号。序号在Accessor生成时确定，可用于{@link #get(Object, int)}、{@link #set(Object, int, Object)}等方法，
+	 * 以避免每次按名称查找属性。
+	 * @param name 属性名
+	 * @return 属性序号，如果属性不存在或者当前Accessor不支持按序号访问，返回-1
+	 */
+	public int getPropertyIndex(String name){
+		return -1;
+	}
+	
+	/**
+	 * 按序号得到bean的属性值
+	 * @param bean
+	 * @param index 属性序号，参见{@link #getPropertyIndex(String)}
+	 * @return
+	 * @throws IndexOutOfBoundsException 如果序号不存在
+	 */
+	public Object get(Object bean,int index){
+		throw new UnsupportedOperationException(getClass().getName());
+	}
+	
+	/**
+	 * 按序号设置bean的属性值。和{@link #setProperty(Object, String, Object)}一样，基本类型的属性上设置null值会被忽略。
+	 * @param bean
+	 * @param index 属性序号，参见{@link #getPropertyIndex(String)}
+	 * @param v
+	 * @throws IndexOutOfBoundsException 如果序号不存在
+	 */
+	public void set(Object bean,int index,Object v){
+		throw new UnsupportedOperationException(getClass().getName());
+	}
+	
+	/**
+	 * 按序号设置int属性值，属性类型为int时不发生装箱
+	 * @param bean
+	 * @param index 属性序号
+	 * @param v
+	 */
+	public void setInt(Object bean,int index,int v){
+		set(bean,index,Integer.valueOf(v));
+	}
+	
+	/**
+	 * 按序号设置long属性值，属性类型为long时不发生装箱
+	 * @param bean
+	 * @param index 属性序号
+	 * @param v
+	 */
+	public void setLong(Object bean,int index,long v){
+		set(bean,index,Long.valueOf(v));
+	}
+	
+	/**
+	 * 按序号设置double属性值，属性类型为double时不发生装箱
+	 * @param bean
+	 * @param index 属性序号
+	 * @param v
+	 */
+	public void setDouble(Object bean,int index,double v){
+		set(bean,index,Double.valueOf(v));
+	}
+	
 	
 	/**
 	 * 得到指定Field上的Annotation
@@ -44,6 +44,11 @@ public abstract class ClassGenerator implements Opcodes {
 		generateCopy(cw);
 		generateConvert(cw);
 		generateFromMap(cw);
+		generateIndexedGet(cw);
+		generateIndexedSet(cw);
+		generatePrimitiveSet(cw, "setInt", Integer.TYPE);
+		generatePrimitiveSet(cw, "setLong", Long.TYPE);
+		generatePrimitiveSet(cw, "setDouble", Double.TYPE);
 		{
 			MethodVisitor mw = cw.visitMethod(ACC_PUBLIC, "newInstance", getMethodDesc(Object.class), null, null);
 			mw.visitTypeInsn(NEW, beanType);
@@ -309,6 +314,154 @@ public abstract class ClassGenerator implements Opcodes {
 
 	}
 
+	/*
+	 * get(Object,int)：属性序号即fields中的下标，使用tableswitch跳转
+	 */
+	private void generateIndexedGet(ClassWriter cw) {
+		MethodVisitor mw = cw.visitMethod(ACC_PUBLIC, "get", getMethodDesc(Object.class, Object.class, Integer.TYPE), null, null);
+		mw.visitVarInsn(ALOAD, 1);
+		mw.visitTypeInsn(CHECKCAST, beanType);
+		mw.visitVarInsn(ASTORE, 3);
+
+		Label dflt = new Label();
+		Label[] labels = indexSwitch(mw, dflt);
+		for (int i = 0; i < fields.length; i++) {
+			mw.visitLabel(labels[i]);
+			mw.visitVarInsn(ALOAD, 3);
+			Method getter = fields[i].getGetter();
+			generateInvokeMethod(mw, getter);
+			if (getter.getReturnType().isPrimitive()) {
+				ASMUtils.doWrap(mw, getter.getReturnType());
+			}
+			mw.visitInsn(ARETURN);
+		}
+		mw.visitLabel(dflt);
+		throwIndexOutOfBounds(mw);
+		mw.visitMaxs(3, 4);
+		mw.visitEnd();
+	}
+
+	/*
+	 * set(Object,int,Object)：基本类型的属性上设置null时忽略，和setProperty一致
+	 */
+	private void generateIndexedSet(ClassWriter cw) {
+		MethodVisitor mw = cw.visitMethod(ACC_PUBLIC, "set", getMethodDesc(Void.TYPE, Object.class, Integer.TYPE, Object.class), null, null);
+		mw.visitVarInsn(ALOAD, 1);
+		mw.visitTypeInsn(CHECKCAST, beanType);
+		mw.visitVarInsn(ASTORE, 4);
+
+		Label dflt = new Label();
+		Label ifnull = null;
+		Label[] labels = indexSwitch(mw, dflt);
+		for (int i = 0; i < fields.length; i++) {
+			mw.visitLabel(labels[i]);
+			mw.visitVarInsn(ALOAD, 4);
+			mw.visitVarInsn(ALOAD, 3);
+			Method setter = fields[i].getSetter();
+			Class<?> type = setter.getParameterTypes()[0];
+			if (type.isPrimitive()) {
+				if (ifnull == null) {
+					ifnull = new Label();
+				}
+				mw.visitInsn(DUP);
+				mw.visitJumpInsn(IFNULL, ifnull);
+				Class<?> wrapped = Primitives.toWrapperClass(type);
+				mw.visitTypeInsn(CHECKCAST, getType(wrapped));
+				ASMUtils.doUnwrap(mw, type, wrapped);
+			} else {
+				mw.visitTypeInsn(CHECKCAST, getType(type));
+			}
+			generateInvokeAndReturn(mw, setter);
+		}
+		mw.visitLabel(dflt);
+		throwIndexOutOfBounds(mw);
+		if (ifnull != null) {
+			mw.visitLabel(ifnull);
+			mw.visitInsn(POP);
+			mw.visitInsn(POP);
+			mw.visitInsn(RETURN);
+		}
+		mw.visitMaxs(4, 5);
+		mw.visitEnd();
+	}
+
+	/*
+	 * setInt/setLong/setDouble：只有setter参数恰好是该基本类型的属性直接调用，其余的属性装箱后交给set(Object,int,Object)
+	 */
+	private void generatePrimitiveSet(ClassWriter cw, String methodName, Class<?> primitive) {
+		MethodVisitor mw = cw.visitMethod(ACC_PUBLIC, methodName, getMethodDesc(Void.TYPE, Object.class, Integer.TYPE, primitive), null, null);
+		com.github.geequery.asm.Type t = com.github.geequery.asm.Type.getType(primitive);
+		int count = 0;
+		for (FieldInfo fi : fields) {
+			if (fi.getSetter().getParameterTypes()[0] == primitive) {
+				count++;
+			}
+		}
+		Label dflt = new Label();
+		if (count > 0) {
+			int[] keys = new int[count];
+			Label[] labels = new Label[count];
+			int n = 0;
+			for (int i = 0; i < fields.length; i++) {
+				if (fields[i].getSetter().getParameterTypes()[0] == primitive) {
+					keys[n] = i;
+					labels[n++] = new Label();
+				}
+			}
+			mw.visitVarInsn(ILOAD, 2);
+			mw.visitLookupSwitchInsn(dflt, keys, labels);
+			for (int i = 0; i < count; i++) {
+				mw.visitLabel(labels[i]);
+				mw.visitVarInsn(ALOAD, 1);
+				mw.visitTypeInsn(CHECKCAST, beanType);
+				mw.visitVarInsn(t.getOpcode(ILOAD), 3);
+				generateInvokeAndReturn(mw, fields[keys[i]].getSetter());
+			}
+		}
+		mw.visitLabel(dflt);
+		mw.visitVarInsn(ALOAD, 0);
+		mw.visitVarInsn(ALOAD, 1);
+		mw.visitVarInsn(ILOAD, 2);
+		mw.visitVarInsn(t.getOpcode(ILOAD), 3);
+		ASMUtils.doWrap(mw, primitive);
+		mw.visitMethodInsn(INVOKEVIRTUAL, accessorType, "set", getMethodDesc(Void.TYPE, Object.class, Integer.TYPE, Object.class));
+		mw.visitInsn(RETURN);
+		mw.visitMaxs(3 + t.getSize(), 3 + t.getSize());
+		mw.visitEnd();
+	}
+
+	private Label[] indexSwitch(MethodVisitor mw, Label dflt) {
+		Label[] labels = new Label[fields.length];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = new Label();
+		}
+		if (labels.length > 0) {
+			mw.visitVarInsn(ILOAD, 2);
+			mw.visitTableSwitchInsn(0, labels.length - 1, dflt, labels);
+		}
+		return labels;
+	}
+
+	private void generateInvokeAndReturn(MethodVisitor mw, Method setter) {
+		generateInvokeMethod(mw, setter);
+		Class<?> r = setter.getReturnType();
+		if (r == Long.TYPE || r == Double.TYPE) {
+			mw.visitInsn(POP2);
+		} else if (r != void.class) {
+			mw.visitInsn(POP);
+		}
+		mw.visitInsn(RETURN);
+	}
+
+	private void throwIndexOutOfBounds(MethodVisitor mw) {
+		mw.visitTypeInsn(NEW, getType(IndexOutOfBoundsException.class));
+		mw.visitInsn(DUP);
+		mw.visitVarInsn(ILOAD, 2);
+		mw.visitMethodInsn(INVOKESTATIC, getType(String.class), "valueOf", getMethodDesc(String.class, Integer.TYPE));
+		mw.visitMethodInsn(INVOKESPECIAL, getType(IndexOutOfBoundsException.class), "<init>", getMethodDesc(Void.TYPE, String.class));
+		mw.visitInsn(ATHROW);
+	}
+
 	protected void generateInvokeMethod(MethodVisitor mw, Method m) {
 		mw.visitMethodInsn(INVOKEVIRTUAL, getType(m.getDeclaringClass()), m.getName(), getDesc(m));
 	}
@@ -62,6 +62,14 @@ public final class FastBeanWrapperImpl extends BeanWrapper{
 		return accessor.getPropertyType(fieldName);
 	}
 
+	/**
+	 * 得到所使用的Accessor
+	 * @return
+	 */
+	public BeanAccessor getAccessor() {
+		return accessor;
+	}
+
 	@Override
 	public Object getWrapped() {
 		return obj;
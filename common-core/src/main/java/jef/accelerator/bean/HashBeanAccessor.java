@@ -55,6 +55,12 @@ public abstract class HashBeanAccessor extends BeanAccessor{
 		return true;
 	}
 	
+	@Override
+	public final int getPropertyIndex(String name) {
+		AbstractFastProperty pp=(AbstractFastProperty)getProperty(name);
+		return pp==null?-1:pp.n;
+	}
+	
 	public final void initAnnotations(Map<Class<?>,Annotation>[] field,Map<Class<?>,Annotation>[] getter,Map<Class<?>,Annotation>[] setter){
 		this.fieldAnnoMaps=field;
 		this.getterAnnoMaps=getter;
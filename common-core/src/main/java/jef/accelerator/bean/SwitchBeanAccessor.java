@@ -4,6 +4,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -22,6 +23,8 @@ public abstract class SwitchBeanAccessor extends BeanAccessor{
 	protected Map<Class<?>, Annotation>[] getterAnnoMaps;
 	//泛型类型很难用代码描述，因此这里将凡是泛型的类型变量保存下来
 	protected Type[] genericType;
+	//属性名和序号
+	private final Map<String,Integer> indexes=new HashMap<String,Integer>();
 	
 	public Property getProperty(String name) {
 		try{
@@ -59,6 +62,13 @@ public abstract class SwitchBeanAccessor extends BeanAccessor{
 			genericType=new Type[total];
 		}
 		genericType[index]=type;
+		indexes.put(fieldName, index);
+	}
+	
+	@Override
+	public int getPropertyIndex(String name) {
+		Integer index=indexes.get(name);
+		return index==null?-1:index.intValue();
 	}
 	
 }
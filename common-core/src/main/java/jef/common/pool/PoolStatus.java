@@ -1,5 +1,7 @@
 package jef.common.pool;
 
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * 描述对象池内的大小数量
@@ -16,6 +18,9 @@ public final class PoolStatus {
 	private int free;
 	private long pollCount;
 	private long offerCount;
+	private long statementCacheHits;
+	private long statementCacheMisses;
+	private Map<String, PoolStatus> sites;
 	
 	public PoolStatus(int max,int min,int current,int used,int free){
 		this.maxSize=max;
@@ -30,7 +35,7 @@ public final class PoolStatus {
 	 * 
 	 * @return
 	 */
-	int getMaxSize(){
+	public int getMaxSize(){
 		return maxSize;
 	}
 
@@ -39,7 +44,7 @@ public final class PoolStatus {
 	 * 
 	 * @return
 	 */
-	int getCurrentSize(){
+	public int getCurrentSize(){
 		return currentSize;
 	}
 	
@@ -47,7 +52,7 @@ public final class PoolStatus {
 	 * 得到连接池的最小数量
 	 * @return
 	 */
-	int getMinSize(){
+	public int getMinSize(){
 		return minSize;
 	}
 
@@ -56,7 +61,7 @@ public final class PoolStatus {
 	 * 
 	 * @return
 	 */
-	int getUsedCount(){
+	public int getUsedCount(){
 		return used;
 	}
 
@@ -65,7 +70,7 @@ public final class PoolStatus {
 	 * 
 	 * @return
 	 */
-	int getFreeCount(){
+	public int getFreeCount(){
 		return free;
 	}
 
@@ -85,6 +90,45 @@ public final class PoolStatus {
 		this.offerCount = offerCount;
 	}
 
+	/**
+	 * 得到PreparedStatement缓存的命中次数
+	 * @return
+	 */
+	public long getStatementCacheHits() {
+		return statementCacheHits;
+	}
+
+	public void setStatementCacheHits(long statementCacheHits) {
+		this.statementCacheHits = statementCacheHits;
+	}
+
+	/**
+	 * 得到PreparedStatement缓存的未命中次数
+	 * @return
+	 */
+	public long getStatementCacheMisses() {
+		return statementCacheMisses;
+	}
+
+	public void setStatementCacheMisses(long statementCacheMisses) {
+		this.statementCacheMisses = statementCacheMisses;
+	}
+
+	/**
+	 * 得到路由连接池中每个数据源的子池状态，不是路由连接池时为空
+	 * @return
+	 */
+	public Map<String, PoolStatus> getSites() {
+		if (sites == null) {
+			return Collections.emptyMap();
+		}
+		return sites;
+	}
+
+	public void setSites(Map<String, PoolStatus> sites) {
+		this.sites = sites;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder sb=new StringBuilder(64);
@@ -94,7 +138,15 @@ public final class PoolStatus {
 		sb.append("used=").append(used).append(',');
 		sb.append("free=").append(free).append(',');
 		sb.append("poll=").append(pollCount).append(',');
-		sb.append("offer=").append(offerCount).append('}');
+		sb.append("offer=").append(offerCount);
+		if (statementCacheHits + statementCacheMisses > 0) {
+			sb.append(",stmtHit=").append(statementCacheHits);
+			sb.append(",stmtMiss=").append(statementCacheMisses);
+		}
+		if (sites != null && !sites.isEmpty()) {
+			sb.append(",sites=").append(sites);
+		}
+		sb.append('}');
 		return sb.toString();
 	}
 }
@@ -0,0 +1,155 @@
+package jef.tools.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog基数估算
+ * <p>
+ * 用固定大小的寄存器数组估算一个集合中不重复元素的个数。精度为p时占用2^p字节，标准误差约为1.04/sqrt(2^p)，
+ * 例如默认精度14时占用16KB，误差约0.8%。<br>
+ * 相同精度的两个估算器可以合并({@link #merge(HyperLogLog)})，合并结果等同于对两个集合的并集进行估算，
+ * 因此可以在各个数据分片上分别计算后再汇总。
+ *
+ * @author jiyi
+ *
+ */
+public class HyperLogLog {
+	/**
+	 * 默认精度
+	 */
+	public static final int DEFAULT_PRECISION = 14;
+
+	private final int p;
+	private final byte[] registers;
+
+	public HyperLogLog() {
+		this(DEFAULT_PRECISION);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param precision
+	 *            精度，取值4~18
+	 */
+	public HyperLogLog(int precision) {
+		if (precision < 4 || precision > 18) {
+			throw new IllegalArgumentException("The precision must between 4 and 18: " + precision);
+		}
+		this.p = precision;
+		this.registers = new byte[1 << precision];
+	}
+
+	/**
+	 * 添加一个元素
+	 *
+	 * @param value
+	 *            元素，使用其hashCode计算
+	 */
+	public void offer(Object value) {
+		offerHash(mix(value == null ? 0 : value.hashCode()));
+	}
+
+	/**
+	 * 添加一个已经计算好的64位散列值。散列值应当在各个位上均匀分布。
+	 *
+	 * @param hash
+	 *            64位散列值
+	 */
+	public void offerHash(long hash) {
+		int index = (int) (hash >>> (64 - p));
+		// 剩余的位中第一个1出现的位置，最后补一个1防止全0
+		long w = (hash << p) | (1L << (p - 1));
+		byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+		if (registers[index] < rank) {
+			registers[index] = rank;
+		}
+	}
+
+	/**
+	 * 合并另一个相同精度的估算器
+	 *
+	 * @param other
+	 *            另一个估算器
+	 */
+	public void merge(HyperLogLog other) {
+		if (other.p != p) {
+			throw new IllegalArgumentException("Can not merge HyperLogLog with different precision: " + p + " and " + other.p);
+		}
+		for (int i = 0; i < registers.length; i++) {
+			if (registers[i] < other.registers[i]) {
+				registers[i] = other.registers[i];
+			}
+		}
+	}
+
+	/**
+	 * 估算不重复元素的个数
+	 *
+	 * @return 估算值
+	 */
+	public long cardinality() {
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (byte r : registers) {
+			sum += 1.0 / (1L << r);
+			if (r == 0) {
+				zeros++;
+			}
+		}
+		double estimate = alpha(m) * m * m / sum;
+		if (estimate <= 2.5 * m && zeros > 0) {
+			// 小基数时使用线性计数修正
+			estimate = m * Math.log((double) m / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * 清空
+	 */
+	public void clear() {
+		Arrays.fill(registers, (byte) 0);
+	}
+
+	/**
+	 * 计算多个值组合后的64位散列值，可用于 {@link #offerHash(long)}
+	 *
+	 * @param values
+	 *            值
+	 * @return 64位散列值
+	 */
+	public static long hash(Object... values) {
+		long h = 1;
+		for (Object o : values) {
+			h = 31 * h + mix(o == null ? 0 : o.hashCode());
+		}
+		return mix(h);
+	}
+
+	/*
+	 * MurmurHash3的fmix64，将散列值打散到64位上
+	 */
+	private static long mix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	private static double alpha(int m) {
+		switch (m) {
+		case 16:
+			return 0.673;
+		case 32:
+			return 0.697;
+		case 64:
+			return 0.709;
+		default:
+			return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+}
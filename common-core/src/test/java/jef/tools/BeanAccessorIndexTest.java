@@ -0,0 +1,139 @@
+package jef.tools;
+
+import java.util.Date;
+
+import jef.accelerator.bean.BeanAccessor;
+import jef.accelerator.bean.FastBeanWrapperImpl;
+import jef.accelerator.bean.HashBeanAccessor;
+import jef.accelerator.bean.SwitchBeanAccessor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 按序号访问属性
+ */
+public class BeanAccessorIndexTest {
+	@Test
+	public void testSwitchAccessor() {
+		BeanAccessor ba = FastBeanWrapperImpl.getAccessorFor(Foo.class);
+		Assert.assertTrue(ba instanceof SwitchBeanAccessor);
+		Foo foo = new Foo();
+		int id = ba.getPropertyIndex("id");
+		int name = ba.getPropertyIndex("name");
+		int score = ba.getPropertyIndex("score");
+		int created = ba.getPropertyIndex("created");
+		Assert.assertEquals(-1, ba.getPropertyIndex("notExist"));
+
+		ba.setInt(foo, id, 12);
+		ba.set(foo, name, "jiyi");
+		ba.setDouble(foo, score, 99.5);
+		Date now = new Date();
+		ba.set(foo, created, now);
+		Assert.assertEquals(12, foo.getId());
+		Assert.assertEquals("jiyi", foo.getName());
+		Assert.assertEquals(99.5, foo.getScore(), 0);
+		Assert.assertSame(now, foo.getCreated());
+
+		Assert.assertEquals(12, ba.get(foo, id));
+		Assert.assertEquals("jiyi", ba.get(foo, name));
+		Assert.assertEquals(99.5, ba.get(foo, score));
+
+		// 基本类型上的null被忽略
+		ba.set(foo, id, null);
+		Assert.assertEquals(12, foo.getId());
+		ba.set(foo, name, null);
+		Assert.assertNull(foo.getName());
+
+		// 类型不一致时装箱后赋值，不做类型转换
+		try {
+			ba.setLong(foo, id, 1L);
+			Assert.fail();
+		} catch (ClassCastException e) {
+		}
+		try {
+			ba.get(foo, 100);
+			Assert.fail();
+		} catch (IndexOutOfBoundsException e) {
+		}
+	}
+
+	@Test
+	public void testHashAccessor() {
+		BeanAccessor ba = FastBeanWrapperImpl.getAccessorFor(HashBean.class);
+		Assert.assertTrue(ba instanceof HashBeanAccessor);
+		HashBean bean = new HashBean();
+		int aa = ba.getPropertyIndex("fooAa");
+		int bb = ba.getPropertyIndex("fooBB");
+		int count = ba.getPropertyIndex("count");
+		Assert.assertTrue(aa >= 0 && bb >= 0 && aa != bb);
+
+		ba.set(bean, aa, "a");
+		ba.set(bean, bb, "b");
+		ba.setLong(bean, count, 10000000000L);
+		Assert.assertEquals("a", bean.getFooAa());
+		Assert.assertEquals("b", bean.getFooBB());
+		Assert.assertEquals(10000000000L, bean.getCount());
+		Assert.assertEquals("a", ba.get(bean, aa));
+		Assert.assertEquals(10000000000L, ba.get(bean, count));
+		for (String name : ba.getPropertyNames()) {
+			Assert.assertEquals(ba.getProperty(bean, name), ba.get(bean, ba.getPropertyIndex(name)));
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testNoProperty() {
+		BeanAccessor ba = FastBeanWrapperImpl.getAccessorFor(Object.class);
+		ba.set(new Object(), 0, null);
+	}
+
+	/**
+	 * 按序号和按名称赋值的结果相同
+	 */
+	@Test
+	public void testIndexSameAsName() {
+		BeanAccessor ba = FastBeanWrapperImpl.getAccessorFor(Foo.class);
+		Foo byName = new Foo();
+		ba.setProperty(byName, "id", 7);
+		ba.setProperty(byName, "name", "n");
+		ba.setProperty(byName, "score", 1.5d);
+		Foo byIndex = new Foo();
+		ba.setInt(byIndex, ba.getPropertyIndex("id"), 7);
+		ba.set(byIndex, ba.getPropertyIndex("name"), "n");
+		ba.setDouble(byIndex, ba.getPropertyIndex("score"), 1.5d);
+		for (String name : ba.getPropertyNames()) {
+			Assert.assertEquals(ba.getProperty(byName, name), ba.getProperty(byIndex, name));
+		}
+	}
+
+	public static class HashBean {
+		// fooAa和fooBB的hashCode相同，因此使用HashBeanAccessor
+		private String fooAa;
+		private String fooBB;
+		private long count;
+
+		public String getFooAa() {
+			return fooAa;
+		}
+
+		public void setFooAa(String fooAa) {
+			this.fooAa = fooAa;
+		}
+
+		public String getFooBB() {
+			return fooBB;
+		}
+
+		public void setFooBB(String fooBB) {
+			this.fooBB = fooBB;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public void setCount(long count) {
+			this.count = count;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package jef.tools.algorithm;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+	@Test
+	public void testCardinality() {
+		HyperLogLog hll = new HyperLogLog();
+		for (int i = 0; i < 100000; i++) {
+			hll.offer(i);
+			hll.offer(i); // 重复元素不影响结果
+		}
+		long n = hll.cardinality();
+		Assert.assertTrue(String.valueOf(n), Math.abs(n - 100000) < 3000);
+
+		HyperLogLog small = new HyperLogLog();
+		for (int i = 0; i < 100; i++) {
+			small.offer("key" + i);
+		}
+		Assert.assertEquals(100, small.cardinality(), 2);
+	}
+
+	@Test
+	public void testMerge() {
+		HyperLogLog a = new HyperLogLog();
+		HyperLogLog b = new HyperLogLog();
+		for (int i = 0; i < 60000; i++) {
+			a.offerHash(HyperLogLog.hash(i, "x"));
+		}
+		for (int i = 40000; i < 100000; i++) {
+			b.offerHash(HyperLogLog.hash(i, "x"));
+		}
+		a.merge(b);
+		long n = a.cardinality();
+		Assert.assertTrue(String.valueOf(n), Math.abs(n - 100000) < 3000);
+	}
+}
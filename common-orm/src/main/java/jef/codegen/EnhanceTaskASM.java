@@ -195,14 +195,14 @@ public class EnhanceTaskASM {
 				if (fieldName.length() == 0 || types.length != 1)
 					return mv;
 				if (enumFields.contains(fieldName) && nonStaticFields.contains(fieldName)) {
-					return new SetterVisitor(mv, fieldName, typeName, types[0]);
+					return new SetterVisitor(mv, fieldName, enumFields.indexOf(fieldName), typeName, types[0]);
 				} else if (lobAndRefFields.contains(fieldName)) {
 					return new SetterOfClearLazyload(mv, fieldName, typeName);
 				} else {
 					String altFieldName = "is" + StringUtils.capitalize(fieldName);
 					// 特定情况，当boolean类型并且field名称是isXXX，setter是setXXX()
 					if (enumFields.contains(altFieldName)) {
-						return new SetterVisitor(mv, altFieldName, typeName, types[0]);
+						return new SetterVisitor(mv, altFieldName, enumFields.indexOf(altFieldName), typeName, types[0]);
 					}
 				}
 				return mv;
@@ -317,22 +317,25 @@ public class EnhanceTaskASM {
 	// 7: aload_0
 	// 8: getstatic #128; //Field
 	// jef/orm/onetable/model/TestEntity$Field.binaryData:Ljef/orm/onetable/model/TestEntity$Field;
-	// 11: aload_1
-	// 13: invokevirtual #133; //Method
-	// prepareUpdate:(Ljef/database/Field;Ljava/lang/Object;)V
-	// 16: aload_0
-	// 17: aload_1
-	// 18: putfield #121; //Field binaryData:[B
-	// 21: return
+	// 11: bipush 5
+	// 13: aload_1
+	// 14: invokevirtual #133; //Method
+	// markUpdate:(Ljef/database/Field;ILjava/lang/Object;)V
+	// 17: aload_0
+	// 18: aload_1
+	// 19: putfield #121; //Field binaryData:[B
+	// 22: return
 
 	static class SetterVisitor extends MethodVisitor implements Opcodes {
 		private String name;
+		private int ordinal;
 		private String typeName;
 		private Type paramType;
 
-		public SetterVisitor(MethodVisitor mv, String name, String typeName, Type paramType) {
+		public SetterVisitor(MethodVisitor mv, String name, int ordinal, String typeName, Type paramType) {
 			super(Opcodes.ASM7, mv);
 			this.name = name;
+			this.ordinal = ordinal;
 			this.typeName = typeName;
 			this.paramType = paramType;
 		}
@@ -350,6 +353,8 @@ public class EnhanceTaskASM {
 
 			mv.visitIntInsn(ALOAD, 0);
 			mv.visitFieldInsn(GETSTATIC, typeName + "$Field", name, "L" + typeName + "$Field;");
+			// 按枚举序号记录在位图中
+			ASMUtils.iconst(mv, ordinal);
 
 			if (isPrimitive(paramType)) {
 				mv.visitVarInsn(ASMUtils.getLoadIns(paramType), 1);
@@ -357,7 +362,7 @@ public class EnhanceTaskASM {
 			} else {
 				mv.visitIntInsn(ALOAD, 1);
 			}
-			mv.visitMethodInsn(INVOKEVIRTUAL, typeName, "prepareUpdate", "(Ljef/database/Field;Ljava/lang/Object;)V", false);
+			mv.visitMethodInsn(INVOKEVIRTUAL, typeName, "markUpdate", "(Ljef/database/Field;ILjava/lang/Object;)V", false);
 			mv.visitLabel(norecord);
 			super.visitCode();
 
@@ -365,7 +370,7 @@ public class EnhanceTaskASM {
 
 		@Override
 		public void visitMaxs(int maxStack, int maxLocals) {
-			mv.visitMaxs(4, maxLocals);
+			mv.visitMaxs(5, maxLocals);
 		}
 		
 		private boolean isPrimitive(Type paramType) {
@@ -21,10 +21,17 @@ import java.io.PrintStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.geequery.asm.ClassReader;
+
+import jef.database.support.EntityMetaReader;
 import jef.tools.ClassScanner;
 import jef.tools.IOUtils;
 import jef.tools.StringUtils;
@@ -45,6 +52,14 @@ public class EntityEnhancer {
 	private List<URL> roots;
 	PrintStream out = System.out;
 	private EnhanceTaskASM enhancer;
+	/**
+	 * 增强过程中发现的实体类(包括此前已经增强过的)
+	 */
+	private final Set<String> entityClasses = new TreeSet<String>();
+	/**
+	 * 实体类上的映射注解
+	 */
+	private final Map<String, Map<String, Object>> entityMetadata = new TreeMap<String, Map<String, Object>>();
 	private static final Logger log = LoggerFactory.getLogger(EntityEnhancer.class);
 
 	public void setOut(PrintStream out) {
@@ -147,8 +162,12 @@ public class EntityEnhancer {
 		if (!f.exists()) {
 			return false;
 		}
-		byte[] result = enhancer.doEnhance(IOUtils.toByteArray(f), (sub.exists() ? IOUtils.toByteArray(sub) : null));
+		byte[] data = IOUtils.toByteArray(f);
+		byte[] result = enhancer.doEnhance(data, (sub.exists() ? IOUtils.toByteArray(sub) : null));
 		if (result != null) {
+			String className = new ClassReader(data).getClassName().replace('/', '.');
+			entityClasses.add(className);
+			entityMetadata.put(className, EntityMetaReader.read(data));
 			if (result.length == 0) {
 				out.println(cls + " is already enhanced.");
 			} else {
@@ -160,6 +179,24 @@ public class EntityEnhancer {
 		return false;
 	}
 
+	/**
+	 * 获得增强过程中发现的实体类名，用于生成{@link jef.database.support.EntityIndex}
+	 * 
+	 * @return
+	 */
+	public Set<String> getEntityClasses() {
+		return entityClasses;
+	}
+
+	/**
+	 * 获得增强过程中发现的实体类上的映射注解，用于生成{@link jef.database.support.EntityIndex}
+	 * 
+	 * @return 类名对应{@link EntityMetaReader#read(byte[])}的结果
+	 */
+	public Map<String, Map<String, Object>> getEntityMetadata() {
+		return entityMetadata;
+	}
+
 	/**
 	 * 设置类名Pattern
 	 * 
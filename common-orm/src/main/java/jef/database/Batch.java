@@ -20,13 +20,21 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import jef.common.PairSS;
 import jef.common.log.LogUtil;
 import jef.database.cache.Cache;
+import jef.database.dialect.handler.BulkInsertHandler;
 import jef.database.dialect.type.ColumnMapping;
 import jef.database.meta.ITableMetadata;
 import jef.database.meta.MetaHolder;
@@ -36,6 +44,7 @@ import jef.database.support.SqlLog;
 import jef.database.wrapper.clause.BindSql;
 import jef.database.wrapper.clause.InsertSqlClause;
 import jef.database.wrapper.clause.UpdateClause;
+import jef.database.wrapper.executor.DbTask;
 import jef.database.wrapper.variable.BindVariableContext;
 import jef.database.wrapper.variable.Variable;
 import jef.tools.Assert;
@@ -47,8 +56,11 @@ import jef.tools.StringUtils;
  * <p>
  * 可以使用{@link #execute(List)}方法执行批量插入、更新或删除操作。
  * <p>
+ * 数据量很大时，可以使用{@link #execute(Iterator)}或{@link #execute(Stream)}方法，边读取边分批执行，不必将全部对象放在一个List中。
+ * <p>
  * 可以使用{@link #setGroupForPartitionTable(boolean)}
  * 方法指定是否要对每条参数进行路由计算，根据路由结果重新分组后再执行插入、更新或删除操作。(仅当分库分表后才需要)
+ * 分组后可以使用{@link #setParallelGroups(int)}方法并行执行各组。
  * 
  * 
  * @author Administrator
@@ -76,9 +88,9 @@ public abstract class Batch<T extends IQueryableEntity> {
 	 */
 	private boolean groupForPartitionTable;
 	/**
-	 * 执行影响的总记录行数
+	 * 分组后同时执行的分组数，小于2时依次执行
 	 */
-	private int executeResult;
+	private int parallelGroups;
 	/**
 	 * 极限模式，极限模式下，会使用数据库本地特性来尽可能加速操作。 极限模式下，禁用数据回写功能。
 	 */
@@ -97,6 +109,26 @@ public abstract class Batch<T extends IQueryableEntity> {
 
 	long parseTime;
 
+	/**
+	 * 流式执行时每批的记录数
+	 */
+	private int chunkSize;
+
+	/**
+	 * 流式执行时每批的估算字节数上限，0表示不限制
+	 */
+	private long maxChunkBytes;
+
+	/**
+	 * 流式执行时每批执行后提交事务
+	 */
+	private boolean commitPerChunk;
+
+	/**
+	 * 流式执行的进度回调
+	 */
+	private ProgressListener progressListener;
+
 	public boolean isExtreme() {
 		return extreme;
 	}
@@ -114,6 +146,9 @@ public abstract class Batch<T extends IQueryableEntity> {
 		this.parent = parent;
 		this.groupForPartitionTable = meta.getPartition() != null;
 		this.meta = meta;
+		this.chunkSize = ORMConfig.getInstance().getBatchChunkSize();
+		this.maxChunkBytes = ORMConfig.getInstance().getBatchChunkBytes();
+		this.parallelGroups = ORMConfig.getInstance().getParallelBatch();
 	}
 
 	/**
@@ -195,6 +230,103 @@ public abstract class Batch<T extends IQueryableEntity> {
 		this.groupForPartitionTable = regroupForPartitionTable;
 	}
 
+	/**
+	 * 获得重新分组后同时执行的分组数
+	 * 
+	 * @return 同时执行的分组数，默认为{@link DbCfg#PARTITION_PARALLEL_BATCH}
+	 */
+	public int getParallelGroups() {
+		return parallelGroups;
+	}
+
+	/**
+	 * 设置重新分组后同时执行的分组数。大于1时，各组(数据源+表名)通过分库并行执行器并行提交，一组出错不影响其他组的执行，
+	 * 所有组执行完后抛出各组的错误(通过{@link SQLException#getNextException()}串联)。
+	 * <p>
+	 * 在事务中时，事务在每个数据源上只有一个连接，因此同一数据源上的各组仍依次执行，不同数据源之间并行。
+	 * 
+	 * @param parallelGroups
+	 *            同时执行的分组数，小于2时依次执行
+	 */
+	public void setParallelGroups(int parallelGroups) {
+		this.parallelGroups = parallelGroups;
+	}
+
+	/**
+	 * 获得流式执行时每批的记录数
+	 * 
+	 * @return 每批的记录数，默认为{@link DbCfg#DB_BATCH_CHUNK_SIZE}
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * 设置流式执行时每批的记录数
+	 * 
+	 * @param chunkSize
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * 获得流式执行时每批的估算字节数上限
+	 * 
+	 * @return 字节数上限，0表示不限制。默认为{@link DbCfg#DB_BATCH_CHUNK_BYTES}
+	 */
+	public long getMaxChunkBytes() {
+		return maxChunkBytes;
+	}
+
+	/**
+	 * 设置流式执行时每批的估算字节数上限。当一批记录的估算大小达到上限时，即使记录数不足也提前执行。 适用于含有大字段的表。
+	 * 
+	 * @param maxChunkBytes
+	 *            字节数上限，0表示不限制
+	 */
+	public void setMaxChunkBytes(long maxChunkBytes) {
+		this.maxChunkBytes = maxChunkBytes;
+	}
+
+	/**
+	 * 流式执行时是否每批执行后提交事务
+	 * 
+	 * @return
+	 */
+	public boolean isCommitPerChunk() {
+		return commitPerChunk;
+	}
+
+	/**
+	 * 设置流式执行时是否每批执行后提交事务。仅当Batch是在事务中创建时有效，非事务下每批执行后本来就已经提交。
+	 * <p>
+	 * 开启后出错时只能回滚最后一批，之前的批次已经提交。
+	 * 
+	 * @param commitPerChunk
+	 */
+	public void setCommitPerChunk(boolean commitPerChunk) {
+		this.commitPerChunk = commitPerChunk;
+	}
+
+	/**
+	 * 获得流式执行的进度回调
+	 * 
+	 * @return
+	 */
+	public ProgressListener getProgressListener() {
+		return progressListener;
+	}
+
+	/**
+	 * 设置流式执行的进度回调，每批执行完成后调用
+	 * 
+	 * @param progressListener
+	 */
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
 	/**
 	 * 提交并执行批数据。 注意Batch对应的SQL语句是固定的。因此此处传入的对象只会影响参数中的绑定变量和SQL语句中的表名。对where条件、
 	 * Update中的set子句不会构成影响。
@@ -206,31 +338,26 @@ public abstract class Batch<T extends IQueryableEntity> {
 			return 0;
 		}
 		boolean debugMode = ORMConfig.getInstance().isDebugMode();
-		String tablename = null;
-
-		try {
-			if (this.groupForPartitionTable && forceTableName == null) {// 需要分组
-				callVeryBefore(objs);
-				int total = 0;
-				Map<PairSS, List<T>> data = doGroup(objs);
+		if (this.groupForPartitionTable && forceTableName == null) {// 需要分组
+			callVeryBefore(objs);
+			Map<PairSS, List<T>> data = doGroup(objs);
+			int total;
+			if (parallelGroups > 1 && data.size() > 1) {
+				total = executeParallel(data, debugMode);
+			} else {
+				total = 0;
 				for (Map.Entry<PairSS, List<T>> entry : data.entrySet()) {
-					long start = System.currentTimeMillis();
-					PairSS target = entry.getKey();
-					String dbName = parent.getTransactionId(target.first);
-					tablename = target.second;
-					List<T> groupObj = entry.getValue();
-					long dbAccess = innerCommit(groupObj, target.first, tablename, dbName);
-					total += executeResult;
-					if (debugMode) {
-						LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Group executed:", String.valueOf(groupObj.size()), ". affect ", String.valueOf(executeResult), " record(s) on [" + entry.getKey() + "]\t Time cost([ParseSQL]:",
-								String.valueOf(parseTime / 1000), "us, [DbAccess]:", String.valueOf(dbAccess - start), "ms) |", dbName));
-					}
+					total += commitGroup(entry.getKey(), entry.getValue(), debugMode);
 				}
-				if (debugMode) {
-					LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Batch executed:", String.valueOf(objs.size()), ". affect ", String.valueOf(total), " record(s) and ", String.valueOf(data.size()), " tables. |  @",
-							String.valueOf(Thread.currentThread().getId())));
-				}
-			} else {// 不分组
+			}
+			if (debugMode) {
+				LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Batch executed:", String.valueOf(objs.size()), ". affect ", String.valueOf(total), " record(s) and ", String.valueOf(data.size()), " tables. |  @",
+						String.valueOf(Thread.currentThread().getId())));
+			}
+			return total;
+		} else {// 不分组
+			String tablename = null;
+			try {
 				long start = System.currentTimeMillis();
 				T obj = objs.get(0);
 				String site = null;
@@ -243,17 +370,166 @@ public abstract class Batch<T extends IQueryableEntity> {
 					tablename = pr.getAsOneTable();
 				}
 				String dbName = parent.getTransactionId(null);
-				long dbAccess = innerCommit(objs, site, tablename, dbName);
+				int count = innerCommit(objs, site, tablename, dbName);
 				if (debugMode) {
-					LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Batch executed total:", String.valueOf(objs.size()), ". affect ", String.valueOf(executeResult), " record(s)\t Time cost([ParseSQL]:", String.valueOf(parseTime / 1000), "us, [DbAccess]:",
-							String.valueOf(dbAccess - start), "ms) |", dbName));
+					LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Batch executed total:", String.valueOf(objs.size()), ". affect ", String.valueOf(count), " record(s)\t Time cost([ParseSQL]:", String.valueOf(parseTime / 1000), "us, [DbAccess]:",
+							String.valueOf(System.currentTimeMillis() - start), "ms) |", dbName));
 				}
+				return count;
+			} catch (SQLException e) {
+				DebugUtil.setSqlState(e, tablename);
+				throw e;
 			}
+		}
+	}
+
+	/*
+	 * 提交分组后的一组数据，返回影响的记录数
+	 */
+	private int commitGroup(PairSS target, List<T> groupObj, boolean debugMode) throws SQLException {
+		long start = System.currentTimeMillis();
+		String dbName = parent.getTransactionId(target.first);
+		int count;
+		try {
+			count = innerCommit(groupObj, target.first, target.second, dbName);
 		} catch (SQLException e) {
-			DebugUtil.setSqlState(e, tablename);
+			DebugUtil.setSqlState(e, target.second);
 			throw e;
 		}
-		return executeResult;
+		if (debugMode) {
+			LogUtil.info(StringUtils.concat(this.getClass().getSimpleName(), " Group executed:", String.valueOf(groupObj.size()), ". affect ", String.valueOf(count), " record(s) on [" + target + "]\t Time cost([ParseSQL]:",
+					String.valueOf(parseTime / 1000), "us, [DbAccess]:", String.valueOf(System.currentTimeMillis() - start), "ms) |", dbName));
+		}
+		return count;
+	}
+
+	/*
+	 * 并行提交各组，同时执行的组数不超过parallelGroups。
+	 * 不在事务中时每组在各自的线程上取得连接；事务中同一数据源的各组共用事务在该数据源上的连接，因此合并为一个单元依次执行。
+	 * 一组出错时继续执行其他组，最后抛出全部错误。
+	 */
+	private int executeParallel(Map<PairSS, List<T>> data, final boolean debugMode) throws SQLException {
+		final Queue<List<Map.Entry<PairSS, List<T>>>> units = new ConcurrentLinkedQueue<List<Map.Entry<PairSS, List<T>>>>();
+		if (parent instanceof Transaction) {
+			Map<String, List<Map.Entry<PairSS, List<T>>>> sites = new LinkedHashMap<String, List<Map.Entry<PairSS, List<T>>>>();
+			for (Map.Entry<PairSS, List<T>> entry : data.entrySet()) {
+				List<Map.Entry<PairSS, List<T>>> unit = sites.get(entry.getKey().first);
+				if (unit == null) {
+					unit = new ArrayList<Map.Entry<PairSS, List<T>>>();
+					sites.put(entry.getKey().first, unit);
+				}
+				unit.add(entry);
+			}
+			units.addAll(sites.values());
+		} else {
+			for (Map.Entry<PairSS, List<T>> entry : data.entrySet()) {
+				units.add(Collections.singletonList(entry));
+			}
+		}
+		final AtomicInteger total = new AtomicInteger();
+		final Queue<SQLException> errors = new ConcurrentLinkedQueue<SQLException>();
+		int threads = Math.min(parallelGroups, units.size());
+		List<DbTask> tasks = new ArrayList<DbTask>(threads);
+		for (int i = 0; i < threads; i++) {
+			tasks.add(new DbTask() {
+				public void execute() throws SQLException {
+					List<Map.Entry<PairSS, List<T>>> unit;
+					while ((unit = units.poll()) != null) {
+						for (Map.Entry<PairSS, List<T>> entry : unit) {
+							try {
+								total.addAndGet(commitGroup(entry.getKey(), entry.getValue(), debugMode));
+							} catch (SQLException e) {
+								errors.add(e);
+							}
+						}
+					}
+				}
+			});
+		}
+		parent.getNoTransactionSession().getParallelExecutor().execute(tasks);
+		if (!errors.isEmpty()) {
+			throw DbUtils.wrapExceptions(errors);
+		}
+		return total.get();
+	}
+
+	/**
+	 * 流式提交并执行批数据。从Iterator中逐条取出对象，每累积{@link #getChunkSize()}条(或估算大小达到{@link #getMaxChunkBytes()}
+	 * )就作为一批执行，执行后即释放这批对象的引用。 因此无论数据总量多大，内存中最多只保留一批对象，数据库驱动也只缓冲一批参数。
+	 * <p>
+	 * 每批的执行方式和{@link #execute(List)}相同。
+	 * 
+	 * @param objs
+	 *            要操作的对象
+	 * @return 影响的总记录行数。驱动未返回影响行数的批次不计入。
+	 * @throws SQLException
+	 */
+	public long execute(Iterator<? extends T> objs) throws SQLException {
+		int size = Math.max(1, chunkSize);
+		List<T> chunk = new ArrayList<T>(Math.min(size, 4096));
+		long start = System.currentTimeMillis();
+		long rows = 0;
+		long affected = 0;
+		long bytes = 0;
+		while (objs.hasNext()) {
+			T obj = objs.next();
+			Assert.notNull(obj, "Batch list must not contain null element.");
+			chunk.add(obj);
+			if (maxChunkBytes > 0) {
+				bytes += estimateSize(obj);
+			}
+			if (chunk.size() >= size || (maxChunkBytes > 0 && bytes >= maxChunkBytes)) {
+				rows += chunk.size();
+				affected += executeChunk(chunk, rows, affected, start);
+				bytes = 0;
+			}
+		}
+		if (!chunk.isEmpty()) {
+			rows += chunk.size();
+			affected += executeChunk(chunk, rows, affected, start);
+		}
+		return affected;
+	}
+
+	/**
+	 * 流式提交并执行批数据，参见{@link #execute(Iterator)}
+	 * 
+	 * @param objs
+	 *            要操作的对象
+	 * @return 影响的总记录行数
+	 * @throws SQLException
+	 */
+	public long execute(Stream<? extends T> objs) throws SQLException {
+		return execute(objs.iterator());
+	}
+
+	/*
+	 * 执行一批数据并清空，返回本批影响的记录数
+	 */
+	private int executeChunk(List<T> chunk, long rows, long affected, long start) throws SQLException {
+		int count = Math.max(0, execute(chunk));
+		chunk.clear();
+		if (commitPerChunk && parent instanceof TransactionalSession) {
+			((TransactionalSession) parent).commit(false);
+		}
+		if (progressListener != null) {
+			progressListener.onChunk(rows, affected + count, System.currentTimeMillis() - start);
+		}
+		return count;
+	}
+
+	/**
+	 * 估算一条记录在批中占用的字节数，用于{@link #setMaxChunkBytes(long)}
+	 * 
+	 * @param obj
+	 * @return
+	 */
+	protected long estimateSize(T obj) {
+		long size = 16;
+		for (ColumnMapping column : meta.getColumns()) {
+			size += DbUtils.estimateSize(column.getFieldAccessor().get(obj));
+		}
+		return size;
 	}
 
 //	protected PartitionResult getTableName(T obj) {
@@ -264,7 +540,7 @@ public abstract class Batch<T extends IQueryableEntity> {
 		return DbUtils.toTableName(obj, null, obj.getQuery(), parent.getPartitionSupport());
 	}
 
-	protected long innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
+	protected int innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
 		OperateTarget db = parent.selectTarget(site);
 		String sql = toSql(DbUtils.escapeColumn(db.getProfile(), tablename));
 		if (ORMConfig.getInstance().isDebugMode())
@@ -303,9 +579,9 @@ public abstract class Batch<T extends IQueryableEntity> {
 	}
 
 	/*
-	 * 提交每批数据，返回本次数据库完成后的时间
+	 * 提交每批数据，返回影响的记录数
 	 */
-	protected long doCommit(PreparedStatement psmt, OperateTarget db, List<T> listValue) throws SQLException {
+	protected int doCommit(PreparedStatement psmt, OperateTarget db, List<T> listValue) throws SQLException {
 		callEventListenerBefore(listValue);
 		processJdbcParams(psmt, listValue, db);
 		int[] result;
@@ -321,30 +597,9 @@ public abstract class Batch<T extends IQueryableEntity> {
 					realException = e;
 				}
 			}
-			if (realException instanceof SQLIntegrityConstraintViolationException) {
-				throw realException;
-			}
-			String constraintName = db.getProfile().getViolatedConstraintNameExtracter().extractConstraintName(realException);
-			if (constraintName != null) {
-				if (realException instanceof SQLIntegrityConstraintViolationException) {
-					throw realException;
-				} else {
-					throw new SQLIntegrityConstraintViolationException(constraintName);
-				}
-			} else {
-				throw realException;
-			}
+			throw toViolation(realException, db);
 		} catch (SQLException e) {
-			String constraintName = db.getProfile().getViolatedConstraintNameExtracter().extractConstraintName(e);
-			if (constraintName != null) {
-				if (e instanceof SQLIntegrityConstraintViolationException) {
-					throw e;
-				} else {
-					throw new SQLIntegrityConstraintViolationException(constraintName);
-				}
-			} else {
-				throw e;
-			}
+			throw toViolation(e, db);
 		}
 		int total = 0;
 		if (result[0] < 0) {
@@ -354,10 +609,22 @@ public abstract class Batch<T extends IQueryableEntity> {
 				total += i;
 			}
 		}
-		this.executeResult = total;
-		long dbAccess = System.currentTimeMillis();
 		callEventListenerAfter(listValue);
-		return dbAccess;
+		return total;
+	}
+
+	/*
+	 * 违反约束时转换为SQLIntegrityConstraintViolationException
+	 */
+	static SQLException toViolation(SQLException e, OperateTarget db) {
+		if (e instanceof SQLIntegrityConstraintViolationException) {
+			return e;
+		}
+		String constraintName = db.getProfile().getViolatedConstraintNameExtracter().extractConstraintName(e);
+		if (constraintName != null) {
+			return new SQLIntegrityConstraintViolationException(constraintName);
+		}
+		return e;
 	}
 
 	/*
@@ -385,6 +652,25 @@ public abstract class Batch<T extends IQueryableEntity> {
 	 */
 	protected abstract String toSql(String tablename);
 
+	/**
+	 * 流式批操作的进度回调
+	 * 
+	 * @see Batch#execute(Iterator)
+	 */
+	public interface ProgressListener {
+		/**
+		 * 每批执行完成后调用
+		 * 
+		 * @param rows
+		 *            已执行的记录数
+		 * @param affected
+		 *            已影响的记录数
+		 * @param elapsed
+		 *            已耗费的时间(毫秒)，可以据此计算吞吐量
+		 */
+		void onChunk(long rows, long affected, long elapsed);
+	}
+
 	static final class Insert<T extends IQueryableEntity> extends Batch<T> {
 		/**
 		 * SQL片段,Insert部分(INSERT语句使用)
@@ -451,10 +737,11 @@ public abstract class Batch<T extends IQueryableEntity> {
 			int len = listValue.size();
 			SqlLog log = ORMConfig.getInstance().newLogger(this.extreme);
 			int maxLog = ORMConfig.getInstance().getMaxBatchLog();
+			BindVariableContext context = new BindVariableContext(psmt, db.getProfile(), log);
 			for (int i = 0; i < len; i++) {
 				T t = listValue.get(i);
 				Assert.notNull(t,"Batch list must not contain null element.");
-				BindVariableContext context = new BindVariableContext(psmt, db.getProfile(), log.append("Batch Parameters: ", i + 1).append('/').append(len));
+				log.append("Batch Parameters: ", i + 1).append('/').append(len);
 				context.setInsertVariables(t, writeFields);
 				psmt.addBatch();
 				if (log.isDebug()) {
@@ -462,28 +749,61 @@ public abstract class Batch<T extends IQueryableEntity> {
 					if (i + 1 == maxLog) {
 						log.directLog("Batch Parameters: After " + maxLog + "th are ignored to reduce the size of log file.");
 						log = SqlLog.DUMMY;
+						context = new BindVariableContext(psmt, db.getProfile(), log);
 					}
 				}
 			}
 		}
 
-		protected long innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
+		protected int innerCommit(List<T> objs, String site, String tablename, String dbName) throws SQLException {
 			OperateTarget db = parent.selectTarget(site);
-			if (extreme) {
-				db.getProfile().toExtremeInsert(insertPart);
+			BulkInsertHandler bulk = null;
+			String sql = null;
+			// 并行提交时各组共用insertPart，修改和生成SQL需要互斥
+			synchronized (insertPart) {
+				if (extreme) {
+					bulk = db.getProfile().getBulkInsertHandler();
+					if (bulk == null || objs.size() <= 1 || ORMConfig.getInstance().getExtremeInsertRows() <= 1 || !bulk.accept(insertPart)) {
+						bulk = null;
+						db.getProfile().toExtremeInsert(insertPart);
+					}
+				}
+				if (bulk == null) {
+					sql = toSql(tablename);
+				}
+			}
+			if (bulk != null) {
+				return bulkCommit(bulk, objs, db, tablename, dbName);
 			}
-			String sql = toSql(tablename);
 			if (ORMConfig.getInstance().isDebugMode())
 				LogUtil.show(sql + " | " + dbName);
 			PreparedStatement p = insertPart.getCallback().doPrepareStatement(db, sql);
 			try {
-				long dbAccess = doCommit(p, db, objs);
-				return dbAccess;
+				return doCommit(p, db, objs);
 			} finally {
 				p.close();
 				db.releaseConnection();
 			}
 		}
+
+		/*
+		 * 使用数据库的批量写入方式代替JDBC batch
+		 */
+		private int bulkCommit(BulkInsertHandler bulk, List<T> objs, OperateTarget db, String tablename, String dbName) throws SQLException {
+			if (ORMConfig.getInstance().isDebugMode())
+				LogUtil.show(bulk.getClass().getSimpleName() + ": " + insertPart.getSql(tablename) + " x " + objs.size() + " | " + dbName);
+			callEventListenerBefore(objs);
+			int total;
+			try {
+				total = bulk.insert(db, insertPart, tablename, objs);
+			} catch (SQLException e) {
+				throw toViolation(e, db);
+			} finally {
+				db.releaseConnection();
+			}
+			callEventListenerAfter(objs);
+			return total;
+		}
 		
 
 		@Override
@@ -552,20 +872,22 @@ public abstract class Batch<T extends IQueryableEntity> {
 			int len = listValue.size();
 			SqlLog log = ORMConfig.getInstance().newLogger(this.extreme);
 			int maxLog = ORMConfig.getInstance().getMaxBatchLog();
+			String baseTableName = forceTableName == null ? meta.getTableName(false) : forceTableName;
+			BindVariableContext context = new BindVariableContext(psmt, db.getProfile(), log);
 			for (int i = 0; i < len; i++) {
 				T t = listValue.get(i);
 				Assert.notNull(t,"Batch list must not contain null element.");
-				BindVariableContext context = new BindVariableContext(psmt, db.getProfile(), log.append("Batch Parameters: ", i + 1).append('/').append(len));
+				log.append("Batch Parameters: ", i + 1).append('/').append(len);
 				List<Object> whereBind = context.setVariables(t.getQuery(), updatePart.getVariables(), bindVar);
 				psmt.addBatch();
-				String baseTableName = forceTableName == null ? meta.getTableName(false) : forceTableName;
-				parent.getCache().onUpdate(baseTableName, wherePart.getSql(), whereBind);
+				parent.getCache().onUpdate(baseTableName, wherePart.getSql(), whereBind, updatePart.getColumns());
 
 				if (log.isDebug()) {
 					log.output();
 					if (i + 1 == maxLog) {
 						log.directLog("Batch Parameters: After " + maxLog + "th are ignored to reduce the size of log file.");
 						log = SqlLog.DUMMY;
+						context = new BindVariableContext(psmt, db.getProfile(), log);
 					}
 
 				}
@@ -622,15 +944,16 @@ public abstract class Batch<T extends IQueryableEntity> {
 			int len = listValue.size();
 			SqlLog log = ORMConfig.getInstance().newLogger(this.extreme);
 			int maxLog = ORMConfig.getInstance().getMaxBatchLog();
+			String baseTableName = (forceTableName == null ? meta.getTableName(false) : forceTableName);
+			BindVariableContext context = new BindVariableContext(psmt, db.getProfile(), log);
 			for (int i = 0; i < len; i++) {
 				T t = listValue.get(i);
 				Assert.notNull(t,"Batch list must not contain null element.");
 				if (t.getQuery().getConditions().isEmpty()) {
 					DbUtils.fillConditionFromField(t, t.getQuery(), null, pkMpode);
 				}
-				BindVariableContext context = new BindVariableContext(psmt, db.getProfile(), log.append("Batch Parameters: ", i + 1).append('/').append(len));
+				log.append("Batch Parameters: ", i + 1).append('/').append(len);
 				List<Object> whereBind = context.setVariables(t.getQuery(), null, wherePart.getBind());
-				String baseTableName = (forceTableName == null ? meta.getTableName(false) : forceTableName);
 				parent.getCache().onDelete(baseTableName, wherePart.getSql(), whereBind);
 
 				psmt.addBatch();
@@ -639,6 +962,7 @@ public abstract class Batch<T extends IQueryableEntity> {
 					if (i + 1 == maxLog) {
 						log.directLog("Batch Parameters: After " + maxLog + "th are ignored to reduce the size of log file.");
 						log = SqlLog.DUMMY;// 关闭日志开关
+						context = new BindVariableContext(psmt, db.getProfile(), log);
 					}
 				}
 
@@ -4,6 +4,8 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -37,6 +39,10 @@ final class CascadeLoaderTask implements LazyLoadTask {
 	private List<AbstractRefField> refs;
 	private List<OrderField> orders;
 	private String keyOfJoinTable;
+	//批量加载时关联的目标字段，为null表示该关系不能批量加载
+	private ColumnMapping batchKey;
+	//关系上定义的批量加载个数，-1表示使用全局配置
+	private int batchSize = -1;
 	/**
 	 * 
 	 * @param entry
@@ -72,6 +78,14 @@ final class CascadeLoaderTask implements LazyLoadTask {
 			if (desc.maxRows() > 0) {
 				query.setMaxResult(desc.maxRows());
 			}
+			batchSize = desc.batchSize();
+		}
+		// 只有单字段关联，且没有中间表、没有限制条数时才能用IN条件批量加载
+		if (keyOfJoinTable == null && query.getMaxResult() <= 0 && joinPath.getJoinKeys().length == 1) {
+			Field right = joinPath.getJoinKeys()[0].getRightAsField();
+			if (right != null) {
+				batchKey = targetTableMeta.getColumnDef(right);
+			}
 		}
 		if (StringUtils.isNotEmpty(joinPath.getOrderBy())) {
 			orders = new ArrayList<OrderField>();
@@ -122,7 +136,83 @@ final class CascadeLoaderTask implements LazyLoadTask {
 				}
 			}
 		}
-		
+		fill(bean.getWrapped(), subs);
+	}
+
+	/**
+	 * 用一次IN查询加载多个对象的该关系，查询结果按关联字段的值分配到各个对象中
+	 * 
+	 * @param db
+	 * @param objs
+	 * @throws SQLException
+	 */
+	public void process(Session db, List<? extends IQueryableEntity> objs) throws SQLException {
+		if (!db.isOpen()) {
+			throw new SQLException("try to load field " + refs.get(0).getName() + " but the session was already closed!");
+		}
+		LogUtil.debug("processing Cascadeload [{}] of {} objects", this.refs.get(0).getReference(), objs.size());
+		String leftField = joinPath.getJoinKeys()[0].getLeft().name();
+		Map<Object, Object> values = new LinkedHashMap<Object, Object>();
+		List<Object> keys = new ArrayList<Object>(objs.size());
+		for (IQueryableEntity obj : objs) {
+			Object value = BeanWrapper.wrap(obj).getPropertyValue(leftField);
+			keys.add(value);
+			if (value != null) {
+				values.put(toKey(value), value);
+			}
+		}
+		if (values.isEmpty())
+			return;
+		DbUtils.appendRefCondition(values.values(), joinPath, query, currentFilter);
+		if (orders != null) {
+			for (OrderField f : orders) {
+				query.addOrderBy(f.isAsc(), f.getField());
+			}
+		}
+		@SuppressWarnings("unchecked")
+		List<IQueryableEntity> subs = db.innerSelect(finalQuery, null, filters, option);
+		Map<Object, List<IQueryableEntity>> grouped = new HashMap<Object, List<IQueryableEntity>>();
+		for (IQueryableEntity sub : subs) {
+			Object key = toKey(batchKey.getFieldAccessor().get(sub));
+			List<IQueryableEntity> list = grouped.get(key);
+			if (list == null) {
+				list = new ArrayList<IQueryableEntity>();
+				grouped.put(key, list);
+			}
+			list.add(sub);
+		}
+		for (int i = 0; i < objs.size(); i++) {
+			Object value = keys.get(i);
+			if (value == null)
+				continue;
+			List<IQueryableEntity> list = grouped.get(toKey(value));
+			fill(objs.get(i), list == null ? new ArrayList<IQueryableEntity>() : list);
+		}
+	}
+
+	/**
+	 * 批量加载的对象个数，不能批量加载时返回1
+	 * 
+	 * @return
+	 */
+	public int getBatchSize() {
+		if (batchKey == null)
+			return 1;
+		int size = batchSize >= 0 ? batchSize : ORMConfig.getInstance().getLazyLoadBatchSize();
+		return Math.min(size, ORMConfig.getInstance().getMaxInConditions());
+	}
+
+	/*
+	 * 两边的关联字段类型可能不同(如int和long)，整数统一为Long后比较
+	 */
+	private static Object toKey(Object value) {
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).longValue();
+		}
+		return value;
+	}
+
+	private void fill(Object obj, List<IQueryableEntity> subs) throws SQLException {
 		for (ISelectProvider reff : refs) { // 根据配置装填到对象中去
 			AbstractRefField refield = (AbstractRefField) reff;
 
@@ -142,7 +232,7 @@ final class CascadeLoaderTask implements LazyLoadTask {
 		}
 		// 反相关系
 		if (reverse != null) {
-			reverse.process(bean.getWrapped(), subs);
+			reverse.process(obj, subs);
 		}
 	}
 
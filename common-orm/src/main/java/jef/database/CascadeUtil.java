@@ -663,7 +663,15 @@ final class CascadeUtil {
 			return;
 		DataObject obj = (DataObject) objs.get(0);
 		if (obj.lazyload != null) {
-			obj.lazyload.getProcessor().register(task);
+			LazyLoadProcessor processor = obj.lazyload.getProcessor();
+			boolean batchLoad = processor.isBatchLoad();
+			processor.register(task);
+			// 新的任务需要批量加载时，补记之前的对象
+			if (!batchLoad && processor.isBatchLoad()) {
+				for (Object o : objs) {
+					processor.attach((DataObject) o);
+				}
+			}
 			return;
 		}
 
@@ -671,6 +679,7 @@ final class CascadeUtil {
 		for (Object o : objs) {
 			DataObject dobj = (DataObject) o;
 			dobj.lazyload = new LazyLoadContext(processor);
+			processor.attach(dobj);
 		}
 	}
 
@@ -38,6 +38,7 @@ import jef.database.query.RefField;
 import jef.database.query.SqlContext;
 import jef.database.query.SqlExpression;
 import jef.database.wrapper.clause.SqlBuilder;
+import jef.database.wrapper.variable.ArrayValues;
 import jef.database.wrapper.variable.ConstantVariable;
 import jef.database.wrapper.variable.QueryLookupVariable;
 import jef.tools.ArrayUtils;
@@ -342,6 +343,9 @@ public class Condition implements Serializable {
 			if (operator == Operator.BETWEEN_L_L && len != 2) {// 无效的BETWEEN操作
 				throw new RuntimeException("The between operator must have 2 params");
 			}
+			if (value instanceof ArrayValues && len > 0 && !batch && bindAsArray(builder, columnName, rawField, profile, meta, (ArrayValues) value)) {
+				return;
+			}
 			if (len == 0) {
 				if (Operator.IN == operator) {// 对于空集合的IN条件为永假
 					builder.append("1=2");
@@ -377,6 +381,23 @@ public class Condition implements Serializable {
 
 	}
 
+	/*
+	 * 数据库支持时将IN条件的值作为一个数组绑定
+	 */
+	private boolean bindAsArray(SqlBuilder builder, String columnName, Field rawField, DatabaseDialect profile, ITableMetadata meta, ArrayValues values) {
+		ColumnMapping column = meta.getColumnDef(rawField);
+		if (operator != Operator.IN || column == null || !ArrayValues.isSupported(column.getSqlType())) {
+			return false;
+		}
+		String clause = profile.getArrayInCondition(columnName, column.getSqlType());
+		if (clause == null) {
+			return false;
+		}
+		builder.append(clause);
+		builder.addBind(new ConstantVariable(rawField.name(), operator, values.bindAs(column.getSqlType()), null));
+		return true;
+	}
+
 	private static final String[] IN_OPER = new String[] { " in (", ", ", ")" };
 	private static final String[] NOT_IN_OPER = new String[] { " not in (", ", ", ")" };
 	private static final String[] BETWEEN_OPER = new String[] { " between ", " and ", "" };
@@ -2,6 +2,8 @@ package jef.database;
 
 import java.io.Serializable;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Map;
@@ -16,6 +18,8 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import com.alibaba.fastjson.annotation.JSONField;
 
 import jef.accelerator.bean.BeanAccessor;
+import jef.common.Entry;
+import jef.database.dialect.type.ColumnMapping;
 import jef.database.meta.ITableMetadata;
 import jef.database.meta.MetaHolder;
 import jef.database.query.Query;
@@ -41,6 +45,17 @@ public abstract class DataObject implements IQueryableEntity {
 	
 	@JSONField(serialize=false)
 	private transient Map<Field, Object> updateValueMap;
+	/*
+	 * 增强后的setter将修改过的字段按Field枚举的序号记录在位图中，不保存值，也不用创建updateValueMap。
+	 * 位图只在updateValueMap为空时使用，需要Map时再按字段的当前值转存到updateValueMap中。
+	 * 同一个对象中只有一种枚举(dirtyType)的字段记录在位图中，父类等其他枚举中的字段仍然记录在updateValueMap中。
+	 */
+	@JSONField(serialize=false)
+	private transient Class<?> dirtyType;
+	@JSONField(serialize=false)
+	private transient long dirtyMask;
+	@JSONField(serialize=false)
+	private transient BitSet dirtyMaskExt; //序号大于等于64的字段
 	@JSONField(serialize=false)
 	protected transient Query<?> query;
 	@JSONField(serialize=false)
@@ -88,6 +103,12 @@ public abstract class DataObject implements IQueryableEntity {
 	 * @see jef.database.IQueryableEntity#isUsed(jef.database.Field)
 	 */
 	public final boolean isUsed(Field field) {
+		if (field != null && field.getClass() == dirtyType) {
+			if (isDirty(((Enum<?>) field).ordinal()))
+				return true;
+		} else {
+			flushDirty();// 其他枚举中可能有同名的字段
+		}
 		if (updateValueMap == null)
 			return false;
 		return updateValueMap.containsKey(field);
@@ -100,6 +121,8 @@ public abstract class DataObject implements IQueryableEntity {
 	 */
 	public final void clearUpdate() {
 		updateValueMap = null;
+		dirtyMask = 0;
+		dirtyMaskExt = null;
 	}
 
 	/*
@@ -109,6 +132,7 @@ public abstract class DataObject implements IQueryableEntity {
 	 */
 	@SuppressWarnings("unchecked")
 	public final Map<Field, Object> getUpdateValueMap() {
+		flushDirty();
 		if (updateValueMap == null)
 			return Collections.EMPTY_MAP;
 		return updateValueMap;
@@ -122,22 +146,49 @@ public abstract class DataObject implements IQueryableEntity {
 	 */
 	public void touchUsedFlag(Field field, boolean flag) {
 		if (flag) {
-			if (updateValueMap == null)
-				updateValueMap = new TreeMap<Field, Object>(cmp);
-			if (updateValueMap.containsKey(field)) {
+			if (isUsed(field)) {
 				return;
 			}
+			if (canMark(field)) {
+				setDirty(((Enum<?>) field).ordinal());
+				return;
+			}
+			flushDirty();
+			if (updateValueMap == null)
+				updateValueMap = new TreeMap<Field, Object>(cmp);
 			ITableMetadata meta = MetaHolder.getMeta(this);
 			BeanAccessor ba = meta.getContainerAccessor();
 			updateValueMap.put(field, ba.getProperty(this, field.name()));
 		} else {
+			if (field.getClass() == dirtyType) {
+				clearDirty(((Enum<?>) field).ordinal());
+			}
 			if (updateValueMap != null) {
 				updateValueMap.remove(field);
 			}
 		}
 	}
 
+	/**
+	 * 记录字段被修改，由增强后的setter方法调用。
+	 * 
+	 * @param field
+	 *            字段
+	 * @param ordinal
+	 *            字段在Field枚举中的序号
+	 * @param newValue
+	 *            新值。只有字段不能记录在位图中时才会使用
+	 */
+	protected final void markUpdate(Field field, int ordinal, Object newValue) {
+		if (canMark(field)) {
+			setDirty(ordinal);
+		} else {
+			prepareUpdate(field, newValue);
+		}
+	}
+
 	public final void prepareUpdate(Field field, Object newValue) {
+		flushDirty();
 		if (updateValueMap == null)
 			updateValueMap = new TreeMap<Field, Object>(cmp);
 		updateValueMap.put(field, newValue);
@@ -157,7 +208,38 @@ public abstract class DataObject implements IQueryableEntity {
 	 * @see jef.database.query.UpdateAble#needUpdate()
 	 */
 	public final boolean needUpdate() {
-		return (updateValueMap != null) && this.updateValueMap.size() > 0;
+		return hasDirty() || (updateValueMap != null) && this.updateValueMap.size() > 0;
+	}
+
+	/**
+	 * 得到通过prepareUpdate()指定的更新值。通过setter修改并记录在位图中的字段不在其中，这些字段更新时取字段的当前值。
+	 * 和{@link #getUpdateValueMap()}不同，此方法不会将位图转存到updateValueMap中。
+	 * 
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public final Map<Field, Object> preparedUpdateValues() {
+		if (updateValueMap == null)
+			return Collections.EMPTY_MAP;
+		return updateValueMap;
+	}
+
+	/*
+	 * 得到待更新的字段和值，按字段名排序。位图中的字段直接读取当前值，不构造updateValueMap。
+	 */
+	@SuppressWarnings("unchecked")
+	final Map.Entry<Field, Object>[] getUpdateEntries(ITableMetadata meta) {
+		if (!hasDirty()) {
+			Map<Field, Object> map = getUpdateValueMap();
+			return map.entrySet().toArray(new Map.Entry[map.size()]);
+		}
+		Field[] fields = getDirtyFields();
+		Arrays.sort(fields, cmp);
+		Map.Entry<Field, Object>[] result = new Map.Entry[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			result[i] = new Entry<Field, Object>(fields[i], getCurrentValue(meta, fields[i]));
+		}
+		return result;
 	}
 
 	public String rowid() {
@@ -172,6 +254,7 @@ public abstract class DataObject implements IQueryableEntity {
 	 * 供子类hashCode（）方法调用，判断内嵌的hashCode方法是否可用
 	 */
 	protected final int getHashCode() {
+		flushDirty();
 		return new HashCodeBuilder().append(query).append(_recordUpdate).append(updateValueMap).toHashCode();
 	}
 
@@ -207,9 +290,92 @@ public abstract class DataObject implements IQueryableEntity {
 			return false;
 		}
 		DataObject rhs = (DataObject) obj;
+		this.flushDirty();
+		rhs.flushDirty();
 		return new EqualsBuilder().append(this.query, rhs.query).append(_recordUpdate, rhs._recordUpdate).append(this.updateValueMap, rhs.updateValueMap).isEquals();
 	}
 
+	/*
+	 * 字段能否记录在位图中
+	 */
+	private boolean canMark(Field field) {
+		if (updateValueMap != null && !updateValueMap.isEmpty())
+			return false;
+		if (dirtyType == null) {
+			if (!(field instanceof Enum))
+				return false;
+			dirtyType = field.getClass();
+		}
+		return field.getClass() == dirtyType;
+	}
+
+	private boolean hasDirty() {
+		return dirtyMask != 0 || (dirtyMaskExt != null && !dirtyMaskExt.isEmpty());
+	}
+
+	private boolean isDirty(int ordinal) {
+		if (ordinal < 64)
+			return (dirtyMask & (1L << ordinal)) != 0;
+		return dirtyMaskExt != null && dirtyMaskExt.get(ordinal);
+	}
+
+	private void setDirty(int ordinal) {
+		if (ordinal < 64) {
+			dirtyMask |= 1L << ordinal;
+		} else {
+			if (dirtyMaskExt == null)
+				dirtyMaskExt = new BitSet();
+			dirtyMaskExt.set(ordinal);
+		}
+	}
+
+	private void clearDirty(int ordinal) {
+		if (ordinal < 64) {
+			dirtyMask &= ~(1L << ordinal);
+		} else if (dirtyMaskExt != null) {
+			dirtyMaskExt.clear(ordinal);
+		}
+	}
+
+	private Field[] getDirtyFields() {
+		Object[] all = dirtyType.getEnumConstants();
+		Field[] fields = new Field[Long.bitCount(dirtyMask) + (dirtyMaskExt == null ? 0 : dirtyMaskExt.cardinality())];
+		int n = 0;
+		for (long mask = dirtyMask; mask != 0; mask &= mask - 1) {
+			fields[n++] = (Field) all[Long.numberOfTrailingZeros(mask)];
+		}
+		if (dirtyMaskExt != null) {
+			for (int i = dirtyMaskExt.nextSetBit(0); i >= 0; i = dirtyMaskExt.nextSetBit(i + 1)) {
+				fields[n++] = (Field) all[i];
+			}
+		}
+		return fields;
+	}
+
+	/*
+	 * 将位图中的字段按当前值转存到updateValueMap中
+	 */
+	private void flushDirty() {
+		if (!hasDirty())
+			return;
+		Field[] fields = getDirtyFields();
+		ITableMetadata meta = MetaHolder.getMeta(this);
+		if (updateValueMap == null)
+			updateValueMap = new TreeMap<Field, Object>(cmp);
+		for (Field field : fields) {
+			updateValueMap.put(field, getCurrentValue(meta, field));
+		}
+		dirtyMask = 0;
+		dirtyMaskExt = null;
+	}
+
+	private Object getCurrentValue(ITableMetadata meta, Field field) {
+		ColumnMapping column = meta.getColumnDef(field);
+		if (column == null)
+			return meta.getContainerAccessor().getProperty(this, field.name());
+		return column.getFieldAccessor().get(this);
+	}
+
 	private static class ConditionComparator implements Comparator<Field>, Serializable {
 		public int compare(Field o1, Field o2) {
 			if (o1 == o2)
@@ -94,6 +94,35 @@ public enum DbCfg implements ConfigItem {
 	 * 在批量操作时日志中打印出的最多的参数组，默认5
 	 */
 	DB_MAX_BATCH_LOG,
+	/**
+	 * 以Iterator/Stream作为数据源执行批操作时，每累积多少条记录向数据库提交一次。默认1000
+	 */
+	DB_BATCH_CHUNK_SIZE,
+	/**
+	 * 以Iterator/Stream作为数据源执行批操作时，每批记录的估算字节数上限，达到后即提前提交该批。默认0，即不限制
+	 */
+	DB_BATCH_CHUNK_BYTES,
+	/**
+	 * extremeInsert时，数据库支持的话使用多行VALUES的insert语句或COPY等原生的批量导入方式，每条语句最多包含的行数。默认1000，设为1即关闭，仍使用JDBC batch
+	 */
+	DB_EXTREME_INSERT_ROWS,
+	/**
+	 * Oracle下extremeInsert使用APPEND_VALUES提示(11g R2开始支持)，使insert ... values也直接路径写入。默认false，仍使用APPEND。
+	 * 直接路径写入会对表加排他锁，同一事务中提交前再读取或修改该表会报ORA-12838
+	 */
+	DB_ORACLE_APPEND_VALUES,
+	/**
+	 * JPA的EntityManager在自己开启的事务中延迟写入：persist/merge/remove只登记对象，在flush或提交时按表批量写入。默认false
+	 */
+	DB_JPA_WRITE_BEHIND,
+	/**
+	 * Spring Data返回Page的查询不在写事务中时，count和分页查询在两个连接上并行执行。默认false
+	 */
+	DB_PAGE_PARALLEL_COUNT,
+	/**
+	 * Spring Data返回Page的查询，count结果的缓存时间(毫秒)，相同的count语句和参数在此时间内不再查询数据库。默认0，不缓存
+	 */
+	DB_PAGE_COUNT_CACHE_TTL,
 	/**
 	 * 自动转换表名(为旧版本保留，如果用户没有通过JPA配置对象与表名的关系，那么开启此选项后， userId -> USER_ID， 否则userId -> USERID
 	 */
@@ -128,6 +157,20 @@ public enum DbCfg implements ConfigItem {
 	 * 每个连接最小生存时间
 	 */
 	DB_CONNECTION_LIVE,	
+	/**
+	 * JEF内嵌连接池中每个连接缓存的PreparedStatement数量，数字，默认0(不缓存)。
+	 * 缓存的语句在逻辑关闭后放回，按LRU淘汰。使用第三方连接池时无效，请使用第三方连接池自身的语句缓存。
+	 */
+	DB_STATEMENT_CACHE_SIZE,
+	/**
+	 * JEF内嵌连接池的实现，concurrent(默认)或queue。
+	 * concurrent为线程优先取回上次使用的连接、后台创建新连接的高并发实现；queue为基于阻塞队列的旧实现
+	 */
+	DB_POOL_ENGINE,
+	/**
+	 * JEF内嵌连接池取连接的最长等待时间，单位毫秒，默认5000。超时抛出SQLException
+	 */
+	DB_POOL_ACQUIRE_TIMEOUT,
 	
 	
 	/////////////////默认连接的数据库配置////////////////
@@ -224,6 +267,10 @@ public enum DbCfg implements ConfigItem {
 	 * 数据库启动时默认创建表
 	 */
 	DB_TABLES,
+	/**
+	 * 启动时批量核对表结构(一次查询所有的列，然后逐表比较修改)时，同时检查和修改的表数量。默认4
+	 */
+	DB_TABLE_REFRESH_THREADS,
 
 	/**
 	 * true后禁止创建带remark标记的Oracle数据库连接。对于oracle而言，使用remark的连接性能很差。但要读取元数据注解必须使用此特性。<br>
@@ -319,6 +366,18 @@ public enum DbCfg implements ConfigItem {
 	 * 默认为50;
 	 */
 	SEQUENCE_BATCH_SIZE,
+	/**
+	 * 后台预取Sequence。开启后，缓存的最后一段值用掉一半时，在后台线程中获取下一批，使取值的线程不必等待数据库。
+	 * 
+	 * 默认为false;
+	 */
+	SEQUENCE_PREFETCH,
+	/**
+	 * Sequence批次大小随消耗速度自动放大的最大倍数。两次获取间隔不到1秒时批次翻倍，直到此倍数；间隔超过10秒时减半。
+	 * 
+	 * 默认为1，即不放大;
+	 */
+	SEQUENCE_BATCH_MAX_SCALE,
 	/**
 	 * 开启此选项后，允许自动创建数据库SEQUENCE (或模拟用的TABLE)。
 	 * 一般用在开发时和一些小型项目中，不适用于对用户权限有严格规范的专业项目中。
@@ -360,6 +419,25 @@ public enum DbCfg implements ConfigItem {
 	 * 如果设置为>0的数值表示启用二级缓存，每条缓存记录的最大生存时间等于指定的秒数。
 	 */
 	CACHE_GLOBAL_EXPIRE_TIME,
+	/**
+	 * 二级缓存占用内存的上限(估算值)，单位MB，默认64。为0时不限制。
+	 * 超出上限时按访问频率决定新的结果是否进入缓存，以及清除哪些结果。
+	 */
+	CACHE_GLOBAL_MAX_MEMORY,
+	/**
+	 * 二级缓存中单张表的结果最多占用内存上限的百分比，默认50
+	 */
+	CACHE_GLOBAL_TABLE_QUOTA,
+	/**
+	 * 集群中各节点二级缓存之间的失效消息总线，{@link jef.database.cache.InvalidationBus}的实现类名，默认空白(不通知)。
+	 * 一个节点修改数据后，其他节点清除相应的缓存，而不必等到缓存过期。
+	 * @see jef.database.cache.LoopbackInvalidationBus
+	 */
+	CACHE_GLOBAL_INVALIDATION_BUS,
+	/**
+	 * 失效消息的发送周期，单位毫秒，默认20。周期内同一张表的修改合并为一条消息，为0时每次修改立即发送
+	 */
+	CACHE_GLOBAL_INVALIDATION_INTERVAL,
 	/**
 	 * 允许为空的查询条件，默认false
 	 */
@@ -389,6 +467,12 @@ public enum DbCfg implements ConfigItem {
 	 * 延迟加载特性，默认启用(true)。关闭后可禁用延迟加载。这项配置对所有的级联操作生效
 	 */
 	DB_ENABLE_LAZY_LOAD,
+	/**
+	 * 延迟加载级联关系时，一次批量加载的对象个数，默认1(不批量加载)。
+	 * 大于1时，首次访问某个对象的延迟加载字段，会将同一次查询得到的其他对象的该字段一并用IN条件查出，避免N+1次查询。
+	 * 单个关系可以用{@link jef.database.annotation.JoinDescription#batchSize()}覆盖此配置
+	 */
+	DB_LAZY_LOAD_BATCH_SIZE,
 	/**
 	 * 延迟加载LOB特性，默认关闭(false)。关闭后可禁用延迟加载LOB。这项配置对对象中的BLOB和CLOB字段生效
 	 * FIXME 待完善
@@ -404,6 +488,16 @@ public enum DbCfg implements ConfigItem {
 	 * 检查SQL语句中的function，默认true，设置为false后，ORM不再检查函数是否可用。
 	 */
 	DB_CHECK_SQL_FUNCTIONS,
+	/**
+	 * 已解析SQL语句缓存的大小(语句数)，默认1000。相同的SQL只解析一次，为0时不缓存。
+	 * 用于原生SQL路由、手工执行SQL后的缓存刷新等场合。
+	 */
+	DB_PARSED_SQL_CACHE_SIZE,
+	/**
+	 * 查询结果转换为实体时，为每个实体和列布局生成专门的映射器类，默认false。
+	 * 开启后每行数据直接调用rs.getInt()等方法和实体的setter，减少了逐列的虚方法调用和装箱。实体类和setter须为public。
+	 */
+	DB_GENERATE_ROW_MAPPER,
 	/**
 	 * 当分表维度缺失时，默认时间宽度。是一个表达式，例如 -3,1表示从当天算起时间维度为向前三个月到向后一个月
 	 * 分库分表场景下，如果使用时间作为分表维度，而查询数据而又未指定明确的时间时，将只查询该时段范围内的数据。
@@ -413,12 +507,48 @@ public enum DbCfg implements ConfigItem {
 	 * 当需要查询的数据库数量大于等于指定值时，启用多线程并行查询。(默认值3，即3个数据库或以上启用并行查询)
 	 */
 	PARTITION_PARALLEL,
+	/**
+	 * 配置一个类名，这个类需要实现jef.database.wrapper.executor.ParallelExecutor接口，用于替换默认的分库并行执行器。
+	 */
+	PARTITION_PARALLEL_EXECUTOR,
+	/**
+	 * 分库并行执行器的线程数，每个DbClient独立一个线程池。默认为CPU个数乘以2
+	 */
+	PARTITION_PARALLEL_THREADS,
+	/**
+	 * 并行执行时，每个数据源上同时执行的任务数上限，超出的任务在该数据源的队列中等待，不占用线程。默认0，表示不限制
+	 */
+	PARTITION_PARALLEL_PERMITS_PER_SITE,
+	/**
+	 * 并行执行的超时时间(毫秒)。超时后未执行的任务被取消，正在执行的任务调用Statement.cancel()，并抛出SQLTimeoutException。默认300000(5分钟)，0表示不限制
+	 */
+	PARTITION_PARALLEL_TIMEOUT,
+	/**
+	 * 并行执行使用虚拟线程(需要JDK 21以上，低版本JDK下此参数无效)，默认false
+	 */
+	PARTITION_PARALLEL_VIRTUAL_THREAD,
+	/**
+	 * 批操作按分表结果分组后，同时执行的分组数上限。大于1时各组通过分库并行执行器并行提交，事务中同一数据源的分组依次执行。
+	 * 默认0，表示各组依次执行
+	 */
+	PARTITION_PARALLEL_BATCH,
 	/**
 	 * 当分库操作时，不得不进行内存排序和聚合计算时，该参数用于限制最大操作的行数，防止内存溢出。<br>
 	 * 一旦达到最大行数，该次操作将抛出异常。
 	 * 默认0，表示不限制。
 	 */
 	PARTITION_INMEMORY_MAXROWS,
+	/**
+	 * 跨库排序分页时使用流式归并，默认开启。<br>
+	 * 开启后会将offset+limit下推到每个库的SQL中，各库结果集以游标方式按排序字段逐条归并，
+	 * 不再将全部结果读入内存后再排序分页。(带有group by的查询不适用)
+	 */
+	PARTITION_STREAMING_MERGE,
+	/**
+	 * 跨库count distinct / group by计数时，使用HyperLogLog估算不同值的个数，默认关闭(精确计数)。<br>
+	 * 精确计数需要在内存中保存所有不重复的键值，开启后内存占用固定为几KB，误差约1%。
+	 */
+	PARTITION_APPROXIMATE_COUNT_DISTINCT,
 	/**
 	 * 按需建表功能开关，默认开。<br>
 	 * 开启按需建表功能后，在分库分表下执行插入操作时，会自动创建需要的表。
@@ -441,6 +571,19 @@ public enum DbCfg implements ConfigItem {
 	 * 在一次in条件中允许出现的最多参数数量。缺省500。有部分批量查询接口，可以自动将传入的条件转为 in (?,?,?,..)这样的语句，该参数可用于控制in条件最大的元素个数。
 	 */
 	DB_MAX_IN_CONDITIONS,
+	/**
+	 * 批量加载(batchLoad/batchLoadByField)时，将in条件的参数个数补齐到2的幂(不超过{@link #DB_MAX_IN_CONDITIONS})，补齐时重复最后一个值。默认false。
+	 * 开启后同一张表的批量加载只会产生少数几种SQL，便于驱动和数据库缓存语句
+	 */
+	DB_IN_CONDITIONS_PADDING,
+	/**
+	 * 批量加载时，如果数据库支持(如PostgreSQL的 = ANY(?))，将in条件的参数作为一个数组绑定。默认false。
+	 */
+	DB_IN_CONDITIONS_ARRAY_BINDING,
+	/**
+	 * 批量加载的参数超过{@link #DB_MAX_IN_CONDITIONS}需要分多次查询时，如果不在事务中，并行执行各次查询。默认false。
+	 */
+	DB_PARALLEL_BATCH_LOAD,
 	
 	/**
 	 * 启用数据初始化记录信息表 (AllowDataInitialize)
@@ -19,7 +19,13 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.persistence.PersistenceException;
 import javax.sql.DataSource;
@@ -28,9 +34,13 @@ import org.easyframe.enterprise.spring.TransactionMode;
 
 import jef.common.Callback;
 import jef.common.log.LogUtil;
+import jef.common.pool.PoolStatus;
 import jef.database.cache.Cache;
+import jef.database.cache.CacheBudget;
 import jef.database.cache.CacheDummy;
 import jef.database.cache.CacheImpl;
+import jef.database.cache.CountCache;
+import jef.database.cache.InvalidationBus;
 import jef.database.datasource.SimpleDataSource;
 import jef.database.dialect.AbstractDialect;
 import jef.database.dialect.DatabaseDialect;
@@ -44,11 +54,16 @@ import jef.database.meta.AbstractMetadata;
 import jef.database.meta.ITableMetadata;
 import jef.database.meta.MetaHolder;
 import jef.database.meta.Reference;
+import jef.database.meta.object.Column;
+import jef.database.meta.object.Index;
 import jef.database.routing.PartitionResult;
 import jef.database.support.DbOperatorListener;
 import jef.database.support.DbOperatorListenerContainer;
 import jef.database.support.DefaultDbOperListener;
 import jef.database.support.MetadataEventListener;
+import jef.database.wrapper.executor.DbTask;
+import jef.database.wrapper.executor.DefaultParallelExecutor;
+import jef.database.wrapper.executor.ParallelExecutor;
 import jef.tools.Assert;
 import jef.tools.JefConfiguration;
 import jef.tools.StringUtils;
@@ -93,6 +108,14 @@ public class DbClient extends Session implements SessionFactory {
 	 * 全局缓存
 	 */
 	private Cache golbalCache;
+	/**
+	 * 分库并行执行器
+	 */
+	private volatile ParallelExecutor parallelExecutor;
+	/**
+	 * 分页查询的count结果缓存
+	 */
+	private final CountCache countCache = new CountCache();
 
 	/**
 	 * 启动一个事务。
@@ -271,6 +294,76 @@ public class DbClient extends Session implements SessionFactory {
 		return listener;
 	}
 
+	/**
+	 * 获得分库分表时使用的并行执行器。默认按{@link DbCfg#PARTITION_PARALLEL_THREADS}等参数创建{@link DefaultParallelExecutor}，
+	 * 也可以通过{@link DbCfg#PARTITION_PARALLEL_EXECUTOR}指定实现类。
+	 * 
+	 * @return 并行执行器
+	 */
+	public ParallelExecutor getParallelExecutor() {
+		if (parallelExecutor == null) {
+			synchronized (this) {
+				if (parallelExecutor == null) {
+					parallelExecutor = createParallelExecutor();
+				}
+			}
+		}
+		return parallelExecutor;
+	}
+
+	/**
+	 * 设置二级缓存的失效消息总线，用于集群中各节点之间通知缓存失效。未启用二级缓存时无效
+	 * 
+	 * @param bus
+	 *            消息总线，为null时停止通知
+	 * @see DbCfg#CACHE_GLOBAL_INVALIDATION_BUS
+	 */
+	public void setCacheInvalidationBus(InvalidationBus bus) {
+		if (golbalCache instanceof CacheImpl) {
+			((CacheImpl) golbalCache).setInvalidationBus(bus, ORMConfig.getInstance().getCacheGlobalInvalidationInterval());
+		}
+	}
+
+	/**
+	 * 获得分页查询的count结果缓存
+	 * 
+	 * @return count结果缓存
+	 * @see DbCfg#DB_PAGE_COUNT_CACHE_TTL
+	 */
+	public CountCache getCountCache() {
+		return countCache;
+	}
+
+	/**
+	 * 设置分库分表时使用的并行执行器，原有的执行器会被关闭
+	 * 
+	 * @param parallelExecutor
+	 *            并行执行器
+	 */
+	public synchronized void setParallelExecutor(ParallelExecutor parallelExecutor) {
+		ParallelExecutor old = this.parallelExecutor;
+		this.parallelExecutor = parallelExecutor;
+		if (old != null && old != parallelExecutor) {
+			old.shutdown();
+		}
+	}
+
+	private ParallelExecutor createParallelExecutor() {
+		String clz = JefConfiguration.get(DbCfg.PARTITION_PARALLEL_EXECUTOR);
+		if (StringUtils.isNotEmpty(clz)) {
+			try {
+				return (ParallelExecutor) BeanUtils.newInstance(Class.forName(clz));
+			} catch (ClassNotFoundException e) {
+				LogUtil.exception(e);
+			}
+		}
+		int threads = JefConfiguration.getInt(DbCfg.PARTITION_PARALLEL_THREADS, Runtime.getRuntime().availableProcessors() * 2);
+		int permits = JefConfiguration.getInt(DbCfg.PARTITION_PARALLEL_PERMITS_PER_SITE, 0);
+		long timeout = JefConfiguration.getLong(DbCfg.PARTITION_PARALLEL_TIMEOUT, 300000);
+		boolean virtual = JefConfiguration.getBoolean(DbCfg.PARTITION_PARALLEL_VIRTUAL_THREAD, false);
+		return new DefaultParallelExecutor(threads, permits, timeout, virtual);
+	}
+
 	protected String getTransactionId(String key) {
 		StringBuilder sb = new StringBuilder();
 		// 2016/7/8 优化，Map hash查找仅发生一次。
@@ -348,7 +441,18 @@ public class DbClient extends Session implements SessionFactory {
 
 		// 设置全局缓存
 		if (ORMConfig.getInstance().getCacheLevel2() > 0) {
-			this.golbalCache = new CacheImpl(preProcessor, selectp, ORMConfig.getInstance().getCacheLevel2(), "GLOBAL");
+			ORMConfig config = ORMConfig.getInstance();
+			CacheBudget budget = config.getCacheGlobalMaxMemory() > 0 ? new CacheBudget(config.getCacheGlobalMaxMemory() * 1024L * 1024L, config.getCacheGlobalTableQuota()) : null;
+			CacheImpl cache = new CacheImpl(preProcessor, selectp, config.getCacheLevel2(), "GLOBAL", budget);
+			this.golbalCache = cache;
+			String bus = config.getCacheGlobalInvalidationBus();
+			if (StringUtils.isNotEmpty(bus)) {
+				try {
+					cache.setInvalidationBus((InvalidationBus) BeanUtils.newInstance(Class.forName(bus)), config.getCacheGlobalInvalidationInterval());
+				} catch (ClassNotFoundException e) {
+					LogUtil.exception(e);
+				}
+			}
 		} else {
 			this.golbalCache = CacheDummy.getInstance();
 		}
@@ -731,6 +835,183 @@ public class DbClient extends Session implements SessionFactory {
 		}
 	}
 
+	/**
+	 * 批量检查并修改数据库中的表，使其和传入的实体模型保持一致，一般用于启动时核对大量的表。<br>
+	 * 和逐个调用{@link #refreshTable(ITableMetadata, MetadataEventListener, boolean, boolean)}
+	 * 相比，每个数据库只用一次元数据查询取得所有表的列，在内存中判断表是否存在并比较列的差异；
+	 * 各表的建表、列和索引的检查和DDL语句在每个数据库上按{@link DbCfg#DB_TABLE_REFRESH_THREADS}指定的并发数并行执行。
+	 * 约束在全部表建好之后再逐个修改，以免约束引用的表还没有创建。约束修改完后，数据库方言支持时每个数据库也只用一次查询取得所有表的索引。
+	 * <p>
+	 * 注意：监听器的事件可能在多个线程中同时触发。某张表出错不影响其他表，全部完成后再抛出异常。
+	 * 
+	 * @param metas
+	 *            要更新的表的元数据
+	 * @param event
+	 *            事件监听器，可以监听刷新过程的事件
+	 * @param modifyConstraint
+	 *            更改约束
+	 * @param modifyIndexes
+	 *            更改索引
+	 * @throws SQLException
+	 * @see MetadataEventListener
+	 */
+	public void refreshTables(Collection<? extends ITableMetadata> metas, final MetadataEventListener event, final boolean modifyConstraint, final boolean modifyIndexes) throws SQLException {
+		ensureOpen();
+		Map<DbMetaData, Map<String, List<Column>>> loaded = new HashMap<DbMetaData, Map<String, List<Column>>>();
+		List<TableRefresh> units = new ArrayList<TableRefresh>();
+		for (ITableMetadata meta : metas) {
+			PartitionResult[] results = DbUtils.toTableNames(meta, this.getPartitionSupport(), 4);
+			for (PartitionResult result : results) {
+				DbMetaData dbmeta = getPool().getMetadata(result.getDatabase());
+				Map<String, List<Column>> columns = loaded.get(dbmeta);
+				if (columns == null) {
+					columns = dbmeta.getAllColumns();
+					loaded.put(dbmeta, columns);
+				}
+				for (String table : result.getTables()) {
+					if (event == null || event.beforeTableRefresh(meta, table)) {
+						units.add(new TableRefresh(meta, table, dbmeta, find(columns, dbmeta.getProfile().getObjectNameToUse(table))));
+					}
+				}
+			}
+		}
+		Queue<SQLException> errors = new ConcurrentLinkedQueue<SQLException>();
+		refreshInParallel(units, errors, new RefreshStep() {
+			void refresh(TableRefresh unit) throws SQLException {
+				unit.dbmeta.refreshColumns(unit.meta, unit.table, event, unit.columns);
+			}
+		});
+		if (modifyConstraint) {
+			for (TableRefresh unit : units) {
+				if (unit.failed) {
+					continue;
+				}
+				try {
+					unit.dbmeta.refreshConstraints(unit.meta, unit.table, event);
+				} catch (SQLException e) {
+					unit.failed = true;
+					errors.add(e);
+				}
+			}
+		}
+		if (modifyIndexes) {
+			// 建表和修改约束都可能产生索引，因此在此之后查询
+			Map<DbMetaData, Map<String, List<Index>>> indexes = new HashMap<DbMetaData, Map<String, List<Index>>>();
+			for (TableRefresh unit : units) {
+				if (unit.failed) {
+					continue;
+				}
+				if (!indexes.containsKey(unit.dbmeta)) {
+					indexes.put(unit.dbmeta, unit.dbmeta.getAllIndexes());
+				}
+				Map<String, List<Index>> all = indexes.get(unit.dbmeta);
+				if (all != null) {
+					unit.indexes = find(all, unit.dbmeta.getProfile().getObjectNameToUse(unit.table));
+				}
+			}
+		}
+		refreshInParallel(units, errors, new RefreshStep() {
+			void refresh(TableRefresh unit) throws SQLException {
+				unit.dbmeta.refreshIndexes(unit.meta, unit.table, event, modifyIndexes, unit.indexes);
+			}
+		});
+		if (!errors.isEmpty()) {
+			throw DbUtils.wrapExceptions(errors);
+		}
+	}
+
+	/*
+	 * 对尚未出错的表并行执行一个步骤。出错的表记录异常，不再执行之后的步骤。
+	 * 任务标明所在的数据源，使并行执行器按数据源限制并发，不占满某个数据源的连接
+	 */
+	private void refreshInParallel(List<TableRefresh> units, final Queue<SQLException> errors, final RefreshStep step) throws SQLException {
+		Map<String, Queue<TableRefresh>> sites = new LinkedHashMap<String, Queue<TableRefresh>>();
+		for (TableRefresh unit : units) {
+			if (!unit.failed) {
+				String site = unit.dbmeta.getDbkey();
+				Queue<TableRefresh> queue = sites.get(site);
+				if (queue == null) {
+					queue = new ConcurrentLinkedQueue<TableRefresh>();
+					sites.put(site, queue);
+				}
+				queue.add(unit);
+			}
+		}
+		List<DbTask> tasks = new ArrayList<DbTask>();
+		for (Map.Entry<String, Queue<TableRefresh>> entry : sites.entrySet()) {
+			final Queue<TableRefresh> queue = entry.getValue();
+			int threads = Math.min(ORMConfig.getInstance().getTableRefreshThreads(), queue.size());
+			for (int i = 0; i < threads; i++) {
+				tasks.add(new DbTask(entry.getKey()) {
+					public void execute() throws SQLException {
+						TableRefresh unit;
+						while ((unit = queue.poll()) != null) {
+							step.run(unit, errors);
+						}
+					}
+				});
+			}
+		}
+		if (tasks.size() > 1) {
+			getParallelExecutor().execute(tasks);
+		} else {
+			for (Queue<TableRefresh> queue : sites.values()) {
+				for (TableRefresh unit : queue) {
+					step.run(unit, errors);
+				}
+			}
+		}
+	}
+
+	/*
+	 * 从预先加载的列或索引中找到表的列或索引，没有时返回空列表。带schema的表名返回null，即单独查询
+	 */
+	private static <T> List<T> find(Map<String, List<T>> all, String table) {
+		if (table.indexOf('.') > -1) {
+			return null;
+		}
+		List<T> result = all.get(table);
+		if (result == null) {
+			for (Map.Entry<String, List<T>> entry : all.entrySet()) {
+				if (entry.getKey().equalsIgnoreCase(table)) {
+					return entry.getValue();
+				}
+			}
+			result = Collections.emptyList();
+		}
+		return result;
+	}
+
+	private static abstract class RefreshStep {
+		abstract void refresh(TableRefresh unit) throws SQLException;
+
+		final void run(TableRefresh unit, Queue<SQLException> errors) {
+			try {
+				refresh(unit);
+			} catch (SQLException e) {
+				unit.failed = true;
+				errors.add(e);
+			}
+		}
+	}
+
+	private static final class TableRefresh {
+		private final ITableMetadata meta;
+		private final String table;
+		private final DbMetaData dbmeta;
+		private final List<Column> columns;
+		// 预先加载的索引，为null时逐表查询
+		private List<Index> indexes;
+		private volatile boolean failed;
+
+		TableRefresh(ITableMetadata meta, String table, DbMetaData dbmeta, List<Column> columns) {
+			this.meta = meta;
+			this.table = table;
+			this.dbmeta = dbmeta;
+			this.columns = columns;
+		}
+	}
+
 	/**
 	 * 检查并修改数据库中的表，使其和传入的实体模型保持一致。
 	 * 
@@ -799,6 +1080,16 @@ public class DbClient extends Session implements SessionFactory {
 		return connPool.getStatus().toString();
 	}
 
+	/**
+	 * 获得内嵌连接池的状态
+	 * 
+	 * @return 连接池状态
+	 */
+	public PoolStatus getInnerPoolStatus() {
+		ensureOpen();
+		return connPool.getStatus();
+	}
+
 	/**
 	 * 强制进行命名查询的更新检查
 	 */
@@ -1000,6 +1291,12 @@ public class DbClient extends Session implements SessionFactory {
 			LogUtil.exception(e);
 		}
 		this.sequenceManager.close();
+		if (golbalCache instanceof CacheImpl) {
+			((CacheImpl) golbalCache).close();
+		}
+		if (parallelExecutor != null) {
+			parallelExecutor.shutdown();
+		}
 		if(connPool!=null) {
 			try {
 				connPool.close();
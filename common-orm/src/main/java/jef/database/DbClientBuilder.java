@@ -163,6 +163,12 @@ public class DbClientBuilder {
 	 */
 	private boolean allowDropColumn;
 
+	/**
+	 * 扫描到实体后，是否批量核对表结构(一次查询所有表的列，并行修改) <br>
+	 * 默认关闭
+	 */
+	private boolean bulkRefreshTable;
+
 	/**
 	 * 自定义一个类，当数据库连上后干一些初始化的事情。
 	 * 
@@ -583,6 +589,22 @@ public class DbClientBuilder {
 		return this;
 	}
 
+	public boolean isBulkRefreshTable() {
+		return bulkRefreshTable;
+	}
+
+	/**
+	 * 扫描到实体后，是否批量核对表结构。开启后所有实体扫描完成后，用一次元数据查询取得所有表的列， 再并行建表和修改表，
+	 * 并发数见{@link DbCfg#DB_TABLE_REFRESH_THREADS}。
+	 * 
+	 * @param bulkRefreshTable
+	 *            true批量核对
+	 */
+	public DbClientBuilder setBulkRefreshTable(boolean bulkRefreshTable) {
+		this.bulkRefreshTable = bulkRefreshTable;
+		return this;
+	}
+
 	public String getEnhancePackages() {
 		return enhancePackages;
 	}
@@ -651,6 +673,7 @@ public class DbClientBuilder {
 			qe.setAlterTable(alterTable);
 			qe.setCheckIndex(alterTable);
 			qe.setCreateTable(createTable);
+			qe.setBulkRefresh(bulkRefreshTable);
 			
 			qe.setInitData(this.initData);
 			qe.setEntityManagerFactory(sf, this.useDataInitTable, this.initDataCharset, this.initDataExtension, this.initDataRoot);
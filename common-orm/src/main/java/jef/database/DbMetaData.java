@@ -60,6 +60,7 @@ import jef.database.dialect.DatabaseDialect;
 import jef.database.dialect.type.ColumnMapping;
 import jef.database.innerpool.IConnection;
 import jef.database.innerpool.IUserManagedPool;
+import jef.database.jdbc.result.IResultSet;
 import jef.database.jdbc.result.ResultSetImpl;
 import jef.database.jdbc.result.ResultSets;
 import jef.database.meta.AbstractMetadata;
@@ -92,6 +93,7 @@ import jef.database.support.SqlLog;
 import jef.database.wrapper.executor.ExecutorImpl;
 import jef.database.wrapper.executor.ExecutorJTAImpl;
 import jef.database.wrapper.executor.StatementExecutor;
+import jef.database.wrapper.populator.AbstractResultSetTransformer;
 import jef.database.wrapper.populator.ResultPopulatorImpl;
 import jef.database.wrapper.populator.ResultSetExtractor;
 import jef.database.wrapper.populator.Transformer;
@@ -154,6 +156,10 @@ public class DbMetaData {
 	 * 所属shema
 	 */
 	private String schema;
+	/**
+	 * 预先加载的当前schema下的序列名，见{@link #preloadSequences()}
+	 */
+	private volatile Set<String> preloadedSequences;
 
 	/**
 	 * 缓存清理的间隔时间<br>
@@ -370,6 +376,38 @@ public class DbMetaData {
 		return info.profile.getSequenceInfo(this, schema, name);
 	}
 
+	/**
+	 * 用一次查询得到当前schema下所有的序列。此后检查当前schema下的序列是否存在时不再逐个查询数据库，直到调用
+	 * {@link #clearPreloadedSequences()}。用于启动时批量检查实体的序列。
+	 * 
+	 * @throws SQLException
+	 */
+	public void preloadSequences() throws SQLException {
+		if (schema == null) {
+			return;// 未指定schema时会查询到所有schema下的序列
+		}
+		List<SequenceInfo> sequences = info.profile.getSequenceInfo(this, schema, null);
+		if (sequences == null) {
+			return;
+		}
+		Set<String> names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		for (SequenceInfo seq : sequences) {
+			names.add(seq.getName());
+		}
+		preloadedSequences = names;
+	}
+
+	/**
+	 * 不再使用{@link #preloadSequences()}得到的序列
+	 */
+	public void clearPreloadedSequences() {
+		preloadedSequences = null;
+	}
+
+	private boolean isCurrentSchema(String schema) {
+		return schema == null || schema.equalsIgnoreCase(this.schema);
+	}
+
 	/**
 	 * @param type      要查询的对象类型 "TABLE", "VIEW", "SYSTEM TABLE", "GLOBAL
 	 *                  TEMPORARY", "LOCAL TEMPORARY", "ALIAS", "SYNONYM".
@@ -682,6 +720,40 @@ public class DbMetaData {
 		return list;
 	}
 
+	/**
+	 * 用一次查询得到当前schema下所有表的列，用于启动时批量核对表结构。<br>
+	 * 和{@link #getColumns(String, boolean)}不同，不查询索引，因此不计算列的unique属性。
+	 * 
+	 * @return 表名和表中的列，表名为数据库中记录的表名
+	 * @throws SQLException
+	 */
+	public Map<String, List<Column>> getAllColumns() throws SQLException {
+		Connection conn = getConnection(false);
+		ResultSet rs = null;
+		Map<String, List<Column>> result = new HashMap<String, List<Column>>();
+		try {
+			rs = conn.getMetaData().getColumns(null, schema, "%", "%");
+			while (rs.next()) {
+				String tableName = rs.getString("TABLE_NAME");
+				List<Column> list = result.get(tableName);
+				if (list == null) {
+					list = new ArrayList<Column>();
+					result.put(tableName, list);
+				}
+				Column column = new Column();
+				populateColumn(column, rs, tableName, null);
+				list.add(column);
+			}
+		} finally {
+			DbUtils.close(rs);
+			releaseConnection(conn);
+		}
+		for (List<Column> list : result.values()) {
+			Collections.sort(list, (a, b) -> Integer.compare(a.getOrdinal(), b.getOrdinal()));
+		}
+		return result;
+	}
+
 	private void populateColumn(Column column, ResultSet rs, String tableName, Collection<Index> indexes) throws SQLException {
 		/*
 		 * Notice: Oracle非常变态，当调用rs.getString("COLUMN_DEF")会经常抛出
@@ -883,24 +955,7 @@ public class DbMetaData {
 			rs = databaseMetaData.getIndexInfo(null, schema, tableName, false, false);
 			Map<String, Index> map = new HashMap<String, Index>();
 			while (rs.next()) {
-				String indexName = rs.getString("INDEX_NAME");
-				String cName = rs.getString("COLUMN_NAME");
-				if (indexName == null || cName == null)
-					continue;
-				Index index = map.get(indexName);
-				if (index == null) {
-					index = new Index();
-					index.setIndexName(indexName);
-					index.setTableName(rs.getString("TABLE_NAME"));
-					index.setTableSchema(rs.getString("TABLE_SCHEM"));
-					index.setIndexQualifier(rs.getString("INDEX_QUALIFIER"));
-					index.setUnique(!rs.getBoolean("NON_UNIQUE"));
-					index.setType(rs.getInt("TYPE"));
-					map.put(indexName, index);
-				}
-				String asc = rs.getString("ASC_OR_DESC");
-				int order = rs.getInt("ORDINAL_POSITION");
-				index.addColumn(cName, asc == null ? true : asc.startsWith("A"), order);
+				addIndexColumn(map, rs);
 			}
 			return map.values();
 		} finally {
@@ -909,6 +964,70 @@ public class DbMetaData {
 		}
 	}
 
+	/**
+	 * 用一次查询得到当前schema下所有表的索引，用于启动时批量核对表结构。<br>
+	 * JDBC的getIndexInfo()必须指定表名，因此从数据库系统表中查询，数据库方言不支持时返回null，此时需逐表查询。
+	 * 
+	 * @return 表名和表上的索引，表名为数据库中记录的表名。不支持时返回null
+	 * @throws SQLException
+	 * @see DatabaseDialect#getIndexInfo(DbMetaData, String)
+	 */
+	public Map<String, List<Index>> getAllIndexes() throws SQLException {
+		if (info.profile.has(Feature.NOT_SUPPORT_INDEX_META)) {
+			return null;
+		}
+		return info.profile.getIndexInfo(this, schema);
+	}
+
+	/**
+	 * 按表名分组读取索引。结果集的列名和{@link DatabaseMetaData#getIndexInfo}相同，供数据库方言从系统表中查询索引时使用
+	 * 
+	 * @return 表名和表上的索引
+	 */
+	public static ResultSetExtractor<Map<String, List<Index>>> newIndexInfoExtractor() {
+		return new AbstractResultSetTransformer<Map<String, List<Index>>>(0) {
+			@Override
+			public Map<String, List<Index>> transformer(IResultSet rs) throws SQLException {
+				Map<String, Map<String, Index>> tables = new HashMap<String, Map<String, Index>>();
+				while (rs.next()) {
+					String table = rs.getString("TABLE_NAME");
+					Map<String, Index> map = tables.get(table);
+					if (map == null) {
+						map = new HashMap<String, Index>();
+						tables.put(table, map);
+					}
+					addIndexColumn(map, rs);
+				}
+				Map<String, List<Index>> result = new HashMap<String, List<Index>>();
+				for (Map.Entry<String, Map<String, Index>> entry : tables.entrySet()) {
+					result.put(entry.getKey(), new ArrayList<Index>(entry.getValue().values()));
+				}
+				return result;
+			}
+		};
+	}
+
+	private static void addIndexColumn(Map<String, Index> map, ResultSet rs) throws SQLException {
+		String indexName = rs.getString("INDEX_NAME");
+		String cName = rs.getString("COLUMN_NAME");
+		if (indexName == null || cName == null)
+			return;
+		Index index = map.get(indexName);
+		if (index == null) {
+			index = new Index();
+			index.setIndexName(indexName);
+			index.setTableName(rs.getString("TABLE_NAME"));
+			index.setTableSchema(rs.getString("TABLE_SCHEM"));
+			index.setIndexQualifier(rs.getString("INDEX_QUALIFIER"));
+			index.setUnique(!rs.getBoolean("NON_UNIQUE"));
+			index.setType(rs.getInt("TYPE"));
+			map.put(indexName, index);
+		}
+		String asc = rs.getString("ASC_OR_DESC");
+		int order = rs.getInt("ORDINAL_POSITION");
+		index.addColumn(cName, asc == null ? true : asc.startsWith("A"), order);
+	}
+
 	/**
 	 * 得到数据库的JDBC驱动程序的版本
 	 * 
@@ -1542,30 +1661,73 @@ public class DbMetaData {
 	 * @see MetadataEventListener 变更监听器
 	 */
 	public void refreshTable(ITableMetadata meta, String tablename, MetadataEventListener event, boolean modifyConstraint, boolean modifyIndex) throws SQLException {
-		tablename = info.profile.getObjectNameToUse(tablename);
-		// 列的修改
-		modifyColumns(tablename, meta, event);
-		// 约束的修改
+		refreshTable(meta, tablename, event, modifyConstraint, modifyIndex, null);
+	}
+
+	/**
+	 * 更新表，使用预先查询得到的列信息进行比较
+	 * 
+	 * @param meta             元模型
+	 * @param tablename        表名
+	 * @param event            事件监听器
+	 * @param modifyConstraint 是否修改约束
+	 * @param modifyIndex      是否修改索引
+	 * @param columns          数据库中表的列(例如{@link #getAllColumns()}的结果)，空列表表示表不存在。为null时查询数据库
+	 * @throws SQLException 修改表失败时抛出
+	 */
+	public void refreshTable(ITableMetadata meta, String tablename, MetadataEventListener event, boolean modifyConstraint, boolean modifyIndex, List<Column> columns) throws SQLException {
+		refreshColumns(meta, tablename, event, columns);
 		if (modifyConstraint) {
-			executeDDL(calculateConstraints(meta, tablename), tablename, meta, event);
+			refreshConstraints(meta, tablename, event);
 		}
-		// 索引的修改
+		refreshIndexes(meta, tablename, event, modifyIndex);
+	}
+
+	/*
+	 * 更新表的第一步：列的修改，表不存在时建表
+	 */
+	void refreshColumns(ITableMetadata meta, String tablename, MetadataEventListener event, List<Column> columns) throws SQLException {
+		modifyColumns(info.profile.getObjectNameToUse(tablename), meta, event, columns);
+	}
+
+	/*
+	 * 更新表的第二步：约束的修改
+	 */
+	void refreshConstraints(ITableMetadata meta, String tablename, MetadataEventListener event) throws SQLException {
+		tablename = info.profile.getObjectNameToUse(tablename);
+		executeDDL(calculateConstraints(meta, tablename), tablename, meta, event);
+	}
+
+	/*
+	 * 更新表的最后一步：索引的修改，然后触发完成事件
+	 */
+	void refreshIndexes(ITableMetadata meta, String tablename, MetadataEventListener event, boolean modifyIndex) throws SQLException {
+		refreshIndexes(meta, tablename, event, modifyIndex, null);
+	}
+
+	/*
+	 * indexes为数据库中表上的索引(例如getAllIndexes()的结果)，为null时查询数据库
+	 */
+	void refreshIndexes(ITableMetadata meta, String tablename, MetadataEventListener event, boolean modifyIndex, Collection<Index> indexes) throws SQLException {
+		tablename = info.profile.getObjectNameToUse(tablename);
 		if (modifyIndex) {
-			executeDDL(calculateIndexes(meta, tablename), tablename, meta, event);
+			executeDDL(calculateIndexes(meta, tablename, indexes), tablename, meta, event);
 		}
 		if (event != null) {
 			event.onTableFinished(meta, tablename);
 		}
 	}
 
-	private void modifyColumns(String tablename, ITableMetadata meta, MetadataEventListener event) throws SQLException {
+	private void modifyColumns(String tablename, ITableMetadata meta, MetadataEventListener event, List<Column> columns) throws SQLException {
 		DatabaseDialect dialect = info.profile;
 		boolean supportsChangeDelete = dialect.notHas(Feature.NOT_SUPPORT_ALTER_DROP_COLUMN);
 		if (!supportsChangeDelete) {
 			LogUtil.warn("Current database [{}] doesn't support alter table column.", dialect.getName());
 		}
 
-		List<Column> columns = this.getColumns(tablename, false);
+		if (columns == null) {
+			columns = this.getColumns(tablename, false);
+		}
 		if (columns.isEmpty()) {// 表不存在
 			boolean created = false;
 			if (event == null || event.onTableCreate(meta, tablename)) {
@@ -1702,7 +1864,7 @@ public class DbMetaData {
 		return sqls;
 	}
 
-	private List<String> calculateIndexes(ITableMetadata meta, String tablename) throws SQLException {
+	private List<String> calculateIndexes(ITableMetadata meta, String tablename, Collection<Index> indexesDB) throws SQLException {
 		List<String> sqls = new ArrayList<String>();
 
 		// 该张表上全部的约束
@@ -1711,7 +1873,9 @@ public class DbMetaData {
 		List<ForeignKeyItem> referedKeys = getForeignKeyReferenceTo(tablename);
 
 		// 计算要删除的索引
-		Collection<Index> indexesDB = getIndexes(tablename);
+		if (indexesDB == null) {
+			indexesDB = getIndexes(tablename);
+		}
 		List<Index> newIndexes = meta.getIndexDefinition().stream().map(e -> Index.valueOf(e, meta, info.profile, tablename)).collect(Collectors.toList());
 
 		for (Index index : indexesDB) {
@@ -1941,6 +2105,7 @@ public class DbMetaData {
 		schema = profile.getObjectNameToUse(schema);
 		if (check && innerExists(ObjectType.SEQUENCE, schema, sequenceName))
 			return;
+		String name = sequenceName;
 		if (max == null)
 			max = 9999999999L;
 		long limit = profile.getPropertyLong(DbProperty.MAX_SEQUENCE_VALUE);
@@ -1956,6 +2121,10 @@ public class DbMetaData {
 		}
 		String sequenceSql = StringUtils.concat("create sequence ", sequenceName, " minvalue ", String.valueOf(min), " maxvalue ", String.valueOf(max), " start with ", String.valueOf(start), " increment by 1");
 		executor.executeSql(sequenceSql);
+		Set<String> preloaded = preloadedSequences;
+		if (preloaded != null && isCurrentSchema(schema)) {
+			preloaded.add(name);
+		}
 	}
 
 	/**
@@ -2272,6 +2441,7 @@ public class DbMetaData {
 			} finally {
 				exe.close();
 			}
+			preloadedSequences = null;
 			return true;
 		}
 		return false;
@@ -2399,6 +2569,10 @@ public class DbMetaData {
 	}
 
 	private boolean innerExists(ObjectType type, String schema, String objectName) throws SQLException {
+		Set<String> preloaded = preloadedSequences;
+		if (type == ObjectType.SEQUENCE && preloaded != null && isCurrentSchema(schema)) {
+			return preloaded.contains(objectName);
+		}
 		if (schema == null)
 			schema = this.getCurrentSchema();// 如果当前schema计算不正确，会出错
 		switch (type) {
@@ -63,6 +63,7 @@ import com.google.common.base.Objects;
 import jef.accelerator.bean.BeanAccessor;
 import jef.accelerator.bean.FastBeanWrapperImpl;
 import jef.common.log.LogUtil;
+import jef.database.Condition.Operator;
 import jef.database.Session.UpdateContext;
 import jef.database.annotation.Cascade;
 import jef.database.annotation.JoinType;
@@ -72,10 +73,10 @@ import jef.database.datasource.SimpleDataSource;
 import jef.database.dialect.DatabaseDialect;
 import jef.database.dialect.type.ColumnMapping;
 import jef.database.innerpool.PartitionSupport;
+import jef.database.jsqlparser.SqlParseCache;
 import jef.database.jsqlparser.parser.JpqlParser;
 import jef.database.jsqlparser.parser.ParseException;
 import jef.database.jsqlparser.parser.StSqlParser;
-import jef.database.jsqlparser.parser.TokenMgrError;
 import jef.database.jsqlparser.statement.create.ColumnDefinition;
 import jef.database.jsqlparser.statement.create.CreateTable;
 import jef.database.jsqlparser.statement.select.OrderBy;
@@ -108,6 +109,7 @@ import jef.database.query.SqlContext;
 import jef.database.query.SqlExpression;
 import jef.database.routing.PartitionResult;
 import jef.database.wrapper.executor.DbTask;
+import jef.database.wrapper.variable.ArrayValues;
 import jef.tools.ArrayUtils;
 import jef.tools.Assert;
 import jef.tools.JefConfiguration;
@@ -162,6 +164,7 @@ public final class DbUtils {
 	 * 
 	 * @param tasks
 	 * @throws SQLException
+	 * @deprecated 使用共享的静态线程池，没有按数据源的并发限制和超时控制。请使用{@link DbClient#getParallelExecutor()}
 	 */
 	public static void parallelExecute(List<DbTask> tasks) throws SQLException {
 		CountDownLatch latch = new CountDownLatch(tasks.size());
@@ -482,15 +485,11 @@ public final class DbUtils {
 	 * @throws ParseException
 	 */
 	public static jef.database.jsqlparser.visitor.Statement parseStatement(String sql) throws ParseException {
-		JpqlParser parser = new JpqlParser(new StringReader(sql));
 		try {
-			return parser.Statement();
+			return SqlParseCache.copyJpql(sql);
 		} catch (ParseException e) {
 			LogUtil.error("ErrorSQL:" + sql);
 			throw e;
-		} catch (TokenMgrError e) {
-			LogUtil.error("ErrorSQL:" + sql);
-			throw e;
 		}
 	}
 
@@ -1069,6 +1068,87 @@ public final class DbUtils {
 			if (value != null)
 				hasValue = true;
 		}
+		appendRefFilters(rs, query, filters);
+		return hasValue;
+	}
+
+	/**
+	 * 根据多个对象的引用关系字段值，填充IN查询条件。只用于仅有一个关联字段的引用关系
+	 * 
+	 * @param values
+	 *            各对象的关联字段值
+	 * @param rs
+	 * @param query
+	 * @param filters
+	 */
+	protected static void appendRefCondition(Collection<?> values, JoinPath rs, Query<?> query, List<Condition> filters) {
+		query.clearQuery();
+		JoinKey r = rs.getJoinKeys()[0];
+		query.addCondition(r.getRightAsField(), Operator.IN, values);
+		appendRefFilters(rs, query, filters);
+	}
+
+	/**
+	 * 批量加载时in条件的参数。按配置将参数个数补齐到2的幂，或作为数组绑定
+	 * 
+	 * @param values
+	 * @return
+	 */
+	protected static List<?> toInValues(List<?> values) {
+		ORMConfig config = ORMConfig.getInstance();
+		if (config.isInConditionsPadding()) {
+			values = padInValues(values, config.getMaxInConditions());
+		}
+		if (config.isInConditionsArrayBinding()) {
+			values = new ArrayValues(values);
+		}
+		return values;
+	}
+
+	/**
+	 * 将in条件的参数个数补齐到2的幂(不超过max)，补齐时重复最后一个值，不影响查询结果
+	 * 
+	 * @param values
+	 * @param max
+	 * @return
+	 */
+	protected static List<?> padInValues(List<?> values, int max) {
+		int size = values.size();
+		if (size < 2) {
+			return values;
+		}
+		int bucket = Math.min(Integer.highestOneBit(size - 1) << 1, max);
+		if (bucket <= size) {
+			return values;
+		}
+		List<Object> padded = new ArrayList<Object>(bucket);
+		padded.addAll(values);
+		Object last = values.get(size - 1);
+		while (padded.size() < bucket) {
+			padded.add(last);
+		}
+		return padded;
+	}
+
+	/**
+	 * 估算一个值作为绑定变量发送给数据库时的字节数，用于控制批量写入时每批或每条语句的大小
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static long estimateSize(Object value) {
+		if (value instanceof CharSequence) {
+			return ((CharSequence) value).length() * 2;
+		} else if (value instanceof byte[]) {
+			return ((byte[]) value).length;
+		} else if (value instanceof char[]) {
+			return ((char[]) value).length * 2;
+		} else {
+			return 8;
+		}
+	}
+
+	private static void appendRefFilters(JoinPath rs, Query<?> query, List<Condition> filters) {
 		// 辅助过滤条件，不作为hasValue标记
 		for (JoinKey condition : rs.getJoinExpression()) {
 			Field f = condition.getLeft();
@@ -1092,7 +1172,6 @@ public final class DbUtils {
 			Query<?> bq = query;
 			bq.getConditions().addAll(filters);
 		}
-		return hasValue;
 	}
 
 	/**
@@ -1181,15 +1260,14 @@ public final class DbUtils {
 					return false;
 			}
 		}
-		Map<Field, Object> map = obj.getUpdateValueMap();
+		Map<Field, Object> map = obj instanceof DataObject ? ((DataObject) obj).preparedUpdateValues() : obj.getUpdateValueMap();
 		for (ColumnMapping mapping : meta.getPKFields()) {
 			Object value = mapping.getFieldAccessor().get(obj);
 			Field field = mapping.field();
 			query.addCondition(field, value);
-			if (isUpdate && map.containsKey(field)) {//
-				Object v = map.get(field);
-				if (Objects.equal(value, v)) {
-					map.remove(field);
+			if (isUpdate && obj.isUsed(field)) {// 记录在位图中的字段，更新值就是当前值
+				if (!map.containsKey(field) || Objects.equal(value, map.get(field))) {
+					obj.touchUsedFlag(field, false);
 				}
 			}
 		}
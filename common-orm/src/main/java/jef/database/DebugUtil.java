@@ -47,6 +47,7 @@ public class DebugUtil {
 	public static void addLazy(DataObject o, LazyLoadProcessor lazy) {
 		if (o.lazyload == null) {
 			o.lazyload = new LazyLoadContext(lazy);
+			lazy.attach(o);
 		} else {
 			throw new IllegalStateException();
 		}
@@ -58,6 +58,25 @@ final class LazyLoadContext implements ILazyLoadContext {
 		return executed>=processor.size();
 	}
 
+	/**
+	 * 该任务已由其他对象批量加载时，标记为已加载。
+	 * 装填字段时setter已经标记了该字段，因此和process()一样直接计数
+	 * @param id
+	 * @return 是否所有任务都已执行
+	 */
+	boolean markLoaded(int id) {
+		if(loaded==null){
+			loaded=new BitSet(processor.size());
+		}
+		loaded.set(id,true);
+		executed++;
+		return executed>=processor.size();
+	}
+
+	boolean isLoaded(int id) {
+		return loaded!=null && loaded.get(id);
+	}
+
 	public LazyLoadProcessor getProcessor() {
 		return processor;
 	}
@@ -3,6 +3,7 @@ package jef.database;
 import java.lang.ref.WeakReference;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +18,10 @@ public final class LazyLoadProcessor {
 	private DbClient parent;
 	private final List<LazyLoadTask> tasks=new ArrayList<LazyLoadTask>();
 	private final Map<String,Integer> onFields=new HashMap<String,Integer>(8,0.6f);
+	//共用此策略的对象，仅在有任务需要批量加载时记录
+	private List<WeakReference<DataObject>> members;
+	//各任务批量加载时下次开始扫描的位置
+	private int[] cursors;
 	
 	public LazyLoadProcessor(LazyLoadTask task,Session session) {
 		this.session=new WeakReference<Session>(session);
@@ -44,11 +49,73 @@ public final class LazyLoadProcessor {
 			}
 		}
 		if(s==null)s=parent;
-		tasks.get(id).process(s, obj);
+		LazyLoadTask task=tasks.get(id);
+		if(members!=null && task instanceof CascadeLoaderTask){
+			CascadeLoaderTask cascade=(CascadeLoaderTask)task;
+			int batchSize=cascade.getBatchSize();
+			if(batchSize>1){
+				List<DataObject> batch=collectBatch((DataObject)obj,id,batchSize);
+				if(batch.size()>1){
+					cascade.process(s, batch);
+					for(DataObject d:batch){
+						if(d!=obj && d.lazyload instanceof LazyLoadContext && ((LazyLoadContext)d.lazyload).markLoaded(id)){
+							d.lazyload=null;
+						}
+					}
+					return;
+				}
+			}
+		}
+		task.process(s, obj);
+	}
+	
+	/**
+	 * 记录共用此策略的对象，以便延迟加载时批量加载
+	 * @param obj
+	 */
+	void attach(DataObject obj){
+		if(members!=null){
+			members.add(new WeakReference<DataObject>(obj));
+		}
+	}
+	
+	/**
+	 * 是否记录共用此策略的对象
+	 * @return
+	 */
+	boolean isBatchLoad(){
+		return members!=null;
+	}
+	
+	/*
+	 * 从上次扫描的位置开始，收集尚未执行该任务的对象。
+	 * 扫描过的对象要么已经加载，要么加入了本批次，因此下次从本次结束的位置开始即可
+	 */
+	private synchronized List<DataObject> collectBatch(DataObject obj,int id,int batchSize){
+		List<DataObject> batch=new ArrayList<DataObject>(batchSize);
+		batch.add(obj);
+		int i=cursors[id];
+		for(;i<members.size() && batch.size()<batchSize;i++){
+			DataObject d=members.get(i).get();
+			if(d!=null && d!=obj && d.lazyload instanceof LazyLoadContext){
+				LazyLoadContext context=(LazyLoadContext)d.lazyload;
+				if(context.getProcessor()==this && !context.isLoaded(id)){
+					batch.add(d);
+				}
+			}
+		}
+		cursors[id]=i;
+		return batch;
 	}
 	
 	public void register(LazyLoadTask vsManyLoadTask) {
 		tasks.add(vsManyLoadTask);
+		if(vsManyLoadTask instanceof CascadeLoaderTask && ((CascadeLoaderTask)vsManyLoadTask).getBatchSize()>1 && members==null){
+			members=new ArrayList<WeakReference<DataObject>>();
+		}
+		if(cursors==null || cursors.length<tasks.size()){
+			cursors=cursors==null?new int[tasks.size()]:Arrays.copyOf(cursors, tasks.size());
+		}
 		Integer id=tasks.size()-1;//该任务的序号
 		for(String fieldName: vsManyLoadTask.getEffectFields()){
 			onFields.put(fieldName,id);	
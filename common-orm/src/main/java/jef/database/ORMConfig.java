@@ -58,6 +58,21 @@ public class ORMConfig implements ORMConfigMBean {
      */
     private int partitionInMemoryMaxRows;
 
+    /**
+     * 跨库排序分页时使用流式归并
+     */
+    private boolean partitionStreamingMerge;
+
+    /**
+     * 跨库count distinct时使用HyperLogLog估算
+     */
+    private boolean partitionApproximateCountDistinct;
+
+    /**
+     * 为实体和列布局生成专门的结果集映射器
+     */
+    private boolean generateRowMapper;
+
     /**
      * Lob等数据流映射到String时的编码
      */
@@ -82,6 +97,42 @@ public class ORMConfig implements ORMConfigMBean {
      * 批操作下日志显示参数最大条数
      */
     private int maxBatchLog;
+    /**
+     * 流式批操作时每批的记录数
+     */
+    private int batchChunkSize;
+    /**
+     * 流式批操作时每批的估算字节数上限
+     */
+    private long batchChunkBytes;
+    /**
+     * extremeInsert时每条多行insert语句的最大行数
+     */
+    private int extremeInsertRows;
+    /**
+     * 批量核对表结构时并行处理的表数量
+     */
+    private int tableRefreshThreads;
+    /**
+     * JPA事务中延迟写入
+     */
+    private boolean jpaWriteBehind;
+    /**
+     * 分页查询时count和分页查询并行执行
+     */
+    private boolean pageParallelCount;
+    /**
+     * 分页查询时count结果的缓存时间(毫秒)
+     */
+    private long pageCountCacheTtl;
+    /**
+     * 内嵌连接池的实现
+     */
+    private String poolEngine;
+    /**
+     * 内嵌连接池取连接的最长等待时间(毫秒)
+     */
+    private long poolAcquireTimeout;
     /**
      * 全局查询超时
      */
@@ -142,6 +193,10 @@ public class ORMConfig implements ORMConfigMBean {
      * 允许延迟加载
      */
     private boolean enableLazyLoad;
+    /**
+     * 延迟加载时批量加载的对象个数
+     */
+    private int lazyLoadBatchSize;
 
     /**
      * 启用/禁用一级缓存
@@ -157,6 +212,26 @@ public class ORMConfig implements ORMConfigMBean {
      */
     private int cacheLevel2;
 
+    /**
+     * 二级缓存占用内存的上限，单位MB，为0时不限制。
+     */
+    private int cacheGlobalMaxMemory;
+
+    /**
+     * 二级缓存中单张表占内存上限的百分比
+     */
+    private int cacheGlobalTableQuota;
+
+    /**
+     * 二级缓存失效消息总线的实现类
+     */
+    private String cacheGlobalInvalidationBus;
+
+    /**
+     * 二级缓存失效消息的发送周期，单位毫秒
+     */
+    private int cacheGlobalInvalidationInterval;
+
     /**
      * 定期检查连接
      */
@@ -183,6 +258,18 @@ public class ORMConfig implements ORMConfigMBean {
      * in条件中允许出现的最多参数。缺省500个。
      */
     private int maxInConditions;
+    /**
+     * 批量加载时将in条件的参数个数补齐到2的幂
+     */
+    private boolean inConditionsPadding;
+    /**
+     * 批量加载时将in条件的参数作为数组绑定
+     */
+    private boolean inConditionsArrayBinding;
+    /**
+     * 批量加载分多次查询时并行执行
+     */
+    private boolean parallelBatchLoad;
 
     private boolean jpaContinueCommitIfError;
 
@@ -190,6 +277,10 @@ public class ORMConfig implements ORMConfigMBean {
      * 多站点查询时启用并行查询
      */
     private int parallelSelect;
+    /**
+     * 分表批操作时同时执行的分组数
+     */
+    private int parallelBatch;
 
     /**
      * 将自增实现的两种常用实现映射为AUTO
@@ -214,6 +305,15 @@ public class ORMConfig implements ORMConfigMBean {
         globalFetchSize = JefConfiguration.getInt(DbCfg.DB_FETCH_SIZE, 0);
         debugMode = JefConfiguration.getBoolean(Item.DB_DEBUG, false);
         maxBatchLog = JefConfiguration.getInt(DbCfg.DB_MAX_BATCH_LOG, 5);
+        batchChunkSize = JefConfiguration.getInt(DbCfg.DB_BATCH_CHUNK_SIZE, 1000);
+        batchChunkBytes = JefConfiguration.getLong(DbCfg.DB_BATCH_CHUNK_BYTES, 0);
+        extremeInsertRows = JefConfiguration.getInt(DbCfg.DB_EXTREME_INSERT_ROWS, 1000);
+        tableRefreshThreads = JefConfiguration.getInt(DbCfg.DB_TABLE_REFRESH_THREADS, 4);
+        jpaWriteBehind = JefConfiguration.getBoolean(DbCfg.DB_JPA_WRITE_BEHIND, false);
+        pageParallelCount = JefConfiguration.getBoolean(DbCfg.DB_PAGE_PARALLEL_COUNT, false);
+        pageCountCacheTtl = JefConfiguration.getLong(DbCfg.DB_PAGE_COUNT_CACHE_TTL, 0);
+        poolEngine = JefConfiguration.get(DbCfg.DB_POOL_ENGINE, "concurrent");
+        poolAcquireTimeout = JefConfiguration.getLong(DbCfg.DB_POOL_ACQUIRE_TIMEOUT, 5000);
         selectTimeout = JefConfiguration.getInt(DbCfg.DB_SELECT_TIMEOUT, 60);
         updateTimeout = JefConfiguration.getInt(DbCfg.DB_UPDATE_TIMEOUT, 60);
         deleteTimeout = JefConfiguration.getInt(DbCfg.DB_DELETE_TIMEOUT, 60);
@@ -230,9 +330,14 @@ public class ORMConfig implements ORMConfigMBean {
         manualSequence = JefConfiguration.getBoolean(DbCfg.DB_SUPPORT_MANUAL_GENERATE, false);
         allowEmptyQuery = JefConfiguration.getBoolean(DbCfg.ALLOW_EMPTY_QUERY, true);
         enableLazyLoad = JefConfiguration.getBoolean(DbCfg.DB_ENABLE_LAZY_LOAD, true);
+        lazyLoadBatchSize = JefConfiguration.getInt(DbCfg.DB_LAZY_LOAD_BATCH_SIZE, 1);
         enableLazyLob = JefConfiguration.getBoolean(DbCfg.DB_LOB_LAZY_LOAD, false);
         cacheLevel1 = JefConfiguration.getBoolean(DbCfg.CACHE_LEVEL_1, false);
         cacheLevel2 = JefConfiguration.getInt(DbCfg.CACHE_GLOBAL_EXPIRE_TIME, 0);
+        cacheGlobalMaxMemory = JefConfiguration.getInt(DbCfg.CACHE_GLOBAL_MAX_MEMORY, 64);
+        cacheGlobalTableQuota = JefConfiguration.getInt(DbCfg.CACHE_GLOBAL_TABLE_QUOTA, 50);
+        cacheGlobalInvalidationBus = JefConfiguration.get(DbCfg.CACHE_GLOBAL_INVALIDATION_BUS, "");
+        cacheGlobalInvalidationInterval = JefConfiguration.getInt(DbCfg.CACHE_GLOBAL_INVALIDATION_INTERVAL, 20);
         cacheDebug = System.getProperty("cache.debug") != null;
         setFormatSQL(JefConfiguration.getBoolean(DbCfg.DB_FORMAT_SQL, false));
         heartBeatSleep = JefConfiguration.getLong(DbCfg.DB_HEARTBEAT, 120000);
@@ -242,9 +347,16 @@ public class ORMConfig implements ORMConfigMBean {
         filterAbsentTables = JefConfiguration.getBoolean(DbCfg.PARTITION_FILTER_ABSENT_TABLES, true);
         partitionCreateTableInneed = JefConfiguration.getBoolean(DbCfg.PARTITION_CREATE_TABLE_INNEED, true);
         partitionInMemoryMaxRows = JefConfiguration.getInt(DbCfg.PARTITION_INMEMORY_MAXROWS, 0);
+        partitionStreamingMerge = JefConfiguration.getBoolean(DbCfg.PARTITION_STREAMING_MERGE, true);
+        partitionApproximateCountDistinct = JefConfiguration.getBoolean(DbCfg.PARTITION_APPROXIMATE_COUNT_DISTINCT, false);
+        generateRowMapper = JefConfiguration.getBoolean(DbCfg.DB_GENERATE_ROW_MAPPER, false);
         autoCreateSequence = JefConfiguration.getBoolean(DbCfg.AUTO_SEQUENCE_CREATION, true);
         maxInConditions = JefConfiguration.getInt(DbCfg.DB_MAX_IN_CONDITIONS, 500);
+        inConditionsPadding = JefConfiguration.getBoolean(DbCfg.DB_IN_CONDITIONS_PADDING, false);
+        inConditionsArrayBinding = JefConfiguration.getBoolean(DbCfg.DB_IN_CONDITIONS_ARRAY_BINDING, false);
+        parallelBatchLoad = JefConfiguration.getBoolean(DbCfg.DB_PARALLEL_BATCH_LOAD, false);
         parallelSelect = JefConfiguration.getInt(DbCfg.PARTITION_PARALLEL, 3);
+        parallelBatch = JefConfiguration.getInt(DbCfg.PARTITION_PARALLEL_BATCH, 0);
         jpaContinueCommitIfError = JefConfiguration.getBoolean(DbCfg.DB_JPA_CONTINUE_COMMIT_IF_ERROR, false);
         generateBySequenceAndIdentityToAUTO = JefConfiguration.getBoolean(DbCfg.DB_AUTOINCREMENT_NATIVE, false);
 
@@ -279,6 +391,30 @@ public class ORMConfig implements ORMConfigMBean {
         this.maxInConditions = maxInConditions;
     }
 
+    public boolean isInConditionsPadding() {
+        return inConditionsPadding;
+    }
+
+    public void setInConditionsPadding(boolean inConditionsPadding) {
+        this.inConditionsPadding = inConditionsPadding;
+    }
+
+    public boolean isInConditionsArrayBinding() {
+        return inConditionsArrayBinding;
+    }
+
+    public void setInConditionsArrayBinding(boolean inConditionsArrayBinding) {
+        this.inConditionsArrayBinding = inConditionsArrayBinding;
+    }
+
+    public boolean isParallelBatchLoad() {
+        return parallelBatchLoad;
+    }
+
+    public void setParallelBatchLoad(boolean parallelBatchLoad) {
+        this.parallelBatchLoad = parallelBatchLoad;
+    }
+
     public boolean isAutoCreateSequence() {
         return autoCreateSequence;
     }
@@ -319,6 +455,14 @@ public class ORMConfig implements ORMConfigMBean {
         this.enableLazyLoad = enableLazyLoad;
     }
 
+    public int getLazyLoadBatchSize() {
+        return lazyLoadBatchSize;
+    }
+
+    public void setLazyLoadBatchSize(int lazyLoadBatchSize) {
+        this.lazyLoadBatchSize = lazyLoadBatchSize;
+    }
+
     public boolean isEnableLazyLob() {
         return enableLazyLob;
     }
@@ -424,6 +568,78 @@ public class ORMConfig implements ORMConfigMBean {
         this.maxBatchLog = maxBatchLog;
     }
 
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+
+    public void setBatchChunkSize(int batchChunkSize) {
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    public long getBatchChunkBytes() {
+        return batchChunkBytes;
+    }
+
+    public void setBatchChunkBytes(long batchChunkBytes) {
+        this.batchChunkBytes = batchChunkBytes;
+    }
+
+    public int getExtremeInsertRows() {
+        return extremeInsertRows;
+    }
+
+    public void setExtremeInsertRows(int extremeInsertRows) {
+        this.extremeInsertRows = extremeInsertRows;
+    }
+
+    public int getTableRefreshThreads() {
+        return tableRefreshThreads;
+    }
+
+    public void setTableRefreshThreads(int tableRefreshThreads) {
+        this.tableRefreshThreads = tableRefreshThreads;
+    }
+
+    public boolean isJpaWriteBehind() {
+        return jpaWriteBehind;
+    }
+
+    public void setJpaWriteBehind(boolean jpaWriteBehind) {
+        this.jpaWriteBehind = jpaWriteBehind;
+    }
+
+    public boolean isPageParallelCount() {
+        return pageParallelCount;
+    }
+
+    public void setPageParallelCount(boolean pageParallelCount) {
+        this.pageParallelCount = pageParallelCount;
+    }
+
+    public long getPageCountCacheTtl() {
+        return pageCountCacheTtl;
+    }
+
+    public void setPageCountCacheTtl(long pageCountCacheTtl) {
+        this.pageCountCacheTtl = pageCountCacheTtl;
+    }
+
+    public String getPoolEngine() {
+        return poolEngine;
+    }
+
+    public void setPoolEngine(String poolEngine) {
+        this.poolEngine = poolEngine;
+    }
+
+    public long getPoolAcquireTimeout() {
+        return poolAcquireTimeout;
+    }
+
+    public void setPoolAcquireTimeout(long poolAcquireTimeout) {
+        this.poolAcquireTimeout = poolAcquireTimeout;
+    }
+
     public int getSelectTimeout() {
         return selectTimeout;
     }
@@ -466,6 +682,14 @@ public class ORMConfig implements ORMConfigMBean {
         this.parallelSelect = parallelSelect;
     }
 
+    public int getParallelBatch() {
+        return parallelBatch;
+    }
+
+    public void setParallelBatch(int parallelBatch) {
+        this.parallelBatch = parallelBatch;
+    }
+
     public void setSingleSite(boolean singleSite) {
         this.singleSite = singleSite;
     }
@@ -608,6 +832,30 @@ public class ORMConfig implements ORMConfigMBean {
         this.partitionInMemoryMaxRows = partitionInMemoryMaxRows;
     }
 
+    public boolean isPartitionStreamingMerge() {
+        return partitionStreamingMerge;
+    }
+
+    public void setPartitionStreamingMerge(boolean partitionStreamingMerge) {
+        this.partitionStreamingMerge = partitionStreamingMerge;
+    }
+
+    public boolean isPartitionApproximateCountDistinct() {
+        return partitionApproximateCountDistinct;
+    }
+
+    public void setPartitionApproximateCountDistinct(boolean partitionApproximateCountDistinct) {
+        this.partitionApproximateCountDistinct = partitionApproximateCountDistinct;
+    }
+
+    public boolean isGenerateRowMapper() {
+        return generateRowMapper;
+    }
+
+    public void setGenerateRowMapper(boolean generateRowMapper) {
+        this.generateRowMapper = generateRowMapper;
+    }
+
     public boolean isJpaContinueCommitIfError() {
         return jpaContinueCommitIfError;
     }
@@ -684,4 +932,56 @@ public class ORMConfig implements ORMConfigMBean {
     public void setCacheLevel2(int cacheLevel2) {
         this.cacheLevel2 = cacheLevel2;
     }
+
+    /**
+     * 二级缓存占用内存的上限，单位MB。 该值必须在DbClient对象创建之前设置。对象创建后再设置无效
+     * 
+     * @return
+     */
+    public int getCacheGlobalMaxMemory() {
+        return cacheGlobalMaxMemory;
+    }
+
+    public void setCacheGlobalMaxMemory(int cacheGlobalMaxMemory) {
+        this.cacheGlobalMaxMemory = cacheGlobalMaxMemory;
+    }
+
+    /**
+     * 二级缓存中单张表占内存上限的百分比。 该值必须在DbClient对象创建之前设置。对象创建后再设置无效
+     * 
+     * @return
+     */
+    public int getCacheGlobalTableQuota() {
+        return cacheGlobalTableQuota;
+    }
+
+    public void setCacheGlobalTableQuota(int cacheGlobalTableQuota) {
+        this.cacheGlobalTableQuota = cacheGlobalTableQuota;
+    }
+
+    /**
+     * 二级缓存失效消息总线的实现类。 该值必须在DbClient对象创建之前设置。对象创建后再设置无效
+     * 
+     * @return
+     */
+    public String getCacheGlobalInvalidationBus() {
+        return cacheGlobalInvalidationBus;
+    }
+
+    public void setCacheGlobalInvalidationBus(String cacheGlobalInvalidationBus) {
+        this.cacheGlobalInvalidationBus = cacheGlobalInvalidationBus;
+    }
+
+    /**
+     * 二级缓存失效消息的发送周期，单位毫秒。 该值必须在DbClient对象创建之前设置。对象创建后再设置无效
+     * 
+     * @return
+     */
+    public int getCacheGlobalInvalidationInterval() {
+        return cacheGlobalInvalidationInterval;
+    }
+
+    public void setCacheGlobalInvalidationInterval(int cacheGlobalInvalidationInterval) {
+        this.cacheGlobalInvalidationInterval = cacheGlobalInvalidationInterval;
+    }
 }
@@ -33,6 +33,18 @@ public interface ORMConfigMBean {
 	 */
 	void setEnableLazyLoad(boolean enableLazyLoad);
 
+	/**
+	 * 获得配置参数 
+	 * @return {@link DbCfg#DB_LAZY_LOAD_BATCH_SIZE}
+	 */
+	int getLazyLoadBatchSize();
+
+	/**
+	 * 修改配置
+	 * @param lazyLoadBatchSize {@link DbCfg#DB_LAZY_LOAD_BATCH_SIZE}
+	 */
+	void setLazyLoadBatchSize(int lazyLoadBatchSize);
+
 	/**
 	 * 获得配置参数
 	 * @return {@link DbCfg#ALLOW_EMPTY_QUERY}
@@ -153,6 +165,162 @@ public interface ORMConfigMBean {
 	 */
 	void setMaxBatchLog(int maxBatchLog);
 
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_BATCH_CHUNK_SIZE}
+	 */
+	int getBatchChunkSize();
+
+	/**
+	 * 修改配置
+	 * @param batchChunkSize {@link DbCfg#DB_BATCH_CHUNK_SIZE}
+	 */
+	void setBatchChunkSize(int batchChunkSize);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_BATCH_CHUNK_BYTES}
+	 */
+	long getBatchChunkBytes();
+
+	/**
+	 * 修改配置
+	 * @param batchChunkBytes {@link DbCfg#DB_BATCH_CHUNK_BYTES}
+	 */
+	void setBatchChunkBytes(long batchChunkBytes);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_EXTREME_INSERT_ROWS}
+	 */
+	int getExtremeInsertRows();
+
+	/**
+	 * 修改配置
+	 * @param extremeInsertRows {@link DbCfg#DB_EXTREME_INSERT_ROWS}
+	 */
+	void setExtremeInsertRows(int extremeInsertRows);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_TABLE_REFRESH_THREADS}
+	 */
+	int getTableRefreshThreads();
+
+	/**
+	 * 修改配置
+	 * @param tableRefreshThreads {@link DbCfg#DB_TABLE_REFRESH_THREADS}
+	 */
+	void setTableRefreshThreads(int tableRefreshThreads);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_JPA_WRITE_BEHIND}
+	 */
+	boolean isJpaWriteBehind();
+
+	/**
+	 * 修改配置
+	 * @param jpaWriteBehind {@link DbCfg#DB_JPA_WRITE_BEHIND}
+	 */
+	void setJpaWriteBehind(boolean jpaWriteBehind);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_PAGE_PARALLEL_COUNT}
+	 */
+	boolean isPageParallelCount();
+
+	/**
+	 * 修改配置
+	 * @param pageParallelCount {@link DbCfg#DB_PAGE_PARALLEL_COUNT}
+	 */
+	void setPageParallelCount(boolean pageParallelCount);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_PAGE_COUNT_CACHE_TTL}
+	 */
+	long getPageCountCacheTtl();
+
+	/**
+	 * 修改配置
+	 * @param pageCountCacheTtl {@link DbCfg#DB_PAGE_COUNT_CACHE_TTL}
+	 */
+	void setPageCountCacheTtl(long pageCountCacheTtl);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_POOL_ENGINE}
+	 */
+	String getPoolEngine();
+
+	/**
+	 * 修改配置，对之后创建的连接池生效
+	 * @param poolEngine {@link DbCfg#DB_POOL_ENGINE}
+	 */
+	void setPoolEngine(String poolEngine);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#DB_POOL_ACQUIRE_TIMEOUT}
+	 */
+	long getPoolAcquireTimeout();
+
+	/**
+	 * 修改配置
+	 * @param poolAcquireTimeout {@link DbCfg#DB_POOL_ACQUIRE_TIMEOUT}
+	 */
+	void setPoolAcquireTimeout(long poolAcquireTimeout);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#CACHE_GLOBAL_MAX_MEMORY}
+	 */
+	int getCacheGlobalMaxMemory();
+
+	/**
+	 * 修改配置
+	 * @param cacheGlobalMaxMemory {@link DbCfg#CACHE_GLOBAL_MAX_MEMORY}
+	 */
+	void setCacheGlobalMaxMemory(int cacheGlobalMaxMemory);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#CACHE_GLOBAL_TABLE_QUOTA}
+	 */
+	int getCacheGlobalTableQuota();
+
+	/**
+	 * 修改配置
+	 * @param cacheGlobalTableQuota {@link DbCfg#CACHE_GLOBAL_TABLE_QUOTA}
+	 */
+	void setCacheGlobalTableQuota(int cacheGlobalTableQuota);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#CACHE_GLOBAL_INVALIDATION_BUS}
+	 */
+	String getCacheGlobalInvalidationBus();
+
+	/**
+	 * 修改配置
+	 * @param cacheGlobalInvalidationBus {@link DbCfg#CACHE_GLOBAL_INVALIDATION_BUS}
+	 */
+	void setCacheGlobalInvalidationBus(String cacheGlobalInvalidationBus);
+
+	/**
+	 * 获得配置参数
+	 * @return {@link DbCfg#CACHE_GLOBAL_INVALIDATION_INTERVAL}
+	 */
+	int getCacheGlobalInvalidationInterval();
+
+	/**
+	 * 修改配置
+	 * @param cacheGlobalInvalidationInterval {@link DbCfg#CACHE_GLOBAL_INVALIDATION_INTERVAL}
+	 */
+	void setCacheGlobalInvalidationInterval(int cacheGlobalInvalidationInterval);
+
 	/**
 	 * 获得配置参数
 	 * @return {@link DbCfg#DB_SELECT_TIMEOUT}
@@ -404,6 +572,90 @@ public interface ORMConfigMBean {
 	 */
 	void setPartitionInMemoryMaxRows(int partitionInMemoryMaxRows);
 
+	/**
+	 * 获得配置参数 
+	 * @return {@link DbCfg#PARTITION_STREAMING_MERGE}
+	 */
+	boolean isPartitionStreamingMerge();
+
+	/**
+	 * 修改配置
+	 * @param partitionStreamingMerge {@link DbCfg#PARTITION_STREAMING_MERGE}
+	 */
+	void setPartitionStreamingMerge(boolean partitionStreamingMerge);
+
+	/**
+	 * 获得配置参数 
+	 * @return {@link DbCfg#PARTITION_APPROXIMATE_COUNT_DISTINCT}
+	 */
+	boolean isPartitionApproximateCountDistinct();
+
+	/**
+	 * 修改配置
+	 * @param partitionApproximateCountDistinct {@link DbCfg#PARTITION_APPROXIMATE_COUNT_DISTINCT}
+	 */
+	void setPartitionApproximateCountDistinct(boolean partitionApproximateCountDistinct);
+
+	/**
+	 * 获得配置参数 
+	 * @return {@link DbCfg#DB_GENERATE_ROW_MAPPER}
+	 */
+	boolean isGenerateRowMapper();
+
+	/**
+	 * 修改配置
+	 * @param generateRowMapper {@link DbCfg#DB_GENERATE_ROW_MAPPER}
+	 */
+	void setGenerateRowMapper(boolean generateRowMapper);
+
+	/**
+	 * 获得配置参数 
+	 * @return {@link DbCfg#DB_IN_CONDITIONS_PADDING}
+	 */
+	boolean isInConditionsPadding();
+
+	/**
+	 * 修改配置
+	 * @param inConditionsPadding {@link DbCfg#DB_IN_CONDITIONS_PADDING}
+	 */
+	void setInConditionsPadding(boolean inConditionsPadding);
+
+	/**
+	 * 获得配置参数 
+	 * @return {@link DbCfg#DB_IN_CONDITIONS_ARRAY_BINDING}
+	 */
+	boolean isInConditionsArrayBinding();
+
+	/**
+	 * 修改配置
+	 * @param inConditionsArrayBinding {@link DbCfg#DB_IN_CONDITIONS_ARRAY_BINDING}
+	 */
+	void setInConditionsArrayBinding(boolean inConditionsArrayBinding);
+
+	/**
+	 * 获得配置参数 
+	 * @return {@link DbCfg#DB_PARALLEL_BATCH_LOAD}
+	 */
+	boolean isParallelBatchLoad();
+
+	/**
+	 * 修改配置
+	 * @param parallelBatchLoad {@link DbCfg#DB_PARALLEL_BATCH_LOAD}
+	 */
+	void setParallelBatchLoad(boolean parallelBatchLoad);
+
+	/**
+	 * 获得配置参数 
+	 * @return {@link DbCfg#PARTITION_PARALLEL_BATCH}
+	 */
+	int getParallelBatch();
+
+	/**
+	 * 修改配置
+	 * @param parallelBatch {@link DbCfg#PARTITION_PARALLEL_BATCH}
+	 */
+	void setParallelBatch(int parallelBatch);
+
 	/**
 	 * 获得配置参数 
 	 * @return {@link DbCfg#DB_SET_ISOLATION}
@@ -1,6 +1,5 @@
 package jef.database;
 
-import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
@@ -30,8 +29,10 @@ import jef.database.jdbc.statement.ProcessablePreparedStatement;
 import jef.database.jdbc.statement.ProcessableStatement;
 import jef.database.jdbc.statement.ResultSetLaterProcess;
 import jef.database.jsqlparser.SqlFunctionlocalization;
+import jef.database.jsqlparser.SqlParseCache;
 import jef.database.jsqlparser.parser.ParseException;
-import jef.database.jsqlparser.parser.StSqlParser;
+import jef.database.jsqlparser.statement.select.PlainSelect;
+import jef.database.jsqlparser.statement.select.Select;
 import jef.database.jsqlparser.visitor.SelectItem;
 import jef.database.meta.DbProperty;
 import jef.database.meta.ITableMetadata;
@@ -42,6 +43,8 @@ import jef.database.routing.sql.InMemoryOperateProvider;
 import jef.database.support.SqlLog;
 import jef.database.wrapper.ResultIterator;
 import jef.database.wrapper.clause.BindSql;
+import jef.database.wrapper.executor.DbTask;
+import jef.database.wrapper.executor.ParallelExecutor;
 import jef.database.wrapper.populator.AbstractResultSetTransformer;
 import jef.database.wrapper.populator.ResultSetExtractor;
 import jef.database.wrapper.populator.Transformer;
@@ -128,47 +131,83 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 		}
 	}
 
+	/*
+	 * 在并行任务中执行时，登记Statement以便超时后取消
+	 */
+	private static <T extends Statement> T watch(T st) {
+		DbTask.watch(st);
+		return st;
+	}
+
+	/*
+	 * 事务中各数据源共用一个路由连接，并行提交的各组(见Batch#setParallelGroups)会同时在上面创建语句，
+	 * 切换数据源和创建语句必须在连接上同步，否则可能在另一个数据源上创建语句
+	 */
 	public Statement createStatement() throws SQLException {
-		return profile.wrap(getConnection(dbkey).createStatement(), isJpaTx());
+		IConnection conn = connection();
+		synchronized (conn) {
+			conn.setKey(dbkey);
+			return watch(profile.wrap(conn.createStatement(), isJpaTx()));
+		}
 	}
 
 	public Statement createStatement(ResultSetLaterProcess rslp, boolean isUpdatable) throws SQLException {
 		Statement st;
 		int rsType = (isUpdatable) ? ResultSet.TYPE_SCROLL_INSENSITIVE : ResultSet.TYPE_FORWARD_ONLY;
 		int rsUpdate = isUpdatable ? ResultSet.CONCUR_UPDATABLE : ResultSet.CONCUR_READ_ONLY;
-		st = getConnection(dbkey).createStatement(rsType, rsUpdate);
+		IConnection conn = connection();
+		synchronized (conn) {
+			conn.setKey(dbkey);
+			st = conn.createStatement(rsType, rsUpdate);
+		}
 		if (rslp != null) {
 			st = new ProcessableStatement(st, rslp);
 		}
-		return profile.wrap(st, isJpaTx());
+		return watch(profile.wrap(st, isJpaTx()));
 	}
 
 	/*
 	 * 准备执行SQL
 	 */
 	public PreparedStatement prepareStatement(String sql) throws SQLException {
-		return profile.wrap(getConnection(dbkey).prepareStatement(sql), isJpaTx());
+		IConnection conn = connection();
+		synchronized (conn) {
+			conn.setKey(dbkey);
+			return watch(profile.wrap(conn.prepareStatement(sql), isJpaTx()));
+		}
 	}
 
 	/*
 	 * 准备执行SQL，插入
 	 */
 	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
-		return profile.wrap(getConnection(dbkey).prepareStatement(sql, columnNames), isJpaTx());
+		IConnection conn = connection();
+		synchronized (conn) {
+			conn.setKey(dbkey);
+			return watch(profile.wrap(conn.prepareStatement(sql, columnNames), isJpaTx()));
+		}
 	}
 
 	/*
 	 * 准备执行SQL，插入
 	 */
 	public PreparedStatement prepareStatement(String sql, int generateKeys) throws SQLException {
-		return profile.wrap(getConnection(dbkey).prepareStatement(sql, generateKeys), isJpaTx());
+		IConnection conn = connection();
+		synchronized (conn) {
+			conn.setKey(dbkey);
+			return watch(profile.wrap(conn.prepareStatement(sql, generateKeys), isJpaTx()));
+		}
 	}
 
 	/*
 	 * 准备执行SQL，插入
 	 */
 	public PreparedStatement prepareStatement(String sql, int[] columnIndexs) throws SQLException {
-		return profile.wrap(getConnection(dbkey).prepareStatement(sql, columnIndexs), isJpaTx());
+		IConnection conn = connection();
+		synchronized (conn) {
+			conn.setKey(dbkey);
+			return watch(profile.wrap(conn.prepareStatement(sql, columnIndexs), isJpaTx()));
+		}
 	}
 
 	/*
@@ -178,22 +217,34 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 		PreparedStatement st;
 		int rsType = (isUpdatable) ? ResultSet.TYPE_SCROLL_INSENSITIVE : ResultSet.TYPE_FORWARD_ONLY;
 		int rsUpdate = isUpdatable ? ResultSet.CONCUR_UPDATABLE : ResultSet.CONCUR_READ_ONLY;
-		st = getConnection(dbkey).prepareStatement(sql, rsType, rsUpdate);
+		IConnection conn = connection();
+		synchronized (conn) {
+			conn.setKey(dbkey);
+			st = conn.prepareStatement(sql, rsType, rsUpdate);
+		}
 		if (rslp != null) {
 			st = new ProcessablePreparedStatement(st, rslp);
 		}
-		return profile.wrap(st, isJpaTx());
+		return watch(profile.wrap(st, isJpaTx()));
 	}
 
 	/*
 	 * 准备执行SQL，查询
 	 */
 	public PreparedStatement prepareStatement(String sql, int rsType, int concurType, int hold) throws SQLException {
-		return profile.wrap(getConnection(dbkey).prepareStatement(sql, rsType, concurType, hold), isJpaTx());
+		IConnection conn = connection();
+		synchronized (conn) {
+			conn.setKey(dbkey);
+			return watch(profile.wrap(conn.prepareStatement(sql, rsType, concurType, hold), isJpaTx()));
+		}
 	}
 
 	public CallableStatement prepareCall(String sql) throws SQLException {
-		return getConnection(dbkey).prepareCall(sql);
+		IConnection conn = connection();
+		synchronized (conn) {
+			conn.setKey(dbkey);
+			return conn.prepareCall(sql);
+		}
 	}
 
 	public boolean isResultSetHolderTransaction() {
@@ -224,6 +275,15 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 	}
 
 	private IConnection getConnection(String dbkey2) {
+		IConnection conn = connection();
+		conn.setKey(dbkey2);
+		return conn;
+	}
+
+	/*
+	 * 取得连接但不切换数据源。事务的连接可能被多个并行任务共用，调用者应当在该连接上同步，切换数据源后再创建语句
+	 */
+	private IConnection connection() {
 		if (conn == null) {
 			try {
 				conn = session.getConnection();
@@ -231,7 +291,6 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 				throw new RuntimeException(e);
 			}
 		}
-		conn.setKey(dbkey2);
 		return conn;
 	}
 
@@ -571,10 +630,14 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 
 	public <T> T getExpressionValue(String expression, Class<T> clz, Object... params) throws SQLException {
 		String sql = "select " + expression + " from dual";
-		StSqlParser parser = new StSqlParser(new StringReader(sql));
 		List<SelectItem> sts;
 		try {
-			sts = parser.PlainSelect().getSelectItems();
+			// 本地语言转化会改写语法树，因此取得副本
+			jef.database.jsqlparser.visitor.Statement st = SqlParseCache.copyNative(sql);
+			if (!(st instanceof Select) || !(((Select) st).getSelectBody() instanceof PlainSelect)) {
+				throw new ParseException("Not a simple select.");
+			}
+			sts = ((PlainSelect) ((Select) st).getSelectBody()).getSelectItems();
 		} catch (ParseException e) {
 			throw new SQLException("ParseError:[" + sql + "] Detail:" + e.getMessage());
 		}
@@ -607,6 +670,10 @@ public class OperateTarget implements SqlTemplate, JDBCTarget {
 		return session.getPartitionSupport();
 	}
 
+	public ParallelExecutor getParallelExecutor() {
+		return session.getNoTransactionSession().getParallelExecutor();
+	}
+
 	public OperateTarget getTarget(String database) {
 		if (StringUtils.equals(dbkey, database)) {
 			return this;
@@ -327,13 +327,13 @@ public abstract class SelectProcessor {
 				List<DbTask> tasks = new ArrayList<DbTask>();
 				for (final PartitionResult site : sql.getTables()) {
 					final SqlLog debug = ORMConfig.getInstance().newLogger();
-					tasks.add(new DbTask() {
+					tasks.add(new DbTask(site.getDatabase()) {
 						public void execute() throws SQLException {
 							processSelect0(session.selectTarget(site.getDatabase()), sql, site, queryObj, rs, option, debug);
 						}
 					});
 				}
-				DbUtils.parallelExecute(tasks);
+				session.getNoTransactionSession().getParallelExecutor().execute(tasks);
 			} else {
 				final SqlLog debug = ORMConfig.getInstance().newLogger();
 				for (PartitionResult site : sql.getTables()) {
@@ -356,7 +356,7 @@ public abstract class SelectProcessor {
 			for (final Map.Entry<String, List<BindSql>> sql : sqls.getSqls().entrySet()) {
 				final SqlLog debug = ORMConfig.getInstance().newLogger();
 				final OperateTarget target = session.selectTarget(sql.getKey());
-				tasks.add(new DbTask() {
+				tasks.add(new DbTask(sql.getKey()) {
 					@Override
 					public void execute() throws SQLException {
 						try {
@@ -370,7 +370,7 @@ public abstract class SelectProcessor {
 				});
 			}
 			
-			DbUtils.parallelExecute(tasks);
+			session.getNoTransactionSession().getParallelExecutor().execute(tasks);
 			return total.get();
 		} else {
 			long total = 0;
@@ -351,11 +351,13 @@ public final class SequenceManager {
 		protected long getFirstAndPushOthers(int num, DbClient conn, String dbKey) throws SQLException {
 			DbMetaData meta = conn.getNoTransactionSession().getMetaData(dbKey);
 			long last = queryLast(meta);
-			long nextVal = last + valueStep;
+			// 批次被放大时，一次取出相应倍数的值
+			int step = valueStep * Math.max(1, num / getCacheSize());
+			long nextVal = last + step;
 			int updated = conn.executeSql(update, nextVal, last);
 			while (updated == 0) { // 基于CAS操作的乐观锁,
 				last = queryLast(meta);
-				nextVal = last + valueStep;
+				nextVal = last + step;
 				updated = conn.executeSql(update, nextVal, last);
 			}
 			long result = last + 1;
@@ -16,7 +16,6 @@
 package jef.database;
 
 import java.io.Serializable;
-import java.io.StringReader;
 import java.lang.reflect.Type;
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -26,9 +25,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Spliterators;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -47,9 +48,12 @@ import jef.common.log.LogUtil;
 import jef.common.wrapper.IntRange;
 import jef.common.wrapper.Page;
 import jef.database.Condition.Operator;
+import jef.database.IConditionField.And;
+import jef.database.IConditionField.Or;
 import jef.database.Transaction.TransactionFlag;
 import jef.database.cache.Cache;
 import jef.database.cache.CacheImpl;
+import jef.database.cache.CountCache;
 import jef.database.dialect.DatabaseDialect;
 import jef.database.dialect.type.ColumnMapping;
 import jef.database.dialect.type.VersionSupportColumn;
@@ -61,8 +65,8 @@ import jef.database.jdbc.result.IResultSet;
 import jef.database.jdbc.result.ResultSetContainer;
 import jef.database.jdbc.result.ResultSetWrapper;
 import jef.database.jdbc.result.ResultSets;
+import jef.database.jsqlparser.SqlParseCache;
 import jef.database.jsqlparser.parser.ParseException;
-import jef.database.jsqlparser.parser.StSqlParser;
 import jef.database.meta.AbstractMetadata;
 import jef.database.meta.AbstractRefField;
 import jef.database.meta.EntityType;
@@ -82,6 +86,7 @@ import jef.database.query.SqlExpression;
 import jef.database.query.TypedQuery;
 import jef.database.routing.PartitionResult;
 import jef.database.support.DbOperatorListener;
+import jef.database.support.DefaultDbOperListener;
 import jef.database.support.MultipleDatabaseOperateException;
 import jef.database.support.RDBMS;
 import jef.database.wrapper.ResultIterator;
@@ -91,6 +96,7 @@ import jef.database.wrapper.clause.InsertSqlClause;
 import jef.database.wrapper.clause.QueryClause;
 import jef.database.wrapper.clause.SqlBuilder;
 import jef.database.wrapper.clause.UpdateClause;
+import jef.database.wrapper.executor.DbTask;
 import jef.database.wrapper.populator.AbstractResultSetTransformer;
 import jef.database.wrapper.populator.ResultPopulatorImpl;
 import jef.database.wrapper.populator.Transformer;
@@ -1547,8 +1553,9 @@ public abstract class Session {
 	 * 按主键加载多条记录。适用与拥有大量主键值，需要在数据库中查询与之对应的记录时。<br>
 	 * 查询会使用IN条件来减少操作数据库的次数。如果要查询的条件超过了500个，会自动分多次进行查询。
 	 * <p>
-	 * <strong>注意：在多库操作下，这一方法不支持对每条记录单独分组并计算路由。</strong>
-	 * <strong>注意：此方法不支持复合主键</strong>
+	 * <strong>注意：在多库操作下，这一方法不支持对每条记录单独分组并计算路由。</strong><br>
+	 * 复合主键时每个主键值是按主键字段顺序排列的Serializable[]，使用(a=? and b=?) or ...的条件查询，结果中不含不存在的记录。
+	 * 此时每次查询的主键值个数按绑定参数计算，即500个除以主键字段数。
 	 * 
 	 * @param clz
 	 *            实体类
@@ -1567,8 +1574,8 @@ public abstract class Session {
 	 * 按主键加载多条记录。适用与拥有大量主键值，需要在数据库中查询与之对应的记录时。<br>
 	 * 查询会使用IN条件来减少操作数据库的次数。如果要查询的条件超过了500个，会自动分多次进行查询。
 	 * <p>
-	 * <strong>注意：在多库操作下，这一方法不支持对每条记录单独分组并计算路由。</strong>
-	 * <strong>注意：此方法不支持复合主键</strong>
+	 * <strong>注意：在多库操作下，这一方法不支持对每条记录单独分组并计算路由。</strong><br>
+	 * 复合主键时每个主键值是按主键字段顺序排列的Serializable[]，使用(a=? and b=?) or ...的条件查询，结果中不含不存在的记录。
 	 * 
 	 * @param meta
 	 *            实体元数据
@@ -1578,23 +1585,14 @@ public abstract class Session {
 	 * @throws SQLException
 	 *             如果数据库操作错误，抛出。
 	 */
-	@SuppressWarnings("unchecked")
-	public final <T> List<T> batchLoad(ITableMetadata meta, List<? extends Serializable> pkValues) throws SQLException {
-		int MAX_IN_CONDITIONS = ORMConfig.getInstance().getMaxInConditions();
-		if (pkValues.size() < MAX_IN_CONDITIONS) {
-			return batchLoadByPK0(meta, pkValues);
-		}
-		List<T> result = new ArrayList<T>(MAX_IN_CONDITIONS);
-		int offset = 0;
-		while (pkValues.size() - offset > MAX_IN_CONDITIONS) {
-			List<T> r = batchLoadByPK0(meta, pkValues.subList(offset, offset + MAX_IN_CONDITIONS));
-			result.addAll(r);
-			offset += MAX_IN_CONDITIONS;
-		}
-		if (pkValues.size() > offset) {
-			result.addAll(batchLoadByPK0(meta, pkValues.subList(offset, pkValues.size())));
-		}
-		return result;
+	public final <T> List<T> batchLoad(final ITableMetadata meta, List<? extends Serializable> pkValues) throws SQLException {
+		int chunkSize = Math.max(1, ORMConfig.getInstance().getMaxInConditions() / meta.getPKFields().size());
+		return loadInChunks(pkValues, chunkSize, new ChunkLoader() {
+			@SuppressWarnings("unchecked")
+			public List<?> load(List<?> values) throws SQLException {
+				return batchLoadByPK0(meta, (List<? extends Serializable>) values);
+			}
+		});
 	}
 
 	/**
@@ -1613,21 +1611,55 @@ public abstract class Session {
 	 * @throws SQLException
 	 *             如果数据库操作错误，抛出。
 	 */
-	public final <T> List<T> batchLoadByField(jef.database.Field field, List<?> values) throws SQLException {
-		int MAX_IN_CONDITIONS = ORMConfig.getInstance().getMaxInConditions();
-		if (values.size() < MAX_IN_CONDITIONS)
-			return batchLoadByField0(field, values);
+	public final <T> List<T> batchLoadByField(final jef.database.Field field, List<?> values) throws SQLException {
+		return loadInChunks(values, ORMConfig.getInstance().getMaxInConditions(), new ChunkLoader() {
+			public List<?> load(List<?> values) throws SQLException {
+				return batchLoadByField0(field, values);
+			}
+		});
+	}
 
-		List<T> result = new ArrayList<T>(800);
-		int offset = 0;
-		while (values.size() - offset > MAX_IN_CONDITIONS) {
-			List<T> r = batchLoadByField0(field, values.subList(offset, offset + MAX_IN_CONDITIONS));
-			result.addAll(r);
-			offset += MAX_IN_CONDITIONS;
+	/*
+	 * 批量加载中的一次查询
+	 */
+	private interface ChunkLoader {
+		List<?> load(List<?> values) throws SQLException;
+	}
+
+	/*
+	 * 每次最多查询chunkSize个值，结果按参数的顺序合并。不在事务中时可以并行查询，
+	 * 已经在并行任务中时依次查询，以免占用更多的并行线程
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> List<T> loadInChunks(List<?> values, int chunkSize, final ChunkLoader loader) throws SQLException {
+		if (values.size() <= chunkSize) {
+			return (List<T>) loader.load(values);
+		}
+		List<List<?>> chunks = new ArrayList<List<?>>();
+		for (int offset = 0; offset < values.size(); offset += chunkSize) {
+			chunks.add(values.subList(offset, Math.min(offset + chunkSize, values.size())));
+		}
+		final List<?>[] results = new List<?>[chunks.size()];
+		if (ORMConfig.getInstance().isParallelBatchLoad() && !(this instanceof Transaction) && !DbTask.isRunning()) {
+			List<DbTask> tasks = new ArrayList<DbTask>(chunks.size());
+			for (int i = 0; i < chunks.size(); i++) {
+				final int index = i;
+				final List<?> chunk = chunks.get(i);
+				tasks.add(new DbTask() {
+					public void execute() throws SQLException {
+						results[index] = loader.load(chunk);
+					}
+				});
+			}
+			getNoTransactionSession().getParallelExecutor().execute(tasks);
+		} else {
+			for (int i = 0; i < chunks.size(); i++) {
+				results[i] = loader.load(chunks.get(i));
+			}
 		}
-		if (values.size() > offset) {
-			List<T> r = batchLoadByField0(field, values.subList(offset, values.size()));
-			result.addAll(r);
+		List<T> result = new ArrayList<T>(values.size());
+		for (List<?> r : results) {
+			result.addAll((List<T>) r);
 		}
 		return result;
 	}
@@ -1966,7 +1998,9 @@ public abstract class Session {
 		// 缓存命中
 		List resultList = noCache ? null : getCache().load(sql.getCacheKey());
 		if (resultList == null) {
-			ResultSetContainer rs = new ResultSetContainer(option.cacheResultset && !option.holdResult);// 只有当非读写模式并且开启结果缓存才缓存结果集
+			// 只有当非读写模式并且开启结果缓存才缓存结果集。多库分页时各库分页已下推，采用流式归并，也不缓存
+			boolean streamingMerge = range != null && sql.isMultiDatabase() && ORMConfig.getInstance().isPartitionStreamingMerge();
+			ResultSetContainer rs = new ResultSetContainer(option.cacheResultset && !option.holdResult && !streamingMerge);
 			long parse = System.currentTimeMillis();
 			selectp.processSelect(sql, this, queryObj, rs, option, option.holdResult ? 2 : 0);
 			long dbselect = System.currentTimeMillis(); // 查询完成时间
@@ -2147,6 +2181,25 @@ public abstract class Session {
 	 *             如果数据库操作错误，抛出。
 	 */
 	public final long countLong(ConditionQuery obj) throws SQLException {
+		return countLong0(obj, 0);
+	}
+
+	/**
+	 * 查询符合条件的记录条数，结果按{@link DbCfg#DB_PAGE_COUNT_CACHE_TTL}缓存，缓存期内相同的count语句和参数直接返回上次的结果。
+	 * 用于分页等可以接受总数有短时间误差的场景。未配置缓存时间时同{@link #countLong(ConditionQuery)}
+	 * 
+	 * @param obj
+	 *            查询请求
+	 * @return 记录条数
+	 * @throws SQLException
+	 *             如果数据库操作错误，抛出。
+	 * @see CountCache
+	 */
+	public final long countLongCached(ConditionQuery obj) throws SQLException {
+		return countLong0(obj, ORMConfig.getInstance().getPageCountCacheTtl());
+	}
+
+	private long countLong0(ConditionQuery obj, long ttl) throws SQLException {
 		long start = System.currentTimeMillis(); // 开始时间
 		long parse = 0; // 解析时间
 		boolean debugMode = ORMConfig.getInstance().isDebugMode();
@@ -2159,9 +2212,23 @@ public abstract class Session {
 		}
 		Assert.notNull(obj);
 		CountClause sqls = selectp.toCountSql(obj);
+		Object key = ttl > 0 ? CountCache.toKey(sqls) : null;
+		CountCache cache = getNoTransactionSession().getCountCache();
+		if (key != null) {
+			Long cached = cache.get(key);
+			if (cached != null) {
+				if (debugMode) {
+					LogUtil.info(StringUtils.concat("Total Count:", String.valueOf(cached), " (cached) |", getTransactionId(null)));
+				}
+				return cached;
+			}
+		}
 
 		parse = System.currentTimeMillis();
 		long total = selectp.processCount(this, sqls);
+		if (key != null) {
+			cache.put(key, total, ttl);
+		}
 		if (debugMode) {
 			long dbAccess = System.currentTimeMillis() - parse; // 数据库查询时间
 			parse = parse - start; // 解析SQL时间
@@ -2358,6 +2425,95 @@ public abstract class Session {
 		return batch.execute(data);
 	}
 
+	/**
+	 * 按主键删除多个对象，效果和逐个调用{@link #delete(Object)}相同，但尽量减少操作数据库的次数。<br>
+	 * <ol>
+	 * <li>单一主键且没有分表规则时，使用IN条件删除，超过{@link DbCfg#DB_MAX_IN_CONDITIONS}个时自动分多次进行。</li>
+	 * <li>复合主键或有分表规则时，使用JDBC批量删除，并对每条记录计算路由。</li>
+	 * <li>主键没有设值的对象、有继承关系的实体、Query中另外指定了条件(如乐观锁的版本号)的对象仍逐个删除，条件和{@link #delete(Object)}一样生效。</li>
+	 * </ol>
+	 * 和逐个删除一样，每个对象都会触发{@link DbOperatorListener}的删除事件，事件中的行数是该对象实际删除的行数。
+	 * 
+	 * @param entities
+	 *            要删除的实体对象
+	 * @return 实际删除数量
+	 * @throws SQLException
+	 *             如果没有主键或者数据库操作错误，抛出SQLException。
+	 */
+	@SuppressWarnings("unchecked")
+	public final <T> int batchDeleteByPK(List<T> entities) throws SQLException {
+		if (entities.isEmpty())
+			return 0;
+		ITableMetadata meta = MetaHolder.getMeta(entities.get(0));
+		if (meta.getPKFields().isEmpty()) {
+			throw new SQLException("The type " + meta.getTableName(false) + " has no primary key, can not execute batch remove by primarykey");
+		}
+		List<? extends IQueryableEntity> data;
+		if (meta.getType() == EntityType.POJO) {
+			data = PojoWrapper.wrap(entities, false);
+		} else {
+			data = (List<? extends IQueryableEntity>) entities;
+		}
+		int total = 0;
+		List<T> batch = new ArrayList<T>(entities.size());
+		List<IQueryableEntity> batchData = new ArrayList<IQueryableEntity>(entities.size());
+		List<Object> keys = new ArrayList<Object>(entities.size());
+		for (int i = 0; i < data.size(); i++) {
+			IQueryableEntity obj = data.get(i);
+			List<Object> pk = DbUtils.getPrimaryKeyValue(obj);
+			if (pk == null || meta.getExtendsTable() != null || obj.hasQuery() && !obj.getQuery().getConditions().isEmpty()) {
+				total += delete(obj.getQuery());
+			} else {
+				batch.add(entities.get(i));
+				batchData.add(obj);
+				keys.add(pk.get(0));
+			}
+		}
+		if (batch.isEmpty()) {
+			return total;
+		}
+		if (meta.getPKFields().size() != 1 || meta.getPartition() != null) {
+			return total + batchDelete(batch, meta.getPartition() != null);
+		}
+		Field pkField = meta.getPKFields().get(0).field();
+		DbOperatorListener listener = getListener();
+		int MAX_IN_CONDITIONS = ORMConfig.getInstance().getMaxInConditions();
+		for (int offset = 0; offset < batchData.size(); offset += MAX_IN_CONDITIONS) {
+			int end = Math.min(offset + MAX_IN_CONDITIONS, batchData.size());
+			List<IQueryableEntity> chunk = batchData.subList(offset, end);
+			List<Object> chunkKeys = keys.subList(offset, end);
+			for (IQueryableEntity obj : chunk) {
+				listener.beforeDelete(obj, this);
+			}
+			// 一条IN语句只能得到总的删除行数。主键唯一，删除行数和对象数相同时每个对象各删除了1行；
+			// 否则有的记录不存在，需要事先查出存在的主键才能得到每个对象的删除行数(没有配置监听器时不查)
+			Set<Object> existing = listener == DefaultDbOperListener.getInstance() ? null : selectExistingKeys(meta, pkField, chunkKeys);
+			Query<?> q = meta.newInstance().getQuery();
+			q.addCondition(pkField, Operator.IN, chunkKeys);
+			int count = delete0(q, false);
+			total += count;
+			for (int i = 0; i < chunk.size(); i++) {
+				int n = count == chunk.size() || existing != null && existing.contains(chunkKeys.get(i)) ? 1 : 0;
+				listener.afterDelete(chunk.get(i), n, this);
+			}
+		}
+		return total;
+	}
+
+	/*
+	 * 查出给定的主键值中在数据库里存在的部分
+	 */
+	private Set<Object> selectExistingKeys(ITableMetadata meta, Field pkField, List<Object> keys) throws SQLException {
+		Query<?> q = meta.newInstance().getQuery();
+		q.setCascade(false);
+		q.addCondition(pkField, Operator.IN, keys);
+		Set<Object> result = new HashSet<Object>();
+		for (Object o : innerSelect(q, null, null, QueryOption.DEFAULT)) {
+			result.add(DbUtils.getPrimaryKeyValue((IQueryableEntity) o).get(0));
+		}
+		return result;
+	}
+
 	/**
 	 * 按某个字段值进行批量删除。
 	 * 
@@ -2958,7 +3114,7 @@ public abstract class Session {
 	private <T> List<T> batchLoadByField0(Field field, List<?> values) throws SQLException {
 		ITableMetadata meta = DbUtils.getTableMeta(field);
 		Query<?> q = meta.newInstance().getQuery();
-		q.addCondition(field, Operator.IN, values);
+		q.addCondition(field, Operator.IN, DbUtils.toInValues(values));
 		return innerSelect(q, null, null, QueryOption.DEFAULT);
 	}
 
@@ -2984,26 +3140,41 @@ public abstract class Session {
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	private List batchLoadByPK0(ITableMetadata meta, List<? extends Serializable> pkValues) throws SQLException {
 		if (meta.getPKFields().size() != 1) {
-			return batchLoadEachTimes(meta, pkValues);
+			return batchLoadByComplexPK0(meta, pkValues);
 		}
 		if (meta.getType() == EntityType.POJO) {
 			Query<?> q = meta.newInstance().getQuery();
-			q.addCondition(meta.getPKFields().get(0).field(), Operator.IN, pkValues);
+			q.addCondition(meta.getPKFields().get(0).field(), Operator.IN, DbUtils.toInValues(pkValues));
 			return PojoWrapper.unwrapList(innerSelect(q, null, null, QueryOption.DEFAULT));
 		} else {
 			Query<?> q = meta.newInstance().getQuery();
-			q.addCondition(meta.getPKFields().get(0).field(), Operator.IN, pkValues);
+			q.addCondition(meta.getPKFields().get(0).field(), Operator.IN, DbUtils.toInValues(pkValues));
 			return innerSelect(q, null, null, QueryOption.DEFAULT);
 		}
 	}
 
+	/*
+	 * 复合主键的每个值是按主键字段顺序排列的数组，用(a=? and b=?) or (a=? and b=?)的条件一次查出
+	 */
 	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private List batchLoadEachTimes(ITableMetadata meta, List<? extends Serializable> pkValues) throws SQLException {
-		List list = new ArrayList(pkValues.size());
+	private List batchLoadByComplexPK0(ITableMetadata meta, List<? extends Serializable> pkValues) throws SQLException {
+		List<ColumnMapping> pks = meta.getPKFields();
+		Or or = new Or();
 		for (Serializable id : pkValues) {
-			list.add(load(meta, (Serializable[]) id));
+			Serializable[] values = (Serializable[]) id;
+			if (values.length != pks.size()) {
+				throw new IllegalArgumentException("The primary key of " + meta.getSimpleName() + " has " + pks.size() + " columns, but input " + values.length);
+			}
+			And and = new And();
+			for (int i = 0; i < values.length; i++) {
+				and.addCondition(QB.eq(pks.get(i).field(), values[i]));
+			}
+			or.addCondition(and);
 		}
-		return list;
+		Query<?> q = meta.newInstance().getQuery();
+		q.addCondition(or);
+		List result = innerSelect(q, null, null, QueryOption.DEFAULT);
+		return meta.getType() == EntityType.POJO ? PojoWrapper.unwrapList(result) : result;
 	}
 
 	// 计算手工执行的各种SQL语句下缓存刷新问题
@@ -3012,9 +3183,9 @@ public abstract class Session {
 		if (getCache().isDummy())
 			return;
 		jef.database.jsqlparser.visitor.Statement st = null;
-		StSqlParser parser = new StSqlParser(new StringReader(sql));
 		try {
-			st = parser.Statement();
+			// 计算缓存维度时会去除别名，因此取得副本
+			st = SqlParseCache.copyNative(sql);
 		} catch (ParseException e) {
 			// 解析错误就不管
 		}
@@ -3030,6 +3201,13 @@ public abstract class Session {
 	}
 
 	protected int delete0(Query<?> query) throws SQLException {
+		return delete0(query, true);
+	}
+
+	/*
+	 * @param fireEvent 是否触发DbOperatorListener的删除事件。批量删除时由调用者对每个对象触发
+	 */
+	private int delete0(Query<?> query, boolean fireEvent) throws SQLException {
 		long start = System.currentTimeMillis();
 		IQueryableEntity obj = query.getInstance();
 		String myTableName = (String) query.getAttribute(Query.CUSTOM_TABLE_NAME);
@@ -3038,7 +3216,9 @@ public abstract class Session {
 
 		if (sites != null && sites.length > 0) {
 			DatabaseDialect profile = this.getProfile(sites[0].getDatabase());
-			getListener().beforeDelete(obj, this);
+			if (fireEvent) {
+				getListener().beforeDelete(obj, this);
+			}
 
 			BindSql where = deletep.toWhereClause(query, new SqlContext(null, query), profile);
 			int count = deletep.processDelete(this, obj, where, sites, start);
@@ -3046,7 +3226,9 @@ public abstract class Session {
 				getCache().onDelete(myTableName == null ? query.getMeta().getTableName(false) : myTableName, where.getSql(),
 						CacheImpl.toParamList(where.getBind()));
 			}
-			getListener().afterDelete(obj, count, this);
+			if (fireEvent) {
+				getListener().afterDelete(obj, count, this);
+			}
 			return count;
 		} else {
 			return 0;
@@ -3114,7 +3296,7 @@ public abstract class Session {
 		int count = updatep.processUpdate(this, obj, updateClause, whereClause, sites, parseCost);
 		if (count > 0) {
 			String tableName = myTableName == null ? query.getMeta().getTableName(false) : myTableName;
-			getCache().onUpdate(tableName, whereClause.getSql(), CacheImpl.toParamList(whereClause.getBind()));
+			getCache().onUpdate(tableName, whereClause.getSql(), CacheImpl.toParamList(whereClause.getBind()), updateClause.getColumns());
 		} else if (context.needVersionCondition()) {// 基于版本的乐观锁并发检测，记录没有成功更新
 			throw new OptimisticLockException("The row in database has been modified by others after the entity was loaded. version-column:"+context.versionColumn.fieldName(), null, query);
 		}
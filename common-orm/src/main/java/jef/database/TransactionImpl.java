@@ -7,8 +7,10 @@ import javax.persistence.PersistenceException;
 import org.easyframe.enterprise.spring.TransactionMode;
 
 import jef.common.log.LogUtil;
+import jef.database.cache.Cache;
 import jef.database.cache.CacheChain;
 import jef.database.cache.CacheImpl;
+import jef.database.cache.TransactionalCache;
 import jef.database.innerpool.IConnection;
 import jef.database.support.TransactionTimedOutException;
 
@@ -46,6 +48,11 @@ public class TransactionImpl extends Transaction {
 
 	private boolean isJpa;
 
+	/**
+	 * 事务中使用的二级缓存，失效消息在提交后发出。未启用二级缓存时为null
+	 */
+	private TransactionalCache l2;
+
 	public void setReadonly(boolean flag) {
 		if (this.readOnly == flag)
 			return;
@@ -122,15 +129,22 @@ public class TransactionImpl extends Transaction {
 		this.insertp = parent.insertp;
 		this.updatep = parent.updatep;
 		this.deletep = parent.deletep;
+		Cache global = parent.getCache();
+		if (global instanceof CacheImpl) {
+			l2 = new TransactionalCache((CacheImpl) global);
+			// JTA事务的提交不经过本对象，不能暂存
+			l2.setDeferred(parent.getTxType() != TransactionMode.JTA);
+			global = l2;
+		}
 		if (noCache || !ORMConfig.getInstance().isCacheLevel1()) {
 			// 没有自己的缓存
-			cache = parent.getCache();
-		} else if (parent.getCache().isDummy()) {
+			cache = global;
+		} else if (global.isDummy()) {
 			// 自己有缓存，上级无缓存
 			cache = new CacheImpl(preProcessor, selectp, 0, "L1");
 		} else {
 			// 两级缓存都启用的情况下
-			cache = new CacheChain(new CacheImpl(preProcessor, selectp, 0, "L1"), parent.getCache());
+			cache = new CacheChain(new CacheImpl(preProcessor, selectp, 0, "L1"), global);
 		}
 		getListener().newTransaction(this);
 		if (timeout > 0) {
@@ -202,6 +216,9 @@ public class TransactionImpl extends Transaction {
 			return this;
 		}
 		this.autoCommit = autoCommit;
+		if (l2 != null) {
+			l2.setDeferred(!autoCommit);
+		}
 		if (conn != null) {
 			try {
 				this.conn.setAutoCommit(autoCommit);
@@ -218,6 +235,9 @@ public class TransactionImpl extends Transaction {
 			long start = System.currentTimeMillis();
 			conn.rollback();
 			dirty = false;
+			if (l2 != null) {
+				l2.rollback();
+			}
 			log.debug("[JPA DEBUG]:Transaction {} rollback. cost {}ms.", this, (System.currentTimeMillis() - start));
 			getListener().postRollback(this);
 		}
@@ -229,6 +249,9 @@ public class TransactionImpl extends Transaction {
 			long start = System.currentTimeMillis();
 			conn.commit();
 			dirty = false;
+			if (l2 != null) {
+				l2.commit();
+			}
 			log.debug("[JPA DEBUG]:Transaction {} commited. cost {}ms.", this, System.currentTimeMillis() - start);
 			getListener().postCommit(this);
 		}
@@ -253,6 +276,10 @@ public class TransactionImpl extends Transaction {
 			conn.close();
 			conn = null;
 		}
+		if (l2 != null) {
+			// 未提交的修改
+			l2.rollback();
+		}
 		parentName = parent.getDbName(null);
 		try {
 			getListener().tracsactionClose(this);
@@ -154,23 +154,28 @@ public abstract class UpdateProcessor {
 			DatabaseDialect profile = processor.getProfile(prs);
 			UpdateClause result = new UpdateClause();
 
-			Map<Field, Object> map = obj.getUpdateValueMap();
 			Map.Entry<Field, Object>[] fields;
 			ITableMetadata meta = MetaHolder.getMeta(obj);
 			if (dynamic) {
-				fields = map.entrySet().toArray(new Map.Entry[map.size()]);
+				if (obj instanceof DataObject) {// 直接遍历位图中的字段，不构造updateValueMap
+					fields = ((DataObject) obj).getUpdateEntries(meta);
+				} else {
+					Map<Field, Object> map = obj.getUpdateValueMap();
+					fields = map.entrySet().toArray(new Map.Entry[map.size()]);
+				}
 				moveLobFieldsToLast(fields, meta);
 
 				// 增加时间戳自动更新的列
 				VersionSupportColumn[] autoUpdateTime = meta.getAutoUpdateColumnDef();
 				if (autoUpdateTime != null) {
 					for (VersionSupportColumn tm : autoUpdateTime) {
-						if (!map.containsKey(tm.field())) {
+						if (!obj.isUsed(tm.field())) {
 							tm.processAutoUpdate(profile, result);
 						}
 					}
 				}
 			} else {
+				Map<Field, Object> map = obj instanceof DataObject ? ((DataObject) obj).preparedUpdateValues() : obj.getUpdateValueMap();
 				fields = getAllFieldValues(meta, map, BeanWrapper.wrap(obj), profile);
 			}
 			boolean safeMerge=ORMConfig.getInstance().isSafeMerge();
@@ -300,14 +305,14 @@ public abstract class UpdateProcessor {
 			for (final PartitionResult site : sites) {
 				final OperateTarget db = session.selectTarget(site.getDatabase());
 				dbName = db.getTransactionId();
-				tasks.add(new DbTask() {
+				tasks.add(new DbTask(site.getDatabase()) {
 					@Override
 					public void execute() throws SQLException {
 						count.addAndGet(processUpdate0(db, obj, updateClause, whereClause, site, log));
 					}
 				});
 			}
-			DbUtils.parallelExecute(tasks);
+			session.getNoTransactionSession().getParallelExecutor().execute(tasks);
 			total = count.get();
 		} else {
 			for (PartitionResult site : sites) {
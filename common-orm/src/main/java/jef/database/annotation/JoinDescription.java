@@ -35,4 +35,10 @@ public @interface JoinDescription {
 	 * @return
 	 */
 	int maxRows() default 0;
+	
+	/**
+	 * 延迟加载时，一次批量加载多少个对象的该关系。-1表示使用全局配置{@link jef.database.DbCfg#DB_LAZY_LOAD_BATCH_SIZE}，1表示不批量加载
+	 * @return
+	 */
+	int batchSize() default -1;
 }
@@ -1,5 +1,6 @@
 package jef.database.cache;
 
+import java.util.Collection;
 import java.util.List;
 
 import jef.database.IQueryableEntity;
@@ -64,6 +65,15 @@ public interface Cache extends javax.persistence.Cache{
 	 * @param bind
 	 */
 	public void onUpdate(String table, String where, List<Object> bind);
+
+	/**
+	 * on object update, refresh cache.
+	 * @param table
+	 * @param where
+	 * @param bind
+	 * @param columns 被更新的列。按主键更新时，只有条件中含有这些列的查询结果才需要全部清除
+	 */
+	public void onUpdate(String table, String where, List<Object> bind, Collection<String> columns);
 	/**
 	 * is this cache a dummy cache( no cache)
 	 * @return
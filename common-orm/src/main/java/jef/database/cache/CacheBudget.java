@@ -0,0 +1,416 @@
+package jef.database.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jef.database.IQueryableEntity;
+import jef.database.meta.MetaHolder;
+
+import com.google.common.base.Ticker;
+
+/**
+ * 二级缓存的内存预算。
+ * <p>
+ * 一个{@link CacheImpl}下所有维度的缓存结果共用一个预算：每个结果按行数和行的类型估算占用的内存，
+ * 所有结果按访问先后排成一个队列。放入新结果超出上限(或超出单表配额)时，从队列头部(最久未访问)选出要清除的结果，
+ * 只有新结果的访问频率高于这些结果时才清除它们并放入新结果，否则不缓存新结果(TinyLFU准入策略)。
+ * 这样一次性的大量查询不会把常用的结果挤出缓存。
+ * <p>
+ * 访问频率由{@link FrequencySketch}近似统计，包括命中和未命中的访问。
+ *
+ * @author jiyi
+ * @see jef.database.DbCfg#CACHE_GLOBAL_MAX_MEMORY
+ * @see jef.database.DbCfg#CACHE_GLOBAL_TABLE_QUOTA
+ */
+public final class CacheBudget {
+	// 每个缓存结果自身的开销(Map.Entry、Node、参数列表等)
+	private static final int ENTRY_OVERHEAD = 160;
+	// 默认按系统时间计算过期，过期时间总是正数
+	private static final Ticker WALL_CLOCK = new Ticker() {
+		public long read() {
+			return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+		}
+	};
+
+	private final long maxWeight;
+	private final long tableQuota;
+	private final FrequencySketch sketch;
+	private final Ticker ticker;
+	private final ReentrantLock lock = new ReentrantLock();
+	/**
+	 * 访问队列的哨兵，head.next最久未访问，head.prev最近访问
+	 */
+	private final Node head = new Node(null, null, null, null, 0, 0, 0);
+	private final Map<String, long[]> tableWeights = new HashMap<String, long[]>();
+	private long weight;
+	private int size;
+
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong rejections = new AtomicLong();
+
+	/**
+	 * 构造
+	 *
+	 * @param maxWeight
+	 *            内存上限，单位字节
+	 * @param tableQuota
+	 *            单张表占上限的百分比
+	 */
+	public CacheBudget(long maxWeight, int tableQuota) {
+		this(maxWeight, tableQuota, WALL_CLOCK);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param maxWeight
+	 *            内存上限，单位字节
+	 * @param tableQuota
+	 *            单张表占上限的百分比
+	 * @param ticker
+	 *            计算过期时间的计时
+	 */
+	CacheBudget(long maxWeight, int tableQuota, Ticker ticker) {
+		this.ticker = ticker;
+		if (tableQuota <= 0 || tableQuota > 100) {
+			tableQuota = 100;
+		}
+		this.maxWeight = maxWeight;
+		this.tableQuota = maxWeight / 100 * tableQuota;
+		// 按平均每个结果1K估算结果数，至少4096个计数器
+		this.sketch = new FrequencySketch((int) Math.max(Math.min(maxWeight >>> 10, 1 << 22), 4096));
+		head.prev = head;
+		head.next = head;
+	}
+
+	/**
+	 * 当前时间，用于计算结果是否过期
+	 *
+	 * @return 毫秒
+	 */
+	long now() {
+		return TimeUnit.NANOSECONDS.toMillis(ticker.read());
+	}
+
+	/**
+	 * 记录一次访问，无论是否命中
+	 *
+	 * @param hash
+	 *            {@link #hash(KeyDimension, List)}
+	 */
+	void recordAccess(int hash) {
+		sketch.increment(hash);
+	}
+
+	/**
+	 * 尝试将结果纳入预算。空间不够时，清除访问频率更低的结果。<br>
+	 * 准入后仍在持有锁时放入结果所在的缓存，因此被拒绝的结果不会被读到，准入的结果在放入前也不会被其他线程选为清除对象。
+	 *
+	 * @param node
+	 * @return false表示新结果的访问频率不够高，不应缓存
+	 */
+	boolean admit(Node node) {
+		lock.lock();
+		try {
+			if (node.weight > tableQuota) {
+				rejections.incrementAndGet();
+				return false;
+			}
+			long[] tw = tableWeights.get(node.table);
+			long needGlobal = weight + node.weight - maxWeight;
+			long needTable = (tw == null ? 0 : tw[0]) + node.weight - tableQuota;
+			if (needGlobal > 0 || needTable > 0) {
+				List<Node> victims = selectVictims(node, needGlobal, needTable);
+				if (victims == null) {
+					rejections.incrementAndGet();
+					return false;
+				}
+				for (Node victim : victims) {
+					unlink(victim);
+					victim.owner.evict(victim);
+				}
+				evictions.addAndGet(victims.size());
+			}
+			link(node);
+			node.owner.publish(node);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * 从最久未访问的结果开始，选出足够腾出空间的结果。其中有访问频率不低于新结果的(已过期的除外)，返回null
+	 */
+	private List<Node> selectVictims(Node candidate, long needGlobal, long needTable) {
+		int freq = sketch.frequency(candidate.hash);
+		long now = now();
+		List<Node> victims = new ArrayList<Node>();
+		for (Node node = head.next; node != head && (needGlobal > 0 || needTable > 0); node = node.next) {
+			boolean sameTable = node.table.equals(candidate.table);
+			if (needGlobal <= 0 && !sameTable) {
+				continue;
+			}
+			if (!node.isExpired(now) && sketch.frequency(node.hash) >= freq) {
+				return null;
+			}
+			victims.add(node);
+			needGlobal -= node.weight;
+			if (sameTable) {
+				needTable -= node.weight;
+			}
+		}
+		return needGlobal > 0 || needTable > 0 ? null : victims;
+	}
+
+	/**
+	 * 命中时移到队列尾部。有其他线程正在操作队列时放弃，不等待
+	 *
+	 * @param node
+	 */
+	void touch(Node node) {
+		if (lock.tryLock()) {
+			try {
+				if (node.linked) {
+					node.prev.next = node.next;
+					node.next.prev = node.prev;
+					append(node);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * 结果被删除或覆盖时，归还其占用的空间
+	 *
+	 * @param node
+	 */
+	void release(Node node) {
+		if (node == null) {
+			return;
+		}
+		lock.lock();
+		try {
+			if (node.linked) {
+				unlink(node);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void link(Node node) {
+		append(node);
+		node.linked = true;
+		weight += node.weight;
+		size++;
+		long[] tw = tableWeights.get(node.table);
+		if (tw == null) {
+			tw = new long[1];
+			tableWeights.put(node.table, tw);
+		}
+		tw[0] += node.weight;
+	}
+
+	private void append(Node node) {
+		node.prev = head.prev;
+		node.next = head;
+		head.prev.next = node;
+		head.prev = node;
+	}
+
+	private void unlink(Node node) {
+		node.prev.next = node.next;
+		node.next.prev = node.prev;
+		node.prev = null;
+		node.next = null;
+		node.linked = false;
+		weight -= node.weight;
+		size--;
+		long[] tw = tableWeights.get(node.table);
+		tw[0] -= node.weight;
+		if (tw[0] <= 0) {
+			tableWeights.remove(node.table);
+		}
+	}
+
+	/**
+	 * 当前占用的内存(估算值)，单位字节
+	 *
+	 * @return
+	 */
+	public long getWeight() {
+		lock.lock();
+		try {
+			return weight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 指定表的结果占用的内存(估算值)，单位字节
+	 *
+	 * @param table
+	 *            表名(大写)
+	 * @return
+	 */
+	public long getTableWeight(String table) {
+		lock.lock();
+		try {
+			long[] tw = tableWeights.get(table);
+			return tw == null ? 0 : tw[0];
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 内存上限，单位字节
+	 *
+	 * @return
+	 */
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	/**
+	 * 单张表的内存上限，单位字节
+	 *
+	 * @return
+	 */
+	public long getTableQuota() {
+		return tableQuota;
+	}
+
+	/**
+	 * 缓存的结果数
+	 *
+	 * @return
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 为放入新结果而清除的结果数
+	 *
+	 * @return
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * 因访问频率不够或超出配额而未缓存的结果数
+	 *
+	 * @return
+	 */
+	public long getRejectionCount() {
+		return rejections.get();
+	}
+
+	@Override
+	public String toString() {
+		return "{weight=" + getWeight() + ",max=" + maxWeight + ",size=" + size() + ",evictions=" + evictions.get() + ",rejections=" + rejections.get() + "}";
+	}
+
+	/**
+	 * 计算访问频率统计用的hash
+	 *
+	 * @param dim
+	 * @param params
+	 * @return
+	 */
+	static int hash(KeyDimension dim, List<?> params) {
+		return dim.hashCode() * 31 + params.hashCode();
+	}
+
+	/**
+	 * 估算一个缓存结果占用的内存。结果中的各行类型相同，按第一行估算。
+	 *
+	 * @param params
+	 *            查询参数
+	 * @param value
+	 *            查询结果
+	 * @return 字节数
+	 */
+	static long weigh(List<?> params, List<?> value) {
+		long w = ENTRY_OVERHEAD;
+		for (Object param : params) {
+			w += 8 + sizeOf(param);
+		}
+		if (!value.isEmpty()) {
+			w += 8 + value.size() * (8 + sizeOf(value.get(0)));
+		}
+		return w;
+	}
+
+	private static long sizeOf(Object obj) {
+		if (obj == null) {
+			return 0;
+		} else if (obj instanceof IQueryableEntity) {
+			return 64 + MetaHolder.getMeta(obj).getColumns().size() * 40L;
+		} else if (obj instanceof Map) {
+			return 64 + ((Map<?, ?>) obj).size() * 72L;
+		} else if (obj instanceof Object[]) {
+			return 16 + ((Object[]) obj).length * 40L;
+		} else if (obj instanceof CharSequence) {
+			return 40 + ((CharSequence) obj).length() * 2L;
+		} else if (obj instanceof Number || obj instanceof Boolean || obj instanceof Date) {
+			return 24;
+		}
+		return 64;
+	}
+
+	/**
+	 * 一个缓存结果。同时是访问队列中的节点，队列相关的字段只在持有锁时访问。
+	 */
+	static final class Node {
+		final DimCacheBudgetImpl owner;
+		final List<?> params;
+		final List<?> value;
+		final String table;
+		final int hash;
+		final long weight;
+		/**
+		 * 过期时间，0表示不过期
+		 */
+		final long expireAt;
+		Node prev;
+		Node next;
+		boolean linked;
+
+		Node(DimCacheBudgetImpl owner, List<?> params, List<?> value, String table, int hash, long weight, long expireAt) {
+			this.owner = owner;
+			this.params = params;
+			this.value = value;
+			this.table = table;
+			this.hash = hash;
+			this.weight = weight;
+			this.expireAt = expireAt;
+		}
+
+		boolean isExpired(long now) {
+			return expireAt > 0 && expireAt < now;
+		}
+
+		@Override
+		public String toString() {
+			return String.valueOf(value);
+		}
+	}
+}
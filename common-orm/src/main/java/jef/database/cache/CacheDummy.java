@@ -1,5 +1,6 @@
 package jef.database.cache;
 
+import java.util.Collection;
 import java.util.List;
 
 import jef.database.IQueryableEntity;
@@ -49,6 +50,8 @@ public final class CacheDummy  implements Cache{
 	}
 	public void onUpdate(String table, String where, List<Object> bind) {
 	}
+	public void onUpdate(String table, String where, List<Object> bind, Collection<String> columns) {
+	}
 	public boolean isDummy() {
 		return true;
 	}
@@ -1,20 +1,27 @@
 package jef.database.cache;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import jef.common.Pair;
 import jef.database.DbUtils;
 import jef.database.IQueryableEntity;
 import jef.database.ORMConfig;
 import jef.database.SelectProcessor;
 import jef.database.SqlProcessor;
 import jef.database.dialect.DatabaseDialect;
+import jef.database.jsqlparser.expression.Column;
 import jef.database.jsqlparser.expression.JdbcParameter;
 import jef.database.jsqlparser.expression.JpqlParameter;
 import jef.database.jsqlparser.expression.Table;
@@ -22,6 +29,7 @@ import jef.database.jsqlparser.statement.delete.Delete;
 import jef.database.jsqlparser.statement.insert.Insert;
 import jef.database.jsqlparser.statement.truncate.Truncate;
 import jef.database.jsqlparser.statement.update.Update;
+import jef.database.jsqlparser.visitor.Expression;
 import jef.database.jsqlparser.visitor.VisitorAdapter;
 import jef.database.meta.AbstractMetadata;
 import jef.database.meta.ITableMetadata;
@@ -67,6 +75,11 @@ public class CacheImpl implements Cache {
 
 	private DatabaseDialect profile;
 
+	/**
+	 * 内存预算，为null时不限制
+	 */
+	private final CacheBudget budget;
+
 	/**
 	 * 
 	 * 缓存实际上是三级Map。 第一级是以查询用的表（或多表）为key。 第二级是以where语句的模版为key
@@ -77,6 +90,42 @@ public class CacheImpl implements Cache {
 	 */
 	private final Map<String, Map<KeyDimension, DimCache>> cache = new ConcurrentHashMap<String, Map<KeyDimension, DimCache>>();
 
+	/**
+	 * 缓存了实体查询结果(记录了主键)的表空间及其实体
+	 */
+	private final Map<String, AbstractMetadata> trackedTables = new ConcurrentHashMap<String, AbstractMetadata>();
+
+	/**
+	 * 各表空间的失效版本，表中数据被修改(包括其他节点的修改)时递增。
+	 * 查询开始后版本发生变化的结果不放入缓存，避免修改前读出的旧数据在修改后才被放入缓存
+	 */
+	private final ConcurrentHashMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * 清除全部缓存的次数，计入每张表的失效版本
+	 */
+	private final AtomicLong epoch = new AtomicLong();
+
+	/**
+	 * 当前线程未命中的查询及其开始时的失效版本。查询中可能嵌套其他查询(如级联加载)，因此每个线程可以有多个
+	 */
+	private final ThreadLocal<Map<CacheKey, Long>> loading = new ThreadLocal<Map<CacheKey, Long>>();
+
+	/**
+	 * 一个线程上同时记录的查询数的上限。查询出错时不会调用onLoad，超过上限时丢弃之前的记录
+	 */
+	private static final int MAX_LOADING = 16;
+
+	/**
+	 * 当前线程上正在执行写操作的事务，其失效消息在事务提交后发出
+	 */
+	private final ThreadLocal<TransactionalCache> writer = new ThreadLocal<TransactionalCache>();
+
+	/**
+	 * 集群中其他节点的缓存失效通知，为null时不通知
+	 */
+	private volatile CacheInvalidator invalidator;
+
 	/**
 	 * 构造
 	 * 
@@ -88,6 +137,23 @@ public class CacheImpl implements Cache {
 	 *            缓存过期事件
 	 */
 	public CacheImpl(SqlProcessor sql, SelectProcessor selectp, int expireInterval, String name) {
+		this(sql, selectp, expireInterval, name, null);
+	}
+
+	/**
+	 * 构造
+	 * 
+	 * @param sql
+	 *            SQL处理器
+	 * @param selectp
+	 *            查询处理器
+	 * @param expireTime
+	 *            缓存过期事件
+	 * @param budget
+	 *            内存预算，所有维度的缓存共用。为null时不限制
+	 */
+	public CacheImpl(SqlProcessor sql, SelectProcessor selectp, int expireInterval, String name, CacheBudget budget) {
+		this.budget = budget;
 		this.preparedSqlProcessor = sql;
 		this.selectp = selectp;
 		this.expireInterval = expireInterval;
@@ -147,6 +213,7 @@ public class CacheImpl implements Cache {
 	public void evict(Class cls) {
 		AbstractMetadata meta = MetaHolder.getMeta(cls);
 		KeyDimension dim = meta.getPKDimension(profile);
+		bump(dim.getTableDefinition());
 		Map<KeyDimension, DimCache> tableSpace = this.cache.get(dim.getTableDefinition());
 		for (DimCache cache : tableSpace.values()) {
 			cache.clear();
@@ -154,8 +221,12 @@ public class CacheImpl implements Cache {
 	}
 
 	public void evictAll() {
+		epoch.incrementAndGet();
+		// 与evict(Class)一样逐个清空，不能直接丢弃DimCache，否则其中的结果仍然占用内存预算
 		for (Map<KeyDimension, DimCache> space : cache.values()) {
-			space.clear();
+			for (DimCache dc : space.values()) {
+				dc.clear();
+			}
 		}
 	}
 
@@ -179,17 +250,46 @@ public class CacheImpl implements Cache {
 		// 结果集太大不缓存
 		if (key == null)
 			return;
+		long version = getLoadingVersion(key);
 		if (result.size() > 5000)
 			return;
+		if (version != -1 && version != versionOf(key)) {
+			if (config.cacheDebug) {
+				logger.info("{}-Cache  Skip: {} changed during loading.", name, key);
+			}
+			return;
+		}
+		if (version == -1) {
+			// 没有记录查询开始时的版本，至少保证放入过程中发生的修改能被发现
+			version = versionOf(key);
+		}
 		DimCache dc;
 		{
+			AbstractMetadata meta = getTrackableMeta(key, clz);
 			Map<KeyDimension, DimCache> tableCache = getCreateTableCache(key.getStoreSpace());
 			dc = tableCache.get(key.getDimension());
 			if (dc == null) {
-				dc = expireInterval > 0 ? new DimCacheExpImpl(expireInterval) : new DimCacheImpl();
+				dc = newDimCache(key.getDimension(), key.getStoreSpace());
+				if (meta != null) {
+					dc.trackPrimaryKeys();
+				}
 				tableCache.put(key.getDimension(), dc);
 			}
-			dc.put(key.getParams(), ImmutableList.copyOf(result));
+			List<T> value = ImmutableList.copyOf(result);
+			dc.put(key.getParams(), value);
+			if (meta == null) {
+				dc.stopTrackingPrimaryKeys();
+			} else if (dc.isPrimaryKeyTracked()) {
+				trackedTables.put(key.getStoreSpace(), meta);
+				dc.index(key.getParams(), value);
+			}
+		}
+		// 放入后、记录主键前按主键清除的修改找不到这个结果。修改总是先递增版本再清除缓存，因此在记录主键之后检查版本：
+		// 版本未变则之后的清除一定能按主键找到它
+		if (version != versionOf(key)) {
+			// 放入时恰好被修改
+			dc.remove(key.getParams());
+			return;
 		}
 
 		if (key.getAffectedKey() != null) {
@@ -207,6 +307,18 @@ public class CacheImpl implements Cache {
 	public List load(CacheKey key) {
 		if (key == null)
 			return null;
+		if (budget != null) {
+			budget.recordAccess(CacheBudget.hash(key.getDimension(), key.getParams()));
+		}
+		// 在查询数据库之前记录失效版本，命中时移除
+		Map<CacheKey, Long> started = loading.get();
+		if (started == null) {
+			started = new IdentityHashMap<CacheKey, Long>();
+			loading.set(started);
+		} else if (started.size() >= MAX_LOADING) {
+			started.clear();
+		}
+		started.put(key, versionOf(key));
 		Map<KeyDimension, DimCache> tableCache = cache.get(key.getStoreSpace());
 		boolean debug = config.cacheDebug;
 		if (tableCache == null || tableCache.isEmpty()) {
@@ -224,6 +336,9 @@ public class CacheImpl implements Cache {
 			return null;
 		}
 		List list = dc.load(key.getParams());
+		if (list != null) {
+			started.remove(key);
+		}
 		if (debug) {
 			if (list == null) {
 				miss.getAndIncrement();
@@ -263,10 +378,12 @@ public class CacheImpl implements Cache {
 				dim = meta.getPKDimension(profile);
 			}
 			CacheKey pkCache = new SqlCacheKey(dim, pks);
+			notifyTable(pkCache.getStoreSpace());
 
 			Map<KeyDimension, DimCache> tableCache = getCreateTableCache(pkCache.getStoreSpace());
 			refreshCache(tableCache, pkCache, null);
 		} else {
+			notifyTable(meta.getTableName(false).toUpperCase());
 			Map<KeyDimension, DimCache> tableCache = cache.get(meta.getTableName(false).toUpperCase());
 			if (tableCache != null)
 				refreshCacheExcept(tableCache, null);
@@ -298,20 +415,135 @@ public class CacheImpl implements Cache {
 
 	public void onDelete(String table, String where, List<Object> object) {
 		CacheKey key = new SqlCacheKey(KeyDimension.forSingleTable(table, where, null, profile), object);
+		notifyChange(key, Collections.<String> emptySet());
 		Map<KeyDimension, DimCache> tableCache = this.cache.get(key.getStoreSpace());
 		if (tableCache == null || tableCache.isEmpty()) {
 			return;
 		}
-		refreshCache(tableCache, key, null);
+		invalidate(tableCache, key, Collections.<String> emptySet());
 	}
 
 	public void onUpdate(String table, String where, List<Object> object) {
+		onUpdate(table, where, object, null);
+	}
+
+	public void onUpdate(String table, String where, List<Object> object, Collection<String> columns) {
 		CacheKey key = new SqlCacheKey(KeyDimension.forSingleTable(table, where, null, profile), object);
+		notifyChange(key, columns);
 		Map<KeyDimension, DimCache> tableCache = this.cache.get(key.getStoreSpace());
 		if (tableCache == null || tableCache.isEmpty()) {
 			return;
 		}
-		refreshCache(tableCache, key, null);
+		invalidate(tableCache, key, columns);
+	}
+
+	/**
+	 * 按主键清除缓存。where条件按主键定位记录时(主键等于、单列主键IN、主键等于再加其他AND条件)，
+	 * 各维度中只清除含有这些记录的结果；其他维度在被更新的列可能改变其查询结果时全部清除。
+	 * where条件不是按主键定位，或者表中有未记录主键的结果时，和{@link #refreshCache}一样处理。
+	 * 
+	 * @param tableCache
+	 *            目标空间
+	 * @param key
+	 *            修改语句的where条件和参数
+	 * @param columns
+	 *            被更新的列，null表示未知。删除时为空集合
+	 */
+	private void invalidate(Map<KeyDimension, DimCache> tableCache, CacheKey key, Collection<String> columns) {
+		AbstractMetadata meta = trackedTables.get(key.getStoreSpace());
+		List<List<Object>> pks = meta == null ? null : toTargetedKeys(meta, key);
+		if (pks == null) {
+			refreshCache(tableCache, key, null);
+			return;
+		}
+		evictRows(tableCache, meta, pks, columns);
+		if (config.cacheDebug) {
+			logger.info("{}-Cache Evict by primary key: {} {}", name, key.getStoreSpace(), pks);
+		}
+	}
+
+	/*
+	 * 各维度中清除含有这些主键的结果，被更新的列可能改变其查询结果的维度全部清除
+	 */
+	private void evictRows(Map<KeyDimension, DimCache> tableCache, AbstractMetadata meta, Collection<List<Object>> pks, Collection<String> columns) {
+		KeyDimension pkDim = meta.getPKDimension(profile);
+		Set<String> changed = columns == null ? null : toColumnNames(columns);
+		for (Map.Entry<KeyDimension, DimCache> entry : tableCache.entrySet()) {
+			DimCache dc = entry.getValue();
+			if (!dc.isPrimaryKeyTracked() || mayGainRows(entry.getKey(), pkDim, changed)) {
+				// 串门的维度和未记录主键的维度不记录主键，一律失效
+				dc.clear();
+				continue;
+			}
+			for (List<Object> pk : pks) {
+				dc.removeByPrimaryKey(pk);
+			}
+		}
+	}
+
+	/*
+	 * where条件按主键定位记录时，返回各记录的主键，否则返回null
+	 */
+	private List<List<Object>> toTargetedKeys(AbstractMetadata meta, CacheKey key) {
+		KeyDimension pkDim = meta.getPKDimension(profile);
+		String where = key.getDimension().where;
+		String pkWhere = pkDim.where;
+		List<?> params = key.getParams();
+		int n = meta.getPKFields().size();
+		if (where == null || pkWhere == null || params.size() < n) {
+			return null;
+		}
+		if (where.equals(pkWhere) || (where.startsWith(pkWhere + " AND ") && !where.toUpperCase().contains(" OR "))) {
+			return Collections.singletonList(DimCache.normalize(params.subList(0, n)));
+		}
+		if (n == 1 && pkWhere.endsWith(" = ?") && !params.isEmpty()) {
+			StringBuilder in = new StringBuilder(pkWhere.length() + params.size() * 3);
+			in.append(pkWhere, 0, pkWhere.length() - 4).append(" IN (?");
+			for (int i = 1; i < params.size(); i++) {
+				in.append(", ?");
+			}
+			in.append(')');
+			if (where.equals(in.toString())) {
+				List<List<Object>> pks = new ArrayList<List<Object>>(params.size());
+				for (Object param : params) {
+					pks.add(DimCache.normalize(Collections.singletonList(param)));
+				}
+				return pks;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * 不含被修改记录的结果，在修改后是否可能含有这些记录(被更新的列出现在维度的条件或排序中)
+	 */
+	private static boolean mayGainRows(KeyDimension dim, KeyDimension pkDim, Set<String> changed) {
+		if (changed == null) {
+			return !dim.equals(pkDim) && dim.where != null && dim.where.length() > 0;
+		}
+		return !changed.isEmpty() && (containsAny(dim.where, changed) || containsAny(dim.order, changed));
+	}
+
+	private static boolean containsAny(String sql, Set<String> columns) {
+		if (sql == null) {
+			return false;
+		}
+		return !Collections.disjoint(toColumnNames(Arrays.asList(sql.split("[^A-Za-z0-9_$]+"))), columns);
+	}
+
+	private static Set<String> toColumnNames(Collection<String> names) {
+		Set<String> result = new HashSet<String>();
+		for (String name : names) {
+			String s = name.replaceAll("[^A-Za-z0-9_$.]", "");
+			int dot = s.lastIndexOf('.');
+			if (dot > -1) {
+				s = s.substring(dot + 1);
+			}
+			if (s.length() > 0) {
+				result.add(s.toUpperCase());
+			}
+		}
+		return result;
 	}
 
 	/**
@@ -333,7 +565,7 @@ public class CacheImpl implements Cache {
 
 		if (cache == null) {
 			if (obj != null) {// 添加缓存
-				cache = expireInterval > 0 ? new DimCacheExpImpl(expireInterval) : new DimCacheImpl();
+				cache = newDimCache(key.getDimension(), key.getStoreSpace());
 				cache.put(key.getParams(), Arrays.asList(obj));
 				if (config.cacheDebug)
 					logger.info("{}-Cache Store: {}", name, key);
@@ -374,6 +606,167 @@ public class CacheImpl implements Cache {
 		}
 	}
 
+	/**
+	 * 处理其他节点发来的修改
+	 * 
+	 * @param change
+	 */
+	void applyRemote(InvalidationEvent.Change change) {
+		evictChange(change);
+		if (config.cacheDebug) {
+			logger.info("{}-Cache Evict by remote: {}", name, change);
+		}
+	}
+
+	/**
+	 * 处理事务中暂存的修改：事务提交后再清除一次本节点的缓存，然后通知其他节点
+	 * 
+	 * @param change
+	 * @see TransactionalCache
+	 */
+	void applyCommitted(InvalidationEvent.Change change) {
+		// 修改后、提交前读到的仍是修改前的数据，可能已被放回缓存
+		evictChange(change);
+		CacheInvalidator inv = invalidator;
+		if (inv != null) {
+			inv.add(change.getTable(), change.getKeys(), change.getColumns());
+		}
+	}
+
+	private void evictChange(InvalidationEvent.Change change) {
+		String table = change.getTable();
+		bump(table);
+		Map<KeyDimension, DimCache> tableCache = cache.get(table);
+		if (tableCache == null || tableCache.isEmpty()) {
+			return;
+		}
+		AbstractMetadata meta = trackedTables.get(table);
+		if (meta == null || change.getKeys() == null) {
+			refreshCacheExcept(tableCache, null);
+		} else {
+			evictRows(tableCache, meta, change.getKeys(), change.getColumns());
+		}
+	}
+
+	/*
+	 * 当前线程上的写操作开始以事务的名义执行，返回之前的事务
+	 */
+	TransactionalCache beginWrite(TransactionalCache tx) {
+		TransactionalCache old = writer.get();
+		writer.set(tx);
+		return old;
+	}
+
+	void endWrite(TransactionalCache old) {
+		if (old == null) {
+			writer.remove();
+		} else {
+			writer.set(old);
+		}
+	}
+
+	/*
+	 * 按主键或条件修改了表中的记录
+	 */
+	private void notifyChange(CacheKey key, Collection<String> columns) {
+		bump(key.getStoreSpace());
+		CacheInvalidator inv = invalidator;
+		TransactionalCache tx = writer.get();
+		if (inv != null || tx != null) {
+			AbstractMetadata meta = trackedTables.get(key.getStoreSpace());
+			if (meta == null) {
+				meta = MetaHolder.lookup(null, key.getStoreSpace());
+			}
+			List<List<Object>> pks = null;
+			if (meta != null && !meta.getPKFields().isEmpty() && meta.getTableName(false).equalsIgnoreCase(key.getStoreSpace())) {
+				pks = toTargetedKeys(meta, key);
+			}
+			if (tx != null) {
+				tx.defer(key.getStoreSpace(), pks, columns);
+			} else {
+				inv.add(key.getStoreSpace(), pks, columns);
+			}
+		}
+	}
+
+	/*
+	 * 表中的记录有增加，或者无法得知修改了哪些记录
+	 */
+	private void notifyTable(String table) {
+		bump(table);
+		TransactionalCache tx = writer.get();
+		CacheInvalidator inv = invalidator;
+		if (tx != null) {
+			tx.defer(table, null, null);
+		} else if (inv != null) {
+			inv.add(table, null, null);
+		}
+	}
+
+	private void bump(String table) {
+		AtomicLong v = versions.get(table);
+		if (v == null) {
+			v = new AtomicLong();
+			AtomicLong old = versions.putIfAbsent(table, v);
+			if (old != null) {
+				v = old;
+			}
+		}
+		v.incrementAndGet();
+	}
+
+	/*
+	 * 查询所涉及的各表的失效版本之和
+	 */
+	private long versionOf(CacheKey key) {
+		long result = epoch.get() + versionOf(key.getStoreSpace());
+		List<String> affected = key.getAffectedKey();
+		if (affected != null) {
+			for (String table : affected) {
+				result += versionOf(table);
+			}
+		}
+		return result;
+	}
+
+	private long versionOf(String table) {
+		AtomicLong v = versions.get(table);
+		return v == null ? 0 : v.get();
+	}
+
+	/*
+	 * 当前线程查询该key之前记录的失效版本，未记录时返回-1
+	 */
+	private long getLoadingVersion(CacheKey key) {
+		Map<CacheKey, Long> started = loading.get();
+		Long version = started == null ? null : started.remove(key);
+		return version == null ? -1 : version;
+	}
+
+	/*
+	 * 单表查询本表实体的结果，可以记录其中的主键
+	 */
+	private AbstractMetadata getTrackableMeta(CacheKey key, Class<?> clz) {
+		if (clz == null || !IQueryableEntity.class.isAssignableFrom(clz)) {
+			return null;
+		}
+		if (key.getAffectedKey() != null && !key.getAffectedKey().isEmpty()) {
+			return null;
+		}
+		AbstractMetadata meta = MetaHolder.getMeta(clz);
+		if (meta.getPKFields().isEmpty() || !meta.getTableName(false).equalsIgnoreCase(key.getStoreSpace())) {
+			return null;
+		}
+		return meta;
+	}
+
+	private DimCache newDimCache(KeyDimension dim, String table) {
+		if (budget != null) {
+			return new DimCacheBudgetImpl(budget, dim, table, expireInterval);
+		}
+		return expireInterval > 0 ? new DimCacheExpImpl(expireInterval) : new DimCacheImpl();
+	}
+
 	private Map<KeyDimension, DimCache> getCreateTableCache(String table) {
 		Map<KeyDimension, DimCache> tableCache = this.cache.get(table);
 		if (tableCache == null) {
@@ -390,6 +783,7 @@ public class CacheImpl implements Cache {
 	public void process(Truncate st, List<Object> list) {
 		Table t = st.getTable();
 		String tableName = t.getName().toUpperCase();
+		notifyTable(tableName);
 		Map<KeyDimension, DimCache> tableCache = this.cache.get(tableName);
 		if (tableCache != null) {
 			refreshCacheExcept(tableCache, null);
@@ -401,19 +795,21 @@ public class CacheImpl implements Cache {
 			Table t = (Table) st.getTable();
 			KeyDimension dim = new KeyDimension(t, st.getWhere(), null);
 			CacheKey key = new SqlCacheKey(dim, list);
+			notifyChange(key, Collections.<String> emptySet());
 			Map<KeyDimension, DimCache> tableCache = this.cache.get(key.getStoreSpace());
 
 			if (tableCache == null)
 				return;
 			// 删除了该表中的若干数据
-			// 该表相关缓存中，除了相同维度，且未被删除的数据之外，全部清除。
-			refreshCache(tableCache, key, null);
+			// 按主键删除时只清除含有这些记录的结果，否则该表相关缓存中，除了相同维度，且未被删除的数据之外，全部清除。
+			invalidate(tableCache, key, Collections.<String> emptySet());
 		}
 	}
 
 	public void process(Insert st, List<Object> list) {
 		if (st.getTable() instanceof Table) {
 			Table t = (Table) st.getTable();
+			notifyTable(t.getName().toUpperCase());
 			Map<KeyDimension, DimCache> tableCache = this.cache.get(t.getName().toUpperCase());
 			if (tableCache == null)
 				return;
@@ -431,14 +827,12 @@ public class CacheImpl implements Cache {
 	public void process(Update st, List<Object> list) {
 		if (st.getTable() instanceof Table) {
 			Table t = (Table) st.getTable();
-
 			Map<KeyDimension, DimCache> tableCache = this.cache.get(t.getName().toUpperCase());
-			if (tableCache == null)
-				return;
-
 			AbstractMetadata meta = MetaHolder.lookup(t.getSchemaName(), t.getName());
-			if (meta == null) {
-				refreshCacheExcept(tableCache, null);
+			if (meta == null || st.getWhere() == null) {
+				notifyTable(t.getName().toUpperCase());
+				if (tableCache != null)
+					refreshCacheExcept(tableCache, null);
 				return;
 			}
 
@@ -456,7 +850,13 @@ public class CacheImpl implements Cache {
 				}
 			});
 			CacheKey key = new SqlCacheKey(dim, list.subList(list.size() - count.get(), list.size()));
-			refreshCache(tableCache, key, null);
+			List<String> columns = new ArrayList<String>(st.getSets().size());
+			for (Pair<Column, Expression> set : st.getSets()) {
+				columns.add(set.first.getColumnName());
+			}
+			notifyChange(key, columns);
+			if (tableCache != null)
+				invalidate(tableCache, key, columns);
 		}
 	}
 
@@ -477,6 +877,53 @@ public class CacheImpl implements Cache {
 		return miss.get();
 	}
 
+	/**
+	 * 设置集群中各节点之间的失效消息总线。本节点的修改按表合并后每隔interval毫秒发出一次，
+	 * 收到其他节点的消息时清除相应的缓存。原有的总线会被关闭
+	 * 
+	 * @param bus
+	 *            消息总线，为null时停止通知
+	 * @param interval
+	 *            发送周期，单位毫秒。为0时每次修改立即发送
+	 */
+	public synchronized void setInvalidationBus(InvalidationBus bus, int interval) {
+		CacheInvalidator old = this.invalidator;
+		this.invalidator = bus == null ? null : new CacheInvalidator(this, bus, interval);
+		if (old != null) {
+			old.close();
+		}
+	}
+
+	/**
+	 * 立即发出尚未发出的失效消息
+	 */
+	public void flushInvalidation() {
+		CacheInvalidator inv = invalidator;
+		if (inv != null) {
+			inv.flush();
+		}
+	}
+
+	/**
+	 * 发出剩余的失效消息，关闭消息总线
+	 */
+	public void close() {
+		setInvalidationBus(null, 0);
+	}
+
+	CacheInvalidator getInvalidator() {
+		return invalidator;
+	}
+
+	/**
+	 * 内存预算
+	 * 
+	 * @return 未限制内存时返回null
+	 */
+	public CacheBudget getBudget() {
+		return budget;
+	}
+
 	@Override
 	public <T> T unwrap(Class<T> cls) {
 		return (T)this;
@@ -0,0 +1,202 @@
+package jef.database.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 在{@link CacheImpl}和{@link InvalidationBus}之间收发失效消息。
+ * <p>
+ * 发送：本节点的修改先按表合并(同一张表的主键合并为一个集合，整表失效吸收该表的其他修改)，
+ * 每隔一个发送周期作为一条消息发出。周期为0时每次修改立即发送。<br>
+ * 接收：忽略本节点发出的消息，按版本号检查各节点的消息是否有丢失，有丢失时清除全部缓存。
+ *
+ * @author jiyi
+ */
+final class CacheInvalidator implements InvalidationListener {
+	private static final Logger log = LoggerFactory.getLogger(CacheInvalidator.class);
+
+	/**
+	 * 一张表在一个周期内最多记录的主键数，超过后整表失效
+	 */
+	static final int MAX_KEYS = 1000;
+
+	private final CacheImpl cache;
+	private final InvalidationBus bus;
+	private final String source = UUID.randomUUID().toString();
+	private final AtomicLong sequence = new AtomicLong();
+	private final ScheduledExecutorService flusher;
+	private final Object publishLock = new Object();
+
+	/**
+	 * 待发送的修改，表名 -> 修改
+	 */
+	private Map<String, InvalidationEvent.Change> pending = new LinkedHashMap<String, InvalidationEvent.Change>();
+
+	/**
+	 * 各节点最近收到的消息版本
+	 */
+	private final ConcurrentHashMap<String, AtomicLong> received = new ConcurrentHashMap<String, AtomicLong>();
+
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong applied = new AtomicLong();
+	private final AtomicLong gaps = new AtomicLong();
+
+	/**
+	 * 构造
+	 *
+	 * @param cache
+	 *            本节点的缓存
+	 * @param bus
+	 *            消息总线
+	 * @param interval
+	 *            发送周期，单位毫秒
+	 */
+	CacheInvalidator(CacheImpl cache, InvalidationBus bus, int interval) {
+		this.cache = cache;
+		this.bus = bus;
+		if (interval > 0) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "cache-invalidation-flush");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			executor.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					try {
+						flush();
+					} catch (RuntimeException e) {
+						log.error("Publish cache invalidation error", e);
+					}
+				}
+			}, interval, interval, TimeUnit.MILLISECONDS);
+			this.flusher = executor;
+		} else {
+			this.flusher = null;
+		}
+		bus.start(this);
+	}
+
+	/**
+	 * 记录一次修改
+	 *
+	 * @param table
+	 *            表空间
+	 * @param keys
+	 *            被修改记录的主键，null表示整表失效
+	 * @param columns
+	 *            被更新的列，null表示未知
+	 */
+	void add(String table, Collection<List<Object>> keys, Collection<String> columns) {
+		synchronized (this) {
+			InvalidationEvent.Change change = pending.get(table);
+			if (change == null) {
+				boolean tableOnly = keys == null || keys.size() > MAX_KEYS;
+				pending.put(table, new InvalidationEvent.Change(table, tableOnly ? null : new HashSet<List<Object>>(keys), columns == null ? null : new HashSet<String>(columns)));
+			} else {
+				change.merge(keys, columns, MAX_KEYS);
+			}
+		}
+		if (flusher == null) {
+			flush();
+		}
+	}
+
+	/**
+	 * 立即发出待发送的修改
+	 */
+	void flush() {
+		// 按版本号的顺序发出，避免接收方误认为消息丢失
+		synchronized (publishLock) {
+			List<InvalidationEvent.Change> changes;
+			synchronized (this) {
+				if (pending.isEmpty()) {
+					return;
+				}
+				changes = new ArrayList<InvalidationEvent.Change>(pending.values());
+				pending = new LinkedHashMap<String, InvalidationEvent.Change>();
+			}
+			bus.publish(new InvalidationEvent(source, sequence.incrementAndGet(), changes));
+			published.incrementAndGet();
+		}
+	}
+
+	public void onEvent(InvalidationEvent event) {
+		if (source.equals(event.getSource())) {
+			return;
+		}
+		AtomicLong last = received.get(event.getSource());
+		if (last == null) {
+			last = new AtomicLong();
+			AtomicLong old = received.putIfAbsent(event.getSource(), last);
+			if (old != null) {
+				last = old;
+			}
+		}
+		long prev;
+		long version = event.getVersion();
+		do {
+			prev = last.get();
+		} while (version > prev && !last.compareAndSet(prev, version));
+		if (prev > 0 && version > prev + 1) {
+			// 中间的消息丢失，无法得知修改了哪些记录
+			gaps.incrementAndGet();
+			log.warn("Cache invalidation events {}~{} from {} lost, evict all.", prev + 1, version - 1, event.getSource());
+			cache.evictAll();
+		}
+		for (InvalidationEvent.Change change : event.getChanges()) {
+			cache.applyRemote(change);
+		}
+		applied.incrementAndGet();
+	}
+
+	/**
+	 * 发出剩余的修改，关闭总线
+	 */
+	void close() {
+		if (flusher != null) {
+			flusher.shutdown();
+		}
+		try {
+			flush();
+		} finally {
+			bus.close();
+		}
+	}
+
+	/**
+	 * 已发出的消息数
+	 */
+	long getPublishedCount() {
+		return published.get();
+	}
+
+	/**
+	 * 已处理的其他节点的消息数
+	 */
+	long getAppliedCount() {
+		return applied.get();
+	}
+
+	/**
+	 * 发现消息丢失的次数
+	 */
+	long getGapCount() {
+		return gaps.get();
+	}
+}
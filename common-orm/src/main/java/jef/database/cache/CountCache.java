@@ -0,0 +1,123 @@
+package jef.database.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jef.database.wrapper.clause.BindSql;
+import jef.database.wrapper.clause.CountClause;
+
+/**
+ * 分页查询的count结果缓存，每个DbClient持有一个。
+ * <p>
+ * 以count语句和绑定参数为键，在指定的时间内直接返回上次的结果，适用于翻页时总数可以有短时间误差的场景。
+ * 缓存不会因数据修改而失效，因此时间应当设得较短(如几秒)。 最多缓存{@value #MAX_SIZE}个结果，超出时先清除过期的结果，仍然超出则全部清空。
+ *
+ * @see jef.database.DbCfg#DB_PAGE_COUNT_CACHE_TTL
+ */
+public final class CountCache {
+	static final int MAX_SIZE = 1024;
+
+	private final Map<Object, Entry> counts = new ConcurrentHashMap<Object, Entry>();
+
+	/**
+	 * 得到缓存的结果
+	 *
+	 * @param key
+	 *            缓存键
+	 * @return 缓存的结果，没有或已过期时返回null
+	 */
+	public Long get(Object key) {
+		Entry e = counts.get(key);
+		if (e == null) {
+			return null;
+		}
+		if (e.expireAt < System.currentTimeMillis()) {
+			counts.remove(key);
+			return null;
+		}
+		return e.count;
+	}
+
+	/**
+	 * 缓存结果
+	 *
+	 * @param key
+	 *            缓存键
+	 * @param count
+	 *            记录数
+	 * @param ttl
+	 *            缓存时间(毫秒)
+	 */
+	public void put(Object key, long count, long ttl) {
+		if (ttl <= 0) {
+			return;
+		}
+		if (counts.size() >= MAX_SIZE) {
+			evictExpired();
+			if (counts.size() >= MAX_SIZE) {
+				counts.clear();
+			}
+		}
+		counts.put(key, new Entry(count, System.currentTimeMillis() + ttl));
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		counts.clear();
+	}
+
+	/**
+	 * 缓存的结果数，含已过期尚未清除的
+	 *
+	 * @return
+	 */
+	public int size() {
+		return counts.size();
+	}
+
+	/**
+	 * 由count语句和绑定参数生成缓存键
+	 *
+	 * @param sqls
+	 * @return 缓存键，参数不是常量时无法缓存，返回null
+	 */
+	public static Object toKey(CountClause sqls) {
+		List<Object> key = new ArrayList<Object>();
+		try {
+			for (Map.Entry<String, List<BindSql>> entry : sqls.getSqls().entrySet()) {
+				key.add(entry.getKey());
+				for (BindSql bs : entry.getValue()) {
+					key.add(bs.getSql());
+					key.add(CacheImpl.toParamList(bs.getBind()));
+				}
+			}
+		} catch (UnsupportedOperationException e) {
+			return null;
+		}
+		return key;
+	}
+
+	private void evictExpired() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Entry> iter = counts.values().iterator(); iter.hasNext();) {
+			if (iter.next().expireAt < now) {
+				iter.remove();
+			}
+		}
+	}
+
+	private static final class Entry {
+		private final long count;
+		private final long expireAt;
+
+		Entry(long count, long expireAt) {
+			this.count = count;
+			this.expireAt = expireAt;
+		}
+	}
+}
@@ -1,8 +1,23 @@
 package jef.database.cache;
 
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jef.database.DbUtils;
+import jef.database.IQueryableEntity;
 
 public abstract class DimCache {
+	/**
+	 * 主键 -> 结果中含有该主键的查询参数。为null表示不记录(结果不是本表的实体，无法得知含有哪些记录)
+	 */
+	private volatile ConcurrentHashMap<List<Object>, Set<List<?>>> pkIndex;
+
 	/**
 	 * 加载缓存
 	 * @param params
@@ -26,4 +41,133 @@ public abstract class DimCache {
 	 * 清除缓存
 	 */
 	public abstract void clear();
+
+	/**
+	 * 开始记录各结果中含有的主键，之后放入的结果需要调用{@link #index(List, List)}
+	 */
+	final void trackPrimaryKeys() {
+		pkIndex = new ConcurrentHashMap<List<Object>, Set<List<?>>>();
+	}
+
+	/**
+	 * 停止记录主键，之后这个维度的缓存在表中数据变化时全部清除
+	 */
+	final void stopTrackingPrimaryKeys() {
+		pkIndex = null;
+	}
+
+	/**
+	 * 是否记录了各结果中含有的主键
+	 * @return
+	 */
+	final boolean isPrimaryKeyTracked() {
+		return pkIndex != null;
+	}
+
+	/**
+	 * 记录结果中含有的主键。有无法取得主键的结果时，停止记录
+	 * @param params 查询参数
+	 * @param obj    查询结果
+	 */
+	final void index(List<?> params, List<?> obj) {
+		ConcurrentHashMap<List<Object>, Set<List<?>>> index = pkIndex;
+		if (index == null) {
+			return;
+		}
+		for (Object o : obj) {
+			List<Serializable> pk = o instanceof IQueryableEntity ? DbUtils.getPKValueSafe((IQueryableEntity) o) : null;
+			if (pk == null) {
+				pkIndex = null;
+				return;
+			}
+			// 和unindex一样在compute中修改，避免加入正被移除的空集合
+			index.compute(normalize(pk), (k, entries) -> {
+				if (entries == null) {
+					entries = Collections.newSetFromMap(new ConcurrentHashMap<List<?>, Boolean>());
+				}
+				entries.add(params);
+				return entries;
+			});
+		}
+	}
+
+	/**
+	 * 清除含有指定主键的结果
+	 * @param pk 主键值，需经过{@link #normalize(List)}
+	 */
+	final void removeByPrimaryKey(List<Object> pk) {
+		ConcurrentHashMap<List<Object>, Set<List<?>>> index = pkIndex;
+		if (index == null) {
+			return;
+		}
+		Set<List<?>> entries = index.remove(pk);
+		if (entries != null) {
+			for (List<?> params : entries) {
+				remove(params);
+			}
+		}
+	}
+
+	/**
+	 * 结果被删除时，从主键记录中去掉。不再被任何结果含有的主键一并去掉
+	 * @param params 查询参数
+	 * @param obj    被删除的结果，可以为null
+	 */
+	protected final void unindex(List<?> params, List<?> obj) {
+		ConcurrentHashMap<List<Object>, Set<List<?>>> index = pkIndex;
+		if (index == null || obj == null) {
+			return;
+		}
+		for (Object o : obj) {
+			List<Serializable> pk = o instanceof IQueryableEntity ? DbUtils.getPKValueSafe((IQueryableEntity) o) : null;
+			if (pk != null) {
+				index.computeIfPresent(normalize(pk), (k, entries) -> {
+					entries.remove(params);
+					return entries.isEmpty() ? null : entries;
+				});
+			}
+		}
+	}
+
+	/**
+	 * 记录了的主键个数
+	 * @return
+	 */
+	final int indexSize() {
+		ConcurrentHashMap<List<Object>, Set<List<?>>> index = pkIndex;
+		return index == null ? 0 : index.size();
+	}
+
+	/**
+	 * 清除全部主键记录
+	 */
+	protected final void clearIndex() {
+		ConcurrentHashMap<List<Object>, Set<List<?>>> index = pkIndex;
+		if (index != null) {
+			index.clear();
+		}
+	}
+
+	/**
+	 * 统一主键值的类型，使实体中的主键和更新语句中的绑定参数可以比较。整数统一为Long
+	 * @param pk
+	 * @return
+	 */
+	static List<Object> normalize(List<?> pk) {
+		List<Object> result = new ArrayList<Object>(pk.size());
+		for (Object v : pk) {
+			if (v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte) {
+				v = ((Number) v).longValue();
+			} else if (v instanceof BigInteger && ((BigInteger) v).bitLength() < 64) {
+				v = ((BigInteger) v).longValue();
+			} else if (v instanceof BigDecimal) {
+				BigDecimal d = ((BigDecimal) v).stripTrailingZeros();
+				if (d.scale() <= 0 && d.precision() - d.scale() < 19) {
+					v = d.longValue();
+				}
+			}
+			result.add(v);
+		}
+		return result;
+	}
 }
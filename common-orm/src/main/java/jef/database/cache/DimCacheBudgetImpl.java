@@ -0,0 +1,114 @@
+package jef.database.cache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jef.database.cache.CacheBudget.Node;
+
+/**
+ * 缓存存储的最后一道，占用的内存计入{@link CacheBudget}
+ *
+ * 参数 <-> 缓存
+ * @author jiyi
+ *
+ */
+final class DimCacheBudgetImpl extends DimCache {
+	private final Map<List<?>, Node> sqlCache = new ConcurrentHashMap<List<?>, Node>();
+	private final CacheBudget budget;
+	private final KeyDimension dimension;
+	private final String table;
+	private final long expireMillis;
+
+	/**
+	 * 构造
+	 * @param budget 内存预算
+	 * @param dimension 维度
+	 * @param table 缓存所在的表空间，用于计算单表配额
+	 * @param seconds 缓存过期时间，单位秒，0表示不过期
+	 */
+	DimCacheBudgetImpl(CacheBudget budget, KeyDimension dimension, String table, int seconds) {
+		this.budget = budget;
+		this.dimension = dimension;
+		this.table = table;
+		this.expireMillis = seconds * 1000L;
+	}
+
+	/**
+	 * 加载缓存
+	 * @param params
+	 * @return
+	 */
+	public List<?> load(List<?> params) {
+		Node node = sqlCache.get(params);
+		if (node == null) {
+			return null;
+		}
+		if (node.isExpired(budget.now())) {
+			if (sqlCache.remove(params, node)) {
+				budget.release(node);
+				unindex(params, node.value);
+			}
+			return null;
+		}
+		budget.touch(node);
+		return node.value;
+	}
+
+	/**
+	 * 删除缓存
+	 * @param params
+	 */
+	public void remove(List<?> params) {
+		Node node = sqlCache.remove(params);
+		if (node != null) {
+			budget.release(node);
+			unindex(params, node.value);
+		}
+	}
+
+	/**
+	 * 将结果放入缓存，访问频率不够高时不缓存
+	 * @param params 查询参数
+	 * @param obj    查询结果（不可修改的List）
+	 */
+	public void put(List<?> params, List<?> obj) {
+		long expireAt = expireMillis > 0 ? budget.now() + expireMillis : 0;
+		Node node = new Node(this, params, obj, table, CacheBudget.hash(dimension, params), CacheBudget.weigh(params, obj), expireAt);
+		if (!budget.admit(node)) {
+			// 不缓存新结果，之前的结果也已过时
+			remove(params);
+		}
+	}
+
+	/*
+	 * 准入后由预算在持有锁时放入
+	 */
+	void publish(Node node) {
+		budget.release(sqlCache.put(node.params, node));
+	}
+
+	/*
+	 * 被预算清除，此时节点已经移出队列
+	 */
+	void evict(Node node) {
+		if (sqlCache.remove(node.params, node)) {
+			unindex(node.params, node.value);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return sqlCache.toString();
+	}
+
+	@Override
+	public void clear() {
+		for (Map.Entry<List<?>, Node> e : sqlCache.entrySet()) {
+			if (sqlCache.remove(e.getKey(), e.getValue())) {
+				budget.release(e.getValue());
+			}
+		}
+		clearIndex();
+	}
+}
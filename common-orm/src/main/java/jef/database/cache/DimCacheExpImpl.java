@@ -3,7 +3,10 @@ package jef.database.cache;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import com.google.common.base.Ticker;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 
 /**
  * 缓存存储的最后一道
@@ -21,7 +24,21 @@ final class DimCacheExpImpl extends DimCache{
 	 * @param seconds 缓存过期时间，单位秒
 	 */
 	DimCacheExpImpl(int seconds){
-		sqlCache=CacheBuilder.newBuilder().expireAfterWrite(seconds, TimeUnit.SECONDS).build();
+		this(seconds, Ticker.systemTicker());
+	}
+
+	/**
+	 * 构造
+	 * @param seconds 缓存过期时间，单位秒
+	 * @param ticker  计时
+	 */
+	DimCacheExpImpl(int seconds, Ticker ticker){
+		// 过期、删除和替换的结果都要从主键记录中去掉，否则过期结果的主键会一直留在记录中
+		sqlCache=CacheBuilder.newBuilder().expireAfterWrite(seconds, TimeUnit.SECONDS).ticker(ticker).removalListener(new RemovalListener<List<?>, List<?>>() {
+			public void onRemoval(RemovalNotification<List<?>, List<?>> notification) {
+				unindex(notification.getKey(), notification.getValue());
+			}
+		}).build();
 	}
 	
 	/**
@@ -55,9 +72,17 @@ final class DimCacheExpImpl extends DimCache{
 		return sqlCache.toString();
 	}
 
+	/**
+	 * 清理已过期的结果。过期的结果通常在之后的读写中才会清理
+	 */
+	void cleanUp() {
+		sqlCache.cleanUp();
+	}
+
 	@Override
 	public void clear() {
 		sqlCache.invalidateAll();
+		clearIndex();
 	}
 	
 	
@@ -29,7 +29,7 @@ final class DimCacheImpl extends DimCache{
 	 * @param params
 	 */
 	public void remove(List<?> params) {
-		sqlCache.remove(params);
+		unindex(params, sqlCache.remove(params));
 	}
 
 	/**
@@ -49,5 +49,6 @@ final class DimCacheImpl extends DimCache{
 	@Override
 	public void clear() {
 		sqlCache.clear();
+		clearIndex();
 	}
 }
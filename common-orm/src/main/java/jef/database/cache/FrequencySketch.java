@@ -0,0 +1,89 @@
+package jef.database.cache;
+
+/**
+ * 访问频率的近似统计(Count-Min Sketch)，每个计数器4位，最大计到15。
+ * <p>
+ * 计数总次数达到计数器数量的10倍时，所有计数器减半，使旧的访问频率逐渐衰减。
+ * 计数不加锁，并发下偶尔丢失计数不影响其作为缓存准入依据的作用。
+ *
+ * @author jiyi
+ *
+ */
+final class FrequencySketch {
+	private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+	private static final long RESET_MASK = 0x7777777777777777L;
+
+	private final long[] table;
+	private final int counterMask;
+	private final int sampleSize;
+	private int additions;
+
+	/**
+	 * 构造
+	 *
+	 * @param counters
+	 *            计数器数量，会向上取为2的幂
+	 */
+	FrequencySketch(int counters) {
+		int n = Integer.highestOneBit(Math.max(counters, 64) - 1) << 1;
+		n = Math.min(n, 1 << 26);
+		this.table = new long[n >>> 4];
+		this.counterMask = n - 1;
+		this.sampleSize = n * 10;
+	}
+
+	/**
+	 * 记录一次访问
+	 *
+	 * @param hash
+	 */
+	void increment(int hash) {
+		boolean added = false;
+		for (int i = 0; i < SEEDS.length; i++) {
+			added |= incrementAt(indexOf(hash, i));
+		}
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 * 估算的访问次数
+	 *
+	 * @param hash
+	 * @return 0~15
+	 */
+	int frequency(int hash) {
+		int freq = 15;
+		for (int i = 0; i < SEEDS.length; i++) {
+			int index = indexOf(hash, i);
+			int count = (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 0xfL);
+			freq = Math.min(freq, count);
+		}
+		return freq;
+	}
+
+	private boolean incrementAt(int index) {
+		int i = index >>> 4;
+		int offset = (index & 15) << 2;
+		long mask = 0xfL << offset;
+		if ((table[i] & mask) != mask) {
+			table[i] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	private int indexOf(int hash, int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return (int) h & counterMask;
+	}
+
+	private void reset() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		additions = additions >>> 1;
+	}
+}
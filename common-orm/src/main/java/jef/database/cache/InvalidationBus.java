@@ -0,0 +1,34 @@
+package jef.database.cache;
+
+/**
+ * 二级缓存的失效消息总线。
+ * <p>
+ * 集群中每个节点都有自己的二级缓存，一个节点修改了数据库后，通过总线通知其他节点清除相应的缓存。
+ * 实现类负责消息的传输，可以基于UDP、消息队列等，也可以是JVM内部的{@link LoopbackInvalidationBus}。
+ * 消息的合并和版本检查由缓存负责，实现类只需尽量把消息送达其他节点，不需要保证顺序，也不需要去重。
+ * <p>
+ * 实现类需要有一个无参的构造方法，才能通过{@link jef.database.DbCfg#CACHE_GLOBAL_INVALIDATION_BUS}配置。
+ *
+ * @author jiyi
+ * @see UdpInvalidationBus
+ */
+public interface InvalidationBus {
+	/**
+	 * 开始接收其他节点的消息
+	 *
+	 * @param listener
+	 */
+	void start(InvalidationListener listener);
+
+	/**
+	 * 向其他节点发送消息
+	 *
+	 * @param event
+	 */
+	void publish(InvalidationEvent event);
+
+	/**
+	 * 停止接收，释放资源
+	 */
+	void close();
+}
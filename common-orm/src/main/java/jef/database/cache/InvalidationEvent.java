@@ -0,0 +1,303 @@
+package jef.database.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 二级缓存的失效消息，由一个节点在一个发送周期内的全部修改合并而成。
+ * <p>
+ * 每个节点发出的消息带有递增的版本号，接收方据此发现丢失的消息(版本号不连续)。
+ * 消息只用于清除缓存，不携带数据，因此迟到或重复的消息只会多清除一些结果，不会把旧数据放回缓存。
+ *
+ * @author jiyi
+ * @see InvalidationBus
+ */
+public final class InvalidationEvent implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int MAGIC = 0x45464356;
+	private static final int MAX_STRING = 8192;
+
+	private final String source;
+	private final long version;
+	private final List<Change> changes;
+
+	/**
+	 * 构造
+	 *
+	 * @param source
+	 *            发出消息的节点
+	 * @param version
+	 *            该节点发出的消息序号，从1开始递增
+	 * @param changes
+	 *            各表的修改
+	 */
+	public InvalidationEvent(String source, long version, List<Change> changes) {
+		this.source = source;
+		this.version = version;
+		this.changes = Collections.unmodifiableList(changes);
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public List<Change> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * 编码为二进制，用于网络传输。主键值只支持整数、字符串、浮点数和BigDecimal，
+	 * 含有其他类型主键的表按整表失效编码
+	 *
+	 * @return
+	 */
+	public byte[] toBytes() {
+		return toBytes(false);
+	}
+
+	/**
+	 * 编码为二进制
+	 *
+	 * @param tableOnly
+	 *            为true时不编码主键，全部按整表失效，用于消息过长的场合
+	 * @return
+	 */
+	public byte[] toBytes(boolean tableOnly) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeUTF(source);
+			out.writeLong(version);
+			out.writeInt(changes.size());
+			for (Change c : changes) {
+				out.writeUTF(c.table);
+				Set<List<Object>> keys = tableOnly || !isEncodable(c.keys) ? null : c.keys;
+				if (keys == null) {
+					out.writeInt(-1);
+				} else {
+					out.writeInt(keys.size());
+					for (List<Object> key : keys) {
+						out.writeInt(key.size());
+						for (Object v : key) {
+							writeValue(out, v);
+						}
+					}
+				}
+				// 整表失效时不需要列
+				Set<String> columns = keys == null ? null : c.columns;
+				if (columns == null) {
+					out.writeInt(-1);
+				} else {
+					out.writeInt(columns.size());
+					for (String column : columns) {
+						out.writeUTF(column);
+					}
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * 从二进制解码
+	 *
+	 * @param data
+	 * @param offset
+	 * @param length
+	 * @return
+	 * @throws IOException
+	 *             格式不正确
+	 */
+	public static InvalidationEvent fromBytes(byte[] data, int offset, int length) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a cache invalidation event.");
+		}
+		String source = in.readUTF();
+		long version = in.readLong();
+		int count = checkSize(in.readInt(), length);
+		List<Change> changes = new ArrayList<Change>(count);
+		for (int i = 0; i < count; i++) {
+			String table = in.readUTF();
+			int keyCount = in.readInt();
+			Set<List<Object>> keys = null;
+			if (keyCount >= 0) {
+				keys = new HashSet<List<Object>>(checkSize(keyCount, length) * 2);
+				for (int k = 0; k < keyCount; k++) {
+					int n = checkSize(in.readInt(), length);
+					List<Object> key = new ArrayList<Object>(n);
+					for (int j = 0; j < n; j++) {
+						key.add(readValue(in));
+					}
+					keys.add(key);
+				}
+			}
+			int columnCount = in.readInt();
+			Set<String> columns = null;
+			if (columnCount >= 0) {
+				columns = new HashSet<String>(checkSize(columnCount, length) * 2);
+				for (int k = 0; k < columnCount; k++) {
+					columns.add(in.readUTF());
+				}
+			}
+			changes.add(new Change(table, keys, columns));
+		}
+		return new InvalidationEvent(source, version, changes);
+	}
+
+	private static int checkSize(int n, int length) throws IOException {
+		if (n < 0 || n > length) {
+			throw new IOException("Invalid size " + n);
+		}
+		return n;
+	}
+
+	private static boolean isEncodable(Set<List<Object>> keys) {
+		if (keys == null) {
+			return false;
+		}
+		for (List<Object> key : keys) {
+			for (Object v : key) {
+				if (!(v == null || v instanceof Long || v instanceof Double || v instanceof BigDecimal || (v instanceof String && ((String) v).length() <= MAX_STRING))) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static void writeValue(DataOutputStream out, Object v) throws IOException {
+		if (v == null) {
+			out.writeByte('0');
+		} else if (v instanceof Long) {
+			out.writeByte('L');
+			out.writeLong((Long) v);
+		} else if (v instanceof Double) {
+			out.writeByte('D');
+			out.writeDouble((Double) v);
+		} else if (v instanceof BigDecimal) {
+			out.writeByte('N');
+			out.writeUTF(((BigDecimal) v).toString());
+		} else {
+			out.writeByte('S');
+			out.writeUTF((String) v);
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case '0':
+			return null;
+		case 'L':
+			return in.readLong();
+		case 'D':
+			return in.readDouble();
+		case 'N':
+			try {
+				return new BigDecimal(in.readUTF());
+			} catch (NumberFormatException e) {
+				throw new IOException(e.getMessage());
+			}
+		case 'S':
+			return in.readUTF();
+		default:
+			throw new IOException("Unknown value type " + tag);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return source + "#" + version + changes;
+	}
+
+	/**
+	 * 一张表的修改
+	 */
+	public static final class Change implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		private final String table;
+		private Set<List<Object>> keys;
+		private Set<String> columns;
+
+		/**
+		 * 构造
+		 *
+		 * @param table
+		 *            表名(大写)，即缓存的表空间
+		 * @param keys
+		 *            被修改记录的主键(经过{@link DimCache#normalize(List)})，null表示整表失效
+		 * @param columns
+		 *            被更新的列，null表示未知，空集合表示删除
+		 */
+		public Change(String table, Set<List<Object>> keys, Set<String> columns) {
+			this.table = table;
+			this.keys = keys;
+			this.columns = keys == null ? null : columns;
+		}
+
+		public String getTable() {
+			return table;
+		}
+
+		/**
+		 * @return 被修改记录的主键，null表示整表失效
+		 */
+		public Set<List<Object>> getKeys() {
+			return keys;
+		}
+
+		/**
+		 * @return 被更新的列，null表示未知
+		 */
+		public Set<String> getColumns() {
+			return columns;
+		}
+
+		/*
+		 * 合并同一张表的修改，主键超过maxKeys个时改为整表失效
+		 */
+		void merge(Collection<List<Object>> moreKeys, Collection<String> moreColumns, int maxKeys) {
+			if (keys == null) {
+				return;
+			}
+			if (moreKeys == null || keys.size() + moreKeys.size() > maxKeys) {
+				keys = null;
+				columns = null;
+				return;
+			}
+			keys.addAll(moreKeys);
+			if (moreColumns == null) {
+				columns = null;
+			} else if (columns != null) {
+				columns.addAll(moreColumns);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return table + (keys == null ? "(*)" : keys.toString() + (columns == null ? "" : columns.toString()));
+		}
+	}
+}
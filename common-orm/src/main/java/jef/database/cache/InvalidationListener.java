@@ -0,0 +1,16 @@
+package jef.database.cache;
+
+/**
+ * 接收其他节点发来的缓存失效消息
+ *
+ * @author jiyi
+ * @see InvalidationBus
+ */
+public interface InvalidationListener {
+	/**
+	 * 收到消息。由{@link InvalidationBus}的接收线程调用
+	 *
+	 * @param event
+	 */
+	void onEvent(InvalidationEvent event);
+}
@@ -5,12 +5,15 @@ import java.util.List;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import jef.common.PairSO;
+import jef.database.DbCfg;
+import jef.database.cache.WhereParser.CachedImpl;
 import jef.database.cache.WhereParser.DruidImpl;
 import jef.database.cache.WhereParser.NativeImpl;
 import jef.database.dialect.DatabaseDialect;
 import jef.database.jdbc.statement.UnionJudgement;
 import jef.database.jsqlparser.expression.Table;
 import jef.database.jsqlparser.visitor.Expression;
+import jef.tools.JefConfiguration;
 
 public class KeyDimension {
 	protected String where;
@@ -163,10 +166,13 @@ public class KeyDimension {
 	private static final WhereParser wp;
 
 	static {
+		WhereParser parser;
 		if (UnionJudgement.isDruid()) {
-			wp = new DruidImpl();
+			parser = new DruidImpl();
 		} else {
-			wp = new NativeImpl();
+			parser = new NativeImpl();
 		}
+		int size = JefConfiguration.getInt(DbCfg.DB_PARSED_SQL_CACHE_SIZE, 1000);
+		wp = size > 0 ? new CachedImpl(parser, size) : parser;
 	}
 }
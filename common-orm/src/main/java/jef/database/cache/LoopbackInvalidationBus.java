@@ -0,0 +1,92 @@
+package jef.database.cache;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM内部的失效消息总线，同一频道上的各个总线互相收发消息。
+ * 用于同一个JVM中连接同一个数据库的多个DbClient，以及测试。
+ *
+ * @author jiyi
+ */
+public class LoopbackInvalidationBus implements InvalidationBus {
+	private static final Logger log = LoggerFactory.getLogger(LoopbackInvalidationBus.class);
+
+	/**
+	 * 默认频道
+	 */
+	public static final String DEFAULT_CHANNEL = "default";
+
+	private static final ConcurrentMap<String, List<LoopbackInvalidationBus>> CHANNELS = new ConcurrentHashMap<String, List<LoopbackInvalidationBus>>();
+
+	private final String channel;
+	private volatile InvalidationListener listener;
+
+	/**
+	 * 使用默认频道
+	 */
+	public LoopbackInvalidationBus() {
+		this(DEFAULT_CHANNEL);
+	}
+
+	/**
+	 * 构造
+	 *
+	 * @param channel
+	 *            频道名称
+	 */
+	public LoopbackInvalidationBus(String channel) {
+		this.channel = channel;
+	}
+
+	public void start(InvalidationListener listener) {
+		this.listener = listener;
+		List<LoopbackInvalidationBus> buses = CHANNELS.get(channel);
+		if (buses == null) {
+			buses = new CopyOnWriteArrayList<LoopbackInvalidationBus>();
+			List<LoopbackInvalidationBus> old = CHANNELS.putIfAbsent(channel, buses);
+			if (old != null) {
+				buses = old;
+			}
+		}
+		buses.add(this);
+	}
+
+	/**
+	 * 在发送线程中依次通知同一频道上的其他总线
+	 */
+	public void publish(InvalidationEvent event) {
+		List<LoopbackInvalidationBus> buses = CHANNELS.get(channel);
+		if (buses == null) {
+			return;
+		}
+		for (LoopbackInvalidationBus bus : buses) {
+			InvalidationListener l = bus.listener;
+			if (bus == this || l == null) {
+				continue;
+			}
+			try {
+				l.onEvent(event);
+			} catch (RuntimeException e) {
+				log.error("Cache invalidation event {} failed on channel {}", event, channel, e);
+			}
+		}
+	}
+
+	public void close() {
+		listener = null;
+		List<LoopbackInvalidationBus> buses = CHANNELS.get(channel);
+		if (buses != null) {
+			buses.remove(this);
+		}
+	}
+
+	public String getChannel() {
+		return channel;
+	}
+}
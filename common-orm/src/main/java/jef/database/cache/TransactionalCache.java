@@ -0,0 +1,190 @@
+package jef.database.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jef.database.IQueryableEntity;
+import jef.database.jsqlparser.statement.delete.Delete;
+import jef.database.jsqlparser.statement.insert.Insert;
+import jef.database.jsqlparser.statement.truncate.Truncate;
+import jef.database.jsqlparser.statement.update.Update;
+
+/**
+ * 事务中使用的二级缓存。读取和本节点缓存的清除直接作用于全局缓存，
+ * 写操作产生的失效消息暂存在事务中，提交后才发给集群中的其他节点，同时再清除一次本节点的缓存；回滚时丢弃。
+ * <p>
+ * 如果在提交前发出，其他节点在提交前重新读到的仍是修改前的数据，并以新的失效版本放回缓存，此后不会再失效。
+ *
+ * @author jiyi
+ */
+@SuppressWarnings("rawtypes")
+public final class TransactionalCache implements Cache {
+	private final CacheImpl cache;
+
+	/**
+	 * 待提交后处理的修改，表名 -> 修改
+	 */
+	private final Map<String, InvalidationEvent.Change> pending = new LinkedHashMap<String, InvalidationEvent.Change>();
+
+	/**
+	 * 为false时(自动提交、JTA事务)不暂存，和在事务外修改一样立即发出
+	 */
+	private volatile boolean deferred = true;
+
+	public TransactionalCache(CacheImpl cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * 设置是否暂存失效消息。由暂存改为不暂存时，已暂存的修改立即发出
+	 *
+	 * @param deferred
+	 */
+	public void setDeferred(boolean deferred) {
+		this.deferred = deferred;
+		if (!deferred) {
+			commit();
+		}
+	}
+
+	/**
+	 * 事务提交后调用，处理暂存的修改
+	 */
+	public void commit() {
+		List<InvalidationEvent.Change> changes;
+		synchronized (pending) {
+			if (pending.isEmpty()) {
+				return;
+			}
+			changes = new ArrayList<InvalidationEvent.Change>(pending.values());
+			pending.clear();
+		}
+		for (InvalidationEvent.Change change : changes) {
+			cache.applyCommitted(change);
+		}
+	}
+
+	/**
+	 * 事务回滚后调用，丢弃暂存的修改
+	 */
+	public void rollback() {
+		synchronized (pending) {
+			pending.clear();
+		}
+	}
+
+	/*
+	 * 由CacheImpl在本事务的写操作中调用
+	 */
+	void defer(String table, Collection<List<Object>> keys, Collection<String> columns) {
+		synchronized (pending) {
+			InvalidationEvent.Change change = pending.get(table);
+			if (change == null) {
+				boolean tableOnly = keys == null || keys.size() > CacheInvalidator.MAX_KEYS;
+				pending.put(table, new InvalidationEvent.Change(table, tableOnly ? null : new HashSet<List<Object>>(keys), columns == null ? null : new HashSet<String>(columns)));
+			} else {
+				change.merge(keys, columns, CacheInvalidator.MAX_KEYS);
+			}
+		}
+	}
+
+	/*
+	 * 在当前线程上以本事务的名义执行写操作
+	 */
+	private void write(Runnable action) {
+		if (!deferred) {
+			action.run();
+			return;
+		}
+		TransactionalCache old = cache.beginWrite(this);
+		try {
+			action.run();
+		} finally {
+			cache.endWrite(old);
+		}
+	}
+
+	public void onInsert(final IQueryableEntity obj, final String table) {
+		write(() -> cache.onInsert(obj, table));
+	}
+
+	public void onDelete(final String table, final String where, final List<Object> bind) {
+		write(() -> cache.onDelete(table, where, bind));
+	}
+
+	public void onUpdate(final String table, final String where, final List<Object> bind) {
+		write(() -> cache.onUpdate(table, where, bind));
+	}
+
+	public void onUpdate(final String table, final String where, final List<Object> bind, final Collection<String> columns) {
+		write(() -> cache.onUpdate(table, where, bind, columns));
+	}
+
+	public void process(final Truncate st, final List<Object> list) {
+		write(() -> cache.process(st, list));
+	}
+
+	public void process(final Delete st, final List<Object> list) {
+		write(() -> cache.process(st, list));
+	}
+
+	public void process(final Insert st, final List<Object> list) {
+		write(() -> cache.process(st, list));
+	}
+
+	public void process(final Update st, final List<Object> list) {
+		write(() -> cache.process(st, list));
+	}
+
+	public <T> void onLoad(CacheKey key, List<T> result, Class<T> clz) {
+		cache.onLoad(key, result, clz);
+	}
+
+	public List load(CacheKey key) {
+		return cache.load(key);
+	}
+
+	public void evict(CacheKey cacheKey) {
+		cache.evict(cacheKey);
+	}
+
+	public void evict(IQueryableEntity cacheKey) {
+		cache.evict(cacheKey);
+	}
+
+	public boolean contains(Class cls, Object primaryKey) {
+		return cache.contains(cls, primaryKey);
+	}
+
+	public void evict(Class cls, Object primaryKey) {
+		cache.evict(cls, primaryKey);
+	}
+
+	public void evict(Class cls) {
+		cache.evict(cls);
+	}
+
+	public void evictAll() {
+		cache.evictAll();
+	}
+
+	public boolean isDummy() {
+		return false;
+	}
+
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	public <T> T unwrap(Class<T> cls) {
+		return cache.unwrap(cls);
+	}
+}
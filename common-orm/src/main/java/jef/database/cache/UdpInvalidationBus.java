@@ -0,0 +1,156 @@
+package jef.database.cache;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于UDP的失效消息总线。每条消息发往配置的每个节点，不重发。
+ * <p>
+ * 丢失的消息由接收方根据版本号发现，此时接收方清除全部缓存。
+ * 消息超过一个数据报的长度时，改为只发送表名(整表失效)。
+ * <p>
+ * <strong>只能在可信的网络中使用。</strong>消息既不加密也不签名，接收时只丢弃来源地址(IP和端口)不是已配置节点的数据报。
+ * UDP的来源地址可以伪造，能向监听端口发包的人仍可以让本节点的缓存失效，因此监听地址应绑定在集群内部的网卡上，
+ * 并由防火墙限制来源。
+ *
+ * @author jiyi
+ */
+public class UdpInvalidationBus implements InvalidationBus {
+	private static final Logger log = LoggerFactory.getLogger(UdpInvalidationBus.class);
+
+	/**
+	 * 单个数据报的最大长度
+	 */
+	static final int MAX_PACKET = 60000;
+
+	private final DatagramSocket socket;
+	private final List<InetSocketAddress> peers;
+	private volatile InvalidationListener listener;
+	private Thread receiver;
+
+	/**
+	 * 构造
+	 *
+	 * @param bind
+	 *            本地监听的地址，端口为0时随机分配
+	 * @param peers
+	 *            其他节点监听的地址，只接收来自这些地址的消息
+	 * @throws SocketException
+	 */
+	public UdpInvalidationBus(InetSocketAddress bind, Collection<InetSocketAddress> peers) throws SocketException {
+		this.socket = new DatagramSocket(bind);
+		this.peers = new ArrayList<InetSocketAddress>(peers);
+	}
+
+	/**
+	 * 本地监听的地址
+	 *
+	 * @return
+	 */
+	public InetSocketAddress getLocalAddress() {
+		return (InetSocketAddress) socket.getLocalSocketAddress();
+	}
+
+	/**
+	 * 添加节点
+	 *
+	 * @param peer
+	 */
+	public synchronized void addPeer(InetSocketAddress peer) {
+		peers.add(peer);
+	}
+
+	public synchronized void start(InvalidationListener listener) {
+		this.listener = listener;
+		if (receiver != null) {
+			return;
+		}
+		receiver = new Thread("cache-invalidation-udp-" + socket.getLocalPort()) {
+			@Override
+			public void run() {
+				receive();
+			}
+		};
+		receiver.setDaemon(true);
+		receiver.start();
+	}
+
+	private void receive() {
+		byte[] buffer = new byte[65536];
+		while (!socket.isClosed()) {
+			DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+			try {
+				socket.receive(packet);
+			} catch (IOException e) {
+				if (!socket.isClosed()) {
+					log.error("Receive cache invalidation event error", e);
+				}
+				continue;
+			}
+			if (!isPeer(packet.getAddress(), packet.getPort())) {
+				log.warn("Discard cache invalidation packet from unknown address {}", packet.getSocketAddress());
+				continue;
+			}
+			InvalidationEvent event;
+			try {
+				event = InvalidationEvent.fromBytes(packet.getData(), packet.getOffset(), packet.getLength());
+			} catch (IOException e) {
+				log.warn("Invalid cache invalidation packet from {}: {}", packet.getSocketAddress(), e.getMessage());
+				continue;
+			}
+			InvalidationListener l = listener;
+			if (l != null) {
+				try {
+					l.onEvent(event);
+				} catch (RuntimeException e) {
+					log.error("Cache invalidation event {} failed", event, e);
+				}
+			}
+		}
+	}
+
+	/*
+	 * 节点总是从其监听的端口发出消息，因此来源地址就是配置的节点地址
+	 */
+	private synchronized boolean isPeer(InetAddress address, int port) {
+		for (InetSocketAddress peer : peers) {
+			if (peer.getPort() == port && address.equals(peer.getAddress())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void publish(InvalidationEvent event) {
+		byte[] data = event.toBytes();
+		if (data.length > MAX_PACKET) {
+			data = event.toBytes(true);
+		}
+		List<InetSocketAddress> targets;
+		synchronized (this) {
+			targets = new ArrayList<InetSocketAddress>(peers);
+		}
+		for (InetSocketAddress peer : targets) {
+			try {
+				socket.send(new DatagramPacket(data, data.length, peer));
+			} catch (IOException e) {
+				log.warn("Send cache invalidation event to {} failed: {}", peer, e.getMessage());
+			}
+		}
+	}
+
+	public void close() {
+		listener = null;
+		socket.close();
+	}
+}
@@ -2,6 +2,8 @@ package jef.database.cache;
 
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -18,6 +20,8 @@ import com.alibaba.druid.sql.parser.SQLExprParser;
 import com.alibaba.druid.sql.parser.SQLSelectParser;
 import com.alibaba.druid.sql.parser.Token;
 import com.alibaba.druid.sql.visitor.SQLASTOutputVisitor;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import jef.common.PairSO;
 import jef.common.log.LogUtil;
@@ -214,4 +218,43 @@ public abstract class WhereParser {
 		}
 
 	};
+
+	/**
+	 * 缓存解析结果。解析结果只与文本和数据库方言有关，相同的Where条件和表定义只解析一次。
+	 */
+	public static final class CachedImpl extends WhereParser {
+		private final WhereParser parser;
+		private final Cache<List<Object>, String> wheres;
+		private final Cache<List<Object>, PairSO<List<String>>> tables;
+
+		public CachedImpl(WhereParser parser, int size) {
+			this.parser = parser;
+			this.wheres = CacheBuilder.newBuilder().maximumSize(size).build();
+			this.tables = CacheBuilder.newBuilder().maximumSize(size).build();
+		}
+
+		@Override
+		String process(String where, DatabaseDialect profile) {
+			List<Object> key = Arrays.<Object> asList(profile, where);
+			String result = wheres.getIfPresent(key);
+			if (result == null) {
+				result = parser.process(where, profile);
+				wheres.put(key, result);
+			}
+			return result;
+		}
+
+		@Override
+		PairSO<List<String>> parseTables(String tableDef, DatabaseDialect profile) {
+			List<Object> key = Arrays.<Object> asList(profile, tableDef);
+			PairSO<List<String>> result = tables.getIfPresent(key);
+			if (result == null) {
+				result = parser.parseTables(tableDef, profile);
+				// 结果是共享的
+				result = new PairSO<List<String>>(result.first, Collections.unmodifiableList(result.second));
+				tables.put(key, result);
+			}
+			return result;
+		}
+	}
 }
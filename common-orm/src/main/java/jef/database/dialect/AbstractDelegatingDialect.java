@@ -17,6 +17,7 @@ import jef.database.ConnectInfo;
 import jef.database.DbFunction;
 import jef.database.DbMetaData;
 import jef.database.datasource.DataSourceInfo;
+import jef.database.dialect.handler.BulkInsertHandler;
 import jef.database.dialect.handler.LimitHandler;
 import jef.database.dialect.type.AColumnMapping;
 import jef.database.dialect.type.AutoIncrementMapping;
@@ -31,6 +32,7 @@ import jef.database.meta.Feature;
 import jef.database.meta.FunctionMapping;
 import jef.database.meta.object.Column;
 import jef.database.meta.object.Constraint;
+import jef.database.meta.object.Index;
 import jef.database.meta.object.SequenceInfo;
 import jef.database.support.RDBMS;
 import jef.database.wrapper.clause.InsertSqlClause;
@@ -225,6 +227,11 @@ public abstract class AbstractDelegatingDialect implements DatabaseDialect {
 		dialect.toExtremeInsert(sql);
 	}
 
+	@Override
+	public String getArrayInCondition(String columnName, int sqlType) {
+		return dialect.getArrayInCondition(columnName, sqlType);
+	}
+
 	@Override
 	public String toDefaultString(Object defaultValue, int sqlType) {
 		return dialect.toDefaultString(defaultValue, sqlType);
@@ -245,6 +252,11 @@ public abstract class AbstractDelegatingDialect implements DatabaseDialect {
 		return dialect.getLimitHandler();
 	}
 
+	@Override
+	public BulkInsertHandler getBulkInsertHandler() {
+		return dialect.getBulkInsertHandler();
+	}
+
 	@Override
 	public String getColumnNameToUse(AColumnMapping name) {
 		return dialect.getColumnNameToUse(name);
@@ -284,4 +296,9 @@ public abstract class AbstractDelegatingDialect implements DatabaseDialect {
 	public List<Constraint> getConstraintInfo(DbMetaData conn, String schema, String tableName, String constraintName) throws SQLException{
 		return dialect.getConstraintInfo(conn, schema, tableName, constraintName);
 	}
+
+	@Override
+	public Map<String, List<Index>> getIndexInfo(DbMetaData conn, String schema) throws SQLException {
+		return dialect.getIndexInfo(conn, schema);
+	}
 }
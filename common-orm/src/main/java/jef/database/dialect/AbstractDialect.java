@@ -44,6 +44,7 @@ import jef.database.DbMetaData;
 import jef.database.DbMetaData.ObjectType;
 import jef.database.datasource.DataSourceInfo;
 import jef.database.dialect.ColumnType.Varchar;
+import jef.database.dialect.handler.BulkInsertHandler;
 import jef.database.dialect.type.AColumnMapping;
 import jef.database.dialect.type.AutoIncrementMapping;
 import jef.database.dialect.type.ParserFactory;
@@ -58,6 +59,7 @@ import jef.database.meta.Feature;
 import jef.database.meta.FunctionMapping;
 import jef.database.meta.object.Case;
 import jef.database.meta.object.Constraint;
+import jef.database.meta.object.Index;
 import jef.database.meta.object.SequenceInfo;
 import jef.database.meta.object.TableInfo;
 import jef.database.query.Func;
@@ -726,6 +728,14 @@ public abstract class AbstractDialect implements DatabaseDialect {
 	public void toExtremeInsert(InsertSqlClause sql) {
 	}
 
+	public BulkInsertHandler getBulkInsertHandler() {
+		return null;
+	}
+
+	public String getArrayInCondition(String columnName, int sqlType) {
+		return null;
+	}
+
 	public void accept(DbMetaData dbMetadata) {
 		this.caseHandler = dbMetadata.getFeature().getDefaultCase();
 		String q = dbMetadata.getFeature().getQuoteChar();
@@ -875,4 +885,9 @@ public abstract class AbstractDialect implements DatabaseDialect {
 		return null;
 	}
 
+	@Override
+	public Map<String, List<Index>> getIndexInfo(DbMetaData conn, String schema) throws SQLException {
+		return null;
+	}
+
 }
@@ -30,6 +30,7 @@ import jef.database.ConnectInfo;
 import jef.database.DbFunction;
 import jef.database.DbMetaData;
 import jef.database.datasource.DataSourceInfo;
+import jef.database.dialect.handler.BulkInsertHandler;
 import jef.database.dialect.handler.LimitHandler;
 import jef.database.dialect.type.AColumnMapping;
 import jef.database.dialect.type.AutoIncrementMapping;
@@ -43,6 +44,7 @@ import jef.database.meta.DbProperty;
 import jef.database.meta.Feature;
 import jef.database.meta.FunctionMapping;
 import jef.database.meta.object.Constraint;
+import jef.database.meta.object.Index;
 import jef.database.meta.object.SequenceInfo;
 import jef.database.support.RDBMS;
 import jef.database.wrapper.clause.InsertSqlClause;
@@ -211,6 +213,15 @@ public interface DatabaseDialect {
 	 * @return 约束的信息
 	 */
 	List<Constraint>   getConstraintInfo(DbMetaData conn,String schema, String tablename, String constraintName) throws SQLException;
+
+	/**
+	 * 根据数据库特性，从数据库系统表中一次返回schema下所有表的索引，如果不支持返回null，此时需要逐表查询
+	 * @param conn 数据库访问句柄
+	 * @param schema 允许为null，表示当前schema
+	 * @return 表名和表上的索引，表名为数据库中记录的表名
+	 * @see DbMetaData#newIndexInfoExtractor()
+	 */
+	Map<String, List<Index>> getIndexInfo(DbMetaData conn, String schema) throws SQLException;
 	
 	
 	/**
@@ -434,6 +445,13 @@ public interface DatabaseDialect {
 	 * @param sql
 	 */
 	void toExtremeInsert(InsertSqlClause sql);
+
+	/**
+	 * 获得extremeInsert时使用的批量写入方式，例如多行VALUES的insert语句、PostgreSQL的COPY等。
+	 * 数据库不支持时返回null，仍使用JDBC batch
+	 * @return BulkInsertHandler
+	 */
+	BulkInsertHandler getBulkInsertHandler();
 	
 	/**
 	 * 获得SQL解析器。目前内置了两套解析器，一套是作者基于JavaCC自行编写的，性能较差。
@@ -460,4 +478,13 @@ public interface DatabaseDialect {
 	 * 当支持QueryDSL-SQL时，获得QueryDSL的Dialect
 	 */
 	SQLTemplates getQueryDslDialect();
+
+	/**
+	 * 将IN条件的多个值作为一个数组参数绑定时的SQL写法，例如PostgreSQL上为 column = ANY(?)。
+	 * 这样不论有多少个值，SQL语句都是相同的。数据库不支持时返回null，仍展开为 in (?,?,...)
+	 * @param columnName 列名
+	 * @param sqlType 元素的类型，见{@link java.sql.Types}
+	 * @return 只包含一个绑定变量的SQL片段
+	 */
+	String getArrayInCondition(String columnName, int sqlType);
 }
@@ -3,14 +3,20 @@ package jef.database.dialect;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import jef.database.ConnectInfo;
 import jef.database.DbMetaData;
+import jef.database.dialect.handler.BulkInsertHandler;
 import jef.database.dialect.handler.LimitHandler;
 import jef.database.dialect.handler.LimitOffsetLimitHandler;
+import jef.database.dialect.handler.MultiRowInsertHandler;
+import jef.database.jdbc.result.IResultSet;
 import jef.database.meta.DbProperty;
 import jef.database.meta.Feature;
+import jef.database.meta.object.Index;
 import jef.database.meta.object.SequenceInfo;
 import jef.database.query.Func;
 import jef.database.query.Scientific;
@@ -23,6 +29,8 @@ import jef.database.query.function.NoArgSQLFunction;
 import jef.database.query.function.StandardSQLFunction;
 import jef.database.query.function.TemplateFunction;
 import jef.database.support.RDBMS;
+import jef.database.wrapper.populator.ListResultSetTransformer;
+import jef.database.wrapper.variable.ArrayValues;
 import jef.tools.Exceptions;
 import jef.tools.StringUtils;
 import jef.tools.collection.CollectionUtils;
@@ -171,6 +179,13 @@ public class H2Dialect extends AbstractDialect {
 		return limit;
 	}
 
+	private final BulkInsertHandler bulkInsert = new MultiRowInsertHandler(0);
+
+	@Override
+	public BulkInsertHandler getBulkInsertHandler() {
+		return bulkInsert;
+	}
+
 	@Override
 	public void parseDbInfo(ConnectInfo connectInfo) {
 		JefStringReader reader = new JefStringReader(connectInfo.getUrl());
@@ -206,12 +221,43 @@ public class H2Dialect extends AbstractDialect {
 		return new H2Templates();
 	}
 
+	/*
+	 * H2不支持= ANY(?)，使用表函数展开数组
+	 */
+	@Override
+	public String getArrayInCondition(String columnName, int sqlType) {
+		return columnName + " IN (SELECT X FROM TABLE(X " + ArrayValues.getTypeName(sqlType) + " = ?))";
+	}
+
+	/**
+	 * 列名和JDBC的getIndexInfo()相同
+	 */
+	@Override
+	public Map<String, List<Index>> getIndexInfo(DbMetaData conn, String schema) throws SQLException {
+		schema = StringUtils.trimToNull(schema);
+		String sql = "SELECT TABLE_SCHEMA TABLE_SCHEM, TABLE_NAME, NON_UNIQUE, TABLE_CATALOG INDEX_QUALIFIER, INDEX_NAME, INDEX_TYPE TYPE, ORDINAL_POSITION, COLUMN_NAME, ASC_OR_DESC"
+				+ " FROM INFORMATION_SCHEMA.INDEXES WHERE TABLE_SCHEMA = " + (schema == null ? "SCHEMA()" : "?") + " ORDER BY TABLE_NAME, INDEX_NAME, ORDINAL_POSITION";
+		return conn.selectBySql(sql, DbMetaData.newIndexInfoExtractor(), schema == null ? Collections.emptyList() : Arrays.asList(schema), false);
+	}
+
 	@Override
 	public List<SequenceInfo> getSequenceInfo(DbMetaData conn, String schema, String seqName) throws SQLException {
-		return super.getSequenceInfo(conn, schema, seqName);
-		// 如果JDBC未能很好实现，可以从系统表获取
-		// String querySequenceString =
-		// "select sequence_name from information_schema.sequences";
+		// H2的JDBC驱动getTables()不返回序列，因此从系统表获取
+		schema = StringUtils.isBlank(schema) ? "%" : schema;
+		seqName = StringUtils.isBlank(seqName) ? "%" : seqName;
+		String sql = "SELECT SEQUENCE_SCHEMA, SEQUENCE_NAME, CURRENT_VALUE, INCREMENT, CACHE, MIN_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_SCHEMA LIKE ? AND SEQUENCE_NAME LIKE ?";
+		return conn.selectBySql(sql, new ListResultSetTransformer<SequenceInfo>() {
+			protected SequenceInfo transform(IResultSet rs) throws SQLException {
+				SequenceInfo s = new SequenceInfo();
+				s.setSchema(rs.getString(1));
+				s.setName(rs.getString(2));
+				s.setCurrentValue(rs.getLong(3));
+				s.setStep(rs.getInt(4));
+				s.setCacheSize(rs.getInt(5));
+				s.setMinValue(rs.getLong(6));
+				return s;
+			}
+		}, Arrays.asList(schema, seqName), false);
 	}
 
 }
@@ -18,8 +18,10 @@ import jef.database.DbUtils;
 import jef.database.DebugUtil;
 import jef.database.ORMConfig;
 import jef.database.dialect.ColumnType.Char;
+import jef.database.dialect.handler.BulkInsertHandler;
 import jef.database.dialect.handler.LimitHandler;
 import jef.database.dialect.handler.LimitOffsetLimitHandler;
+import jef.database.dialect.handler.MultiRowInsertHandler;
 import jef.database.dialect.type.AutoIncrementMapping;
 import jef.database.exception.JDBCExceptionHelper;
 import jef.database.exception.TemplatedViolatedConstraintNameExtracter;
@@ -321,6 +323,13 @@ public class HsqlDbMemDialect extends AbstractDialect {
 		return limit;
 	}
 
+	private final BulkInsertHandler bulkInsert = new MultiRowInsertHandler(0);
+
+	@Override
+	public BulkInsertHandler getBulkInsertHandler() {
+		return bulkInsert;
+	}
+
 	private static ViolatedConstraintNameExtracter EXTRACTER_18 = new TemplatedViolatedConstraintNameExtracter() {
 
 		/**
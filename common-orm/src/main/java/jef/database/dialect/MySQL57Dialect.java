@@ -19,7 +19,9 @@ import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.querydsl.sql.MySQLTemplates;
@@ -30,8 +32,10 @@ import jef.database.ConnectInfo;
 import jef.database.DbMetaData;
 import jef.database.ORMConfig;
 import jef.database.dialect.ColumnType.AutoIncrement;
+import jef.database.dialect.handler.BulkInsertHandler;
 import jef.database.dialect.handler.LimitHandler;
 import jef.database.dialect.handler.MySqlLimitHandler;
+import jef.database.dialect.handler.MySqlMultiRowInsertHandler;
 import jef.database.exception.ViolatedConstraintNameExtracter;
 import jef.database.jdbc.result.IResultSet;
 import jef.database.jsqlparser.expression.BinaryExpression;
@@ -44,6 +48,7 @@ import jef.database.meta.object.Constraint;
 import jef.database.meta.object.ConstraintType;
 import jef.database.meta.object.ForeignKeyAction;
 import jef.database.meta.object.ForeignKeyMatchType;
+import jef.database.meta.object.Index;
 import jef.database.query.Func;
 import jef.database.query.Scientific;
 import jef.database.query.function.CastFunction;
@@ -371,6 +376,13 @@ public class MySQL57Dialect extends AbstractDialect {
 		return limit;
 	}
 
+	private final BulkInsertHandler bulkInsert = new MySqlMultiRowInsertHandler();
+
+	@Override
+	public BulkInsertHandler getBulkInsertHandler() {
+		return bulkInsert;
+	}
+
 	@Override
 	public ViolatedConstraintNameExtracter getViolatedConstraintNameExtracter() {
 		return EXTRACTER;
@@ -394,6 +406,15 @@ public class MySQL57Dialect extends AbstractDialect {
 		return queryDslDialect;
 	}
 
+	@Override
+	public Map<String, List<Index>> getIndexInfo(DbMetaData conn, String schema) throws SQLException {
+		schema = StringUtils.trimToNull(schema);
+		String sql = "SELECT TABLE_SCHEMA TABLE_SCHEM, TABLE_NAME, NON_UNIQUE, INDEX_SCHEMA INDEX_QUALIFIER, INDEX_NAME,"
+				+ " CASE WHEN INDEX_TYPE = 'HASH' THEN 2 ELSE 3 END TYPE, SEQ_IN_INDEX ORDINAL_POSITION, COLUMN_NAME, COLLATION ASC_OR_DESC"
+				+ " FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = " + (schema == null ? "DATABASE()" : "?") + " ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX";
+		return conn.selectBySql(sql, DbMetaData.newIndexInfoExtractor(), schema == null ? Collections.emptyList() : Arrays.asList(schema), false);
+	}
+
 	@Override
 	public List<Constraint> getConstraintInfo(DbMetaData conn, String schema, String tablename, String constraintName) throws SQLException {
 		String sql = "SELECT kcu.*, tc.constraint_type, rc.update_rule, rc.delete_rule, rc.match_option" + " FROM information_schema.key_column_usage kcu " + "INNER JOIN information_schema.table_constraints tc" + "        ON tc.constraint_schema = kcu.constraint_schema"
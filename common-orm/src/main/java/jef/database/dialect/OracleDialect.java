@@ -21,8 +21,10 @@ import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.sql.DataSource;
@@ -60,6 +62,7 @@ import jef.database.meta.Feature;
 import jef.database.meta.object.Constraint;
 import jef.database.meta.object.ConstraintType;
 import jef.database.meta.object.ForeignKeyAction;
+import jef.database.meta.object.Index;
 import jef.database.meta.object.SequenceInfo;
 import jef.database.query.Func;
 import jef.database.query.Scientific;
@@ -350,7 +353,7 @@ public class OracleDialect extends AbstractDialect {
 				@Override
 				public List<SequenceInfo> transformer(IResultSet rs) throws SQLException {
 					List<SequenceInfo> result = new ArrayList<SequenceInfo>();
-					if (rs.next()) {
+					while (rs.next()) {
 						SequenceInfo seq = new SequenceInfo();
 						seq.setCatalog(null);
 						seq.setSchema(rs.getString(1));
@@ -527,10 +530,20 @@ public class OracleDialect extends AbstractDialect {
 		}
 	}
 
+	/**
+	 * 默认使用APPEND提示，对JDBC batch的insert ... values不生效，行为和普通insert一致。
+	 * <p>
+	 * 开启{@link DbCfg#DB_ORACLE_APPEND_VALUES}后改用APPEND_VALUES，insert ... values也直接路径写入。
+	 * 直接路径写入会对表加排他锁，同一事务中提交前再读取或修改该表会报ORA-12838，因此只适合单独事务中的大批量导入。
+	 */
 	@Override
 	public void toExtremeInsert(InsertSqlClause sql) {
 		// alter table xxx nologging
-		sql.setInsert("insert /*+ APPEND */ into ");
+		if (JefConfiguration.getBoolean(DbCfg.DB_ORACLE_APPEND_VALUES, false)) {
+			sql.setInsert("insert /*+ APPEND_VALUES */ into ");
+		} else {
+			sql.setInsert("insert /*+ APPEND */ into ");
+		}
 	}
 
 	private LimitHandler limit = new OracleLimitHander();
@@ -599,6 +612,16 @@ public class OracleDialect extends AbstractDialect {
         return queryDslDialect;
     }
     
+	@Override
+	public Map<String, List<Index>> getIndexInfo(DbMetaData conn, String schema) throws SQLException {
+		schema = StringUtils.trimToNull(schema);
+		String sql = "SELECT c.TABLE_OWNER TABLE_SCHEM, c.TABLE_NAME, DECODE(i.UNIQUENESS, 'UNIQUE', 0, 1) NON_UNIQUE, c.INDEX_OWNER INDEX_QUALIFIER, c.INDEX_NAME, 3 TYPE,"
+				+ " c.COLUMN_POSITION ORDINAL_POSITION, c.COLUMN_NAME, DECODE(c.DESCEND, 'DESC', 'D', 'A') ASC_OR_DESC"
+				+ " FROM ALL_IND_COLUMNS c JOIN ALL_INDEXES i ON i.OWNER = c.INDEX_OWNER AND i.INDEX_NAME = c.INDEX_NAME"
+				+ " WHERE c.TABLE_OWNER = " + (schema == null ? "USER" : "?") + " ORDER BY c.TABLE_NAME, c.INDEX_NAME, c.COLUMN_POSITION";
+		return conn.selectBySql(sql, DbMetaData.newIndexInfoExtractor(), schema == null ? Collections.emptyList() : Arrays.asList(schema.toUpperCase()), false);
+	}
+
     @Override
     public List<Constraint> getConstraintInfo(DbMetaData conn, String schema, String tablename, String constraintName) throws SQLException{
 
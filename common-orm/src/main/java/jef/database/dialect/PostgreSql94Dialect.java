@@ -21,8 +21,10 @@ import jef.database.ORMConfig;
 import jef.database.dialect.ColumnType.AutoIncrement;
 import jef.database.dialect.ColumnType.Clob;
 import jef.database.dialect.ColumnType.Varchar;
+import jef.database.dialect.handler.BulkInsertHandler;
 import jef.database.dialect.handler.LimitHandler;
 import jef.database.dialect.handler.LimitOffsetLimitHandler;
+import jef.database.dialect.handler.PostgreSqlCopyHandler;
 import jef.database.dialect.type.AutoIncrementMapping;
 import jef.database.exception.JDBCExceptionHelper;
 import jef.database.exception.TemplatedViolatedConstraintNameExtracter;
@@ -573,6 +575,13 @@ public class PostgreSql94Dialect extends AbstractDialect {
 	public LimitHandler getLimitHandler() {
 		return limit;
 	}
+
+	private final BulkInsertHandler bulkInsert = new PostgreSqlCopyHandler();
+
+	@Override
+	public BulkInsertHandler getBulkInsertHandler() {
+		return bulkInsert;
+	}
 	
 	/**
 	 *  Postgres系统表 select * from pg_constraint
@@ -805,5 +814,10 @@ public class PostgreSql94Dialect extends AbstractDialect {
 	public SQLTemplates getQueryDslDialect() {
 		return queryDslDialect;
 	}
+
+	@Override
+	public String getArrayInCondition(String columnName, int sqlType) {
+		return columnName + " = ANY(?)";
+	}
 	
 }
@@ -0,0 +1,39 @@
+package jef.database.dialect.handler;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import jef.database.IQueryableEntity;
+import jef.database.OperateTarget;
+import jef.database.wrapper.clause.InsertSqlClause;
+
+/**
+ * BulkInsertHandler用于extremeInsert时的批量写入。 使用数据库原生的方式(多行VALUES的insert语句、COPY等)
+ * 代替JDBC batch逐行插入，减少网络往返和语句解析的次数。
+ *
+ * @author jiyi
+ *
+ */
+public interface BulkInsertHandler {
+	/**
+	 * 判断该插入语句能否使用批量写入。需要在插入后取回数据库生成的值(如自增主键)时不能使用
+	 *
+	 * @param insert
+	 * @return
+	 */
+	boolean accept(InsertSqlClause insert);
+
+	/**
+	 * 将一批对象写入指定的表
+	 *
+	 * @param db
+	 * @param insert
+	 * @param tablename
+	 *            表名
+	 * @param objs
+	 *            要写入的对象
+	 * @return 写入的行数
+	 * @throws SQLException
+	 */
+	int insert(OperateTarget db, InsertSqlClause insert, String tablename, List<? extends IQueryableEntity> objs) throws SQLException;
+}
@@ -0,0 +1,120 @@
+package jef.database.dialect.handler;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import jef.database.DbUtils;
+import jef.database.IQueryableEntity;
+import jef.database.ORMConfig;
+import jef.database.OperateTarget;
+import jef.database.dialect.type.ColumnMapping;
+import jef.database.support.SqlLog;
+import jef.database.wrapper.clause.InsertSqlClause;
+import jef.database.wrapper.variable.BindVariableContext;
+
+/**
+ * 使用多行VALUES的insert语句批量写入 <br>
+ * insert into table(a,b) values(?,?),(?,?),... <br>
+ * 每条语句的行数受{@link ORMConfig#getExtremeInsertRows()}、数据库对绑定变量个数的限制和
+ * {@link #getMaxBytes(OperateTarget)}的限制。行数相同的语句使用同一个PreparedStatement，最后不足的部分单独执行一次。
+ *
+ * @author jiyi
+ *
+ */
+public class MultiRowInsertHandler implements BulkInsertHandler {
+	/**
+	 * 一条语句中绑定变量的最大个数，0表示不限制
+	 */
+	private final int maxParams;
+
+	public MultiRowInsertHandler(int maxParams) {
+		this.maxParams = maxParams;
+	}
+
+	@Override
+	public boolean accept(InsertSqlClause insert) {
+		return insert.isForPrepare() && !insert.getFields().isEmpty() && !insert.getCallback().isReturnKeys() && insert.getTailer().length() == 0;
+	}
+
+	@Override
+	public int insert(OperateTarget db, InsertSqlClause insert, String tablename, List<? extends IQueryableEntity> objs) throws SQLException {
+		List<ColumnMapping> fields = insert.getFields();
+		int size = objs.size();
+		int rows = getRows(db, insert, tablename, objs);
+		int full = size - size % rows;
+		int total = 0;
+		if (full > 0) {
+			total += execute(db, insert.getSql(tablename, rows), fields, objs, 0, full, rows);
+		}
+		if (full < size) {
+			total += execute(db, insert.getSql(tablename, size - full), fields, objs, full, size, size - full);
+		}
+		return total;
+	}
+
+	/*
+	 * 用同一个语句依次写入[from,to)之间的对象，每次rows行
+	 */
+	private int execute(OperateTarget db, String sql, List<ColumnMapping> fields, List<? extends IQueryableEntity> objs, int from, int to, int rows) throws SQLException {
+		PreparedStatement psmt = db.prepareStatement(sql);
+		try {
+			BindVariableContext context = new BindVariableContext(psmt, db.getProfile(), SqlLog.DUMMY);
+			int total = 0;
+			for (int i = from; i < to; i += rows) {
+				for (int j = 0; j < rows; j++) {
+					context.setInsertVariables(objs.get(i + j), fields, j * fields.size());
+				}
+				total += psmt.executeUpdate();
+			}
+			return total;
+		} finally {
+			psmt.close();
+		}
+	}
+
+	/**
+	 * 计算每条语句的行数
+	 *
+	 * @param db
+	 * @param insert
+	 * @param tablename
+	 * @param objs
+	 * @return
+	 * @throws SQLException
+	 */
+	protected int getRows(OperateTarget db, InsertSqlClause insert, String tablename, List<? extends IQueryableEntity> objs) throws SQLException {
+		List<ColumnMapping> fields = insert.getFields();
+		int rows = Math.min(ORMConfig.getInstance().getExtremeInsertRows(), objs.size());
+		if (maxParams > 0) {
+			rows = Math.min(rows, maxParams / fields.size());
+		}
+		long maxBytes = getMaxBytes(db);
+		if (maxBytes > 0) {
+			long rowBytes = 0;
+			for (IQueryableEntity obj : objs) {
+				long size = 0;
+				for (ColumnMapping field : fields) {
+					size += DbUtils.estimateSize(field.getFieldAccessor().get(obj));
+				}
+				rowBytes = Math.max(rowBytes, size);
+			}
+			// 每行还要加上语句本身的长度
+			rowBytes += insert.getValuesPart().length() + 3;
+			long available = maxBytes - insert.getSql(tablename).length();
+			rows = (int) Math.min(rows, available / rowBytes);
+		}
+		return Math.max(rows, 1);
+	}
+
+	/**
+	 * 一条语句的最大字节数，0表示不限制
+	 *
+	 * @param db
+	 * @return
+	 * @throws SQLException
+	 */
+	protected long getMaxBytes(OperateTarget db) throws SQLException {
+		return 0;
+	}
+}
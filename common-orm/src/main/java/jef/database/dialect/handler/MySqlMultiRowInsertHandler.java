@@ -0,0 +1,35 @@
+package jef.database.dialect.handler;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jef.database.OperateTarget;
+
+/**
+ * MySQL上的多行insert语句。语句的大小不能超过服务端的max_allowed_packet，
+ * 该参数在每个数据源上查询一次后缓存，为留出余量只使用其3/4。
+ *
+ * @author jiyi
+ *
+ */
+public class MySqlMultiRowInsertHandler extends MultiRowInsertHandler {
+	private final Map<String, Long> maxPackets = new ConcurrentHashMap<String, Long>();
+
+	public MySqlMultiRowInsertHandler() {
+		super(65535);
+	}
+
+	@Override
+	protected long getMaxBytes(OperateTarget db) throws SQLException {
+		String key = String.valueOf(db.getDbkey());
+		Long max = maxPackets.get(key);
+		if (max == null) {
+			List<Long> result = db.selectBySql("select @@max_allowed_packet", Long.class);
+			max = result.isEmpty() || result.get(0) == null ? 1024 * 1024L : result.get(0);
+			maxPackets.put(key, max);
+		}
+		return max * 3 / 4;
+	}
+}
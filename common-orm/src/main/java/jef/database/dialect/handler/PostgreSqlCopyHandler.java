@@ -0,0 +1,240 @@
+package jef.database.dialect.handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.util.Calendar;
+import java.util.List;
+
+import jef.database.DbUtils;
+import jef.database.DebugUtil;
+import jef.database.IQueryableEntity;
+import jef.database.ORMConfig;
+import jef.database.OperateTarget;
+import jef.database.dialect.type.ColumnMapping;
+import jef.database.innerpool.IConnection;
+import jef.database.support.SqlLog;
+import jef.database.wrapper.clause.InsertSqlClause;
+import jef.database.wrapper.variable.BindVariableContext;
+import jef.tools.IOUtils;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * PostgreSQL上使用 COPY ... FROM STDIN 批量写入。 <br>
+ * 各列的值仍按映射规则绑定，然后转换为COPY的文本格式发送给数据库，流和Reader在绑定时读出。
+ * 有LOB字段、或者有DEFAULT/序列等非绑定变量的值时，以及无法取得驱动的PGConnection时， 退回到多行insert语句。
+ * 绑定时用到了无法转换为文本的值(数组、SQLXML等需要连接才能创建的对象)时，从该批对象起退回到多行insert语句。
+ *
+ * @author jiyi
+ *
+ */
+public class PostgreSqlCopyHandler extends MultiRowInsertHandler {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	public PostgreSqlCopyHandler() {
+		super(32767);
+	}
+
+	@Override
+	public int insert(OperateTarget db, InsertSqlClause insert, String tablename, List<? extends IQueryableEntity> objs) throws SQLException {
+		List<ColumnMapping> fields = insert.getFields();
+		if (!insert.isAllBound() || hasLob(fields)) {
+			return super.insert(db, insert, tablename, objs);
+		}
+		PGConnection conn = getPGConnection(db);
+		if (conn == null) {
+			return super.insert(db, insert, tablename, objs);
+		}
+		String sql = "COPY " + DbUtils.escapeColumn(db.getProfile(), tablename) + " (" + insert.getColumnsPart() + ") FROM STDIN";
+		Object[] values = new Object[fields.size()];
+		BindVariableContext context = new BindVariableContext(capture(values), db.getProfile(), SqlLog.DUMMY);
+		StringBuilder sb = new StringBuilder(256);
+		int size = objs.size();
+		int rows = Math.max(1, ORMConfig.getInstance().getExtremeInsertRows());
+		int total = 0;
+		CopyIn copy = null;
+		try {
+			// 每批对象先全部转换成功再写入，COPY一旦开始就不能中途退回
+			for (int i = 0; i < size; i += rows) {
+				sb.setLength(0);
+				try {
+					for (IQueryableEntity obj : objs.subList(i, Math.min(i + rows, size))) {
+						context.setInsertVariables(obj, fields);
+						appendRow(sb, values);
+					}
+				} catch (UnsupportedValueException e) {
+					if (copy != null) {
+						total += (int) copy.endCopy();
+						copy = null;
+					}
+					return total + super.insert(db, insert, tablename, objs.subList(i, size));
+				}
+				if (copy == null) {
+					copy = conn.getCopyAPI().copyIn(sql);
+				}
+				byte[] data = sb.toString().getBytes(UTF8);
+				copy.writeToCopy(data, 0, data.length);
+			}
+			if (copy != null) {
+				total += (int) copy.endCopy();
+				copy = null;
+			}
+			return total;
+		} finally {
+			if (copy != null && copy.isActive()) {
+				copy.cancelCopy();
+			}
+		}
+	}
+
+	private static boolean hasLob(List<ColumnMapping> fields) {
+		for (ColumnMapping field : fields) {
+			if (field.isLob()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * 事务中的连接可能被并行的任务共用，需要在连接上同步后切换数据源
+	 */
+	private static PGConnection getPGConnection(OperateTarget db) {
+		IConnection conn = DebugUtil.getConnection(db);
+		try {
+			synchronized (conn) {
+				conn.setKey(db.getDbkey());
+				return conn.unwrap(PGConnection.class);
+			}
+		} catch (SQLException e) {
+			return null;
+		} catch (RuntimeException e) {
+			return null;
+		} catch (LinkageError e) {
+			// 使用的不是官方驱动
+			return null;
+		}
+	}
+
+	/*
+	 * 记录绑定到语句上的值，用于转换为COPY的文本格式。流和Reader读出为byte[]和String；
+	 * 无法转换为文本的值、以及setXxx以外的调用抛出UnsupportedValueException
+	 */
+	static PreparedStatement capture(final Object[] values) {
+		return (PreparedStatement) Proxy.newProxyInstance(PostgreSqlCopyHandler.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if (!name.startsWith("set") || args == null || args.length < 2 || !(args[0] instanceof Integer)) {
+					throw new UnsupportedValueException(name);
+				}
+				int index = (Integer) args[0] - 1;
+				Object value = args[1];
+				if ("setNull".equals(name) || value == null) {
+					values[index] = null;
+				} else if (value instanceof InputStream || value instanceof Reader) {
+					values[index] = read(name, value);
+				} else if (value instanceof Array || value instanceof SQLXML || value instanceof Blob || value instanceof Clob || value instanceof Ref
+						|| (args.length > 2 && args[2] instanceof Calendar)) {
+					// 需要驱动转换的值和指定时区的时间，无法得到与JDBC绑定一致的文本
+					throw new UnsupportedValueException(name);
+				} else {
+					values[index] = value;
+				}
+				return null;
+			}
+		});
+	}
+
+	private static Object read(String method, Object value) throws SQLException {
+		try {
+			if ("setAsciiStream".equals(method)) {
+				return new String(IOUtils.toByteArray((InputStream) value), "US-ASCII");
+			} else if (value instanceof InputStream) {
+				return IOUtils.toByteArray((InputStream) value);
+			} else {
+				return IOUtils.asString((Reader) value);
+			}
+		} catch (IOException e) {
+			throw new SQLException(e);
+		}
+	}
+
+	/**
+	 * 绑定的值无法转换为COPY的文本格式
+	 */
+	static final class UnsupportedValueException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		UnsupportedValueException(String method) {
+			super(method);
+		}
+	}
+
+	/**
+	 * 将一行的值按COPY的文本格式写出，列之间用制表符分隔，以换行结束
+	 *
+	 * @param sb
+	 * @param values
+	 */
+	static void appendRow(StringBuilder sb, Object[] values) {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				sb.append('\t');
+			}
+			appendValue(sb, values[i]);
+		}
+		sb.append('\n');
+	}
+
+	static void appendValue(StringBuilder sb, Object value) {
+		if (value == null) {
+			sb.append("\\N");
+		} else if (value instanceof Boolean) {
+			sb.append(((Boolean) value).booleanValue() ? 't' : 'f');
+		} else if (value instanceof byte[]) {
+			// bytea的十六进制格式，反斜杠本身需要转义
+			sb.append("\\\\x");
+			for (byte b : (byte[]) value) {
+				sb.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+			}
+		} else if (value instanceof BigDecimal) {
+			sb.append(((BigDecimal) value).toPlainString());
+		} else {
+			String s = value.toString();
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				switch (c) {
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				default:
+					sb.append(c);
+				}
+			}
+		}
+	}
+}
@@ -23,8 +23,15 @@ import jef.common.log.LogUtil;
 
 public abstract class AbstractJDBCConnection implements Connection{
 	protected Connection conn;
+	/**
+	 * PreparedStatement缓存，为null表示不缓存
+	 */
+	protected StatementCache statementCache;
 
 	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		if (statementCache != null) {
+			return statementCache.prepareStatement(conn, sql);
+		}
 		return conn.prepareStatement(sql);
 	}
 
@@ -33,10 +40,16 @@ public abstract class AbstractJDBCConnection implements Connection{
 	}
 
 	public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+		if (statementCache != null) {
+			return statementCache.prepareStatement(conn, sql, columnNames);
+		}
 		return conn.prepareStatement(sql, columnNames);
 	}
 
 	public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		if (statementCache != null) {
+			return statementCache.prepareStatement(conn, sql, resultSetType, resultSetConcurrency);
+		}
 		return conn.prepareStatement(sql, resultSetType, resultSetConcurrency);
 	}
 
@@ -49,6 +62,9 @@ public abstract class AbstractJDBCConnection implements Connection{
 	}
 
 	public PreparedStatement prepareStatement(String sql, int i) throws SQLException {
+		if (statementCache != null) {
+			return statementCache.prepareStatement(conn, sql, i);
+		}
 		return conn.prepareStatement(sql, i);
 	}
 
@@ -158,6 +174,9 @@ public abstract class AbstractJDBCConnection implements Connection{
 	}
 
 	public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+		if (statementCache != null) {
+			return statementCache.prepareStatement(conn, sql, columnIndexes);
+		}
 		return conn.prepareStatement(sql, columnIndexes);
 	}
 
@@ -0,0 +1,204 @@
+package jef.database.innerpool;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.persistence.PersistenceException;
+import javax.sql.DataSource;
+
+import jef.common.Callback;
+import jef.common.pool.PoolStatus;
+import jef.database.ConnectInfo;
+import jef.database.DbCfg;
+import jef.database.DbMetaData;
+import jef.database.dialect.DatabaseDialect;
+import jef.database.meta.Feature;
+import jef.tools.Assert;
+import jef.tools.JefConfiguration;
+
+import org.easyframe.enterprise.spring.TransactionMode;
+
+/**
+ * 内嵌单数据源连接池的公共部分：元数据、DataSource接口、统计信息。
+ * 连接的取还、检查和回收由子类实现。
+ *
+ * @see SingleManagedConnectionPool
+ * @see ConcurrentConnectionPool
+ */
+abstract class AbstractManagedConnectionPool implements IManagedConnectionPool, DataSource, CheckablePool {
+	protected final DataSource ds;
+	protected int max;
+	protected int min;
+	private DbMetaData metadata;
+
+	// TODO there's nowhrere to set this value;
+	protected String testSQL;
+
+	// 统计信息，统计拿取和设置的全不知
+	protected final AtomicLong pollCount = new AtomicLong();
+	protected final AtomicLong offerCount = new AtomicLong();
+
+	/**
+	 * 每个连接上缓存的PreparedStatement数量
+	 */
+	private final int statementCacheSize = JefConfiguration.getInt(DbCfg.DB_STATEMENT_CACHE_SIZE, 0);
+	private final AtomicLong statementCacheHits = new AtomicLong();
+	private final AtomicLong statementCacheMisses = new AtomicLong();
+
+	private TransactionMode txMode;
+
+	AbstractManagedConnectionPool(DataSource ds, int min, int max) {
+		if (min > max)
+			min = max;
+		this.ds = ds;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * 初始化元数据，会从池中取连接，因此子类需要在自身的字段初始化完成后调用
+	 */
+	protected final void initMetadata() {
+		this.metadata = new DbMetaData(ds, this, null);
+		metadata.getProfile().accept(metadata);
+	}
+
+	/**
+	 * 生成连接池状态，填上统计信息
+	 */
+	protected final PoolStatus newStatus(int current, int used, int free) {
+		PoolStatus ps = new PoolStatus(max, min, current, used, free);
+		ps.setOfferCount(offerCount.get());
+		ps.setPollCount(pollCount.get());
+		ps.setStatementCacheHits(statementCacheHits.get());
+		ps.setStatementCacheMisses(statementCacheMisses.get());
+		return ps;
+	}
+
+	protected final StatementCache newStatementCache() {
+		return statementCacheSize > 0 ? new StatementCache(statementCacheSize, statementCacheHits, statementCacheMisses) : null;
+	}
+
+	public String toString() {
+		return ds.toString() + getStatus().toString();
+	}
+
+	public DataSource getDatasource() {
+		return ds;
+	}
+
+	@SuppressWarnings("unchecked")
+	public Collection<String> getAllDatasourceNames() {
+		return Collections.EMPTY_SET;
+	}
+
+	public ReentrantConnection poll() throws SQLException {
+		return getConnection(Thread.currentThread());
+	}
+
+	public abstract ReentrantConnection getConnection(Object transaction) throws SQLException;
+
+	public DbMetaData getMetadata(String dbkey) {
+		return metadata;
+	}
+
+	public DatabaseDialect getProfile(String dbkey) {
+		return getProfile();
+	}
+
+	public ConnectInfo getInfo(String dbkey) {
+		return getMetadata(dbkey).getInfo();
+	}
+
+	public DatabaseDialect getProfile() {
+		return metadata.getProfile();
+	}
+
+	public boolean hasRemarkFeature(String dbkey) {
+		if (JefConfiguration.getBoolean(DbCfg.DB_NO_REMARK_CONNECTION, false) || this.min > 5) {
+			return false;
+		}
+		DatabaseDialect profile = getProfile();
+		return profile.has(Feature.REMARK_META_FETCH);
+	}
+
+	public void registeDbInitCallback(Callback<String, SQLException> callback) {
+		if (callback != null) {
+			try {
+				callback.call(null);
+			} catch (SQLException e) {
+				throw new PersistenceException(e);
+			}
+		}
+	}
+
+	public PrintWriter getLogWriter() throws SQLException {
+		throw new UnsupportedOperationException("getLogWriter");
+	}
+
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		throw new UnsupportedOperationException("setLogWriter");
+	}
+
+	public void setLoginTimeout(int seconds) throws SQLException {
+		throw new UnsupportedOperationException("setLoginTimeout");
+	}
+
+	public int getLoginTimeout() throws SQLException {
+		return 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		Assert.notNull(iface, "Interface argument must not be null");
+		if (!DataSource.class.equals(iface)) {
+			throw new SQLException("DataSource of type [" + getClass().getName() + "] can only be unwrapped as [javax.sql.DataSource], not as [" + iface.getName());
+		}
+		return (T) this;
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return false;
+	}
+
+	public Connection getConnection() throws SQLException {
+		return getConnection(Thread.currentThread());
+	}
+
+	public Connection getConnection(String username, String password) throws SQLException {
+		return getConnection(Thread.currentThread());
+	}
+
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return null;
+	}
+
+	public boolean isRouting() {
+		return false;
+	}
+
+	public boolean isDummy() {
+		return false;
+	}
+
+	public boolean isMultipleRdbms() {
+		return false;
+	}
+
+	@Override
+	public IUserManagedPool setTransactionMode(TransactionMode txMode) {
+		this.txMode = txMode;
+		return this;
+	}
+
+	@Override
+	public TransactionMode getTransactionMode() {
+		return txMode;
+	}
+}
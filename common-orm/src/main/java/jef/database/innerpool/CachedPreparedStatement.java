@@ -0,0 +1,147 @@
+package jef.database.innerpool;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import jef.database.DbUtils;
+import jef.database.jdbc.statement.DelegatingPreparedStatement;
+
+/**
+ * 可被{@link StatementCache}缓存的PreparedStatement。
+ * <p>
+ * close()只是逻辑关闭：清除参数、批量，恢复被修改过的maxRows等属性后放回缓存。
+ *
+ * @author jiyi
+ *
+ */
+final class CachedPreparedStatement extends DelegatingPreparedStatement {
+	private final StatementCache cache;
+	private final StatementCache.Key key;
+	private final int generation;
+	private volatile boolean closed;
+	private ResultSet current;
+	private boolean batched;
+
+	// 被修改过的属性的原始值，-1表示未修改
+	private int maxRows = -1;
+	private int fetchSize = -1;
+	private int queryTimeout = -1;
+	private int fetchDirection = -1;
+
+	CachedPreparedStatement(PreparedStatement s, StatementCache cache, StatementCache.Key key, int generation) {
+		super(s);
+		this.cache = cache;
+		this.key = key;
+		this.generation = generation;
+	}
+
+	StatementCache.Key getKey() {
+		return key;
+	}
+
+	int getGeneration() {
+		return generation;
+	}
+
+	void reopen() {
+		closed = false;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			reset();
+		} catch (SQLException e) {
+			closePhysical();
+			return;
+		}
+		cache.release(this);
+	}
+
+	void closePhysical() {
+		closed = true;
+		DbUtils.close(_stmt);
+	}
+
+	private void reset() throws SQLException {
+		if (current != null) {
+			DbUtils.close(current);
+			current = null;
+		}
+		((PreparedStatement) _stmt).clearParameters();
+		_stmt.clearWarnings();
+		if (batched) {
+			_stmt.clearBatch();
+			batched = false;
+		}
+		if (maxRows >= 0) {
+			_stmt.setMaxRows(maxRows);
+			maxRows = -1;
+		}
+		if (fetchSize >= 0) {
+			_stmt.setFetchSize(fetchSize);
+			fetchSize = -1;
+		}
+		if (queryTimeout >= 0) {
+			_stmt.setQueryTimeout(queryTimeout);
+			queryTimeout = -1;
+		}
+		if (fetchDirection >= 0) {
+			_stmt.setFetchDirection(fetchDirection);
+			fetchDirection = -1;
+		}
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return closed || _stmt.isClosed();
+	}
+
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		return current = super.executeQuery();
+	}
+
+	@Override
+	public void addBatch() throws SQLException {
+		batched = true;
+		super.addBatch();
+	}
+
+	@Override
+	public void setMaxRows(int max) throws SQLException {
+		if (maxRows < 0) {
+			maxRows = _stmt.getMaxRows();
+		}
+		super.setMaxRows(max);
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		if (fetchSize < 0) {
+			fetchSize = _stmt.getFetchSize();
+		}
+		super.setFetchSize(rows);
+	}
+
+	@Override
+	public void setQueryTimeout(int seconds) throws SQLException {
+		if (queryTimeout < 0) {
+			queryTimeout = _stmt.getQueryTimeout();
+		}
+		super.setQueryTimeout(seconds);
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		if (fetchDirection < 0) {
+			fetchDirection = _stmt.getFetchDirection();
+		}
+		super.setFetchDirection(direction);
+	}
+}
@@ -0,0 +1,481 @@
+package jef.database.innerpool;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import jef.common.log.LogUtil;
+import jef.common.pool.PoolStatus;
+import jef.database.ORMConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 第四版本的连接池，减少高并发下取还连接时的竞争
+ *
+ * 该版本连接池实现的特性：
+ * <ul>
+ * <li>1、和{@link SingleManagedConnectionPool}一样，对同一个线程或者事务会返回相同的连接。</li>
+ * <li>2、线程记住上次使用的连接，再次取连接时优先取回，不必访问共享的数据结构。</li>
+ * <li>3、全部连接放在一个无锁的列表中，取还连接只用CAS修改连接自身的状态。</li>
+ * <li>4、新连接由后台线程创建，启动时预先创建到min个；取不到连接的线程只等待，超时时间见{@link jef.database.DbCfg#DB_POOL_ACQUIRE_TIMEOUT}。</li>
+ * <li>5、归还的连接按等待的先后交给等待中的线程。</li>
+ * <li>6、检查和回收时逐个锁定空闲连接，不影响其他连接的取还。</li>
+ * <li>7、创建连接时记下autoCommit、readOnly、事务隔离级别和catalog，归还时恢复，使用者修改的设置不会带给下一个使用者。</li>
+ * </ul>
+ */
+final class ConcurrentConnectionPool extends AbstractManagedConnectionPool {
+	private static final Logger log = LoggerFactory.getLogger(ConcurrentConnectionPool.class);
+
+	private static final int FREE = 0;
+	private static final int IN_USE = 1;
+	// 检查或回收中
+	private static final int RESERVED = 2;
+	private static final int REMOVED = 3;
+
+	private static final AtomicInteger POOL = new AtomicInteger();
+	// 归还连接时等待交给等待线程的最长时间(微秒)
+	private static final long HANDOFF_TIMEOUT = 1000L;
+
+	/**
+	 * 全部连接。取连接时从前往后找，因此靠后的连接较少被使用，回收时从后往前
+	 */
+	private final List<PooledConnection> connections = new CopyOnWriteArrayList<PooledConnection>();
+	/**
+	 * 连接数，含正在创建的
+	 */
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicInteger creating = new AtomicInteger();
+	private final AtomicInteger waiters = new AtomicInteger();
+	/**
+	 * 归还的连接直接交给等待中的线程，先等待的先得到
+	 */
+	private final SynchronousQueue<PooledConnection> handoff = new SynchronousQueue<PooledConnection>(true);
+	/**
+	 * 线程上次使用的连接。以线程为键取连接时不使用usedConnections。
+	 * 使用弱引用：线程中的值强引用连接时，连接又引用本池和本ThreadLocal，连接池关闭后也无法回收
+	 */
+	private final ThreadLocal<WeakReference<PooledConnection>> lastUsed = new ThreadLocal<WeakReference<PooledConnection>>();
+	/**
+	 * 以事务等对象为键取得的连接
+	 */
+	private final Map<Object, PooledConnection> usedConnections = new ConcurrentHashMap<Object, PooledConnection>();
+	/**
+	 * 创建连接和检查连接的后台线程。作为子池时由{@link RoutingManagedConnectionPool}的各子池共用
+	 */
+	private final ThreadPoolExecutor worker;
+	private final boolean standalone;
+	private final Runnable createTask = new Runnable() {
+		public void run() {
+			createConnection();
+		}
+	};
+
+	private volatile boolean closed;
+	private volatile SQLException lastCreateError;
+
+	ConcurrentConnectionPool(DataSource ds, int min, int max) {
+		this(ds, min, max, newWorker(1), true);
+	}
+
+	/**
+	 * 构造{@link RoutingManagedConnectionPool}中一个数据源的子池，不初始化元数据，也不登记到检查线程和回收线程
+	 * 
+	 * @param sharedWorker
+	 *            各子池共用的后台线程，关闭子池时不关闭
+	 */
+	ConcurrentConnectionPool(DataSource ds, int min, int max, ThreadPoolExecutor sharedWorker) {
+		this(ds, min, max, sharedWorker, false);
+	}
+
+	private ConcurrentConnectionPool(DataSource ds, int min, int max, ThreadPoolExecutor worker, boolean standalone) {
+		super(ds, min, max);
+		this.worker = worker;
+		this.standalone = standalone;
+		if (standalone) {
+			initMetadata();
+		}
+		fill();
+		if (standalone) {
+			PoolReleaseThread.getInstance().addPool(this);
+			PoolCheckThread.getInstance().addPool(this);
+		}
+	}
+
+	/**
+	 * 创建后台线程，空闲一段时间后线程退出
+	 * 
+	 * @param threads
+	 *            最多的线程数
+	 */
+	static ThreadPoolExecutor newWorker(int threads) {
+		final String name = "thread-JEFPoolWorker-" + POOL.incrementAndGet();
+		ThreadPoolExecutor worker = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			private final AtomicInteger seq = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		worker.allowCoreThreadTimeOut(true);
+		return worker;
+	}
+
+	public PoolStatus getStatus() {
+		int used = 0;
+		int free = 0;
+		for (PooledConnection conn : connections) {
+			int state = conn.state.get();
+			if (state == IN_USE) {
+				used++;
+			} else if (state == FREE) {
+				free++;
+			}
+		}
+		return newStatus(connections.size(), used, free);
+	}
+
+	public ReentrantConnection getConnection(Object transaction) throws SQLException {
+		pollCount.incrementAndGet();
+		if (closed) {
+			throw new SQLException("The connection pool was closed." + this);
+		}
+		boolean byThread = transaction == Thread.currentThread();
+		PooledConnection conn;
+		if (byThread) {
+			WeakReference<PooledConnection> ref = lastUsed.get();
+			conn = ref == null ? null : ref.get();
+			if (conn != null) {
+				if (conn.getUsedByObject() == transaction && conn.state.get() == IN_USE) {
+					conn.addUsedByObject();
+					return conn;
+				}
+				if (conn.state.compareAndSet(FREE, IN_USE)) {
+					return lend(conn, transaction, true);
+				}
+			}
+		} else {
+			conn = usedConnections.get(transaction);
+			if (conn != null) {
+				conn.addUsedByObject();
+				return conn;
+			}
+		}
+		return lend(borrow(), transaction, byThread);
+	}
+
+	private PooledConnection lend(PooledConnection conn, Object transaction, boolean byThread) throws SQLException {
+		try {
+			conn.ensureOpen();
+		} catch (SQLException e) {
+			release(conn);
+			throw e;
+		}
+		conn.byThread = byThread;
+		conn.setUsedByObject(transaction);
+		if (byThread) {
+			WeakReference<PooledConnection> ref = lastUsed.get();
+			if (ref == null || ref.get() != conn) {
+				lastUsed.set(new WeakReference<PooledConnection>(conn));
+			}
+		} else {
+			usedConnections.put(transaction, conn);
+		}
+		return conn;
+	}
+
+	/*
+	 * 先找空闲的连接，没有的话通知后台线程创建，然后等待归还或创建的连接。
+	 * 已经有线程在等待时，新来的线程不去抢空闲的连接
+	 */
+	private PooledConnection borrow() throws SQLException {
+		PooledConnection conn;
+		if (waiters.get() == 0 && (conn = scan()) != null) {
+			return conn;
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ORMConfig.getInstance().getPoolAcquireTimeout());
+		waiters.incrementAndGet();
+		try {
+			long remain;
+			do {
+				fill();
+				if ((conn = scan()) != null) {
+					return conn;
+				}
+				// 创建失败时不会有连接到来，因此分段等待，每次醒来重新尝试创建
+				conn = handoff.poll(Math.min(deadline - System.nanoTime(), 500000000L), TimeUnit.NANOSECONDS);
+				if (conn != null && conn.state.compareAndSet(FREE, IN_USE)) {
+					return conn;
+				}
+				remain = deadline - System.nanoTime();
+			} while (remain > 0 && !closed);
+		} catch (InterruptedException e) {
+			throw new SQLException(e);
+		} finally {
+			waiters.decrementAndGet();
+		}
+		throw new SQLException("No connection avaliable now." + getStatus(), lastCreateError);
+	}
+
+	private PooledConnection scan() {
+		for (PooledConnection conn : connections) {
+			if (conn.state.compareAndSet(FREE, IN_USE)) {
+				return conn;
+			}
+		}
+		return null;
+	}
+
+	public void offer(ReentrantConnection c) {
+		offerCount.incrementAndGet();
+		if (c == null) {
+			return;
+		}
+		PooledConnection conn = (PooledConnection) c;
+		Object o = conn.popUsedByObject();
+		if (o == null) {
+			return;// 不是真正的归还
+		}
+		PooledConnection conn1 = conn.byThread ? conn : usedConnections.remove(o);
+		try {
+			conn.restoreDefaults();
+		} catch (SQLException e) {
+			// 无法恢复的连接关闭，下次取到时重新建立
+			log.warn("Restore connection defaults failed: {}", e.getMessage());
+			conn.setInvalid();
+		}
+		release(conn);
+		if (conn1 != conn) {
+			throw new IllegalStateException("The connection returned not match." + conn + "\t" + conn1);
+		}
+	}
+
+	/*
+	 * 放回连接，有线程在等待时直接交给等待的线程。
+	 * 等待的线程在计数之后、进入poll之前会先扫描一次连接列表，因此只需短暂地等它进入poll；
+	 * 超时后连接留在列表中，由等待的线程下次醒来时取得，归还的线程不必自旋
+	 */
+	private void release(PooledConnection conn) {
+		conn.state.set(FREE);
+		if (closed) {
+			if (conn.state.compareAndSet(FREE, RESERVED)) {
+				remove(conn);
+			}
+			return;
+		}
+		if (waiters.get() > 0 && conn.state.get() == FREE) {
+			try {
+				handoff.offer(conn, HANDOFF_TIMEOUT, TimeUnit.MICROSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void remove(PooledConnection conn) {
+		conn.state.set(REMOVED);
+		if (connections.remove(conn)) {
+			size.decrementAndGet();
+		}
+		conn.closePhysical();
+	}
+
+	/*
+	 * 连接数不足min，或者等待的线程多于正在创建的连接时，由后台线程创建新连接
+	 */
+	private void fill() {
+		for (;;) {
+			int current = size.get();
+			if (closed || current >= max || (current >= min && creating.get() >= waiters.get())) {
+				return;
+			}
+			if (size.compareAndSet(current, current + 1)) {
+				creating.incrementAndGet();
+				try {
+					worker.execute(createTask);
+				} catch (RejectedExecutionException e) {
+					creating.decrementAndGet();
+					size.decrementAndGet();
+					return;
+				}
+			}
+		}
+	}
+
+	private void createConnection() {
+		try {
+			if (closed) {
+				size.decrementAndGet();
+				return;
+			}
+			long start = System.currentTimeMillis();
+			Connection c;
+			try {
+				c = ds.getConnection();
+			} catch (SQLException e) {
+				size.decrementAndGet();
+				lastCreateError = e;
+				log.warn("Create connection to {} failed: {}", ds, e.getMessage());
+				return;
+			}
+			PooledConnection conn = new PooledConnection(c, this, newStatementCache());
+			try {
+				conn.recordDefaults();
+			} catch (SQLException e) {
+				size.decrementAndGet();
+				lastCreateError = e;
+				conn.closePhysical();
+				log.warn("Read defaults of connection to {} failed: {}", ds, e.getMessage());
+				return;
+			}
+			lastCreateError = null;
+			connections.add(conn);
+			if (log.isDebugEnabled()) {
+				log.debug("Create connection to {}, cost {}ms.", ds, System.currentTimeMillis() - start);
+			}
+			release(conn);
+		} finally {
+			creating.decrementAndGet();
+		}
+	}
+
+	public void close() throws SQLException {
+		closed = true;
+		lastUsed.remove();
+		for (PooledConnection conn : connections) {
+			if (conn.state.compareAndSet(FREE, RESERVED)) {
+				remove(conn);
+			}
+		}
+		if (standalone) {
+			worker.shutdown();
+			PoolReleaseThread.getInstance().removePool(this);
+			PoolCheckThread.getInstance().removePool(this);
+		}
+		PoolService.logPoolStatic(getClass().getSimpleName(), pollCount.get(), offerCount.get());
+	}
+
+	public void closeConnectionTillMin() {
+		for (int i = connections.size() - 1; i >= 0 && size.get() > min; i--) {
+			PooledConnection conn;
+			try {
+				conn = connections.get(i);
+			} catch (IndexOutOfBoundsException e) {
+				continue;// 并发移除
+			}
+			if (conn.state.compareAndSet(FREE, RESERVED)) {
+				remove(conn);
+			}
+		}
+	}
+
+	public void notifyDbDisconnect() {
+		if (LogUtil.isDebugEnabled()) {
+			LogUtil.debug("Disconnected connection found, notify Checker thread.");
+		}
+		if (closed) {
+			return;
+		}
+		try {
+			worker.execute(new Runnable() {
+				public void run() {
+					doCheck();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// 连接池已关闭
+		}
+	}
+
+	public void doCheck() {
+		int total = 0;
+		int invalid = 0;
+		for (PooledConnection conn : connections) {
+			if (!conn.state.compareAndSet(FREE, RESERVED)) {
+				continue;// 仅对空闲连接进行检查
+			}
+			total++;
+			int n = PoolService.doCheck(testSQL, Collections.singletonList(conn).iterator());
+			if (n > 0) {
+				invalid++;
+				remove(conn);
+			} else {
+				release(conn);
+				if (n < 0) {
+					break;
+				}
+			}
+		}
+		if (invalid > 0) {
+			fill();
+		}
+		LogUtil.debug("Checked [{}]. total:{},  invalid:{}", this, total, invalid);
+	}
+
+	/**
+	 * 池中的连接，记录取还的状态
+	 */
+	static final class PooledConnection extends SingleConnection {
+		final AtomicInteger state = new AtomicInteger(RESERVED);
+		// 以线程为键取得的连接，归还时无需从usedConnections中移除
+		volatile boolean byThread;
+		// 创建时的连接设置
+		private boolean autoCommit;
+		private boolean readOnly;
+		private int isolation;
+		private String catalog;
+
+		PooledConnection(Connection connection, IPool<ReentrantConnection> parent, StatementCache statementCache) {
+			super(connection, parent, statementCache);
+		}
+
+		void recordDefaults() throws SQLException {
+			autoCommit = conn.getAutoCommit();
+			readOnly = conn.isReadOnly();
+			isolation = conn.getTransactionIsolation();
+			catalog = conn.getCatalog();
+		}
+
+		/*
+		 * 恢复被使用者修改的设置。autoCommit恢复为true时未提交的修改会被提交，因此先回滚
+		 */
+		void restoreDefaults() throws SQLException {
+			Connection c = conn;
+			if (c == null) {
+				return;
+			}
+			if (c.getAutoCommit() != autoCommit) {
+				if (autoCommit) {
+					c.rollback();
+				}
+				c.setAutoCommit(autoCommit);
+			}
+			if (c.isReadOnly() != readOnly) {
+				c.setReadOnly(readOnly);
+			}
+			if (c.getTransactionIsolation() != isolation) {
+				c.setTransactionIsolation(isolation);
+			}
+			if (catalog != null && !catalog.equals(c.getCatalog())) {
+				c.setCatalog(catalog);
+			}
+		}
+	}
+}
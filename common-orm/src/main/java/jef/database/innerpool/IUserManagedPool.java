@@ -34,7 +34,7 @@ import org.easyframe.enterprise.spring.TransactionMode;
  *  <tr>
  *    <td><b>A1</b></td>
  *    <td>内嵌单连接池</td>
- *    <td>{@link SingleManagedConnectionPool}</td>
+ *    <td>{@link ConcurrentConnectionPool}，或{@link SingleManagedConnectionPool}</td>
  *    <td>没有外部连接池时，并且只有一个数据源</td>
  *  </tr>
  *  <tr>
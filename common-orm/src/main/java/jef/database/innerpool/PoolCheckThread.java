@@ -93,10 +93,9 @@ final class PoolCheckThread extends Thread {
 				if (sleep <= 0) {
 					sleep = 120000; // 不作心跳，一分钟后再行动
 				} else {
+					// 由连接池自行控制检查时的并发
 					for (CheckablePool pool : pools) {
-						synchronized (pool) {
-							pool.doCheck();
-						}
+						pool.doCheck();
 					}
 				}
 				ThreadUtils.doSleep(sleep);
@@ -11,6 +11,8 @@ import org.slf4j.LoggerFactory;
 
 import jef.common.log.LogUtil;
 import jef.database.DbCfg;
+import jef.database.ORMConfig;
+import jef.database.datasource.DriverManagerDataSourceWrapper;
 import jef.database.datasource.IRoutingDataSource;
 import jef.database.datasource.SimpleDataSource;
 import jef.tools.JefConfiguration;
@@ -37,9 +39,13 @@ public class PoolService {
 		IUserManagedPool result;
 		if (ds instanceof IRoutingDataSource) {
 			IRoutingDataSource rds = (IRoutingDataSource) ds;
-			result= new RoutingDummyConnectionPool(rds);
-		} else if("org.springframework.jdbc.datasource.DriverManagerDataSource".equals(ds.getClass().getName())||ds instanceof SimpleDataSource){
-            result= new SingleManagedConnectionPool(ds, min, max);
+			if (max > 0) {
+				result = new RoutingManagedConnectionPool(rds, min, max);
+			} else {
+				result = new RoutingDummyConnectionPool(rds);
+			}
+		} else if(isUnpooled(ds)){
+            result= newManagedPool(ds, min, max);
         } else{ 
 			result= new SingleDummyConnectionPool(ds);
 		}
@@ -52,7 +58,27 @@ public class PoolService {
 		ds.setDriverClass(driverClass);
 		ds.setUser(user);
 		ds.setPassword(password);
-		return new SingleManagedConnectionPool(ds, min, max);
+		return newManagedPool(ds, min, max);
+	}
+
+	/**
+	 * 数据源本身是否没有连接池，每次取连接都创建新的物理连接
+	 * 
+	 * @param ds
+	 * @return
+	 */
+	static boolean isUnpooled(DataSource ds) {
+		return "org.springframework.jdbc.datasource.DriverManagerDataSource".equals(ds.getClass().getName()) || ds instanceof SimpleDataSource || ds instanceof DriverManagerDataSourceWrapper;
+	}
+
+	/*
+	 * 按DbCfg.DB_POOL_ENGINE选择内嵌连接池的实现
+	 */
+	private static AbstractManagedConnectionPool newManagedPool(DataSource ds, int min, int max) {
+		if ("queue".equalsIgnoreCase(ORMConfig.getInstance().getPoolEngine())) {
+			return new SingleManagedConnectionPool(ds, min, max);
+		}
+		return new ConcurrentConnectionPool(ds, min, max);
 	}
 
 	/**
@@ -34,8 +34,8 @@ import com.google.common.collect.MapMaker;
 public class RoutingDummyConnectionPool implements IRoutingConnectionPool{
 	protected IRoutingDataSource datasource;
 	final Map<Object, RoutingConnection> usedConnection=new MapMaker().concurrencyLevel(12).weakKeys().makeMap();
-	private final AtomicLong pollCount=new AtomicLong();
-	private final AtomicLong offerCount=new AtomicLong();
+	protected final AtomicLong pollCount=new AtomicLong();
+	protected final AtomicLong offerCount=new AtomicLong();
 	private final Map<String,DbMetaData> metadatas=new HashMap<String,DbMetaData>(8,0.5f);
 	
 	public RoutingDummyConnectionPool(IRoutingDataSource ds){
@@ -0,0 +1,142 @@
+package jef.database.innerpool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.sql.DataSource;
+
+import jef.common.pool.PoolStatus;
+import jef.database.datasource.IRoutingDataSource;
+
+/**
+ * 内嵌多连接池。
+ * <p>
+ * 路由到的数据源本身没有连接池时(如{@link jef.database.datasource.SimpleDataSource}、
+ * {@link jef.database.datasource.DriverManagerDataSourceWrapper})，为每个数据源建立一个有上限的子池({@link ConcurrentConnectionPool})，
+ * 子池在第一次用到该数据源时创建。数据源本身是连接池的，仍和{@link RoutingDummyConnectionPool}一样直接从中取连接。
+ * <p>
+ * 子池由本池统一登记到检查线程和回收线程，创建连接的后台线程也由各子池共用，不随数据源的数量增加。{@link #getStatus()}中的{@link PoolStatus#getSites()}给出每个数据源的使用情况。
+ *
+ * @author jiyi
+ *
+ */
+final class RoutingManagedConnectionPool extends RoutingDummyConnectionPool implements CheckablePool {
+	// 共用的后台线程数，一个数据源创建连接缓慢时不至于阻塞其他数据源
+	private static final int WORKER_THREADS = 2;
+	private final int min;
+	private final int max;
+	private final ConcurrentMap<String, ConcurrentConnectionPool> sitePools = new ConcurrentHashMap<String, ConcurrentConnectionPool>();
+	// 本身是连接池的数据源
+	private final Set<String> externalPooled = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final ThreadPoolExecutor worker = ConcurrentConnectionPool.newWorker(WORKER_THREADS);
+	private volatile boolean closed;
+
+	RoutingManagedConnectionPool(IRoutingDataSource ds, int min, int max) {
+		super(ds);
+		if (min > max)
+			min = max;
+		this.min = min;
+		this.max = max;
+		PoolReleaseThread.getInstance().addPool(this);
+		PoolCheckThread.getInstance().addPool(this);
+	}
+
+	/**
+	 * 从数据源的子池中取连接，数据源本身是连接池时直接取
+	 */
+	@Override
+	public Connection getCachedConnection(String ds) throws SQLException {
+		ConcurrentConnectionPool pool = getSitePool(ds);
+		if (pool == null) {
+			return super.getCachedConnection(ds);
+		}
+		// 同一线程中的多个RoutingConnection不能共用连接，因此每次用不同的对象来取
+		return pool.getConnection(new Object());
+	}
+
+	/*
+	 * 子池的连接关闭即归还，因此putback无需区分。数据源本身是连接池时返回null
+	 */
+	private ConcurrentConnectionPool getSitePool(String key) throws SQLException {
+		ConcurrentConnectionPool pool = sitePools.get(key);
+		if (pool != null || externalPooled.contains(key)) {
+			return pool;
+		}
+		DataSource ds = datasource.getDataSource(key);
+		if (!PoolService.isUnpooled(ds)) {
+			externalPooled.add(key);
+			return null;
+		}
+		synchronized (sitePools) {
+			if (closed) {
+				throw new SQLException("The connection pool was closed.");
+			}
+			pool = sitePools.get(key);
+			if (pool == null) {
+				pool = new ConcurrentConnectionPool(ds, min, max, worker);
+				sitePools.put(key, pool);
+			}
+		}
+		return pool;
+	}
+
+	@Override
+	public PoolStatus getStatus() {
+		Map<String, PoolStatus> sites = new TreeMap<String, PoolStatus>();
+		int current = 0;
+		int used = 0;
+		int free = 0;
+		for (Map.Entry<String, ConcurrentConnectionPool> entry : sitePools.entrySet()) {
+			PoolStatus site = entry.getValue().getStatus();
+			sites.put(entry.getKey(), site);
+			current += site.getCurrentSize();
+			used += site.getUsedCount();
+			free += site.getFreeCount();
+		}
+		PoolStatus ps = new PoolStatus(max * sites.size(), min * sites.size(), current, used, free);
+		ps.setPollCount(pollCount.get());
+		ps.setOfferCount(offerCount.get());
+		ps.setSites(sites);
+		return ps;
+	}
+
+	public void doCheck() {
+		for (ConcurrentConnectionPool pool : sitePools.values()) {
+			pool.doCheck();
+		}
+	}
+
+	@Override
+	public void closeConnectionTillMin() {
+		for (ConcurrentConnectionPool pool : sitePools.values()) {
+			pool.closeConnectionTillMin();
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		super.close();
+		synchronized (sitePools) {
+			closed = true;
+		}
+		for (ConcurrentConnectionPool pool : sitePools.values()) {
+			pool.close();
+		}
+		sitePools.clear();
+		worker.shutdown();
+		PoolReleaseThread.getInstance().removePool(this);
+		PoolCheckThread.getInstance().removePool(this);
+	}
+
+	@Override
+	public boolean isDummy() {
+		return false;
+	}
+}
@@ -15,7 +15,7 @@ import org.slf4j.LoggerFactory;
  * @author jiyi
  * 
  */
-final class SingleConnection extends AbstractJDBCConnection implements ReentrantConnection{
+class SingleConnection extends AbstractJDBCConnection implements ReentrantConnection{
 	private static Logger log = LoggerFactory.getLogger(SingleConnection.class);
 	/**
 	 * Belongs to the connection pool.
@@ -42,7 +42,23 @@ final class SingleConnection extends AbstractJDBCConnection implements Reentrant
 		this.parent = parent;
 	}
 
+	/**
+	 * 构造
+	 * 
+	 * @param connection
+	 * @param parent
+	 * @param statementCache
+	 *            PreparedStatement缓存，可为null
+	 */
+	SingleConnection(Connection connection, IPool<ReentrantConnection> parent, StatementCache statementCache) {
+		this(connection, parent);
+		this.statementCache = statementCache;
+	}
+
 	public void closePhysical() {
+		if (statementCache != null) {
+			statementCache.clear();
+		}
 		if (conn != null) {
 			DbUtils.closeConnection(conn);
 			conn = null;
@@ -57,6 +73,9 @@ final class SingleConnection extends AbstractJDBCConnection implements Reentrant
 	public void ensureOpen() throws SQLException {
 		if (conn != null && conn.isClosed()) {// 检测到关闭的连接后，提示全面检测
 			conn=null;
+			if (statementCache != null) {
+				statementCache.clear();
+			}
 		}
 		if (conn == null) {// 试图创建新连接
 			long start = System.currentTimeMillis();
@@ -110,6 +129,13 @@ final class SingleConnection extends AbstractJDBCConnection implements Reentrant
 		}
 	}
 
+	/**
+	 * 当前占用连接的对象(线程或事务)
+	 */
+	Object getUsedByObject() {
+		return used;
+	}
+
 	public void addUsedByObject() {
 		count++;
 	}
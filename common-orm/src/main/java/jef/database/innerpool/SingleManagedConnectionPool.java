@@ -15,35 +15,18 @@
  */
 package jef.database.innerpool;
 
-import java.io.PrintWriter;
-import java.sql.Connection;
 import java.sql.SQLException;
-import java.sql.SQLFeatureNotSupportedException;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.logging.Logger;
 
-import javax.persistence.PersistenceException;
 import javax.sql.DataSource;
 
-import jef.common.Callback;
 import jef.common.log.LogUtil;
 import jef.common.pool.PoolStatus;
-import jef.database.ConnectInfo;
-import jef.database.DbCfg;
-import jef.database.DbMetaData;
-import jef.database.dialect.DatabaseDialect;
-import jef.database.meta.Feature;
-import jef.tools.Assert;
-import jef.tools.JefConfiguration;
-
-import org.easyframe.enterprise.spring.TransactionMode;
+import jef.database.ORMConfig;
 
 import com.google.common.collect.MapMaker;
 
@@ -56,16 +39,9 @@ import com.google.common.collect.MapMaker;
  * <li>2、连接池大小控制，会在指定的范围内，自动管理连接数量。</li>
  * <li>3、定时检查连接有效性</li>
  * </ul>
+ * 配置{@link jef.database.DbCfg#DB_POOL_ENGINE}为queue时使用，默认使用{@link ConcurrentConnectionPool}。
  */
-final class SingleManagedConnectionPool implements IManagedConnectionPool, DataSource, CheckablePool {
-	private DataSource ds;
-	private int max;
-	private int min;
-	private final DbMetaData metadata;
-
-	// TODO there's nowhrere to set this value;
-	private String testSQL;
-
+final class SingleManagedConnectionPool extends AbstractManagedConnectionPool {
 	/**
 	 * 本来是使用usedConnections.size()来计算目前使用中的连接数的, 但是发现Google
 	 * map在数量统计时不太靠谱,只好自行记录使用
@@ -78,43 +54,18 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 	 */
 	private final BlockingQueue<ReentrantConnection> freeConns;
 
-	// 统计信息，统计拿取和设置的全不知
-	private final AtomicLong pollCount = new AtomicLong();
-	private final AtomicLong offerCount = new AtomicLong();
-
 	SingleManagedConnectionPool(DataSource ds, int min, int max) {
-		if (min > max)
-			min = max;
-		this.ds = ds;
-		this.min = min;
-		this.max = max;
+		super(ds, min, max);
 		freeConns = new LinkedBlockingQueue<ReentrantConnection>(max);
-		this.metadata = new DbMetaData(ds, this, null);
-		metadata.getProfile().accept(metadata);
+		initMetadata();
 		PoolReleaseThread.getInstance().addPool(this);
 		PoolCheckThread.getInstance().addPool(this);
 	}
 
-	public String toString() {
-		return ds.toString() + getStatus().toString();
-	}
-
-	public DataSource getDatasource() {
-		return ds;
-	}
-
 	public PoolStatus getStatus() {
 		int used = usedConnections.size();
 		int free = freeConns.size();
-		PoolStatus ps = new PoolStatus(max, min, used + free, used, free);
-		ps.setOfferCount(offerCount.get());
-		ps.setPollCount(pollCount.get());
-		return ps;
-	}
-
-	@SuppressWarnings("unchecked")
-	public Collection<String> getAllDatasourceNames() {
-		return Collections.EMPTY_SET;
+		return newStatus(used + free, used, free);
 	}
 
 	public ReentrantConnection getConnection(Object transaction) throws SQLException {
@@ -124,11 +75,11 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 			if (conn == null) {
 				if (used.get() < max && freeConns.isEmpty()) {// 尝试用新连接
 					used.getAndIncrement(); // 提前计数
-					conn = new SingleConnection(ds.getConnection(), this);
+					conn = new SingleConnection(ds.getConnection(), this, newStatementCache());
 					conn.setUsedByObject(transaction);
 				} else {
 					used.getAndIncrement(); // 提前计数，并发下为了严格阻止连接池超出上限，必须这样做
-					conn = freeConns.poll(5000000000L, TimeUnit.NANOSECONDS);// 5秒
+					conn = freeConns.poll(ORMConfig.getInstance().getPoolAcquireTimeout(), TimeUnit.MILLISECONDS);
 					if (conn == null) {
 						used.decrementAndGet();
 						throw new SQLException("No connection avaliable now." + getStatus());
@@ -147,18 +98,6 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 		}
 	}
 
-//	@SuppressWarnings("unused")
-//	private void log(Object transaction, ReentrantConnection conn, String action) {
-//		StackTraceElement[] eles = new Throwable().getStackTrace();
-//		System.out.println(action + " " + conn);
-//		System.out.println(eles[4]);
-//		System.out.println(eles[5]);
-//	}
-
-	public ReentrantConnection poll() throws SQLException {
-		return getConnection(Thread.currentThread());
-	}
-
 	public void offer(ReentrantConnection conn) {
 		offerCount.incrementAndGet();
 		if (conn != null) {
@@ -200,82 +139,6 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 		}
 	}
 
-	public DbMetaData getMetadata(String dbkey) {
-		return metadata;
-	}
-
-	public DatabaseDialect getProfile(String dbkey) {
-		return getProfile();
-	}
-
-	public ConnectInfo getInfo(String dbkey) {
-		return getMetadata(dbkey).getInfo();
-	}
-
-	public DatabaseDialect getProfile() {
-		return metadata.getProfile();
-
-	}
-
-	public boolean hasRemarkFeature(String dbkey) {
-		if (JefConfiguration.getBoolean(DbCfg.DB_NO_REMARK_CONNECTION, false) || this.min > 5) {
-			return false;
-		}
-		DatabaseDialect profile = getProfile();
-		return profile.has(Feature.REMARK_META_FETCH);
-	}
-
-	public void registeDbInitCallback(Callback<String, SQLException> callback) {
-		if (callback != null) {
-			try {
-				callback.call(null);
-			} catch (SQLException e) {
-				throw new PersistenceException(e);
-			}
-		}
-	}
-
-	public PrintWriter getLogWriter() throws SQLException {
-		throw new UnsupportedOperationException("getLogWriter");
-	}
-
-	public void setLogWriter(PrintWriter out) throws SQLException {
-		throw new UnsupportedOperationException("setLogWriter");
-	}
-
-	public void setLoginTimeout(int seconds) throws SQLException {
-		throw new UnsupportedOperationException("setLoginTimeout");
-	}
-
-	public int getLoginTimeout() throws SQLException {
-		return 0;
-	}
-
-	@SuppressWarnings("unchecked")
-	public <T> T unwrap(Class<T> iface) throws SQLException {
-		Assert.notNull(iface, "Interface argument must not be null");
-		if (!DataSource.class.equals(iface)) {
-			throw new SQLException("DataSource of type [" + getClass().getName() + "] can only be unwrapped as [javax.sql.DataSource], not as [" + iface.getName());
-		}
-		return (T) this;
-	}
-
-	public boolean isWrapperFor(Class<?> iface) throws SQLException {
-		return false;
-	}
-
-	public Connection getConnection() throws SQLException {
-		return getConnection(Thread.currentThread());
-	}
-
-	public Connection getConnection(String username, String password) throws SQLException {
-		return getConnection(Thread.currentThread());
-	}
-
-	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
-		return null;
-	}
-
 	public void notifyDbDisconnect() {
 		if (LogUtil.isDebugEnabled()) {
 			LogUtil.debug("Disconnected connection found, notify Checker thread.");
@@ -283,34 +146,9 @@ final class SingleManagedConnectionPool implements IManagedConnectionPool, DataS
 		this.doCheck();
 	}
 
-	public boolean isRouting() {
-		return false;
-	}
-
-	public boolean isDummy() {
-		return false;
-	}
-
 	public synchronized void doCheck() {
 		int total = freeConns.size();
 		int invalid = PoolService.doCheck(this.testSQL, freeConns.iterator());
 		LogUtil.debug("Checked [{}]. total:{},  invalid:{}", this, total, invalid);
 	}
-
-	public boolean isMultipleRdbms() {
-		return false;
-	}
-
-	private TransactionMode txMode;
-	
-	@Override
-	public IUserManagedPool setTransactionMode(TransactionMode txMode) {
-		this.txMode=txMode;
-		return this;
-	}
-
-	@Override
-	public TransactionMode getTransactionMode() {
-		return txMode;
-	}
 }
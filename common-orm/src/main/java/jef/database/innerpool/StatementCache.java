@@ -0,0 +1,189 @@
+package jef.database.innerpool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个物理连接上的PreparedStatement缓存(LRU)
+ * <p>
+ * 以SQL语句、结果集类型、并发模式和自增键返回方式作为缓存键。使用中的Statement不在缓存中，
+ * 逻辑关闭时清除参数后放回缓存，超出容量时关闭最久未使用的Statement。
+ *
+ * @author jiyi
+ *
+ */
+final class StatementCache {
+	private final int maxSize;
+	private final AtomicLong hits;
+	private final AtomicLong misses;
+	/**
+	 * 物理连接重建后递增，旧连接上创建的Statement不再放回
+	 */
+	private int generation;
+	private final LinkedHashMap<Key, CachedPreparedStatement> cache;
+
+	/**
+	 * 构造
+	 *
+	 * @param maxSize
+	 *            缓存的Statement数量上限
+	 * @param hits
+	 *            命中计数器(同一连接池中的连接共享)
+	 * @param misses
+	 *            未命中计数器(同一连接池中的连接共享)
+	 */
+	StatementCache(int maxSize, AtomicLong hits, AtomicLong misses) {
+		this.maxSize = maxSize;
+		this.hits = hits;
+		this.misses = misses;
+		this.cache = new LinkedHashMap<Key, CachedPreparedStatement>(16, 0.75f, true);
+	}
+
+	PreparedStatement prepareStatement(Connection conn, String sql) throws SQLException {
+		Key key = new Key(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, Statement.NO_GENERATED_KEYS, null, null);
+		CachedPreparedStatement st = take(key);
+		return st != null ? st : wrap(key, conn.prepareStatement(sql));
+	}
+
+	PreparedStatement prepareStatement(Connection conn, String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+		Key key = new Key(sql, resultSetType, resultSetConcurrency, Statement.NO_GENERATED_KEYS, null, null);
+		CachedPreparedStatement st = take(key);
+		return st != null ? st : wrap(key, conn.prepareStatement(sql, resultSetType, resultSetConcurrency));
+	}
+
+	PreparedStatement prepareStatement(Connection conn, String sql, int autoGeneratedKeys) throws SQLException {
+		Key key = new Key(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, autoGeneratedKeys, null, null);
+		CachedPreparedStatement st = take(key);
+		return st != null ? st : wrap(key, conn.prepareStatement(sql, autoGeneratedKeys));
+	}
+
+	PreparedStatement prepareStatement(Connection conn, String sql, String[] columnNames) throws SQLException {
+		Key key = new Key(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, Statement.RETURN_GENERATED_KEYS, columnNames, null);
+		CachedPreparedStatement st = take(key);
+		return st != null ? st : wrap(key, conn.prepareStatement(sql, columnNames));
+	}
+
+	PreparedStatement prepareStatement(Connection conn, String sql, int[] columnIndexes) throws SQLException {
+		Key key = new Key(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, Statement.RETURN_GENERATED_KEYS, null, columnIndexes);
+		CachedPreparedStatement st = take(key);
+		return st != null ? st : wrap(key, conn.prepareStatement(sql, columnIndexes));
+	}
+
+	/**
+	 * 关闭全部缓存的Statement。在物理连接关闭或重建时调用
+	 */
+	void clear() {
+		List<CachedPreparedStatement> toClose;
+		synchronized (this) {
+			generation++;
+			toClose = new ArrayList<CachedPreparedStatement>(cache.values());
+			cache.clear();
+		}
+		for (CachedPreparedStatement st : toClose) {
+			st.closePhysical();
+		}
+	}
+
+	synchronized int size() {
+		return cache.size();
+	}
+
+	private synchronized CachedPreparedStatement take(Key key) {
+		CachedPreparedStatement st = cache.remove(key);
+		if (st == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		st.reopen();
+		return st;
+	}
+
+	private synchronized CachedPreparedStatement wrap(Key key, PreparedStatement st) {
+		return new CachedPreparedStatement(st, this, key, generation);
+	}
+
+	/**
+	 * 逻辑关闭的Statement放回缓存
+	 *
+	 * @param st
+	 */
+	void release(CachedPreparedStatement st) {
+		CachedPreparedStatement evicted = null;
+		synchronized (this) {
+			// 连接已重建，或者同一SQL已有另一个Statement在缓存中
+			if (st.getGeneration() != generation || cache.containsKey(st.getKey())) {
+				evicted = st;
+			} else {
+				cache.put(st.getKey(), st);
+				if (cache.size() > maxSize) {
+					Iterator<CachedPreparedStatement> iter = cache.values().iterator();
+					evicted = iter.next();
+					iter.remove();
+				}
+			}
+		}
+		if (evicted != null) {
+			evicted.closePhysical();
+		}
+	}
+
+	/**
+	 * 缓存键
+	 */
+	static final class Key {
+		private final String sql;
+		private final int resultSetType;
+		private final int resultSetConcurrency;
+		private final int autoGeneratedKeys;
+		private final String[] columnNames;
+		private final int[] columnIndexes;
+		private final int hashCode;
+
+		Key(String sql, int resultSetType, int resultSetConcurrency, int autoGeneratedKeys, String[] columnNames, int[] columnIndexes) {
+			this.sql = sql;
+			this.resultSetType = resultSetType;
+			this.resultSetConcurrency = resultSetConcurrency;
+			this.autoGeneratedKeys = autoGeneratedKeys;
+			this.columnNames = columnNames;
+			this.columnIndexes = columnIndexes;
+			int h = sql.hashCode();
+			h = 31 * h + resultSetType;
+			h = 31 * h + resultSetConcurrency;
+			h = 31 * h + autoGeneratedKeys;
+			h = 31 * h + Arrays.hashCode(columnNames);
+			h = 31 * h + Arrays.hashCode(columnIndexes);
+			this.hashCode = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key o = (Key) obj;
+			return hashCode == o.hashCode && resultSetType == o.resultSetType && resultSetConcurrency == o.resultSetConcurrency && autoGeneratedKeys == o.autoGeneratedKeys && sql.equals(o.sql) && Arrays.equals(columnNames, o.columnNames)
+					&& Arrays.equals(columnIndexes, o.columnIndexes);
+		}
+
+		@Override
+		public String toString() {
+			return sql;
+		}
+	}
+}
@@ -11,6 +11,7 @@ import jef.database.innerpool.PartitionSupport;
 import jef.database.jdbc.statement.ResultSetLaterProcess;
 import jef.database.routing.jdbc.UpdateReturn;
 import jef.database.routing.sql.InMemoryOperateProvider;
+import jef.database.wrapper.executor.ParallelExecutor;
 import jef.database.wrapper.populator.ResultSetExtractor;
 
 public interface JDBCTarget {
@@ -49,6 +50,12 @@ public interface JDBCTarget {
 
 	PartitionSupport getPartitionSupport();
 
+	/**
+	 * 分库并行执行器
+	 * @return 并行执行器
+	 */
+	ParallelExecutor getParallelExecutor();
+
 	PreparedStatement prepareStatement(String first, ResultSetLaterProcess isReverse, boolean b)throws SQLException;
 
 	Statement createStatement() throws SQLException;
@@ -29,6 +29,7 @@ import jef.database.ORMConfig;
 import jef.database.dialect.DatabaseDialect;
 import jef.database.jdbc.rowset.CachedRowSetImpl;
 import jef.database.meta.Reference;
+import jef.database.wrapper.clause.InMemoryGroupByHaving;
 import jef.database.wrapper.clause.InMemoryPaging;
 import jef.database.wrapper.clause.InMemoryProcessor;
 import jef.database.wrapper.populator.ColumnMeta;
@@ -50,7 +51,7 @@ final class InMemoryProcessResultSet extends AbstractResultSet implements IResul
 	public InMemoryProcessResultSet(List<ResultSetHolder> results, ColumnMeta columns,Map<Reference, List<Condition>> filters) {
 		this.results=results;
 		this.columns=columns;
-		this.dialect=results.get(0).getDb().getProfile();
+		this.dialect=results.get(0).getDb()==null?null:results.get(0).getDb().getProfile();
 		this.filters=filters;
 	}
 
@@ -59,9 +60,17 @@ final class InMemoryProcessResultSet extends AbstractResultSet implements IResul
 		cache=new CachedRowSetImpl(ORMConfig.getInstance().getPartitionInMemoryMaxRows());
 		InMemoryProcessor paging=null;
 		long start=System.currentTimeMillis();
+		//分组合并在每个库的结果读入后立即进行，内存中只保留每个分组的一行
+		InMemoryGroupByHaving group=null;
+		if(!processors.isEmpty() && processors.get(0) instanceof InMemoryGroupByHaving){
+			group=(InMemoryGroupByHaving)processors.get(0);
+		}
 		for(ResultSetHolder sh:results){
 			cache.populate(sh.rs);
 			sh.close(true);
+			if(group!=null){
+				group.merge(cache);
+			}
 		}
 		results.clear();
 		long loaded=System.currentTimeMillis();
@@ -70,6 +79,18 @@ final class InMemoryProcessResultSet extends AbstractResultSet implements IResul
 				paging=processor;
 				continue;
 			}
+			if(processor instanceof InMemoryGroupByHaving){
+				InMemoryGroupByHaving g=(InMemoryGroupByHaving)processor;
+				if(g==group){
+					g.finish(cache);
+				}else{
+					g.process(cache);
+				}
+				if(g.getHiddenStart()>-1){//去除为计算AVG、having追加的列并恢复改写前的列名，各库的结果集此时已关闭，使用缓存的元数据
+					columns=new ColumnMeta(cache.getMetaData()).trim(g.getHiddenStart(),g.getLabels());
+				}
+				continue;
+			}
 			processor.process(cache);
 		}
 		if(paging!=null){
@@ -18,9 +18,10 @@ package jef.database.jdbc.result;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.PriorityQueue;
 
 import javax.persistence.PersistenceException;
 
@@ -33,6 +34,10 @@ import jef.database.wrapper.populator.ColumnMeta;
 /**
  * The is a resort implementation for results with Low Memory consume.
  * 使用王义林提供的新算法优化
+ * <p>
+ * 各个结果集本身已经按相同规则排好序，这里用一个小顶堆做K路归并，堆中每个结果集只放当前行，
+ * 因此内存中不会有超过 结果集数量×fetchSize 的记录。
+ * 如果指定了最大行数(offset+limit)，那么读完的结果集会立即释放，输出足够的记录后即关闭所有结果集，不再继续读取游标。
  * 
  * @author Jiyi
  * 
@@ -40,16 +45,37 @@ import jef.database.wrapper.populator.ColumnMeta;
 final class ReorderResultSet2 extends AbstractResultSet implements IResultSet {
 	private ColumnMeta columns;
 
-	private final TreeMap<ResultSetHolder,Void> gettingResults;
+	private final PriorityQueue<Cursor> gettingResults;
 	private List<ResultSetHolder> allResults;
-	private ResultSetHolder activeRs;
+	private Cursor active;
+	/**
+	 * 最多需要输出的记录数，0表示不限制
+	 */
+	private final long maxRows;
+	/**
+	 * 已经输出的记录数
+	 */
+	private long count;
+	private DatabaseDialect profile;
 
 	public ReorderResultSet2(List<ResultSetHolder> r, InMemoryOrderBy order, ColumnMeta columns,Map<Reference, List<Condition>> filters) {
+		this(r, order, columns, filters, 0);
+	}
+
+	public ReorderResultSet2(List<ResultSetHolder> r, InMemoryOrderBy order, ColumnMeta columns,Map<Reference, List<Condition>> filters, long maxRows) {
 		this.allResults = r;
 		this.columns = columns;
 		this.filters=filters;
-		ResultSetCompartor orders = new ResultSetCompartor(order);
-		gettingResults = new TreeMap<ResultSetHolder,Void>(orders);
+		this.maxRows = maxRows;
+		this.profile = r.get(0).getDb() == null ? null : r.get(0).getProfile();
+		final ResultSetCompartor orders = new ResultSetCompartor(order);
+		gettingResults = new PriorityQueue<Cursor>(Math.max(1, r.size()), new Comparator<Cursor>() {
+			public int compare(Cursor o1, Cursor o2) {
+				int result = orders.compare(o1.rs, o2.rs);
+				// 排序字段相同时，按结果集的先后顺序输出，保证结果稳定
+				return result == 0 ? o1.index - o2.index : result;
+			}
+		});
 		try {
 			chain(r);
 		} catch (SQLException e) {
@@ -62,7 +88,9 @@ final class ReorderResultSet2 extends AbstractResultSet implements IResultSet {
 		for (int i = 0; i < len; i++) {
 			ResultSetHolder re = r.get(i);
 			if (re.next()) {
-				this.gettingResults.put(re,null);
+				this.gettingResults.add(new Cursor(re, i));
+			} else if (maxRows > 0) {
+				re.close(true);
 			}
 		}
 	}
@@ -76,20 +104,44 @@ final class ReorderResultSet2 extends AbstractResultSet implements IResultSet {
 	}
 
 	public boolean next() {
-		if (this.activeRs != null) {
+		if (maxRows > 0 && count >= maxRows) {
+			// 后续记录不再需要，提前释放全部游标
+			releaseAll();
+			return false;
+		}
+		if (this.active != null) {
 			// 加入后重新排序
-			if (this.activeRs.next()) {
-				gettingResults.put(activeRs,null);
+			if (this.active.rs.next()) {
+				gettingResults.add(active);
+			} else if (maxRows > 0) {
+				// 已经读完的结果集不会再有贡献，提前释放
+				active.rs.close(true);
 			}
+			active = null;
 		}
 		if(gettingResults.isEmpty()){
 			return false;
 		}else{
-			activeRs = gettingResults.pollFirstEntry().getKey();
+			active = gettingResults.poll();
+			if (++count == maxRows) {
+				// 已凑足所需的记录，堆中其余的结果集不会再有贡献
+				for (Cursor c : gettingResults) {
+					c.rs.close(true);
+				}
+				gettingResults.clear();
+			}
 			return true;
 		}
 	}
 
+	private void releaseAll() {
+		for (ResultSetHolder rsx : allResults) {
+			rsx.close(true);
+		}
+		gettingResults.clear();
+		active = null;
+	}
+
 	public void beforeFirst() throws SQLException {
 		throw new UnsupportedOperationException("beforeFirst");
 	}
@@ -103,10 +155,10 @@ final class ReorderResultSet2 extends AbstractResultSet implements IResultSet {
 	}
 
 	public DatabaseDialect getProfile() {
-		if(activeRs!=null){
-			return activeRs.getProfile();
+		if(active!=null){
+			return active.rs.getProfile();
 		}else{
-			return allResults.get(0).getProfile();
+			return profile;
 		}
 
 	}
@@ -121,17 +173,14 @@ final class ReorderResultSet2 extends AbstractResultSet implements IResultSet {
 	 * @throws SQLException
 	 */
 	public void close() throws SQLException {
-		for (ResultSetHolder rsx : allResults) {
-			rsx.close(true);
-		}
+		releaseAll();
 		allResults.clear();
-		gettingResults.clear();
 		columns = null;
 	}
 
 	@Override
 	protected ResultSet get() {
-		return activeRs;
+		return active == null ? null : active.rs;
 	}
 
 	public boolean isClosed() throws SQLException {
@@ -174,4 +223,17 @@ final class ReorderResultSet2 extends AbstractResultSet implements IResultSet {
 	public Map<Reference, List<Condition>> getFilters() {
 		return filters;
 	}
+
+	/**
+	 * 堆中的元素，记录结果集和其原始顺序
+	 */
+	private static final class Cursor {
+		private final ResultSetHolder rs;
+		private final int index;
+
+		Cursor(ResultSetHolder rs, int index) {
+			this.rs = rs;
+			this.index = index;
+		}
+	}
 }
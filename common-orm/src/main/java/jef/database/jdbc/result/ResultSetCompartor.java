@@ -36,7 +36,7 @@ final class ResultSetCompartor implements Comparator<ResultSet> {
 				return orderAscendent[i]?retVal:-retVal; 
 			}
 		}
-		return -1;
+		return 0;
 	}
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
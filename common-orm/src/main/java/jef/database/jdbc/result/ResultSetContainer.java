@@ -232,7 +232,7 @@ public final class ResultSetContainer extends AbstractResultSet implements IResu
 	 * 
 	 * 
 	 * 1、a 有内存任务，使用内存处理并排序。
-	 *    b 无内存任务，有多个结果集且有排序任务，使用混合排序
+	 *    b 无内存任务，有多个结果集且有排序任务，使用混合排序(流式归并)
 	 *    c 无内存任务，有多个结果集且无排序任务，使用当前对象作为结果集
 	 *    d 无内存内务，无多个结果集，退化为简单结果集
 	 * 2、有分页任务，包装为分页结果集
@@ -267,7 +267,12 @@ public final class ResultSetContainer extends AbstractResultSet implements IResu
 			rw.setFilters(filters);
 			result=rw;
 		}else if(inMemoryOrder!=null){
-			ReorderResultSet2 rw = new ReorderResultSet2(results, inMemoryOrder, columns, filters);
+			// 各库结果集已排序，流式归并。有分页时只需归并出offset+limit条记录
+			long maxRows = 0;
+			if (inMemoryPage != null && inMemoryPage.getLimit() > 0 && ORMConfig.getInstance().isPartitionStreamingMerge()) {
+				maxRows = (long) inMemoryPage.getOffset() + inMemoryPage.getLimit();
+			}
+			ReorderResultSet2 rw = new ReorderResultSet2(results, inMemoryOrder, columns, filters, maxRows);
 			result=rw;
 		}else{
 			this.filters=filters;
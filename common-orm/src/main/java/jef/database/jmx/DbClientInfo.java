@@ -43,4 +43,28 @@ public class DbClientInfo implements DbClientInfoMBean {
 	public void clearGlobalCache() {
 		db.flush();
 	}
+
+	public int getParallelQueueDepth() {
+		return db.getParallelExecutor().getQueueDepth();
+	}
+
+	public double getParallelAverageWaitMillis() {
+		return db.getParallelExecutor().getAverageWaitMillis();
+	}
+
+	public double getParallelMaxWaitMillis() {
+		return db.getParallelExecutor().getMaxWaitMillis();
+	}
+
+	public long getParallelTimeoutCount() {
+		return db.getParallelExecutor().getTimeoutCount();
+	}
+
+	public long getStatementCacheHits() {
+		return db.getInnerPoolStatus().getStatementCacheHits();
+	}
+
+	public long getStatementCacheMisses() {
+		return db.getInnerPoolStatus().getStatementCacheMisses();
+	}
 }
@@ -40,4 +40,34 @@ public interface DbClientInfoMBean {
 	 * 清理全局缓存
 	 */
 	void clearGlobalCache();
+	/**
+	 * 分库并行执行器中已提交但尚未开始执行的任务数
+	 * @return
+	 */
+	int getParallelQueueDepth();
+	/**
+	 * 分库并行任务从提交到开始执行的平均等待时间(毫秒)
+	 * @return
+	 */
+	double getParallelAverageWaitMillis();
+	/**
+	 * 分库并行任务从提交到开始执行的最长等待时间(毫秒)
+	 * @return
+	 */
+	double getParallelMaxWaitMillis();
+	/**
+	 * 分库并行执行超时的次数
+	 * @return
+	 */
+	long getParallelTimeoutCount();
+	/**
+	 * 内嵌连接池PreparedStatement缓存的命中次数
+	 * @return
+	 */
+	long getStatementCacheHits();
+	/**
+	 * 内嵌连接池PreparedStatement缓存的未命中次数
+	 * @return
+	 */
+	long getStatementCacheMisses();
 }
@@ -40,6 +40,7 @@ import jef.database.DbClient;
 import jef.database.DbUtils;
 import jef.database.Field;
 import jef.database.IQueryableEntity;
+import jef.database.ORMConfig;
 import jef.database.PojoWrapper;
 import jef.database.Session;
 import jef.database.TransactionalSession;
@@ -62,6 +63,14 @@ public class JefEntityManager implements EntityManager {
 	JefEntityTransaction tx;
 	private Map properties;
 	private FlushModeType mode = FlushModeType.AUTO;
+	/**
+	 * 事务中是否延迟写入
+	 */
+	private boolean writeBehind = ORMConfig.getInstance().isJpaWriteBehind();
+	/**
+	 * 延迟写入的操作
+	 */
+	private final WriteBehindQueue queue = new WriteBehindQueue();
 
 	/**
 	 * 构造
@@ -82,6 +91,10 @@ public class JefEntityManager implements EntityManager {
 	}
 
 	public void persist(Object entity) {
+		if (isWriteBehind()) {
+			queue.merge(MetaHolder.getMeta(entity.getClass()), entity);
+			return;
+		}
 	    try {
             getSession().merge(entity);
         } catch (SQLException e) {
@@ -90,6 +103,10 @@ public class JefEntityManager implements EntityManager {
 	}
 
 	public <T> T merge(T entity) {
+		if (isWriteBehind()) {
+			queue.merge(MetaHolder.getMeta(entity.getClass()), entity);
+			return entity;
+		}
 	    try {
             return getSession().merge(entity);
         } catch (SQLException e) {
@@ -108,6 +125,15 @@ public class JefEntityManager implements EntityManager {
 
 	public void remove(Object entity) {
 		try {
+			if (isWriteBehind()) {
+				ITableMetadata meta = MetaHolder.getMeta(entity.getClass());
+				if (canRemoveLater(meta, entity)) {
+					queue.remove(meta, entity);
+					return;
+				}
+				// 级联删除等无法批量执行的操作，先写入之前登记的操作再立即执行
+				flush();
+			}
 			if (entity instanceof IQueryableEntity) {
 				IQueryableEntity data = (IQueryableEntity) entity;
 				getSession().deleteCascade(data);
@@ -121,10 +147,22 @@ public class JefEntityManager implements EntityManager {
 		}
 	}
 
+	/*
+	 * 只有按主键删除、没有级联关系的对象可以延迟到flush时批量删除
+	 */
+	private boolean canRemoveLater(ITableMetadata meta, Object entity) {
+		if (meta.getPKFields().isEmpty() || !meta.getRefFieldsByRef().isEmpty()) {
+			return false;
+		}
+		IQueryableEntity data = entity instanceof IQueryableEntity ? (IQueryableEntity) entity : meta.transfer(entity, true);
+		return DbUtils.getPrimaryKeyValue(data) != null;
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> T find(Class<T> entityClass, Object primaryKey) {
 		if (primaryKey == null)
 			return null;
+		autoFlush();
 		try {
 			Object obj = entityClass.newInstance();
 			if (obj instanceof IQueryableEntity) {
@@ -152,6 +190,7 @@ public class JefEntityManager implements EntityManager {
 	 */
 	@SuppressWarnings("unchecked")
 	public <T> T find(Class<T> entityClass, Object primaryKey, Map<String, Object> properties) {
+		autoFlush();
 		try {
 			IQueryableEntity data = (IQueryableEntity) entityClass.newInstance();
 			if (primaryKey != null) {
@@ -191,6 +230,7 @@ public class JefEntityManager implements EntityManager {
 
 	@SuppressWarnings("unchecked")
 	public <T> T getReference(Class<T> entityClass, Object primaryKey) {
+		autoFlush();
 		try {
 			IQueryableEntity data = (IQueryableEntity) entityClass.newInstance();
 			DbUtils.setPrimaryKeyValue(data, primaryKey);
@@ -207,7 +247,59 @@ public class JefEntityManager implements EntityManager {
 		}
 	}
 
+	/**
+	 * 将延迟写入的操作写入数据库。没有开启延迟写入时什么也不做。
+	 * 
+	 * @see #setWriteBehind(boolean)
+	 */
 	public void flush() {
+		if (queue.isEmpty()) {
+			return;
+		}
+		try {
+			queue.flush(getSession());
+		} catch (SQLException e) {
+			throw DbUtils.toRuntimeException(e);
+		}
+	}
+
+	/*
+	 * FlushModeType.AUTO时，查询前先写入
+	 */
+	private void autoFlush() {
+		if (mode == FlushModeType.AUTO) {
+			flush();
+		}
+	}
+
+	/**
+	 * 是否在事务中延迟写入
+	 * 
+	 * @return
+	 */
+	public boolean isWriteBehind() {
+		return writeBehind && tx != null && tx.isActive() && tx.isBegun();
+	}
+
+	/**
+	 * 设置是否在事务中延迟写入。默认值见{@link jef.database.DbCfg#DB_JPA_WRITE_BEHIND}。<br>
+	 * 开启后，在通过{@link #getTransaction()}开启的事务中，persist/merge/remove只登记对象，
+	 * 在{@link #flush()}、事务提交、以及FlushModeType.AUTO下执行查询前，按表分组使用batchInsert/batchUpdate/batchDelete写入。
+	 * 数据库生成的主键在写入后回写到对象中。没有事务时仍立即写入。
+	 * <p>
+	 * 注意：延迟写入时merge返回传入的对象本身；通过{@link #getSession()}直接执行的操作不会触发写入。
+	 * 
+	 * @param writeBehind
+	 */
+	public void setWriteBehind(boolean writeBehind) {
+		this.writeBehind = writeBehind;
+	}
+
+	/*
+	 * 事务回滚后丢弃尚未写入的操作
+	 */
+	void discard() {
+		queue.clear();
 	}
 
 	public void setFlushMode(FlushModeType flushMode) {
@@ -225,6 +317,7 @@ public class JefEntityManager implements EntityManager {
 	}
 
 	public void refresh(Object entity) {
+		autoFlush();
 		if (entity instanceof IQueryableEntity) {
 			try {
 				IQueryableEntity newObj = this.getSession().load((IQueryableEntity) entity,true);
@@ -257,14 +350,17 @@ public class JefEntityManager implements EntityManager {
 	}
 
 	public void clear() {
+		queue.clear();
 		getSession().evictAll();
 	}
 
 	public void detach(Object entity) {
+		queue.detach(entity);
 		getSession().evict((IQueryableEntity) entity);
 	}
 
 	public boolean contains(Object entity) {
+		autoFlush();
 		if (entity instanceof IQueryableEntity) {
 			try {
 				IQueryableEntity newObj = this.getSession().load((IQueryableEntity) entity,true);
@@ -291,6 +387,7 @@ public class JefEntityManager implements EntityManager {
 	}
 
 	public Query createQuery(String qlString) {
+		autoFlush();
 		return getSession().createQuery(qlString);
 	}
 
@@ -299,23 +396,28 @@ public class JefEntityManager implements EntityManager {
 	}
 
 	public <T> TypedQuery<T> createQuery(String qlString, Class<T> resultClass) {
+		autoFlush();
 		return getSession().createQuery(qlString, resultClass);
 	}
 
 	public Query createNamedQuery(String name) {
+		autoFlush();
 		return getSession().createNamedQuery(name);
 	}
 
 	public <T> TypedQuery<T> createNamedQuery(String name, Class<T> resultClass) {
+		autoFlush();
 		return getSession().createNamedQuery(name, resultClass);
 	}
 
 	public Query createNativeQuery(String sqlString) {
+		autoFlush();
 		return getSession().createNativeQuery(sqlString);
 	}
 
 	@SuppressWarnings("unchecked")
 	public Query createNativeQuery(String sqlString, Class resultClass) {
+		autoFlush();
 		return getSession().createNativeQuery(sqlString, resultClass);
 	}
 
@@ -347,6 +449,7 @@ public class JefEntityManager implements EntityManager {
 			throw new TransactionTimedOutException("Tx was not closed while em closing");
 		}
 		tx = null;
+		queue.clear();
 		close = true;
 		parent = null;
 	}
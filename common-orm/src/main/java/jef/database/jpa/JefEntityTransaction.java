@@ -33,6 +33,8 @@ import org.slf4j.LoggerFactory;
 public class JefEntityTransaction implements EntityTransaction {
 	private TransactionalSession trans;
 	private JefEntityManager parent = null;
+	// 事务是否由begin()开启，外部传入的事务由外部提交，不能延迟写入
+	private boolean begun;
 	private static Logger log = LoggerFactory.getLogger(JefEntityTransaction.class);
 
 	public JefEntityTransaction(JefEntityManager parent) {
@@ -49,6 +51,7 @@ public class JefEntityTransaction implements EntityTransaction {
 			throw new IllegalStateException("Can not open a transaction twice on a EntityTransaction..");
 		}
 		trans = parent.parent.getDefault().startTransaction();
+		begun = true;
 	}
 	
 
@@ -57,6 +60,7 @@ public class JefEntityTransaction implements EntityTransaction {
 			throw new IllegalStateException("Can not open a transaction twice on a EntityTransaction..");
 		}
 		trans = parent.parent.getDefault().startTransaction(timeout,isolationLevel,readOnly);
+		begun = true;
 		
 		
 		
@@ -65,11 +69,18 @@ public class JefEntityTransaction implements EntityTransaction {
 
 	public void commit() {
 		if (trans != null) {
+			try {
+				parent.flush();
+			} catch (RuntimeException e) {
+				trans.rollback(true);
+				throw e;
+			}
 			trans.commit(true);
 		}
 	}
 
 	public void rollback() {
+		parent.discard();
 		if (trans != null) {
 			trans.rollback(true);
 		}
@@ -99,6 +110,10 @@ public class JefEntityTransaction implements EntityTransaction {
 		}
 	}
 
+	boolean isBegun() {
+		return begun;
+	}
+
 	public TransactionalSession get() {
 		return trans;
 	}
@@ -0,0 +1,264 @@
+package jef.database.jpa;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jef.database.DbUtils;
+import jef.database.Field;
+import jef.database.IQueryableEntity;
+import jef.database.Session;
+import jef.database.dialect.type.ColumnMapping;
+import jef.database.meta.EntityType;
+import jef.database.meta.ITableMetadata;
+import jef.database.meta.Reference;
+import jef.database.query.ReferenceType;
+
+/**
+ * JPA事务中延迟执行的写操作。persist/merge/remove时只登记对象，在flush或事务提交时按表分组，使用批量操作写入数据库。
+ * <p>
+ * 执行顺序：各表按外键依赖排列(多对一的目标表在前)，依次写入新增和修改的记录；删除按相反的顺序最后执行。
+ * 因此同一次flush中先删除再插入同一主键的记录会失败，需要在两者之间手工flush。
+ *
+ * @author jiyi
+ *
+ */
+final class WriteBehindQueue {
+	// 按登记的先后记录每张表的操作
+	private final Map<ITableMetadata, Actions> tables = new LinkedHashMap<ITableMetadata, Actions>();
+
+	/**
+	 * 登记新增或合并的对象，写入时按主键判断插入还是更新
+	 *
+	 * @param meta
+	 * @param entity
+	 */
+	void merge(ITableMetadata meta, Object entity) {
+		Actions actions = actions(meta);
+		if (actions.queued.add(entity)) {
+			actions.merges.add(entity);
+		}
+	}
+
+	/**
+	 * 登记按主键删除的对象，尚未写入的新增或合并被取消
+	 *
+	 * @param meta
+	 * @param entity
+	 */
+	void remove(ITableMetadata meta, Object entity) {
+		Actions actions = actions(meta);
+		if (actions.queued.remove(entity)) {
+			removeIdentical(actions.merges, entity);
+		}
+		if (!containsIdentical(actions.deletes, entity)) {
+			actions.deletes.add(entity);
+		}
+	}
+
+	/**
+	 * 取消对象上尚未写入的操作
+	 *
+	 * @param entity
+	 */
+	void detach(Object entity) {
+		for (Actions actions : tables.values()) {
+			if (actions.queued.remove(entity)) {
+				removeIdentical(actions.merges, entity);
+			}
+			removeIdentical(actions.deletes, entity);
+		}
+	}
+
+	boolean isEmpty() {
+		return tables.isEmpty();
+	}
+
+	void clear() {
+		tables.clear();
+	}
+
+	/**
+	 * 将登记的操作写入数据库，完成后清空
+	 *
+	 * @param session
+	 * @throws SQLException
+	 */
+	void flush(Session session) throws SQLException {
+		if (tables.isEmpty()) {
+			return;
+		}
+		Map<ITableMetadata, Actions> pending = new LinkedHashMap<ITableMetadata, Actions>(tables);
+		tables.clear();
+		List<ITableMetadata> order = sort(pending.keySet());
+		for (ITableMetadata meta : order) {
+			flushMerges(session, meta, pending.get(meta).merges);
+		}
+		for (int i = order.size() - 1; i >= 0; i--) {
+			ITableMetadata meta = order.get(i);
+			List<Object> deletes = pending.get(meta).deletes;
+			if (!deletes.isEmpty()) {
+				session.batchDelete(deletes, meta.getPartition() != null);
+			}
+		}
+	}
+
+	private Actions actions(ITableMetadata meta) {
+		Actions actions = tables.get(meta);
+		if (actions == null) {
+			actions = new Actions();
+			tables.put(meta, actions);
+		}
+		return actions;
+	}
+
+	/*
+	 * 用一次IN查询取出已存在的记录，不存在的批量插入，有变化的批量更新。复合主键、POJO和分表的实体逐个合并
+	 */
+	private void flushMerges(Session session, ITableMetadata meta, List<Object> merges) throws SQLException {
+		if (merges.isEmpty()) {
+			return;
+		}
+		if (meta.getPKFields().size() != 1 || meta.getType() == EntityType.POJO || meta.getPartition() != null) {
+			for (Object entity : merges) {
+				session.merge(entity);
+			}
+			return;
+		}
+		List<IQueryableEntity> inserts = new ArrayList<IQueryableEntity>();
+		List<IQueryableEntity> duplicates = new ArrayList<IQueryableEntity>();
+		Map<Object, IQueryableEntity> byKey = new LinkedHashMap<Object, IQueryableEntity>();
+		for (Object obj : merges) {
+			IQueryableEntity entity = (IQueryableEntity) obj;
+			List<Object> pk = DbUtils.getPrimaryKeyValue(entity);
+			if (pk == null) {
+				inserts.add(entity);
+			} else if (byKey.containsKey(pk.get(0))) {
+				duplicates.add(entity);
+			} else {
+				byKey.put(pk.get(0), entity);
+			}
+		}
+		Map<Set<Field>, List<IQueryableEntity>> updates = new LinkedHashMap<Set<Field>, List<IQueryableEntity>>();
+		if (!byKey.isEmpty()) {
+			@SuppressWarnings("unchecked")
+			List<Serializable> keys = (List<Serializable>) (List<?>) new ArrayList<Object>(byKey.keySet());
+			List<IQueryableEntity> olds = session.batchLoad(meta, keys);
+			for (IQueryableEntity old : olds) {
+				IQueryableEntity entity = byKey.remove(DbUtils.getPKValueSafe(old).get(0));
+				if (entity == null) {
+					continue;
+				}
+				entity.clearQuery();
+				DbUtils.compareToUpdateMap(entity, old);
+				if (old.needUpdate()) {
+					// 批量更新以第一个对象修改的字段作为模板，因此按修改的字段分组
+					group(updates, new HashSet<Field>(old.getUpdateValueMap().keySet()), old);
+				}
+			}
+			inserts.addAll(byKey.values());
+		}
+		if (!inserts.isEmpty()) {
+			// 动态插入时以第一个对象设值的字段作为模板，因此按设值的字段分组
+			Map<Set<Field>, List<IQueryableEntity>> groups = new LinkedHashMap<Set<Field>, List<IQueryableEntity>>();
+			for (IQueryableEntity entity : inserts) {
+				Set<Field> used = new HashSet<Field>();
+				for (ColumnMapping column : meta.getColumns()) {
+					if (entity.isUsed(column.field())) {
+						used.add(column.field());
+					}
+				}
+				group(groups, used, entity);
+			}
+			for (List<IQueryableEntity> list : groups.values()) {
+				session.batchInsert(list);
+			}
+		}
+		for (List<IQueryableEntity> list : updates.values()) {
+			session.batchUpdate(list);
+		}
+		for (IQueryableEntity entity : duplicates) {
+			session.merge(entity);
+		}
+	}
+
+	private static void group(Map<Set<Field>, List<IQueryableEntity>> groups, Set<Field> key, IQueryableEntity entity) {
+		List<IQueryableEntity> list = groups.get(key);
+		if (list == null) {
+			list = new ArrayList<IQueryableEntity>();
+			groups.put(key, list);
+		}
+		list.add(entity);
+	}
+
+	/*
+	 * 按外键依赖排序，被依赖的表在前。没有依赖关系的表保持登记的先后，循环依赖时按登记的先后
+	 */
+	static List<ITableMetadata> sort(Collection<ITableMetadata> metas) {
+		List<ITableMetadata> result = new ArrayList<ITableMetadata>(metas.size());
+		Set<ITableMetadata> visited = new HashSet<ITableMetadata>();
+		for (ITableMetadata meta : metas) {
+			visit(meta, metas, visited, result);
+		}
+		return result;
+	}
+
+	private static void visit(ITableMetadata meta, Collection<ITableMetadata> metas, Set<ITableMetadata> visited, List<ITableMetadata> result) {
+		if (!visited.add(meta)) {
+			return;
+		}
+		// 多对一的目标表
+		for (Reference ref : meta.getRefFieldsByRef().keySet()) {
+			ITableMetadata target = ref.getTargetType();
+			if (ref.getType() == ReferenceType.MANY_TO_ONE && target != meta && metas.contains(target)) {
+				visit(target, metas, visited, result);
+			}
+		}
+		// 一对多指向本表的来源表
+		for (ITableMetadata other : metas) {
+			if (other == meta) {
+				continue;
+			}
+			for (Reference ref : other.getRefFieldsByRef().keySet()) {
+				if (ref.getType() == ReferenceType.ONE_TO_MANY && ref.getTargetType() == meta) {
+					visit(other, metas, visited, result);
+				}
+			}
+		}
+		result.add(meta);
+	}
+
+	private static void removeIdentical(List<Object> list, Object entity) {
+		for (Iterator<Object> iter = list.iterator(); iter.hasNext();) {
+			if (iter.next() == entity) {
+				iter.remove();
+				return;
+			}
+		}
+	}
+
+	private static boolean containsIdentical(List<Object> list, Object entity) {
+		for (Object obj : list) {
+			if (obj == entity) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static final class Actions {
+		private final List<Object> merges = new ArrayList<Object>();
+		private final List<Object> deletes = new ArrayList<Object>();
+		// 按对象本身而不是equals判断是否重复登记
+		private final Set<Object> queued = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	}
+}
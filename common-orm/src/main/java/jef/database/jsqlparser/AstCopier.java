@@ -0,0 +1,177 @@
+package jef.database.jsqlparser;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jef.tools.reflect.UnsafeUtils;
+
+/**
+ * 语法树的深拷贝。
+ * <p>
+ * 语法树节点大多没有无参构造和完整的setter，不能使用BeanCopier，这里直接按字段复制：
+ * <ul>
+ * <li>非JDK的对象(语法树节点、PairSO等)逐个字段深拷贝，不执行构造方法。</li>
+ * <li>List/Set/Map和数组复制容器，元素深拷贝。</li>
+ * <li>ThreadLocal新建一个，其他JDK对象(String、数值、枚举等)直接共享。</li>
+ * </ul>
+ * 同一个对象在拷贝中只复制一次，因此共享引用和循环引用都能保持。
+ *
+ * @author jiyi
+ *
+ */
+@SuppressWarnings("restriction")
+final class AstCopier {
+	private static final sun.misc.Unsafe UNSAFE = UnsafeUtils.getUnsafe();
+	private static final Map<Class<?>, FieldCopy[]> FIELDS = new ConcurrentHashMap<Class<?>, FieldCopy[]>();
+
+	private final IdentityHashMap<Object, Object> copied = new IdentityHashMap<Object, Object>();
+
+	private AstCopier() {
+	}
+
+	/**
+	 * 深拷贝
+	 *
+	 * @param obj
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> T copy(T obj) {
+		return (T) new AstCopier().copyObject(obj);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Object copyObject(Object obj) {
+		if (obj == null) {
+			return null;
+		}
+		Class<?> clz = obj.getClass();
+		if (isImmutable(clz)) {
+			return obj;
+		}
+		Object result = copied.get(obj);
+		if (result != null) {
+			return result;
+		}
+		if (obj instanceof ThreadLocal) {
+			result = new ThreadLocal();
+			copied.put(obj, result);
+		} else if (clz.isArray()) {
+			int len = Array.getLength(obj);
+			result = Array.newInstance(clz.getComponentType(), len);
+			copied.put(obj, result);
+			if (clz.getComponentType().isPrimitive()) {
+				System.arraycopy(obj, 0, result, 0, len);
+			} else {
+				Object[] src = (Object[]) obj;
+				Object[] dest = (Object[]) result;
+				for (int i = 0; i < len; i++) {
+					dest[i] = copyObject(src[i]);
+				}
+			}
+		} else if (obj instanceof Collection && isJdk(clz)) {
+			Collection src = (Collection) obj;
+			Collection dest;
+			if (obj instanceof List) {
+				dest = obj instanceof LinkedList ? new LinkedList() : new ArrayList(src.size());
+			} else if (obj instanceof Set) {
+				dest = obj instanceof LinkedHashSet ? new LinkedHashSet() : new HashSet();
+			} else {
+				dest = new ArrayList(src.size());
+			}
+			copied.put(obj, dest);
+			for (Object e : src) {
+				dest.add(copyObject(e));
+			}
+			result = dest;
+		} else if (obj instanceof Map && isJdk(clz)) {
+			Map<?, ?> src = (Map) obj;
+			Map dest = obj instanceof LinkedHashMap ? new LinkedHashMap() : new HashMap();
+			copied.put(obj, dest);
+			for (Map.Entry<?, ?> e : src.entrySet()) {
+				dest.put(copyObject(e.getKey()), copyObject(e.getValue()));
+			}
+			result = dest;
+		} else if (isJdk(clz)) {
+			return obj;
+		} else {
+			result = UnsafeUtils.newInstance(clz);
+			copied.put(obj, result);
+			for (FieldCopy f : getFields(clz)) {
+				f.copy(obj, result, this);
+			}
+		}
+		return result;
+	}
+
+	private static boolean isImmutable(Class<?> clz) {
+		return clz == String.class || Enum.class.isAssignableFrom(clz) || Number.class.isAssignableFrom(clz) && isJdk(clz) || clz == Boolean.class || clz == Character.class || clz == Class.class;
+	}
+
+	private static boolean isJdk(Class<?> clz) {
+		String name = clz.getName();
+		return name.startsWith("java.") || name.startsWith("javax.");
+	}
+
+	private static FieldCopy[] getFields(Class<?> clz) {
+		FieldCopy[] fields = FIELDS.get(clz);
+		if (fields == null) {
+			List<FieldCopy> list = new ArrayList<FieldCopy>();
+			for (Class<?> c = clz; c != Object.class; c = c.getSuperclass()) {
+				for (Field f : c.getDeclaredFields()) {
+					if (!Modifier.isStatic(f.getModifiers())) {
+						list.add(new FieldCopy(f));
+					}
+				}
+			}
+			fields = list.toArray(new FieldCopy[list.size()]);
+			FIELDS.put(clz, fields);
+		}
+		return fields;
+	}
+
+	private static final class FieldCopy {
+		private final long offset;
+		private final Class<?> type;
+
+		FieldCopy(Field field) {
+			this.offset = UNSAFE.objectFieldOffset(field);
+			this.type = field.getType();
+		}
+
+		void copy(Object src, Object dest, AstCopier copier) {
+			if (!type.isPrimitive()) {
+				UNSAFE.putObject(dest, offset, copier.copyObject(UNSAFE.getObject(src, offset)));
+			} else if (type == Integer.TYPE) {
+				UNSAFE.putInt(dest, offset, UNSAFE.getInt(src, offset));
+			} else if (type == Long.TYPE) {
+				UNSAFE.putLong(dest, offset, UNSAFE.getLong(src, offset));
+			} else if (type == Boolean.TYPE) {
+				UNSAFE.putBoolean(dest, offset, UNSAFE.getBoolean(src, offset));
+			} else if (type == Double.TYPE) {
+				UNSAFE.putDouble(dest, offset, UNSAFE.getDouble(src, offset));
+			} else if (type == Float.TYPE) {
+				UNSAFE.putFloat(dest, offset, UNSAFE.getFloat(src, offset));
+			} else if (type == Short.TYPE) {
+				UNSAFE.putShort(dest, offset, UNSAFE.getShort(src, offset));
+			} else if (type == Byte.TYPE) {
+				UNSAFE.putByte(dest, offset, UNSAFE.getByte(src, offset));
+			} else {
+				UNSAFE.putChar(dest, offset, UNSAFE.getChar(src, offset));
+			}
+		}
+	}
+}
@@ -27,6 +27,7 @@ public class SelectToCountWrapper extends PlainSelect{
 	private SubSelect inner;
 	private boolean isDistinct;
 	private Limit removedLimit;
+	private List<Expression> distinctExpressions;
 	
 	public SelectToCountWrapper(Union union){
 		//将Select部分重写为新的Count Function
@@ -92,6 +93,9 @@ public class SelectToCountWrapper extends PlainSelect{
 			this.groupByColumnReferences=select.getGroupByColumnReferences();
 			this.having=select.getHaving();
 			removedLimit=select.getLimit();
+			if(isDistinct && !select.getSelectItems().get(0).isAllColumns()){
+				distinctExpressions=Arrays.asList(select.getSelectItems().get(0).getAsSelectExpression().getExpression());
+			}
 			//this.orderByElements=select.getOrderByElements(); //Order不要	
 		}
 	}
@@ -126,6 +130,14 @@ public class SelectToCountWrapper extends PlainSelect{
 		return isDistinct;
 	}
 
+	/**
+	 * 单列distinct改写为count(distinct x)时，返回原来distinct的列
+	 * @return 原来distinct的列，其他情况返回null
+	 */
+	public List<Expression> getDistinctExpressions() {
+		return distinctExpressions;
+	}
+
 	public Limit getRemovedLimit() {
 		return removedLimit;
 	}
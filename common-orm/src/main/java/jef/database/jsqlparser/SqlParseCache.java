@@ -0,0 +1,186 @@
+package jef.database.jsqlparser;
+
+import java.io.StringReader;
+
+import jef.database.DbCfg;
+import jef.database.jsqlparser.parser.JpqlParser;
+import jef.database.jsqlparser.parser.ParseException;
+import jef.database.jsqlparser.parser.StSqlParser;
+import jef.database.jsqlparser.parser.TokenMgrError;
+import jef.database.jsqlparser.visitor.Statement;
+import jef.tools.JefConfiguration;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * 已解析的SQL语句缓存。
+ * <p>
+ * 相同的SQL文本只解析一次，解析失败的结果也会被缓存。缓存中的语法树是共享的，不允许修改：
+ * <ul>
+ * <li>只读取语法树的场合，使用{@link #getNative(String)}/{@link #getJpql(String)}。</li>
+ * <li>需要改写语法树的场合(例如{@link SqlFunctionlocalization}改写函数、路由时改写表名、缓存维度计算时去除别名)，使用
+ * {@link #copyNative(String)}/{@link #copyJpql(String)}得到一份深拷贝。深拷贝的开销比重新解析小一个数量级。</li>
+ * </ul>
+ * 缓存大小由{@link DbCfg#DB_PARSED_SQL_CACHE_SIZE}配置，为0时不缓存。
+ *
+ * @author jiyi
+ *
+ */
+public final class SqlParseCache {
+	private static final int SIZE = JefConfiguration.getInt(DbCfg.DB_PARSED_SQL_CACHE_SIZE, 1000);
+
+	private static final Cache<Key, Object> CACHE = CacheBuilder.newBuilder().maximumSize(Math.max(SIZE, 1)).concurrencyLevel(16).build();
+
+	private SqlParseCache() {
+	}
+
+	/**
+	 * 按本地SQL语法解析，返回的语法树不可修改
+	 *
+	 * @param sql
+	 * @return
+	 * @throws ParseException
+	 */
+	public static Statement getNative(String sql) throws ParseException {
+		return get(Grammar.NATIVE, sql);
+	}
+
+	/**
+	 * 按本地SQL语法解析，返回可以修改的语法树
+	 *
+	 * @param sql
+	 * @return
+	 * @throws ParseException
+	 */
+	public static Statement copyNative(String sql) throws ParseException {
+		return copy(Grammar.NATIVE, sql);
+	}
+
+	/**
+	 * 按JPQL(E-SQL)语法解析，返回的语法树不可修改
+	 *
+	 * @param sql
+	 * @return
+	 * @throws ParseException
+	 */
+	public static Statement getJpql(String sql) throws ParseException {
+		return get(Grammar.JPQL, sql);
+	}
+
+	/**
+	 * 按JPQL(E-SQL)语法解析，返回可以修改的语法树
+	 *
+	 * @param sql
+	 * @return
+	 * @throws ParseException
+	 */
+	public static Statement copyJpql(String sql) throws ParseException {
+		return copy(Grammar.JPQL, sql);
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public static void clear() {
+		CACHE.invalidateAll();
+	}
+
+	/**
+	 * 缓存中的语句数
+	 *
+	 * @return
+	 */
+	public static long size() {
+		return CACHE.size();
+	}
+
+	private static Statement copy(Grammar grammar, String sql) throws ParseException {
+		if (SIZE <= 0) {
+			return parse(grammar, sql);
+		}
+		return AstCopier.copy(get(grammar, sql));
+	}
+
+	private static Statement get(Grammar grammar, String sql) throws ParseException {
+		if (SIZE <= 0) {
+			return parse(grammar, sql);
+		}
+		Key key = new Key(grammar, sql);
+		Object result = CACHE.getIfPresent(key);
+		if (result == null) {
+			try {
+				result = parse(grammar, sql);
+			} catch (ParseException e) {
+				result = new Failure(e.getMessage());
+			}
+			CACHE.put(key, result);
+		}
+		if (result instanceof Failure) {
+			throw new ParseException(((Failure) result).message);
+		}
+		return (Statement) result;
+	}
+
+	/*
+	 * 词法错误也转为ParseException，不论是否启用缓存，调用者看到的异常都相同
+	 */
+	private static Statement parse(Grammar grammar, String sql) throws ParseException {
+		try {
+			return grammar.parse(sql);
+		} catch (TokenMgrError e) {
+			throw new ParseException(e.getMessage());
+		}
+	}
+
+	private enum Grammar {
+		NATIVE {
+			@Override
+			Statement parse(String sql) throws ParseException {
+				return new StSqlParser(new StringReader(sql)).Statement();
+			}
+		},
+		JPQL {
+			@Override
+			Statement parse(String sql) throws ParseException {
+				return new JpqlParser(new StringReader(sql)).Statement();
+			}
+		};
+
+		abstract Statement parse(String sql) throws ParseException;
+	}
+
+	/*
+	 * 解析失败的记录
+	 */
+	private static final class Failure {
+		private final String message;
+
+		Failure(String message) {
+			this.message = message;
+		}
+	}
+
+	private static final class Key {
+		private final Grammar grammar;
+		private final String sql;
+
+		Key(Grammar grammar, String sql) {
+			this.grammar = grammar;
+			this.sql = sql;
+		}
+
+		@Override
+		public int hashCode() {
+			return sql.hashCode() * 31 + grammar.ordinal();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key o = (Key) obj;
+			return grammar == o.grammar && sql.equals(o.sql);
+		}
+	}
+}
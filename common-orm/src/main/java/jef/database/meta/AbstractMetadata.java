@@ -30,6 +30,7 @@ import jef.database.query.DbTable;
 import jef.database.query.JpqlExpression;
 import jef.database.query.PKQuery;
 import jef.database.wrapper.clause.BindSql;
+import jef.database.wrapper.populator.RowMapperFactory;
 import jef.tools.ArrayUtils;
 import jef.tools.Assert;
 import jef.tools.reflect.ConvertUtils;
@@ -187,6 +188,21 @@ public abstract class AbstractMetadata implements ITableMetadata {
 
 	private volatile Pair<DatabaseDialect, DbTable> cachedTable;
 	protected KeyDimension pkDim;
+	private volatile RowMapperFactory rowMappers;
+
+	public RowMapperFactory getRowMapperFactory() {
+		RowMapperFactory rowMappers = this.rowMappers;
+		if (rowMappers == null) {
+			synchronized (this) {
+				rowMappers = this.rowMappers;
+				if (rowMappers == null) {
+					rowMappers = new RowMapperFactory(getContainerType());
+					this.rowMappers = rowMappers;
+				}
+			}
+		}
+		return rowMappers;
+	}
 
 	public DbTable getBaseTable(DatabaseDialect profile) {
 		Pair<DatabaseDialect, DbTable> cachedTable = this.cachedTable;
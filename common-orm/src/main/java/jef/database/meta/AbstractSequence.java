@@ -1,9 +1,14 @@
 package jef.database.meta;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.persistence.PersistenceException;
 
@@ -15,18 +20,42 @@ import jef.database.DbUtils;
 import jef.database.OperateTarget;
 import jef.database.Sequence;
 import jef.database.SequenceManager;
+import jef.database.wrapper.executor.DbTask;
+import jef.database.wrapper.executor.ParallelExecutor;
 import jef.tools.JefConfiguration;
 import jef.tools.StringUtils;
 
 /**
  * Sequence实现的抽象类
+ * <p>
+ * 缓存的值按区段[low, high]存放，当前区段的下一个值记录在一个AtomicLong中，取值时无锁、不分配对象。
+ * 所有区段用完后才加锁从数据库获取下一批。可以开启后台预取，在最后一个区段用掉一半时提前获取下一批；
+ * 还可以根据消耗速度自动放大每批的大小。
  * 
  * @author jiyi
  * 
  */
 public abstract class AbstractSequence implements Sequence {
+	/**
+	 * 两次获取的间隔小于此值(毫秒)时放大批次，大于其10倍时缩小批次
+	 */
+	private static final long ADAPTIVE_INTERVAL = 1000;
+
 	private int cacheSize;
-	protected final Queue<Long> cache = new ConcurrentLinkedQueue<Long>(); 
+	// 正在使用的区段
+	private final AtomicReference<Range> current = new AtomicReference<Range>();
+	// 已获取但尚未使用的区段
+	private final Queue<Range> ranges = new ConcurrentLinkedQueue<Range>();
+	// 从数据库获取时，收集子类推送的区段。只在持有本对象的锁时访问
+	private List<Range> collecting;
+
+	// 后台预取
+	private volatile boolean prefetch;
+	private final AtomicBoolean prefetching = new AtomicBoolean();
+	// 批次的放大倍数
+	private volatile int maxScale;
+	private volatile int scale = 1;
+	private long lastFetch;
 
 	// 需要初始化
 	protected String dbKey;
@@ -38,6 +67,8 @@ public abstract class AbstractSequence implements Sequence {
 		cacheSize = JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_SIZE, 50);
 		if (cacheSize < 1)
 			cacheSize = 1;
+		prefetch = JefConfiguration.getBoolean(DbCfg.SEQUENCE_PREFETCH, false);
+		maxScale = Math.max(1, JefConfiguration.getInt(DbCfg.SEQUENCE_BATCH_MAX_SCALE, 1));
 		if (target != null) {
 			this.dbKey = target.getDbkey();
 			this.session = target.getSession().getNoTransactionSession();
@@ -67,14 +98,35 @@ public abstract class AbstractSequence implements Sequence {
 	 * @param key
 	 */
 	public void pushBack(long key) {
-		cache.add(key);
+		ranges.add(new Range(key, key));
 	}
 
 	public long next() {
-		Long value = cache.poll();
-		if (value != null){
-			return value;
+		for (;;) {
+			Range range = current.get();
+			if (range != null) {
+				long value = range.next.getAndIncrement();
+				if (value <= range.high) {
+					if (value == range.mark && prefetch && ranges.isEmpty()) {
+						prefetch();
+					}
+					return value;
+				}
+			}
+			// 只有切换成功的线程从队列中取走区段，切换失败时重新尝试队首的区段，区段按获取的顺序使用
+			Range next = ranges.peek();
+			if (next == null) {
+				refill();
+			} else if (current.compareAndSet(range, next)) {
+				ranges.remove(next);
+			}
 		}
+	}
+
+	/*
+	 * 缓存用完时从数据库获取，多个线程同时用完时只有一个线程去获取
+	 */
+	private void refill() {
 		try {
 			if(!initSuccess){
 				if(tryInitCount.get()<3){
@@ -87,15 +139,91 @@ public abstract class AbstractSequence implements Sequence {
 				}
 			}
 			synchronized (this) {
-				return getFirstAndPushOthers(cacheSize, session, dbKey);	
+				Range range = current.get();
+				if (ranges.isEmpty() && (range == null || range.next.get() > range.high)) {
+					ranges.addAll(fetch());
+				}
 			}
 		} catch (SQLException e) {
 			throw DbUtils.toRuntimeException(e);
 		}
 	}
 
+	/*
+	 * 在DbClient的并行执行器中获取下一批
+	 */
+	private void prefetch() {
+		ParallelExecutor executor = getPrefetchExecutor();
+		if (!initSuccess || executor == null || !prefetching.compareAndSet(false, true)) {
+			return;
+		}
+		executor.executeAsync(new DbTask(dbKey) {
+			public void execute() {
+				try {
+					synchronized (AbstractSequence.this) {
+						if (ranges.isEmpty()) {
+							ranges.addAll(fetch());
+						}
+					}
+				} catch (Throwable e) {
+					LogUtil.warn("Prefetch sequence [" + getName() + "] error.", e);
+				} finally {
+					prefetching.set(false);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 后台预取使用的执行器，默认为DbClient的并行执行器
+	 * 
+	 * @return 为null时不预取
+	 */
+	protected ParallelExecutor getPrefetchExecutor() {
+		return session == null ? null : session.getParallelExecutor();
+	}
+
+	/*
+	 * 从数据库获取一批值，相邻的区段合并为一个。调用者需持有锁
+	 */
+	private List<Range> fetch() throws SQLException {
+		long now = System.currentTimeMillis();
+		if (maxScale > 1 && lastFetch > 0) {
+			long interval = now - lastFetch;
+			if (interval < ADAPTIVE_INTERVAL) {
+				scale = Math.min(scale * 2, maxScale);
+			} else if (interval > ADAPTIVE_INTERVAL * 10) {
+				scale = Math.max(scale / 2, 1);
+			}
+		}
+		lastFetch = now;
+		List<Range> result = new ArrayList<Range>();
+		collecting = result;
+		long first;
+		try {
+			first = getFirstAndPushOthers(cacheSize * scale, session, dbKey);
+		} finally {
+			collecting = null;
+		}
+		if (!result.isEmpty() && result.get(0).low == first + 1) {
+			result.set(0, new Range(first, result.get(0).high));
+		} else {
+			result.add(0, new Range(first, first));
+		}
+		for (int i = result.size() - 1; i > 0; i--) {
+			Range pre = result.get(i - 1);
+			Range range = result.get(i);
+			if (pre.high + 1 == range.low) {
+				result.set(i - 1, new Range(pre.low, range.high));
+				result.remove(i);
+			}
+		}
+		return result;
+	}
+
 	public void clear() {
-		cache.clear();
+		ranges.clear();
+		current.set(null);
 	}
 
 	/**
@@ -115,9 +243,44 @@ public abstract class AbstractSequence implements Sequence {
 	 * @param value
 	 */
 	protected void pushRange(long from, long value) {
-		for (long i = from; i <= value; i++) {
-			cache.offer(i);
+		if (from > value) {
+			return;
 		}
+		Range range = new Range(from, value);
+		synchronized (this) {
+			if (collecting != null) {
+				collecting.add(range);
+				return;
+			}
+		}
+		ranges.add(range);
+	}
+
+	/**
+	 * 当前批次的放大倍数
+	 * 
+	 * @return
+	 */
+	public int getScale() {
+		return scale;
+	}
+
+	public boolean isPrefetch() {
+		return prefetch;
+	}
+
+	public void setPrefetch(boolean prefetch) {
+		this.prefetch = prefetch;
+	}
+
+	public int getMaxScale() {
+		return maxScale;
+	}
+
+	public void setMaxScale(int maxScale) {
+		if (maxScale < 1)
+			maxScale = 1;
+		this.maxScale = maxScale;
 	}
 
 	public int getCacheSize() {
@@ -152,4 +315,22 @@ public abstract class AbstractSequence implements Sequence {
 		pushBack(next);
 		return maxInTable < next;
 	}
+
+	/*
+	 * 一段连续的值，next为下一个可用的值
+	 */
+	private static final class Range {
+		final long low;
+		final long high;
+		// 用掉一半时预取
+		final long mark;
+		final AtomicLong next;
+
+		Range(long low, long high) {
+			this.low = low;
+			this.high = high;
+			this.mark = low + (high - low) / 2;
+			this.next = new AtomicLong(low);
+		}
+	}
 }
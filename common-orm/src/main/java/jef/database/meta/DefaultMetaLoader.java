@@ -309,6 +309,11 @@ public class DefaultMetaLoader implements MetadataConfiguration {
 				throw new IllegalArgumentException(e);
 			}
 		}
+		// 构建时已经记录在实体索引中的，不再反射读取注解
+		ClassAnnotationProvider indexed = IndexedAnnotationProvider.get(clz);
+		if (indexed != null) {
+			return indexed;
+		}
 		return new AnnoImpl(clz);
 	}
 
@@ -12,7 +12,7 @@ import jef.tools.IOUtils;
 import jef.tools.StringUtils;
 
 /**
- * 缺省分表规则加载器，首先查找xxx.xxx.xxx.clzname.partition文件,然后使用annotation。
+ * 缺省分表规则加载器，首先查找xxx.xxx.xxx.clzname.partition文件,然后使用annotation(构建时记录在实体索引中的，直接从索引得到)。
  * 
  * 扩展这可以继承此类实现自定义的配置加载方式
  * 
@@ -69,7 +69,8 @@ public class DefaultPartitionStrategyLoader implements PartitionStrategyLoader {
 	}
 
 	private PartitionTable loadFromClassAnnotation(Class<? extends IQueryableEntity> clz) {
-		PartitionTable table = clz.getAnnotation(PartitionTable.class);
+		IndexedAnnotationProvider indexed = IndexedAnnotationProvider.get(clz);
+		PartitionTable table = indexed == null ? clz.getAnnotation(PartitionTable.class) : indexed.getAnnotation(PartitionTable.class);
 		if (table != null)
 			LogUtil.info(StringUtils.concat("Loading the partition strategy from annotation.[", clz.getName(), "]", JsonUtil.toJsonWithoutQuot(PartitionTableImpl.create(table))));
 		return table;
@@ -19,6 +19,7 @@ import jef.database.dialect.type.ColumnMapping;
 import jef.database.dialect.type.VersionSupportColumn;
 import jef.database.meta.def.IndexDef;
 import jef.database.meta.def.UniqueConstraintDef;
+import jef.database.wrapper.populator.RowMapperFactory;
 
 import com.google.common.collect.Multimap;
 
@@ -310,6 +311,13 @@ public interface ITableMetadata {
 	 */
 	IQueryableEntity newInstance();
 
+	/**
+	 * 内部使用，得到结果集映射器的工厂，其中缓存了按列布局生成的映射器
+	 * 
+	 * @return
+	 */
+	RowMapperFactory getRowMapperFactory();
+
 	// ///////////////////////////// 其他行为 //////////////////////////////
 	/**
 	 * 返回所有的Lob字段
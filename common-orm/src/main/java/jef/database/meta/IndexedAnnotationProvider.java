@@ -0,0 +1,198 @@
+package jef.database.meta;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.geequery.asm.Type;
+
+import jef.database.meta.AnnotationProvider.ClassAnnotationProvider;
+import jef.database.support.EntityIndex;
+import jef.database.support.EntityMetaReader;
+import jef.tools.reflect.BeanUtils;
+
+/**
+ * 从构建时生成的实体索引中得到注解，不再通过反射解析类和字段上的注解。
+ * <p>
+ * 父类中的字段，如果父类也在索引中则同样从索引中得到，否则仍通过反射读取。
+ *
+ * @see EntityMetaReader
+ * @author jiyi
+ *
+ */
+@SuppressWarnings("unchecked")
+final class IndexedAnnotationProvider implements ClassAnnotationProvider {
+	private final Class<?> clz;
+	private final Map<String, Object> annotations;
+	// 按声明字段的类记录字段上的注解，不在索引中的类记为空
+	private final Map<Class<?>, Map<String, Object>> fields = new HashMap<Class<?>, Map<String, Object>>();
+	private final Map<Class<?>, Annotation> cache = new HashMap<Class<?>, Annotation>();
+
+	private IndexedAnnotationProvider(Class<?> clz, Map<String, Object> metadata) {
+		this.clz = clz;
+		this.annotations = (Map<String, Object>) metadata.get(EntityMetaReader.CLASS);
+		this.fields.put(clz, (Map<String, Object>) metadata.get(EntityMetaReader.FIELDS));
+	}
+
+	/**
+	 * 类在有效的实体索引中时返回从索引得到注解的Provider，否则返回null
+	 *
+	 * @param clz
+	 * @return
+	 */
+	static IndexedAnnotationProvider get(Class<?> clz) {
+		Map<String, Object> metadata = EntityIndex.getMetadata(clz);
+		return metadata == null ? null : new IndexedAnnotationProvider(clz, metadata);
+	}
+
+	public <T extends Annotation> T getAnnotation(Class<T> type) {
+		if (!annotations.containsKey(type.getName()) && type.isAnnotationPresent(Inherited.class)) {
+			// 可以从父类继承的注解
+			return clz.getAnnotation(type);
+		}
+		T result = (T) cache.get(type);
+		if (result == null) {
+			result = toAnnotation(type, annotations, clz.getClassLoader());
+			cache.put(type, result);
+		}
+		return result;
+	}
+
+	public String getName() {
+		return clz.getName();
+	}
+
+	public FieldAnnotationProvider forField(Field field) {
+		Map<String, Object> values = getFieldAnnotations(field);
+		if (values == null) {
+			return new DefaultMetaLoader.FieldProviderImpl(field);
+		}
+		final Map<String, Object> fieldAnnotations = values;
+		return new DefaultMetaLoader.FieldProviderImpl(field) {
+			private final Map<Class<?>, Annotation> fieldCache = new HashMap<Class<?>, Annotation>();
+
+			@Override
+			public <T extends Annotation> T getAnnotation(Class<T> type) {
+				T result = (T) fieldCache.get(type);
+				if (result == null) {
+					result = toAnnotation(type, fieldAnnotations, field.getDeclaringClass().getClassLoader());
+					fieldCache.put(type, result);
+				}
+				return result;
+			}
+		};
+	}
+
+	private Map<String, Object> getFieldAnnotations(Field field) {
+		Class<?> declaring = field.getDeclaringClass();
+		Map<String, Object> declared;
+		if (fields.containsKey(declaring)) {
+			declared = fields.get(declaring);
+		} else {
+			Map<String, Object> metadata = EntityIndex.getMetadata(declaring);
+			declared = metadata == null ? null : (Map<String, Object>) metadata.get(EntityMetaReader.FIELDS);
+			fields.put(declaring, declared);
+		}
+		return declared == null ? null : (Map<String, Object>) declared.get(field.getName());
+	}
+
+	/*
+	 * 按注解各属性的类型转换索引中记录的值，未记录的属性使用默认值
+	 */
+	private static <T extends Annotation> T toAnnotation(Class<T> type, Map<String, Object> annotations, ClassLoader cl) {
+		Map<String, Object> values = (Map<String, Object>) annotations.get(type.getName());
+		if (values == null) {
+			return null;
+		}
+		Map<String, Object> data = new HashMap<String, Object>();
+		for (Method method : type.getDeclaredMethods()) {
+			Object value = values.get(method.getName());
+			if (value != null) {
+				data.put(method.getName(), toValue(value, method.getReturnType(), cl));
+			}
+		}
+		return BeanUtils.asAnnotation(type, data);
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static Object toValue(Object value, Class<?> type, ClassLoader cl) {
+		if (type.isArray()) {
+			List<?> list = value instanceof List ? (List<?>) value : Collections.singletonList(value);
+			Class<?> componentType = type.getComponentType();
+			Object array = Array.newInstance(componentType, list.size());
+			for (int i = 0; i < list.size(); i++) {
+				Array.set(array, i, toValue(list.get(i), componentType, cl));
+			}
+			return array;
+		}
+		if (type.isAnnotation()) {
+			Map<String, Object> holder = Collections.singletonMap(type.getName(), value);
+			return toAnnotation(type.asSubclass(Annotation.class), holder, cl);
+		}
+		if (type.isEnum()) {
+			return Enum.valueOf(type.asSubclass(Enum.class), (String) value);
+		}
+		if (type == Class.class) {
+			return toClass(Type.getType((String) value), cl);
+		}
+		if (type == String.class) {
+			return value.toString();
+		}
+		if (type == boolean.class) {
+			return value;
+		}
+		if (type == char.class) {
+			return ((String) value).charAt(0);
+		}
+		Number n = (Number) value;
+		if (type == int.class) {
+			return n.intValue();
+		} else if (type == long.class) {
+			return n.longValue();
+		} else if (type == short.class) {
+			return n.shortValue();
+		} else if (type == byte.class) {
+			return n.byteValue();
+		} else if (type == float.class) {
+			return n.floatValue();
+		} else {
+			return n.doubleValue();
+		}
+	}
+
+	private static Class<?> toClass(Type type, ClassLoader cl) {
+		switch (type.getSort()) {
+		case Type.VOID:
+			return void.class;
+		case Type.BOOLEAN:
+			return boolean.class;
+		case Type.CHAR:
+			return char.class;
+		case Type.BYTE:
+			return byte.class;
+		case Type.SHORT:
+			return short.class;
+		case Type.INT:
+			return int.class;
+		case Type.FLOAT:
+			return float.class;
+		case Type.LONG:
+			return long.class;
+		case Type.DOUBLE:
+			return double.class;
+		default:
+			String name = type.getSort() == Type.ARRAY ? type.getDescriptor().replace('/', '.') : type.getClassName();
+			try {
+				return Class.forName(name, false, cl);
+			} catch (ClassNotFoundException e) {
+				throw new IllegalArgumentException("The class " + name + " recorded in the entity index was not found.", e);
+			}
+		}
+	}
+}
@@ -91,6 +91,7 @@ import jef.database.meta.object.PrimaryKey;
 import jef.database.meta.object.TableInfo;
 import jef.database.query.JpqlExpression;
 import jef.database.query.ReadOnlyQuery;
+import jef.database.support.EntityIndex;
 import jef.database.support.EntityNotEnhancedException;
 import jef.database.support.QuerableEntityScanner;
 import jef.tools.ArrayUtils;
@@ -557,6 +558,10 @@ public final class MetaHolder {
 			LogUtil.warn("The source of class " + type + " not found, skip enhanced-check.");
 			return;
 		}
+		// 构建时增强后记录在索引中的类无需再读取字节码
+		if (EntityIndex.isIndexed(url, type.getName())) {
+			return;
+		}
 		byte[] data;
 		try {
 			data = IOUtils.toByteArray(url);
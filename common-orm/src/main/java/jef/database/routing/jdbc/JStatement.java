@@ -1,6 +1,5 @@
 package jef.database.routing.jdbc;
 
-import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -16,8 +15,8 @@ import org.slf4j.LoggerFactory;
 import jef.database.DbUtils;
 import jef.database.innerpool.JConnection;
 import jef.database.jdbc.GenerateKeyReturnOper;
+import jef.database.jsqlparser.SqlParseCache;
 import jef.database.jsqlparser.parser.ParseException;
-import jef.database.jsqlparser.parser.StSqlParser;
 import jef.tools.ArrayUtils;
 
 @SuppressWarnings("unchecked")
@@ -391,9 +390,9 @@ public class JStatement implements java.sql.Statement {
 	}
 
 	protected jef.database.jsqlparser.visitor.Statement parse(String sql) {
-		StSqlParser parser = new StSqlParser(new StringReader(sql));
 		try {
-			return parser.Statement();
+			// 路由过程中会改写语法树，因此取得副本
+			return SqlParseCache.copyNative(sql);
 		} catch (ParseException e) {
 			log.error("Parse Error: {}", sql);
 			return null;
@@ -0,0 +1,376 @@
+package jef.database.routing.sql;
+
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jef.database.Condition.Operator;
+import jef.database.jsqlparser.expression.BinaryExpression;
+import jef.database.jsqlparser.expression.Function;
+import jef.database.jsqlparser.expression.JdbcParameter;
+import jef.database.jsqlparser.expression.JpqlParameter;
+import jef.database.jsqlparser.expression.Parenthesis;
+import jef.database.jsqlparser.expression.operators.conditional.AndExpression;
+import jef.database.jsqlparser.expression.operators.relational.Between;
+import jef.database.jsqlparser.expression.operators.relational.EqualsTo;
+import jef.database.jsqlparser.expression.operators.relational.ExpressionList;
+import jef.database.jsqlparser.expression.operators.relational.GreaterThan;
+import jef.database.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import jef.database.jsqlparser.expression.operators.relational.InExpression;
+import jef.database.jsqlparser.expression.operators.relational.IsNullExpression;
+import jef.database.jsqlparser.expression.operators.relational.MinorThan;
+import jef.database.jsqlparser.expression.operators.relational.MinorThanEquals;
+import jef.database.jsqlparser.expression.operators.relational.NotEqualsTo;
+import jef.database.jsqlparser.statement.select.PlainSelect;
+import jef.database.jsqlparser.statement.select.SelectExpressionItem;
+import jef.database.jsqlparser.visitor.Expression;
+import jef.database.jsqlparser.visitor.SelectItem;
+import jef.database.jsqlparser.visitor.SqlValue;
+import jef.database.jsqlparser.visitor.VisitorAdapter;
+import jef.database.wrapper.clause.GroupByItem;
+import jef.database.wrapper.clause.GroupFunctionType;
+import jef.database.wrapper.clause.HavingEle;
+import jef.database.wrapper.clause.InMemoryGroupByHaving;
+
+/**
+ * 跨库分组查询的拆分方案。
+ * <p>
+ * 各库返回每个分组的部分聚合结果，在内存中按分组合并:
+ * <ul>
+ * <li>AVG(x)在各库上改写为SUM(x)，并在末尾追加COUNT(x)列，合并后再相除</li>
+ * <li>having不在各库上执行(各库上只有部分聚合结果)，合并后在内存中计算。having中用到、但不在select中的聚合函数作为辅助列追加</li>
+ * <li>COUNT/SUM/AVG(DISTINCT x)在各库上去重后的结果无法合并，不支持</li>
+ * </ul>
+ * 辅助列在合并后去除。
+ *
+ * @see InMemoryGroupByHaving
+ */
+final class PartialAggregatePlan {
+	/**
+	 * having中用到的辅助列的别名前缀
+	 */
+	static final String HAVING_ALIAS = "having__";
+
+	private final PlainSelect select;
+	private final Map<Expression, Object> paramsMap;
+	/**
+	 * 原select部分加上having用到的辅助列，未改写
+	 */
+	private final List<SelectItem> mergeItems;
+	/**
+	 * 各库上使用的select部分
+	 */
+	private final List<SelectItem> shardItems;
+	/**
+	 * mergeItems中每列对应的COUNT列序号，-1表示没有
+	 */
+	private final int[] countIndexes;
+	private final Set<String> groups = new HashSet<String>();
+	private final List<HavingEle> having = new ArrayList<HavingEle>();
+	private final int selectSize;
+	private final boolean havingHasParams;
+
+	PartialAggregatePlan(PlainSelect select, Map<Expression, Object> paramsMap) throws SQLFeatureNotSupportedException {
+		this.select = select;
+		this.paramsMap = paramsMap;
+		for (Expression exp : select.getGroupByColumnReferences()) {
+			groups.add(exp.toString().toUpperCase());
+		}
+		List<SelectItem> selects = select.getSelectItems();
+		this.selectSize = selects.size();
+		this.mergeItems = new ArrayList<SelectItem>(selects);
+		if (select.getHaving() != null) {
+			parseHaving(select.getHaving());
+		}
+		this.havingHasParams = select.getHaving() != null && new ParamCollector(paramsMap).collect(select.getHaving()).size() > 0;
+
+		this.countIndexes = new int[mergeItems.size()];
+		this.shardItems = new ArrayList<SelectItem>(mergeItems);
+		List<SelectItem> counts = new ArrayList<SelectItem>();
+		for (int i = 0; i < mergeItems.size(); i++) {
+			SelectItem item = mergeItems.get(i);
+			countIndexes[i] = -1;
+			if (item.isAllColumns() || !(item.getAsSelectExpression().getExpression() instanceof Function)) {
+				continue;
+			}
+			Function f = (Function) item.getAsSelectExpression().getExpression();
+			GroupFunctionType type = f.getGroupFunctionType();
+			if (f.isDistinct() && (type == GroupFunctionType.COUNT || type == GroupFunctionType.SUM || type == GroupFunctionType.AVG)) {
+				throw new SQLFeatureNotSupportedException("The function " + f + " can not be merged across databases, the partial results are distinct on each database only.");
+			}
+			if (type != GroupFunctionType.AVG || f.isAllColumns() || f.getOver() != null || f.rewrite != null) {
+				continue;
+			}
+			Function sum = new Function();
+			sum.setName("SUM");
+			sum.setParameters(f.getParameters());
+			shardItems.set(i, new SelectExpressionItem(sum, item.getAsSelectExpression().getAlias()));
+			Function count = new Function();
+			count.setName("COUNT");
+			count.setParameters(f.getParameters());
+			countIndexes[i] = mergeItems.size() + counts.size();
+			counts.add(new SelectExpressionItem(count, InMemoryGroupByHaving.AVG_COUNT_ALIAS + counts.size()));
+		}
+		shardItems.addAll(counts);
+	}
+
+	/**
+	 * 各库上使用的select部分
+	 *
+	 * @return
+	 */
+	List<SelectItem> getShardItems() {
+		return shardItems;
+	}
+
+	/**
+	 * 各库上的绑定变量。having不在各库上执行，其中的绑定变量也要去除
+	 *
+	 * @param params
+	 *            原SQL的绑定变量
+	 * @return
+	 */
+	List<Object> getShardParams(List<Object> params) {
+		if (!havingHasParams) {
+			return params;
+		}
+		Expression origin = select.getHaving();
+		select.setHaving(null);
+		try {
+			return new ParamCollector(paramsMap).collect(select);
+		} finally {
+			select.setHaving(origin);
+		}
+	}
+
+	/**
+	 * 生成内存合并任务
+	 *
+	 * @return
+	 */
+	InMemoryGroupByHaving newProcessor() {
+		List<GroupByItem> keys = new ArrayList<GroupByItem>();
+		List<GroupByItem> values = new ArrayList<GroupByItem>();
+		for (int i = 0; i < mergeItems.size(); i++) {
+			SelectItem e = mergeItems.get(i);
+			if (e.isAllColumns())
+				continue;
+			SelectExpressionItem item = e.getAsSelectExpression();
+			String alias = item.getAlias();
+			String sql = item.getExpression().toString().toUpperCase();
+			if (groups.contains(sql)) {
+				keys.add(new GroupByItem(i, GroupFunctionType.GROUP, alias));
+				continue;
+			}
+			GroupByItem value = new GroupByItem(i, getType(sql), alias);
+			if (countIndexes[i] > -1) {
+				value.setCountIndex(countIndexes[i]);
+				if (alias == null) {
+					// 各库上改写为SUM后列名会变化
+					value.setLabel(item.getExpression().toString());
+				}
+			}
+			values.add(value);
+		}
+		InMemoryGroupByHaving process = new InMemoryGroupByHaving(keys, values);
+		if (mergeItems.size() > selectSize) {
+			process.setHiddenStart(selectSize);
+		}
+		if (!having.isEmpty()) {
+			process.setHaving(having);
+		}
+		return process;
+	}
+
+	private static GroupFunctionType getType(String exp) {
+		if (exp.startsWith("AVG(")) {
+			return GroupFunctionType.AVG;
+		} else if (exp.startsWith("COUNT(")) {
+			return GroupFunctionType.COUNT;
+		} else if (exp.startsWith("SUM(")) {
+			return GroupFunctionType.SUM;
+		} else if (exp.startsWith("MIN(")) {
+			return GroupFunctionType.MIN;
+		} else if (exp.startsWith("MAX(")) {
+			return GroupFunctionType.MAX;
+		} else if (exp.startsWith("ARRAY_TO_STRING(")) {
+			return GroupFunctionType.ARRAY_TO_STRING;
+		}
+		return GroupFunctionType.NORMAL;
+	}
+
+	/*
+	 * 将having拆分为多个and连接的条件，每个条件的一侧是聚合函数(或分组列)，另一侧是常量或绑定变量
+	 */
+	private void parseHaving(Expression exp) throws SQLFeatureNotSupportedException {
+		if (exp instanceof Parenthesis && !((Parenthesis) exp).isNot()) {
+			parseHaving(((Parenthesis) exp).getExpression());
+		} else if (exp instanceof AndExpression && !((AndExpression) exp).isNot()) {
+			parseHaving(((AndExpression) exp).getLeftExpression());
+			parseHaving(((AndExpression) exp).getRightExpression());
+		} else if (exp instanceof IsNullExpression) {
+			IsNullExpression isNull = (IsNullExpression) exp;
+			addHaving(exp, isNull.getLeftExpression(), isNull.isNot() ? Operator.IS_NOT_NULL : Operator.IS_NULL, null);
+		} else if (exp instanceof Between && !((Between) exp).isNot()) {
+			Between between = (Between) exp;
+			Object start = toValue(exp, between.getBetweenExpressionStart());
+			Object end = toValue(exp, between.getBetweenExpressionEnd());
+			addHaving(exp, between.getLeftExpression(), Operator.BETWEEN_L_L, Arrays.asList(start, end));
+		} else if (exp instanceof InExpression && ((InExpression) exp).getItemsList() instanceof ExpressionList) {
+			InExpression in = (InExpression) exp;
+			List<Object> values = new ArrayList<Object>();
+			for (Expression e : ((ExpressionList) in.getItemsList()).getExpressions()) {
+				Object value = toValue(exp, e);
+				if (value instanceof Object[]) {
+					values.addAll(Arrays.asList((Object[]) value));
+				} else if (value instanceof Collection) {
+					values.addAll((Collection<?>) value);
+				} else {
+					values.add(value);
+				}
+			}
+			addHaving(exp, in.getSingleLeftExpression(), in.isNot() ? Operator.NOT_IN : Operator.IN, values);
+		} else if (exp instanceof BinaryExpression && !((BinaryExpression) exp).isNot()) {
+			BinaryExpression binary = (BinaryExpression) exp;
+			Operator op = getOperator(binary);
+			if (op == null) {
+				throw unsupported(exp);
+			}
+			if (isValue(binary.getLeftExpression())) {
+				// 常量在左侧
+				addHaving(exp, binary.getRightExpression(), reverse(op), toValue(exp, binary.getLeftExpression()));
+			} else {
+				addHaving(exp, binary.getLeftExpression(), op, toValue(exp, binary.getRightExpression()));
+			}
+		} else {
+			throw unsupported(exp);
+		}
+	}
+
+	private void addHaving(Expression condition, Expression column, Operator op, Object value) throws SQLFeatureNotSupportedException {
+		if (column == null || isValue(column)) {
+			throw unsupported(condition);
+		}
+		HavingEle ele = new HavingEle();
+		ele.column = column.toString();
+		ele.sql = condition.toString();
+		ele.havingCondOperator = op;
+		ele.havingCondValue = value;
+		ele.setIndex(indexOf(condition, column));
+		having.add(ele);
+	}
+
+	/*
+	 * 在select中查找having中的表达式，可以是表达式本身或别名。找不到时追加辅助列
+	 */
+	private int indexOf(Expression condition, Expression column) throws SQLFeatureNotSupportedException {
+		String key = column.toString().toUpperCase();
+		for (int i = 0; i < mergeItems.size(); i++) {
+			SelectItem item = mergeItems.get(i);
+			if (item.isAllColumns()) {
+				continue;
+			}
+			SelectExpressionItem e = item.getAsSelectExpression();
+			if (key.equals(e.getExpression().toString().toUpperCase()) || key.equalsIgnoreCase(e.getAlias())) {
+				return i;
+			}
+		}
+		if (!groups.contains(key) && getType(key) == GroupFunctionType.NORMAL) {
+			throw unsupported(condition);
+		}
+		mergeItems.add(new SelectExpressionItem(column, HAVING_ALIAS + (mergeItems.size() - selectSize)));
+		return mergeItems.size() - 1;
+	}
+
+	private Object toValue(Expression condition, Expression exp) throws SQLFeatureNotSupportedException {
+		if (exp instanceof JdbcParameter || exp instanceof JpqlParameter) {
+			return paramsMap.get(exp);
+		}
+		if (exp instanceof SqlValue) {
+			return ((SqlValue) exp).getValue();
+		}
+		throw unsupported(condition);
+	}
+
+	private static boolean isValue(Expression exp) {
+		return exp instanceof SqlValue || exp instanceof JdbcParameter || exp instanceof JpqlParameter;
+	}
+
+	private static Operator getOperator(BinaryExpression exp) {
+		if (exp instanceof EqualsTo) {
+			return Operator.EQUALS;
+		} else if (exp instanceof NotEqualsTo) {
+			return Operator.NOT_EQUALS;
+		} else if (exp instanceof GreaterThan) {
+			return Operator.GREAT;
+		} else if (exp instanceof GreaterThanEquals) {
+			return Operator.GREAT_EQUALS;
+		} else if (exp instanceof MinorThan) {
+			return Operator.LESS;
+		} else if (exp instanceof MinorThanEquals) {
+			return Operator.LESS_EQUALS;
+		}
+		return null;
+	}
+
+	private static Operator reverse(Operator op) {
+		switch (op) {
+		case GREAT:
+			return Operator.LESS;
+		case GREAT_EQUALS:
+			return Operator.LESS_EQUALS;
+		case LESS:
+			return Operator.GREAT;
+		case LESS_EQUALS:
+			return Operator.GREAT_EQUALS;
+		default:
+			return op;
+		}
+	}
+
+	private static SQLFeatureNotSupportedException unsupported(Expression condition) {
+		return new SQLFeatureNotSupportedException("The having condition [" + condition + "] can not be evaluated in memory after merging the results of multiple databases.");
+	}
+
+	/*
+	 * 按SQL中出现的顺序收集绑定变量的值，与SqlAnalyzer.ParamReverser相对应
+	 */
+	static final class ParamCollector extends VisitorAdapter {
+		private final Map<Expression, Object> paramsMap;
+		private final List<Object> values = new ArrayList<Object>();
+
+		ParamCollector(Map<Expression, Object> paramsMap) {
+			this.paramsMap = paramsMap;
+		}
+
+		List<Object> collect(PlainSelect select) {
+			select.accept(this);
+			return values;
+		}
+
+		List<Object> collect(Expression exp) {
+			exp.accept(this);
+			return values;
+		}
+
+		@Override
+		public void visit(JpqlParameter parameter) {
+			int res = parameter.resolvedCount();
+			if (res == 0) {
+				values.add(paramsMap.get(parameter));
+			} else if (res > 0) {
+				values.addAll(Arrays.asList((Object[]) paramsMap.get(parameter)));
+			}
+		}
+
+		@Override
+		public void visit(JdbcParameter jdbcParameter) {
+			values.add(paramsMap.get(jdbcParameter));
+		}
+	}
+}
@@ -4,14 +4,16 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
+import javax.persistence.PersistenceException;
+
 import jef.common.PairSO;
 import jef.common.log.LogUtil;
-import jef.database.DbUtils;
 import jef.database.ORMConfig;
 import jef.database.OperateTarget.TransformerAdapter;
 import jef.database.jdbc.JDBCTarget;
@@ -35,8 +37,6 @@ import jef.database.jsqlparser.visitor.Statement;
 import jef.database.routing.PartitionResult;
 import jef.database.support.SqlLog;
 import jef.database.wrapper.clause.BindSql;
-import jef.database.wrapper.clause.GroupByItem;
-import jef.database.wrapper.clause.GroupFunctionType;
 import jef.database.wrapper.clause.InMemoryDistinct;
 import jef.database.wrapper.clause.InMemoryGroupByHaving;
 import jef.database.wrapper.clause.InMemoryOrderBy;
@@ -49,6 +49,7 @@ import jef.database.wrapper.populator.ResultSetExtractor;
 import jef.database.wrapper.variable.BindVariableContext;
 import jef.tools.PageLimit;
 import jef.tools.StringUtils;
+import jef.tools.algorithm.HyperLogLog;
 
 /**
  * 路由查询执行计划
@@ -62,6 +63,11 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 	 */
 	private StatementContext<PlainSelect> context;
 
+	/**
+	 * 跨库分组时的拆分方案，延迟生成
+	 */
+	private PartialAggregatePlan partialAggregate;
+
 	/*
 	 * Select的路由处理是最复杂的—— //SQL操作(查询前) //表名改写 条件：全部 //noGroup
 	 * ——SQL尾部以及Select部分中的聚合函数去除 条件:多表(不区分是否多库) //noHaving——位于延迟的SQL尾部 条件:多库()
@@ -115,10 +121,14 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 	}
 
 	public String getSql(String table) {
+		return getSql(context.statement, table);
+	}
+
+	private String getSql(PlainSelect select, String table) {
 		for (Table t : context.modifications) {
 			t.setReplace(table);
 		}
-		String s = context.statement.toString();
+		String s = select.toString();
 		for (Table t : context.modifications) {
 			t.removeReplace();
 		}
@@ -126,7 +136,8 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 	}
 
 	/**
-	 * 多库下的分组查询，由于分组操作依赖最后的内存计算，因此不得不将所有结果都查出后才能计算得到总数
+	 * 多库下的分组查询，由于分组操作依赖最后的内存计算，因此不得不将所有结果都查出后才能计算得到总数。
+	 * 不带having的分组计数和count distinct，各库只需返回去重后的键值即可汇总计数，不在此列。
 	 * 
 	 * @return 如果不得不查出全部结果才能得到总数，返回true
 	 */
@@ -135,6 +146,9 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 			PlainSelect select = context.statement;
 			if (select instanceof SelectToCountWrapper) {
 				SelectToCountWrapper wrapper = (SelectToCountWrapper) select;
+				if (getDistinctKeySelect() != null) {
+					return false;
+				}
 				if (wrapper.isDistinct()) {
 					return true;
 				}
@@ -148,6 +162,47 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 		return false;
 	}
 
+	/*
+	 * 多库下的分组计数或count distinct，生成各库上只查询去重键值的语句。
+	 * 带有having的分组，各库上只有部分聚合结果，无法在各库上判断，返回null
+	 */
+	private PlainSelect getDistinctKeySelect() {
+		if (!(context.statement instanceof SelectToCountWrapper)) {
+			return null;
+		}
+		SelectToCountWrapper wrapper = (SelectToCountWrapper) context.statement;
+		SelectBody body = wrapper.getInnerSelectBody();
+		PlainSelect base;
+		List<Expression> keys;
+		if (body instanceof PlainSelect) {
+			base = (PlainSelect) body;
+			if (!base.isGroupBy() || base.getHaving() != null || base.getDistinct() != null) {
+				return null;
+			}
+			keys = base.getGroupByColumnReferences();
+		} else if (body == null && wrapper.getDistinctExpressions() != null) {
+			base = wrapper;
+			keys = wrapper.getDistinctExpressions();
+		} else {
+			return null;
+		}
+		List<SelectItem> items = new ArrayList<SelectItem>(keys.size());
+		for (Expression exp : keys) {
+			if (exp.toString().indexOf('?') > -1) {// 绑定变量位置会变化
+				return null;
+			}
+			items.add(new SelectExpressionItem(exp, null));
+		}
+		PlainSelect result = new PlainSelect(base);
+		result.setSelectItems(items);
+		result.setDistinct(new Distinct());
+		result.setGroupByColumnReferences(null);
+		result.setHaving(null);
+		result.setOrderBy(null);
+		result.setLimit(null);
+		return result;
+	}
+
 	@Override
 	public ResultSetLaterProcess getRsLaterProcessor() {
 		return null;
@@ -185,6 +240,12 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 	 */
 	@Override
 	public long getCount(SqlAndParameter parse, int maxSize, int fetchSize) throws SQLException {
+		if (isMultiDatabase()) {
+			PlainSelect keySelect = getDistinctKeySelect();
+			if (keySelect != null) {
+				return countDistinctKeys(keySelect, maxSize, fetchSize);
+			}
+		}
 		// 多库多表查询场合
 		long total = 0;
 		long start = System.currentTimeMillis();
@@ -196,13 +257,13 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 				for (String table : site.getTablesEscaped(context.db.getDialectOf(site.getDatabase()))) {
 					sqls.add(getSql(table));
 				}
-				tasks.add(new DbTask() {
+				tasks.add(new DbTask(site.getDatabase()) {
 					public void execute() throws SQLException {
 						counter.addAndGet(getCount0(site, sqls));
 					}
 				});
 			}
-			DbUtils.parallelExecute(tasks);
+			context.db.getParallelExecutor().execute(tasks);
 			total = counter.get();
 		} else {
 			for (PartitionResult site : getSites()) {
@@ -218,6 +279,48 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 		return total;
 	}
 
+	/*
+	 * 各库只返回去重后的键值，在内存中汇总计数。内存中只保存键值，开启近似计数时只保存HyperLogLog寄存器
+	 */
+	private long countDistinctKeys(PlainSelect keySelect, int maxSize, int fetchSize) throws SQLException {
+		long start = System.currentTimeMillis();
+		final boolean approximate = ORMConfig.getInstance().isPartitionApproximateCountDistinct();
+		final int columns = keySelect.getSelectItems().size();
+		List<DistinctKeyCounter> counters = new ArrayList<DistinctKeyCounter>(sites.length);
+		List<DbTask> tasks = new ArrayList<DbTask>(sites.length);
+		for (PartitionResult site : getSites()) {
+			final JDBCTarget db = context.db.getTarget(site.getDatabase());
+			final List<String> sqls = new ArrayList<String>(site.tableSize());
+			for (String table : site.getTablesEscaped(context.db.getDialectOf(site.getDatabase()))) {
+				sqls.add(getSql(keySelect, table));
+			}
+			final DistinctKeyCounter counter = new DistinctKeyCounter(approximate, columns, fetchSize);
+			counters.add(counter);
+			tasks.add(new DbTask(site.getDatabase()) {
+				public void execute() throws SQLException {
+					for (String sql : sqls) {
+						db.innerSelectBySql(sql, counter, context.params, null);
+					}
+				}
+			});
+		}
+		if (sites.length >= ORMConfig.getInstance().getParallelSelect()) {
+			context.db.getParallelExecutor().execute(tasks);
+		} else {
+			for (DbTask task : tasks) {
+				task.execute();
+			}
+		}
+		DistinctKeyCounter result = counters.get(0);
+		for (int i = 1; i < counters.size(); i++) {
+			result.merge(counters.get(i));
+		}
+		long total = result.count();
+		total = (maxSize > 0 && maxSize < total) ? maxSize : total;
+		LogUtil.show(StringUtils.concat("Count:", String.valueOf(total), approximate ? "(approximate)" : "", "\t [DbAccess]:", String.valueOf(System.currentTimeMillis() - start), "ms) |  @", String.valueOf(Thread.currentThread().getId())));
+		return total;
+	}
+
 	@Override
 	public <T> T doQuery(SqlAndParameter sqlContext, ResultSetExtractor<T> extractor, boolean forCount, PageLimit range) throws SQLException {
 		long start = System.currentTimeMillis();
@@ -269,25 +372,29 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 
 	private <T> T executeMultiQuery(boolean noOrder, final ResultSetExtractor<T> rst, final InMemoryOperateProvider sqlContext, PageLimit range) throws SQLException {
 		final ORMConfig config = ORMConfig.getInstance();
-		final ResultSetContainer mrs = new ResultSetContainer(config.isCacheResultset());
+		final PageLimit shardLimit = noOrder ? null : getShardLimit(range);
+		// 下推分页后结果集以游标方式流式归并，不再缓存全部结果
+		final ResultSetContainer mrs = new ResultSetContainer(config.isCacheResultset() && shardLimit == null);
 		if (getSites().length >= config.getParallelSelect()) {
 			// 并行查询
 			List<DbTask> tasks = new ArrayList<DbTask>();
 			for (final PartitionResult site : getSites()) {
 				final PairSO<List<Object>> sql = getSql(site, noOrder);
-				tasks.add(new DbTask() {
+				final ResultSetLaterProcess later = applyShardLimit(site, sql, shardLimit, sqlContext.getRsLaterProcessor());
+				tasks.add(new DbTask(site.getDatabase()) {
 					@Override
 					public void execute() throws SQLException {
-						processQuery(context.db.getTarget(site.getDatabase()), sql, rst, mrs, sqlContext.getRsLaterProcessor(), config.newLogger());
+						processQuery(context.db.getTarget(site.getDatabase()), sql, rst, mrs, later, config.newLogger());
 					}
 				});
 			}
-			DbUtils.parallelExecute(tasks);
+			context.db.getParallelExecutor().execute(tasks);
 		} else {
 			SqlLog sb = config.newLogger();
 			for (PartitionResult site : getSites()) {
 				PairSO<List<Object>> sql = getSql(site, noOrder);
-				processQuery(context.db.getTarget(site.getDatabase()), sql, rst, mrs, sqlContext.getRsLaterProcessor(), sb);
+				ResultSetLaterProcess later = applyShardLimit(site, sql, shardLimit, sqlContext.getRsLaterProcessor());
+				processQuery(context.db.getTarget(site.getDatabase()), sql, rst, mrs, later, sb);
 			}
 		}
 		IResultSet rsw = null;
@@ -311,6 +418,59 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 		}
 	}
 
+	/**
+	 * 多库查询时，每个库最多只需要返回前 offset+limit 条记录就足以参与最终的排序和分页。
+	 * 有group by时各库只有部分聚合结果，不能截断，此时返回null。
+	 * 
+	 * @param range
+	 *            外部指定的分页范围，为null时使用SQL语句中的limit
+	 * @return 需要下推到各个库的分页范围，为null表示不下推
+	 */
+	private PageLimit getShardLimit(PageLimit range) {
+		if (!ORMConfig.getInstance().isPartitionStreamingMerge()) {
+			return null;
+		}
+		PlainSelect st = context.statement;
+		if (st.isGroupBy()) {
+			return null;
+		}
+		long end;
+		if (range != null) {
+			end = range.getLimit() > 0 ? range.getEnd() : 0;
+		} else if (st.getLimit() != null && st.getLimit().isValid()) {
+			Limit limit = st.getLimit();
+			if (limit.getOffsetJdbcParameter() != null || limit.getRowCountJdbcParameter() != null) {
+				return null;
+			}
+			end = limit.getOffset() + limit.getRowCount();
+		} else {
+			return null;
+		}
+		if (end <= 0 || end > Integer.MAX_VALUE) {
+			return null;
+		}
+		return new PageLimit(0, (int) end);
+	}
+
+	/*
+	 * 将分页范围改写到单个库的SQL语句中，返回该SQL对应的结果集后处理器
+	 */
+	private ResultSetLaterProcess applyShardLimit(PartitionResult site, PairSO<List<Object>> sql, PageLimit shardLimit, ResultSetLaterProcess defaultProcessor) {
+		if (shardLimit == null) {
+			return defaultProcessor;
+		}
+		BindSql bs = context.db.getDialectOf(site.getDatabase()).getLimitHandler().toPageSQL(sql.first, shardLimit, isUnionSql(site));
+		sql.first = bs.getSql();
+		return bs.getRsLaterProcessor() == null ? defaultProcessor : bs.getRsLaterProcessor();
+	}
+
+	/*
+	 * 单个库上的SQL是否为多张表直接union all的结果。有分组、排序等操作时union外面嵌套了一层查询，不是union
+	 */
+	private boolean isUnionSql(PartitionResult site) {
+		return site.getTables().size() > 1 && !hasAnyGroupDistinctOrderLimit();
+	}
+
 	private String toPageSql(SqlAndParameter context, String rawSQL, PageLimit range) {
 		if (range == null && context.getLimit() == null) {
 			return rawSQL;
@@ -420,61 +580,21 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 	}
 
 	private InMemoryGroupByHaving processGroupBy(ColumnMeta meta) {
-		PlainSelect select = context.statement;
-		return generateGroupHavingProcess(select.getSelectItems(), select.getGroupByColumnReferences(), meta);
+		try {
+			return getPartialAggregate().newProcessor();
+		} catch (SQLException e) {
+			throw new PersistenceException(e);
+		}
 	}
 
 	/*
-	 * 只有当确定select语句中使用了groupBy后才走入当前分支，解析出当前的内存分组任务
-	 * 
-	 * @param selects
-	 * 
-	 * @return
+	 * 跨库分组时的拆分方案。含有无法在内存中合并的聚合函数或having条件时，在查询前抛出异常
 	 */
-	private InMemoryGroupByHaving generateGroupHavingProcess(List<SelectItem> selects, List<Expression> groupExps, ColumnMeta meta) {
-		List<GroupByItem> keys = new ArrayList<GroupByItem>();
-		List<GroupByItem> values = new ArrayList<GroupByItem>();
-
-		// 解析出SQL修改句柄，当延迟操作group时，必然要将原先的分组函数去除，配合将groupBy去除
-
-		Set<String> groups = new HashSet<String>();
-		for (Expression exp : groupExps) {
-			groups.add(exp.toString().toUpperCase());
+	private PartialAggregatePlan getPartialAggregate() throws SQLException {
+		if (partialAggregate == null) {
+			partialAggregate = new PartialAggregatePlan(context.statement, context.paramsMap);
 		}
-		for (int i = 0; i < selects.size(); i++) {
-			SelectItem e = selects.get(i);
-			if (e.isAllColumns())
-				continue;
-			SelectExpressionItem item = e.getAsSelectExpression();
-			String alias = item.getAlias();
-			String sql = item.getExpression().toString().toUpperCase();
-			if (groups.contains(sql)) {
-				keys.add(new GroupByItem(i, GroupFunctionType.GROUP, alias));
-			} else {
-				GroupFunctionType type;
-				String exp = sql.toUpperCase();
-				if (exp.startsWith("AVG(")) {
-					type = GroupFunctionType.AVG;
-				} else if (exp.startsWith("COUNT(")) {
-					type = GroupFunctionType.COUNT;
-				} else if (exp.startsWith("SUM(")) {
-					type = GroupFunctionType.SUM;
-				} else if (exp.startsWith("MIN(")) {
-					type = GroupFunctionType.MIN;
-				} else if (exp.startsWith("MAX(")) {
-					type = GroupFunctionType.MAX;
-				} else if (exp.startsWith("ARRAY_TO_STRING(")) {
-					type = GroupFunctionType.ARRAY_TO_STRING;
-				} else {
-					type = GroupFunctionType.NORMAL;
-				}
-				values.add(new GroupByItem(i, type, alias));
-			}
-		}
-
-		// 解析出having
-
-		return new InMemoryGroupByHaving(keys, values);
+		return partialAggregate;
 	}
 
 	/*
@@ -509,22 +629,26 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 	}
 
 	private ResultSet doMultiDatabaseQuery(final InMemoryOperateProvider parse, final int maxRows, final int fetchSize) throws SQLException {
-		final ResultSetContainer mrs = new ResultSetContainer(ORMConfig.getInstance().isCacheResultset());
+		final PageLimit shardLimit = getShardLimit(null);
+		final ResultSetContainer mrs = new ResultSetContainer(ORMConfig.getInstance().isCacheResultset() && shardLimit == null);
 		if (sites.length > ORMConfig.getInstance().getParallelSelect()) {
 			List<DbTask> tasks = new ArrayList<DbTask>(sites.length);
 			for (final PartitionResult site : getSites()) {
 				final PairSO<List<Object>> sql = getSql(site, false);
-				tasks.add(new DbTask() {
+				final ResultSetLaterProcess later = applyShardLimit(site, sql, shardLimit, parse.getRsLaterProcessor());
+				tasks.add(new DbTask(site.getDatabase()) {
 					public void execute() throws SQLException {
-						processQuery(context.db.getTarget(site.getDatabase()), sql, maxRows, fetchSize, mrs, parse.getRsLaterProcessor(), ORMConfig.getInstance().newLogger());
+						processQuery(context.db.getTarget(site.getDatabase()), sql, maxRows, fetchSize, mrs, later, ORMConfig.getInstance().newLogger());
 					}
 				});
 			}
-			DbUtils.parallelExecute(tasks);
+			context.db.getParallelExecutor().execute(tasks);
 		} else {
 			SqlLog log = ORMConfig.getInstance().newLogger();
 			for (PartitionResult site : getSites()) {
-				processQuery(context.db.getTarget(site.getDatabase()), getSql(site, false), maxRows, fetchSize, mrs, parse.getRsLaterProcessor(), log);
+				PairSO<List<Object>> sql = getSql(site, false);
+				ResultSetLaterProcess later = applyShardLimit(site, sql, shardLimit, parse.getRsLaterProcessor());
+				processQuery(context.db.getTarget(site.getDatabase()), sql, maxRows, fetchSize, mrs, later, log);
 			}
 		}
 		parepareInMemoryProcess(null, mrs);
@@ -622,7 +746,26 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 	 * 
 	 * //Order——位于子查询的尾部 条件：多表(不区分) //limit延迟 条件：单库多表 //limit去除 条件：多库
 	 */
-	private PairSO<List<Object>> getSql(PartitionResult site, boolean noOrder) {
+	private PairSO<List<Object>> getSql(PartitionResult site, boolean noOrder) throws SQLException {
+		PlainSelect st = context.statement;
+		if (!isMultiDatabase() || !st.isGroupBy()) {
+			return getSql0(site, noOrder, context.params);
+		}
+		// 多库分组时各库返回部分聚合结果，AVG改写为SUM+COUNT，having在合并后计算
+		PartialAggregatePlan plan = getPartialAggregate();
+		List<SelectItem> origin = st.getSelectItems();
+		Expression having = st.getHaving();
+		st.setSelectItems(plan.getShardItems());
+		st.setHaving(null);
+		try {
+			return getSql0(site, noOrder, plan.getShardParams(context.params));
+		} finally {
+			st.setSelectItems(origin);
+			st.setHaving(having);
+		}
+	}
+
+	private PairSO<List<Object>> getSql0(PartitionResult site, boolean noOrder, List<Object> params) {
 		List<String> tables = site.getTables();
 		boolean moreTable = tables.size() > 1; // 是否为多表
 		boolean moreDatabase = isMultiDatabase();// 是否为多库
@@ -639,7 +782,7 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 				appendSql(sb, tableName, true, true, true, true, true); // union子查询
 			}
 			// 绑定变量参数翻倍
-			List<Object> params = SqlAnalyzer.repeat(context.params, tables.size());
+			params = SqlAnalyzer.repeat(params, tables.size());
 
 			// 聚合操作用Union外嵌查询实现
 			if (hasAnyGroupDistinctOrderLimit()) {
@@ -665,7 +808,56 @@ public class SelectExecutionPlan extends AbstractExecutionPlan implements Querya
 			} else {
 				appendSql(sb, table, false, false, false, false, false);
 			}
-			return new PairSO<List<Object>>(sb.toString(), context.params);
+			return new PairSO<List<Object>>(sb.toString(), params);
+		}
+	}
+
+	/*
+	 * 跨库计数时汇总各库返回的去重键值
+	 */
+	private static final class DistinctKeyCounter extends AbstractResultSetTransformer<Object> {
+		private final int columns;
+		private final Set<List<Object>> keys;
+		private final HyperLogLog sketch;
+
+		DistinctKeyCounter(boolean approximate, int columns, int fetchSize) {
+			super(0);
+			this.columns = columns;
+			if (approximate) {
+				this.keys = null;
+				this.sketch = new HyperLogLog();
+			} else {
+				this.keys = new HashSet<List<Object>>();
+				this.sketch = null;
+			}
+			setFetchSize(fetchSize);
+		}
+
+		public Object transformer(IResultSet rs) throws SQLException {
+			while (rs.next()) {
+				Object[] key = new Object[columns];
+				for (int i = 0; i < columns; i++) {
+					key[i] = rs.getObject(i + 1);
+				}
+				if (sketch != null) {
+					sketch.offerHash(HyperLogLog.hash(key));
+				} else {
+					keys.add(Arrays.asList(key));
+				}
+			}
+			return null;
+		}
+
+		void merge(DistinctKeyCounter other) {
+			if (sketch != null) {
+				sketch.merge(other.sketch);
+			} else {
+				keys.addAll(other.keys);
+			}
+		}
+
+		long count() {
+			return sketch != null ? sketch.cardinality() : keys.size();
 		}
 	}
 
@@ -6,7 +6,6 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import jef.common.log.LogUtil;
-import jef.database.DbUtils;
 import jef.database.ORMConfig;
 import jef.database.jdbc.GenerateKeyReturnOper;
 import jef.database.jdbc.JDBCTarget;
@@ -37,13 +36,13 @@ public class UpdateExecutionPlan extends AbstractExecutionPlan implements Execut
 				for (String table : site.getTables()) {
 					sqls.add(getSql(table));
 				}
-				tasks.add(new DbTask() {
+				tasks.add(new DbTask(siteName) {
 					public void execute() throws SQLException {
 						counter.addAndGet(processUpdate0(siteName, sqls));
 					}
 				});
 			}
-			DbUtils.parallelExecute(tasks);
+			context.db.getParallelExecutor().execute(tasks);
 			total = counter.get();
 		} else {
 			for (PartitionResult site : getSites()) {
@@ -0,0 +1,349 @@
+package jef.database.support;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import jef.common.log.LogUtil;
+import jef.json.JsonUtil;
+import jef.tools.IOUtils;
+import jef.tools.StringUtils;
+import jef.tools.io.Charsets;
+
+/**
+ * 构建时生成的实体索引。<br>
+ * geequery-maven-plugin的enhance任务在增强实体类之后，将该classpath下所有实体类的类名写入
+ * {@value #RESOURCE}，和class文件一起打包。启动时{@link QuerableEntityScanner}
+ * 直接从索引得到实体类，不再逐个读取class文件判断父类；{@link jef.database.meta.MetaHolder}
+ * 也不必再次读取字节码检查是否已经增强。
+ * <p>
+ * 同时生成的{@value #META_RESOURCE}记录了每个实体类上的映射注解(表、列、分表规则等，见{@link EntityMetaReader})，
+ * 初始化元模型时直接使用，不再通过反射读取注解。
+ * <p>
+ * 索引生成后又有class文件被重新编译(例如在IDE中)，索引即视为过期，此时退回到扫描和反射。
+ *
+ * @author jiyi
+ *
+ */
+public final class EntityIndex {
+	/**
+	 * 索引文件在classpath中的位置
+	 */
+	public static final String RESOURCE = "META-INF/geequery/entity.idx";
+
+	/**
+	 * 实体映射注解在classpath中的位置
+	 */
+	public static final String META_RESOURCE = "META-INF/geequery/entity.meta";
+
+	private static final EntityIndex NONE = new EntityIndex("", Collections.<String> emptySet(), true);
+
+	// 按classpath根路径缓存
+	private static final Map<String, EntityIndex> CACHE = new ConcurrentHashMap<String, EntityIndex>();
+
+	private final String root;
+	private final Set<String> classNames;
+	private final boolean stale;
+	// 实体映射注解，首次使用时加载
+	private volatile Map<String, Object> metadata;
+
+	private EntityIndex(String root, Set<String> classNames, boolean stale) {
+		this.root = root;
+		this.classNames = classNames;
+		this.stale = stale;
+	}
+
+	/**
+	 * classpath根路径，以/结尾
+	 *
+	 * @return
+	 */
+	public String getRoot() {
+		return root;
+	}
+
+	/**
+	 * 索引中的实体类名
+	 *
+	 * @return
+	 */
+	public Set<String> getClassNames() {
+		return classNames;
+	}
+
+	/**
+	 * 索引生成后是否有class文件发生了变化
+	 *
+	 * @return
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	/**
+	 * 根据索引得到指定包(含子包)下的实体类名。 以下情况返回null，调用者应当退回到扫描:
+	 * <ul>
+	 * <li>包所在的某个classpath根路径下没有索引</li>
+	 * <li>索引已经过期</li>
+	 * </ul>
+	 *
+	 * @param cl
+	 * @param packageNames
+	 * @return 实体类名，索引不可用时返回null
+	 */
+	public static List<String> getEntityClasses(ClassLoader cl, String... packageNames) {
+		Set<String> result = new LinkedHashSet<String>();
+		for (String pkg : packageNames) {
+			pkg = StringUtils.trimToNull(pkg);
+			if (pkg == null) {
+				// 扫描全部classpath时无法确定所有的根路径
+				return null;
+			}
+			String path = pkg.replace('.', '/');
+			Enumeration<URL> urls;
+			try {
+				urls = cl.getResources(path);
+			} catch (IOException e) {
+				LogUtil.exception(e);
+				return null;
+			}
+			String prefix = pkg + ".";
+			while (urls.hasMoreElements()) {
+				String url = urls.nextElement().toString();
+				EntityIndex index = get(StringUtils.substringBeforeLast(url, path));
+				if (index == NONE) {
+					return null;
+				}
+				if (index.stale) {
+					LogUtil.info("The entity index in {} is out of date.", index.root);
+					return null;
+				}
+				for (String name : index.classNames) {
+					if (name.startsWith(prefix)) {
+						result.add(name);
+					}
+				}
+			}
+		}
+		return new ArrayList<String>(result);
+	}
+
+	/**
+	 * 判断类是否记录在其所在classpath根路径的有效索引中，即构建时已经增强
+	 *
+	 * @param classUrl
+	 *            class文件的URL
+	 * @param className
+	 *            类名
+	 * @return
+	 */
+	public static boolean isIndexed(URL classUrl, String className) {
+		String url = classUrl.toString();
+		String resource = className.replace('.', '/') + ".class";
+		if (!url.endsWith(resource)) {
+			return false;
+		}
+		EntityIndex index = get(url.substring(0, url.length() - resource.length()));
+		return !index.stale && index.classNames.contains(className);
+	}
+
+	/**
+	 * 得到构建时记录的实体类映射注解。以下情况返回null，调用者应当通过反射读取注解:
+	 * <ul>
+	 * <li>类不在其所在classpath根路径的有效索引中</li>
+	 * <li>索引中没有注解信息(例如由旧版本插件生成)</li>
+	 * </ul>
+	 *
+	 * @param clz
+	 * @return 结构见{@link EntityMetaReader}
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, Object> getMetadata(Class<?> clz) {
+		ClassLoader cl = clz.getClassLoader();
+		if (cl == null) {
+			return null;
+		}
+		String resource = clz.getName().replace('.', '/') + ".class";
+		URL classUrl = cl.getResource(resource);
+		if (classUrl == null) {
+			return null;
+		}
+		String url = classUrl.toString();
+		if (!url.endsWith(resource)) {
+			return null;
+		}
+		EntityIndex index = get(url.substring(0, url.length() - resource.length()));
+		if (index.stale || !index.classNames.contains(clz.getName())) {
+			return null;
+		}
+		return (Map<String, Object>) index.getMetadata().get(clz.getName());
+	}
+
+	/**
+	 * 将实体类名写入classpath根目录下的索引文件
+	 *
+	 * @param root
+	 *            classpath根目录，如target/classes
+	 * @param classNames
+	 * @return 索引文件
+	 * @throws IOException
+	 */
+	public static File write(File root, Collection<String> classNames) throws IOException {
+		return write(root, classNames, null);
+	}
+
+	/**
+	 * 将实体类名和实体类的映射注解写入classpath根目录下的索引文件
+	 *
+	 * @param root
+	 *            classpath根目录，如target/classes
+	 * @param classNames
+	 * @param metadata
+	 *            类名对应{@link EntityMetaReader#read(byte[])}的结果，为null时不生成
+	 * @return 索引文件
+	 * @throws IOException
+	 */
+	public static File write(File root, Collection<String> classNames, Map<String, Map<String, Object>> metadata) throws IOException {
+		File file = new File(root, RESOURCE);
+		file.getParentFile().mkdirs();
+		if (metadata != null) {
+			// 先于索引写入，索引的时间不早于注解文件
+			IOUtils.saveAsFile(new File(root, META_RESOURCE), Charsets.UTF8, JsonUtil.toJson(metadata));
+		}
+		StringBuilder sb = new StringBuilder("#GeeQuery entity index\n");
+		for (String name : classNames) {
+			sb.append(name).append('\n');
+		}
+		IOUtils.saveAsFile(file, Charsets.UTF8, sb.toString());
+		return file;
+	}
+
+	/**
+	 * 清除缓存的索引
+	 */
+	public static void clear() {
+		CACHE.clear();
+	}
+
+	private Map<String, Object> getMetadata() {
+		Map<String, Object> result = metadata;
+		if (result == null) {
+			synchronized (this) {
+				result = metadata;
+				if (result == null) {
+					result = loadMetadata(root);
+					metadata = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static Map<String, Object> loadMetadata(String root) {
+		String data;
+		try {
+			data = IOUtils.asString(new URL(root + META_RESOURCE), "UTF-8");
+		} catch (IOException e) {
+			return Collections.emptyMap();
+		}
+		Map<String, Object> result = JsonUtil.toMap(data);
+		return result == null ? Collections.<String, Object> emptyMap() : result;
+	}
+
+	private static EntityIndex get(String root) {
+		EntityIndex index = CACHE.get(root);
+		if (index == null) {
+			index = load(root);
+			CACHE.put(root, index);
+		}
+		return index;
+	}
+
+	private static EntityIndex load(String root) {
+		try {
+			URL url = new URL(root + RESOURCE);
+			Set<String> names = new LinkedHashSet<String>();
+			BufferedReader reader;
+			try {
+				reader = new BufferedReader(new InputStreamReader(url.openStream(), Charsets.UTF8));
+			} catch (IOException e) {
+				return NONE;
+			}
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					line = line.trim();
+					if (line.length() > 0 && line.charAt(0) != '#') {
+						names.add(line);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			return new EntityIndex(root, names, isStale(url));
+		} catch (IOException e) {
+			LogUtil.exception(e);
+			return NONE;
+		}
+	}
+
+	/*
+	 * 比较索引和class文件的修改时间，只读取目录或jar包的文件列表，不读取文件内容
+	 */
+	private static boolean isStale(URL index) throws IOException {
+		if ("file".equals(index.getProtocol())) {
+			File file = IOUtils.urlToFile(index);
+			// META-INF/geequery/entity.idx
+			File root = file.getParentFile().getParentFile().getParentFile();
+			return hasNewerClass(root, file.lastModified());
+		}
+		URLConnection conn = index.openConnection();
+		if (conn instanceof JarURLConnection) {
+			JarURLConnection jarConn = (JarURLConnection) conn;
+			JarFile jar = jarConn.getJarFile();
+			long time = jarConn.getJarEntry().getTime();
+			Enumeration<JarEntry> entries = jar.entries();
+			while (entries.hasMoreElements()) {
+				JarEntry entry = entries.nextElement();
+				if (entry.getName().endsWith(".class") && entry.getTime() > time) {
+					return true;
+				}
+			}
+			return false;
+		}
+		// 无法判断
+		return true;
+	}
+
+	private static boolean hasNewerClass(File dir, long time) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return false;
+		}
+		for (File f : files) {
+			if (f.isDirectory()) {
+				if (hasNewerClass(f, time)) {
+					return true;
+				}
+			} else if (f.getName().endsWith(".class") && f.lastModified() > time) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,144 @@
+package jef.database.support;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.geequery.asm.AnnotationVisitor;
+import com.github.geequery.asm.ClassReader;
+import com.github.geequery.asm.ClassVisitor;
+import com.github.geequery.asm.FieldVisitor;
+import com.github.geequery.asm.Opcodes;
+import com.github.geequery.asm.Type;
+
+/**
+ * 构建时从class文件中读取实体的映射注解，不加载类。<br>
+ * 记录类上以及每个非静态字段上运行时可见的注解(表名、列定义、主键、分表规则、级联关系等)，和实体索引一起写入
+ * {@link EntityIndex#META_RESOURCE}。启动时{@link jef.database.meta.DefaultMetaLoader}和
+ * {@link jef.database.meta.DefaultPartitionStrategyLoader}直接从中得到注解，不再通过反射逐个解析。
+ * <p>
+ * 结构为 {class: {注解类名: 属性}, fields: {字段名: {注解类名: 属性}}}。属性中只有显式指定的值，Class记为类型描述符，
+ * 枚举记为常量名，嵌套的注解记为Map，数组记为List。
+ *
+ * @author jiyi
+ *
+ */
+public final class EntityMetaReader {
+	/**
+	 * 类上的注解
+	 */
+	public static final String CLASS = "class";
+	/**
+	 * 字段上的注解
+	 */
+	public static final String FIELDS = "fields";
+
+	private EntityMetaReader() {
+	}
+
+	/**
+	 * 读取class文件中的注解
+	 *
+	 * @param data
+	 *            class文件
+	 * @return
+	 */
+	public static Map<String, Object> read(byte[] data) {
+		final Map<String, Object> annotations = new LinkedHashMap<String, Object>();
+		final Map<String, Object> fields = new LinkedHashMap<String, Object>();
+		new ClassReader(data).accept(new ClassVisitor(Opcodes.ASM7) {
+			@Override
+			public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+				return visible ? record(annotations, desc) : null;
+			}
+
+			@Override
+			public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+				if ((access & Opcodes.ACC_STATIC) != 0) {
+					return null;
+				}
+				// 没有注解的字段也要记录，以区分于不在索引中的字段
+				final Map<String, Object> fieldAnnotations = new LinkedHashMap<String, Object>();
+				fields.put(name, fieldAnnotations);
+				return new FieldVisitor(Opcodes.ASM7) {
+					@Override
+					public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+						return visible ? record(fieldAnnotations, desc) : null;
+					}
+				};
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put(CLASS, annotations);
+		result.put(FIELDS, fields);
+		return result;
+	}
+
+	private static AnnotationVisitor record(Map<String, Object> annotations, String desc) {
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		annotations.put(Type.getType(desc).getClassName(), values);
+		return new ValueVisitor(values, null);
+	}
+
+	/*
+	 * 记录注解的属性值，数组中的元素没有属性名
+	 */
+	private static final class ValueVisitor extends AnnotationVisitor {
+		private final Map<String, Object> values;
+		private final List<Object> array;
+
+		ValueVisitor(Map<String, Object> values, List<Object> array) {
+			super(Opcodes.ASM7);
+			this.values = values;
+			this.array = array;
+		}
+
+		@Override
+		public void visit(String name, Object value) {
+			if (value instanceof Type) {
+				value = ((Type) value).getDescriptor();
+			} else if (value instanceof Character) {
+				value = value.toString();
+			} else if (value.getClass().isArray()) {
+				// 基本类型的数组
+				int length = Array.getLength(value);
+				List<Object> list = new ArrayList<Object>(length);
+				for (int i = 0; i < length; i++) {
+					Object e = Array.get(value, i);
+					list.add(e instanceof Character ? e.toString() : e);
+				}
+				value = list;
+			}
+			add(name, value);
+		}
+
+		@Override
+		public void visitEnum(String name, String desc, String value) {
+			add(name, value);
+		}
+
+		@Override
+		public AnnotationVisitor visitAnnotation(String name, String desc) {
+			Map<String, Object> nested = new LinkedHashMap<String, Object>();
+			add(name, nested);
+			return new ValueVisitor(nested, null);
+		}
+
+		@Override
+		public AnnotationVisitor visitArray(String name) {
+			List<Object> list = new ArrayList<Object>();
+			add(name, list);
+			return new ValueVisitor(null, list);
+		}
+
+		private void add(String name, Object value) {
+			if (array != null) {
+				array.add(value);
+			} else {
+				values.put(name, value);
+			}
+		}
+	}
+}
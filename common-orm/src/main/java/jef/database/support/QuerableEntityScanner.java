@@ -5,16 +5,20 @@ import java.io.InputStream;
 import java.net.URL;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.github.geequery.asm.ClassReader;
 
 import jef.accelerator.asm.ASMUtils;
 import jef.common.log.LogUtil;
 import jef.database.DbClient;
+import jef.database.DbMetaData;
 import jef.database.Field;
 import jef.database.annotation.EasyEntity;
 import jef.database.dialect.ColumnType;
@@ -25,6 +29,7 @@ import jef.database.jpa.JefEntityManagerFactory;
 import jef.database.meta.ColumnModification;
 import jef.database.meta.ITableMetadata;
 import jef.database.meta.MetaHolder;
+import jef.database.meta.Reference;
 import jef.database.meta.object.Column;
 import jef.database.wrapper.executor.StatementExecutor;
 import jef.tools.ArrayUtils;
@@ -64,8 +69,21 @@ public class QuerableEntityScanner {
 	 * 当alterTable=true时，如果修改表时需要删除列，是否允许删除列
 	 */
 	private boolean allowDropColumn;
-	
-	
+
+	/**
+	 * 是否批量核对表结构，见{@link DbClient#refreshTables}
+	 */
+	private boolean bulkRefresh;
+
+	/**
+	 * 批量核对时，等待核对的表和是否创建、是否修改
+	 */
+	private final Map<ITableMetadata, boolean[]> pending = new LinkedHashMap<ITableMetadata, boolean[]>();
+
+	/**
+	 * 是否优先使用构建时生成的实体索引，见{@link EntityIndex}
+	 */
+	private boolean useIndex = true;
 
 	/**
 	 * 是否检查序列
@@ -141,6 +159,24 @@ public class QuerableEntityScanner {
 		if (cl == null)
 			cl = QuerableEntityScanner.class.getClassLoader();
 
+		if (useIndex) {
+			List<String> indexed = EntityIndex.getEntityClasses(cl, packageNames);
+			if (indexed != null) {
+				LogUtil.info("Loading {} entities from the entity index.", indexed.size());
+				for (String name : indexed) {
+					// 和扫描一样不处理内部类
+					if (name.indexOf('$') > -1)
+						continue;
+					Class<?> clz = loadClass(cl, name);
+					if (clz != null && isEntiyClz(parents, clz.getSuperclass())) {
+						registeEntity0(clz);
+					}
+				}
+				refreshPending();
+				return;
+			}
+		}
+
 		// 开始
 		ClassScanner cs = new ClassScanner();
 		IResource[] classes = cs.scan(packageNames);
@@ -163,6 +199,16 @@ public class QuerableEntityScanner {
 				LogUtil.exception(e);
 			}
 		}
+		refreshPending();
+	}
+
+	private boolean isEntiyClz(String[] knownSuperNames, Class<?> superClz) {
+		for (Class<?> c = superClz; c != null && c != Object.class; c = c.getSuperclass()) {
+			if (ArrayUtils.contains(knownSuperNames, c.getName().replace('.', '/'))) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private boolean isEntiyClz(ClassLoader cl, String[] knownSuperNames, String superName) throws IOException {
@@ -230,6 +276,7 @@ public class QuerableEntityScanner {
 				LogUtil.error("Class not found:" + e.getMessage());
 			}
 		}
+		refreshPending();
 		return true;
 	}
 
@@ -245,6 +292,10 @@ public class QuerableEntityScanner {
 			final boolean create = createTable && (ee == null || ee.create());
 			final boolean refresh = alterTable && (ee == null || ee.refresh());
 			if (entityManagerFactory != null && (create || refresh)) {
+				if (bulkRefresh && isBulkSupported(meta)) {
+					pending.put(meta, new boolean[] { create, refresh });
+					return;
+				}
 				boolean isCreated = doTableDDL(meta, create, refresh);
 				if (dataInitializer.isEnable() && initData) {
 					dataInitializer.initData(meta, isCreated);
@@ -316,6 +367,120 @@ public class QuerableEntityScanner {
 				}
 			},checkIndex,checkIndex);
 		}
+		checkSequences(meta);
+		return newTable;
+	}
+
+	/*
+	 * 分表和有关系表的实体建表时会创建多张表，仍逐个处理
+	 */
+	private boolean isBulkSupported(ITableMetadata meta) {
+		if (meta.getPartition() != null) {
+			return false;
+		}
+		for (Reference ref : meta.getRefFieldsByRef().keySet()) {
+			if (ref.getHint() != null && ref.getHint().getRelationTable() != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * 批量核对登记的表，然后逐个检查序列和初始化数据
+	 */
+	private void refreshPending() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		final Map<ITableMetadata, boolean[]> metas = new LinkedHashMap<ITableMetadata, boolean[]>(pending);
+		pending.clear();
+		final Set<ITableMetadata> created = Collections.newSetFromMap(new ConcurrentHashMap<ITableMetadata, Boolean>());
+		final Set<ITableMetadata> finished = Collections.newSetFromMap(new ConcurrentHashMap<ITableMetadata, Boolean>());
+		// 表名(大写)和是否修改
+		final Map<String, Boolean> refreshes = new ConcurrentHashMap<String, Boolean>();
+		long start = System.currentTimeMillis();
+		try {
+			entityManagerFactory.getDefault().refreshTables(metas.keySet(), new MetadataEventListener() {
+				public void onTableFinished(ITableMetadata meta, String tablename) {
+					finished.add(meta);
+				}
+
+				public boolean onTableCreate(ITableMetadata meta, String tablename) {
+					if (metas.get(meta)[0]) {
+						created.add(meta);
+						return true;
+					}
+					return false;
+				}
+
+				public boolean onSqlExecuteError(SQLException e, String tablename, String sql, List<String> sqls, int n) {
+					LogUtil.error("[ALTER-TABLE]. SQL:[{}] ERROR.\nMessage:[{}]", sql, e.getMessage());
+					return true;
+				}
+
+				public boolean onCompareColumns(String tablename, List<Column> columns, Map<Field, ColumnMapping> defined) {
+					return !Boolean.FALSE.equals(refreshes.get(tablename.toUpperCase()));
+				}
+
+				public boolean onColumnsCompared(String tablename, ITableMetadata meta, Map<String, ColumnType> insert, List<ColumnModification> changed,
+						List<String> delete) {
+					if (!allowDropColumn) {
+						delete.clear();
+					}
+					return true;
+				}
+
+				public void onAlterSqlFinished(String tablename, String sql, List<String> sqls, int n, long cost) {
+				}
+
+				public boolean beforeTableRefresh(ITableMetadata meta, String table) {
+					refreshes.put(table.toUpperCase(), metas.get(meta)[1]);
+					return true;
+				}
+
+				public void beforeAlterTable(String tablename, ITableMetadata meta, StatementExecutor conn, List<String> sql) {
+				}
+			}, checkIndex, checkIndex);
+		} catch (Throwable e) {
+			LogUtil.error("EntityScanner:[Failure]" + LogUtil.exceptionStack(e));
+		}
+		LogUtil.info("{} tables were checked in {}ms.", metas.size(), System.currentTimeMillis() - start);
+		// 每个数据库只查询一次已有的序列
+		Set<DbMetaData> preloaded = new HashSet<DbMetaData>();
+		if (checkSequence) {
+			for (ITableMetadata meta : finished) {
+				try {
+					DbMetaData dbmeta = entityManagerFactory.getDefault().getMetaData(meta.getBindDsName());
+					if (preloaded.add(dbmeta)) {
+						dbmeta.preloadSequences();
+					}
+				} catch (SQLException e) {
+					LogUtil.warn("Load sequences failed: {}", e.getMessage());
+				}
+			}
+		}
+		try {
+			for (ITableMetadata meta : metas.keySet()) {
+				try {
+					if (finished.contains(meta)) {
+						checkSequences(meta);
+					}
+					if (dataInitializer.isEnable() && initData) {
+						dataInitializer.initData(meta, created.contains(meta));
+					}
+				} catch (Throwable e) {
+					LogUtil.error("EntityScanner:[Failure]" + LogUtil.exceptionStack(e));
+				}
+			}
+		} finally {
+			for (DbMetaData dbmeta : preloaded) {
+				dbmeta.clearPreloadedSequences();
+			}
+		}
+	}
+
+	private void checkSequences(ITableMetadata meta) throws SQLException {
 		// 检查Sequence
 		if (checkSequence) {
 			for (ColumnMapping f : meta.getColumns()) {
@@ -329,7 +494,6 @@ public class QuerableEntityScanner {
 				}
 			}
 		}
-		return newTable;
 	}
 
 	private String[] getClassNames() {
@@ -407,6 +571,28 @@ public class QuerableEntityScanner {
 		this.checkIndex = checkIndex;
 	}
 
+	public boolean isBulkRefresh() {
+		return bulkRefresh;
+	}
+
+	/**
+	 * 设置是否批量核对表结构。开启后扫描到的实体先登记，扫描完成后用一次元数据查询取得所有表的列，
+	 * 再按{@link jef.database.DbCfg#DB_TABLE_REFRESH_THREADS}的并发数并行建表和修改表。适合表很多、数据库在远程的场合。
+	 * 
+	 * @param bulkRefresh
+	 */
+	public void setBulkRefresh(boolean bulkRefresh) {
+		this.bulkRefresh = bulkRefresh;
+	}
+
+	public boolean isUseIndex() {
+		return useIndex;
+	}
+
+	public void setUseIndex(boolean useIndex) {
+		this.useIndex = useIndex;
+	}
+
 	/**
 	 * 完成类的注册和扫描。如果启用了数据初始化记录表，将会更新该表记录，下次启动不再初始化数据。
 	 */
@@ -4,6 +4,14 @@ public class GroupByItem {
 	private int index;
 	private GroupFunctionType type;
 	private String alias;
+	/**
+	 * 跨库计算AVG时，各库返回的是SUM，该序号指向同时返回的COUNT列。-1表示没有
+	 */
+	private int countIndex = -1;
+	/**
+	 * 跨库时列在各库上被改写、列名发生变化时，合并后恢复的列名。null表示不需要
+	 */
+	private String label;
 	public GroupByItem(int i, GroupFunctionType type, String alias) {
 		this.index=i;
 		this.type=type;
@@ -27,4 +35,16 @@ public class GroupByItem {
 	public void setAlias(String alias) {
 		this.alias = alias;
 	}
+	public int getCountIndex() {
+		return countIndex;
+	}
+	public void setCountIndex(int countIndex) {
+		this.countIndex = countIndex;
+	}
+	public String getLabel() {
+		return label;
+	}
+	public void setLabel(String label) {
+		this.label = label;
+	}
 }
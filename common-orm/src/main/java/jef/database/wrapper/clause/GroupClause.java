@@ -77,6 +77,7 @@ public class GroupClause implements SqlClause {
 		List<GroupByItem> values = new ArrayList<GroupByItem>(4);
 		List<HavingEle> he = new ArrayList<HavingEle>(3);
 		Map<String, HavingEle> havings = prepareHavingIndex();
+		int avgCount = 0;
 		for (int i = 0; i < select.getEntries().size(); i++) {
 			CommentEntry e = select.getEntries().get(i);
 			String sql = e.getKey();
@@ -101,7 +102,15 @@ public class GroupClause implements SqlClause {
 				} else {
 					type = GroupFunctionType.NORMAL;
 				}
-				values.add(new GroupByItem(i, type, alias));
+				GroupByItem item = new GroupByItem(i, type, alias);
+				if (type == GroupFunctionType.AVG && SelectPart.isPartialAvg(e)) {
+					// 与SelectPart.appendPartialAggregate()追加的COUNT列对应
+					item.setCountIndex(select.getEntries().size() + avgCount++);
+					if (alias == null) {
+						item.setLabel(sql);
+					}
+				}
+				values.add(item);
 			}
 			HavingEle h = havings.remove(sql);
 			if (h != null) {
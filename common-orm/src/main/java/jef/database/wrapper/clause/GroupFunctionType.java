@@ -23,7 +23,7 @@ package jef.database.wrapper.clause;
 public enum GroupFunctionType {
 	/**
 	 * 分组统计——平均值
-	 * 这是唯一一个无法后来计算的内存分组函数
+	 * 这是唯一一个无法后来计算的内存分组函数，跨库时各库改写为SUM和COUNT后再合并计算
 	 */
 	AVG,
 	/**
@@ -1,11 +1,12 @@
 package jef.database.wrapper.clause;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -19,46 +20,149 @@ import jef.database.jdbc.rowset.CachedRowSetImpl;
 import jef.database.jdbc.rowset.Row;
 import jef.tools.StringUtils;
 
+/**
+ * 跨库分组的内存合并。
+ * <p>
+ * 各库的SQL中保留了group by，返回的是每个分组的部分聚合结果(AVG已改写为SUM和COUNT)，
+ * 这里按分组键将部分结果逐行合并，每个分组始终只保留一行。合并可以在每个库的结果读入后分多次进行({@link #merge(CachedRowSetImpl)})，
+ * 全部读入后再调用{@link #finish(CachedRowSetImpl)}计算AVG并执行having过滤。
+ */
 public class InMemoryGroupByHaving implements InMemoryProcessor {
+	/**
+	 * 跨库计算AVG时追加的COUNT列的别名前缀
+	 */
+	public static final String AVG_COUNT_ALIAS = "avg__cnt";
+
 	GroupByItem[] keys;
 	GroupByItem[] values;
 	private List<HavingEle> having;
+	/**
+	 * 为计算AVG、having追加在末尾的辅助列的起始位置，-1表示没有
+	 */
+	private int hiddenStart = -1;
+
+	// 合并状态
+	private final Map<List<Object>, GroupState> groups = new HashMap<List<Object>, GroupState>();
+	private final List<GroupState> states = new ArrayList<GroupState>();
 
 	public InMemoryGroupByHaving(List<GroupByItem> keys, List<GroupByItem> values) {
 		this.keys = keys.toArray(new GroupByItem[keys.size()]);
 		this.values = values.toArray(new GroupByItem[values.size()]);
+		for (GroupByItem g : this.values) {
+			int countIndex = g.getCountIndex();
+			if (countIndex > -1 && (hiddenStart == -1 || countIndex < hiddenStart)) {
+				hiddenStart = countIndex;
+			}
+		}
 	}
 
 	public void process(CachedRowSetImpl rowset) throws SQLException {
+		merge(rowset);
+		finish(rowset);
+	}
+
+	/**
+	 * 将结果集中新加入的行合并到各个分组中，合并后结果集中每个分组只剩一行。
+	 * <p>
+	 * 可以多次调用，每次调用前结果集中排在前面的行是上次合并的结果，之后追加的是新读入的行。
+	 * 
+	 * @param rowset
+	 *            结果集
+	 * @throws SQLException
+	 */
+	public void merge(CachedRowSetImpl rowset) throws SQLException {
 		int keyLen = keys.length;
-		List<Row> rows=rowset.getRvh();
-		List<Row> newRows = new ArrayList<Row>(rows.size()/2+1);
-		Map<Collection<?>, RowTask> mapTask = new HashMap<Collection<?>, RowTask>();
-		for (Row row : rows) {
+		List<Row> rows = rowset.getRvh();
+		for (int n = states.size(); n < rows.size(); n++) {
+			Row row = rows.get(n);
 			Object[] keyValue = new Object[keyLen];
 			for (int i = 0; i < keyLen; i++) {
 				keyValue[i] = row.getArrayObject(keys[i].getIndex());
 			}
 			List<Object> keyObj = Arrays.asList(keyValue);
-			RowTask exist = mapTask.get(keyObj);
+			GroupState exist = groups.get(keyObj);
 			if (exist == null) {
-				newRows.add(row);
-				mapTask.put(keyObj, new RowTask(row));
+				GroupState state = new GroupState(row);
+				groups.put(keyObj, state);
+				states.add(state);
 			} else {
 				exist.merge(row);
 			}
 		}
-		for (RowTask task : mapTask.values()) {
-			task.run();
+		List<Row> newRows = new ArrayList<Row>(states.size() + 16);
+		for (GroupState state : states) {
+			newRows.add(state.row);
 		}
-		mapTask.clear();
-		if(having!=null && !having.isEmpty()){
+		rowset.setRvh(newRows);
+		rowset.refresh();
+	}
+
+	/**
+	 * 全部结果合并完成后，计算AVG、去除辅助列并执行having过滤。
+	 * 
+	 * @param rowset
+	 *            结果集
+	 * @throws SQLException
+	 */
+	public void finish(CachedRowSetImpl rowset) throws SQLException {
+		List<Row> newRows = new ArrayList<Row>(states.size());
+		for (GroupState state : states) {
+			newRows.add(state.finish());
+		}
+		states.clear();
+		groups.clear();
+		// having可能用到辅助列，过滤后再去除
+		if (having != null && !having.isEmpty()) {
 			doHaving(newRows);
 		}
+		if (hiddenStart > -1) {
+			for (int n = 0; n < newRows.size(); n++) {
+				newRows.set(n, trim(newRows.get(n)));
+			}
+		}
 		rowset.setRvh(newRows);
 		rowset.refresh();
 	}
 
+	/**
+	 * 返回为计算AVG、having而追加的辅助列的起始位置(从0开始)，这些列在{@link #finish(CachedRowSetImpl)}后被去除。
+	 * 
+	 * @return 起始位置，-1表示没有辅助列
+	 */
+	public int getHiddenStart() {
+		return hiddenStart;
+	}
+
+	/**
+	 * 设置辅助列的起始位置。除AVG的COUNT列外，还为having追加了其他辅助列时使用
+	 * 
+	 * @param hiddenStart
+	 *            起始位置(从0开始)
+	 */
+	public void setHiddenStart(int hiddenStart) {
+		if (this.hiddenStart == -1 || hiddenStart < this.hiddenStart) {
+			this.hiddenStart = hiddenStart;
+		}
+	}
+
+	/**
+	 * 返回去除辅助列后需要更改的列名。没有别名的AVG在各库上改写为SUM后，列名需要恢复为原来的写法
+	 * 
+	 * @return 按列序号排列，不需要更改的为null。没有需要更改的返回null
+	 */
+	public String[] getLabels() {
+		String[] labels = null;
+		for (GroupByItem g : values) {
+			if (g.getLabel() != null && (hiddenStart == -1 || g.getIndex() < hiddenStart)) {
+				if (labels == null) {
+					labels = new String[hiddenStart == -1 ? g.getIndex() + 1 : hiddenStart];
+				}
+				labels[g.getIndex()] = g.getLabel();
+			}
+		}
+		return labels;
+	}
+
 	private void doHaving(List<Row> newRows) {
 		for(Iterator<Row> iter=newRows.iterator();iter.hasNext();){
 			Row row=iter.next();
@@ -82,19 +186,19 @@ public class InMemoryGroupByHaving implements InMemoryProcessor {
 		Object obj=row.getArrayObject(ele.getIndex());
 		switch(ele.havingCondOperator){
 		case EQUALS:
-			return Objects.equal(obj, ele.havingCondValue);
+			return same(obj, ele.havingCondValue);
 		case GREAT:
-			return ObjectUtils.compare((Comparable)obj, (Comparable)ele.havingCondValue)>0;
+			return compare(obj, ele.havingCondValue)>0;
 		case GREAT_EQUALS:
-			return ObjectUtils.compare((Comparable)obj, (Comparable)ele.havingCondValue)>=0;
+			return compare(obj, ele.havingCondValue)>=0;
 		case IS_NOT_NULL:
 			return obj!=null;
 		case IS_NULL:
 			return obj==null;
 		case LESS:
-			return ObjectUtils.compare((Comparable)obj, (Comparable)ele.havingCondValue)<0; 
+			return compare(obj, ele.havingCondValue)<0; 
 		case LESS_EQUALS:
-			return ObjectUtils.compare((Comparable)obj, (Comparable)ele.havingCondValue)<=0;
+			return compare(obj, ele.havingCondValue)<=0;
 		case MATCH_ANY:{
 			String s1=StringUtils.toString(obj);
 			String s2=String.valueOf(ele.havingCondValue);
@@ -111,169 +215,192 @@ public class InMemoryGroupByHaving implements InMemoryProcessor {
 			return s1.startsWith(s2);
 		}
 		case NOT_EQUALS:
-			return !Objects.equal(obj, ele.havingCondValue);
+			return !same(obj, ele.havingCondValue);
 		case NOT_IN:{
 			List<Object> values=(List<Object>)ele.havingCondValue;
-			return !values.contains(obj);
+			return !contains(values, obj);
 		}
 		case IN:{
 			List<Object> values=(List<Object>)ele.havingCondValue;
-			return values.contains(obj);
+			return contains(values, obj);
 		}
 		case BETWEEN_L_L:{
 			List<Object> values=(List<Object>)ele.havingCondValue;
-			return ObjectUtils.compare((Comparable)obj, (Comparable)values.get(0))>=0 && ObjectUtils.compare((Comparable)obj, (Comparable)values.get(1))<=0;
+			return compare(obj, values.get(0))>=0 && compare(obj, values.get(1))<=0;
 		}
 		default:
 			throw new UnsupportedOperationException();
 		}
 	}
 
-	class RowTask {
-		private Row baseRow;
-		private List<Row> rows = new ArrayList<Row>(64);
+	/*
+	 * 合并后的聚合值和having中的常量类型可能不同(如Long和BigDecimal)，数值按大小比较
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static int compare(Object o1, Object o2) {
+		if (o1 instanceof Number && o2 instanceof Number) {
+			return toBigDecimal((Number) o1).compareTo(toBigDecimal((Number) o2));
+		}
+		return ObjectUtils.compare((Comparable) o1, (Comparable) o2);
+	}
+
+	private static boolean same(Object o1, Object o2) {
+		if (o1 instanceof Number && o2 instanceof Number) {
+			return compare(o1, o2) == 0;
+		}
+		return Objects.equal(o1, o2);
+	}
 
-		public RowTask(Row row) {
-			this.baseRow = row;
-			rows.add(row);
+	private static boolean contains(List<Object> values, Object obj) {
+		for (Object v : values) {
+			if (same(obj, v)) {
+				return true;
+			}
 		}
+		return false;
+	}
 
-		public void merge(Row row) {
-			rows.add(row);
+	class GroupState {
+		private Row row;
+		// 合并的部分结果的行数
+		private int merged = 1;
+
+		GroupState(Row row) {
+			this.row = row;
 		}
 
-		void run() throws SQLFeatureNotSupportedException {
+		void merge(Row other) throws SQLFeatureNotSupportedException {
 			for (GroupByItem g : values) {
 				int index = g.getIndex();
 				switch (g.getType()) {
-				case ARRAY_TO_STRING:
-					baseRow.setArrayObject(index, arrayToString(rows, index));
+				case COUNT:
+				case SUM:
+					row.setArrayObject(index, add(row.getArrayObject(index), other.getArrayObject(index)));
 					break;
 				case AVG:
-					baseRow.setArrayObject(index, avg(rows, index));
-					break;
-				case COUNT:
-					baseRow.setArrayObject(index, count(rows, index));
+					row.setArrayObject(index, add(row.getArrayObject(index), other.getArrayObject(index)));
+					if (g.getCountIndex() > -1) {
+						int c = g.getCountIndex();
+						row.setArrayObject(c, add(row.getArrayObject(c), other.getArrayObject(c)));
+					}
 					break;
 				case MAX:
-					baseRow.setArrayObject(index, max(rows, index));
+					row.setArrayObject(index, max(row.getArrayObject(index), other.getArrayObject(index)));
 					break;
 				case MIN:
-					baseRow.setArrayObject(index, min(rows, index));
-					break;
-				case SUM:
-					baseRow.setArrayObject(index, sum(rows, index));
+					row.setArrayObject(index, min(row.getArrayObject(index), other.getArrayObject(index)));
 					break;
+				case ARRAY_TO_STRING:
+					// TODO support the function array_to_string of postgres
+					throw new UnsupportedOperationException();
 				default:
 					throw new SQLFeatureNotSupportedException("the " + g.getType() + " function was not supported in Memory operate.");
 				}
 			}
+			merged++;
 		}
 
-		private Object sum(List<Row> rows, int index) {
-			Number value=(Number) rows.get(0).getArrayObject(index);
-			if(value instanceof Double){
-				return doubleAdd(rows,index);
-			}else if(value instanceof Long){
-				return longAdd(rows,index);
-			}else if(value instanceof Integer){
-				return intAdd(rows,index);
-			}else if(value instanceof Float){
-				return floatAdd(rows,index);
-			}else{
-				return decmialAdd(rows,index);
-			}
-		}
-	
-		@SuppressWarnings("rawtypes")
-		private Object min(List<Row> rows2, int index) {
-			Comparable min=(Comparable)rows2.get(0).getArrayObject(index);
-			for(int i=1;i>rows2.size();i++){
-				Comparable current=(Comparable)rows2.get(i).getArrayObject(index);
-				if(ObjectUtils.compare(min,current) >0){
-					min=current;
+		Row finish() {
+			for (GroupByItem g : values) {
+				if (g.getType() != GroupFunctionType.AVG) {
+					continue;
 				}
-			}
-			return min;
-		}
-		@SuppressWarnings("rawtypes")
-		private Object max(List<Row> rows2, int index) {
-			Comparable max=(Comparable)rows2.get(0).getArrayObject(index);
-			for(int i=1;i>rows2.size();i++){
-				Comparable current=(Comparable)rows2.get(i).getArrayObject(index);
-				if(ObjectUtils.compare(max,current) <0){
-					max=current;
+				int index = g.getIndex();
+				Object sum = row.getArrayObject(index);
+				if (g.getCountIndex() > -1) {
+					Number count = (Number) row.getArrayObject(g.getCountIndex());
+					row.setArrayObject(index, avg((Number) sum, count == null ? 0 : count.longValue()));
+				} else if (merged > 1) {
+					// 没有COUNT列时只能将各库的平均值再取平均，与所有样本的平均值存在偏差
+					row.setArrayObject(index, avg((Number) sum, merged));
 				}
 			}
-			return max;
+			return row;
 		}
+	}
 
-		private Object count(List<Row> rows2, int index) {
-			return intAdd(rows,index);
+	private Row trim(Row row) {
+		Object[] vals = new Object[hiddenStart];
+		for (int i = 0; i < hiddenStart; i++) {
+			vals[i] = row.getArrayObject(i);
 		}
+		return new Row(hiddenStart, vals);
+	}
 
-		//FIXME 这个算法是不对的。将各个结果集平均数全部相加再相除，和原先的所有样本取平均数是不同的。那些样本数较多的平均值权重被忽略了……
-		private Object avg(List<Row> rows2, int index) {
-			double d = 0;
-			for(Row row:rows2){
-				Number num=(Number)row.getArrayObject(index);
-				d+=num.doubleValue();
-			}
-			return d/rows2.size();
+	/*
+	 * 部分聚合结果相加，尽量保持数据库返回的类型
+	 */
+	static Object add(Object o1, Object o2) {
+		if (o1 == null) {
+			return o2;
+		} else if (o2 == null) {
+			return o1;
 		}
-		
-		private Object arrayToString(List<Row> rows2, int index) {
-			//TODO support the function array_to_string of postgres
-			throw new UnsupportedOperationException();
+		Number a = (Number) o1;
+		Number b = (Number) o2;
+		if (a instanceof BigDecimal || b instanceof BigDecimal) {
+			return toBigDecimal(a).add(toBigDecimal(b));
+		} else if (a instanceof Double || b instanceof Double) {
+			return a.doubleValue() + b.doubleValue();
+		} else if (a instanceof Float || b instanceof Float) {
+			return a.floatValue() + b.floatValue();
+		} else if (a instanceof BigInteger || b instanceof BigInteger) {
+			return toBigInteger(a).add(toBigInteger(b));
 		}
-	}
-	
-	
-	private Object decmialAdd(List<Row> rows2, int index) {
-		double d = 0;
-		for(Row row:rows2){
-			Number num=(Number)row.getArrayObject(index);
-			d+=num.doubleValue();
+		long sum = a.longValue() + b.longValue();
+		if (a instanceof Integer && b instanceof Integer && sum == (int) sum) {
+			return (int) sum;
 		}
-		return new BigDecimal(d);
+		return sum;
 	}
 
-	private Object floatAdd(List<Row> rows2, int index) {
-		float d=0;
-		for(Row row:rows2){
-			Number num=(Number)row.getArrayObject(index);
-			d+=num.floatValue();
+	private static Object avg(Number sum, long count) {
+		if (sum == null || count == 0) {
+			return null;
 		}
-		return d;
+		if (sum instanceof BigDecimal) {
+			return ((BigDecimal) sum).divide(BigDecimal.valueOf(count), MathContext.DECIMAL64);
+		}
+		return sum.doubleValue() / count;
 	}
 
-	private Object longAdd(List<Row> rows2, int index) {
-		long d=0;
-		for(Row row:rows2){
-			Number num=(Number)row.getArrayObject(index);
-			d+=num.longValue();
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static Object min(Object o1, Object o2) {
+		if (o1 == null) {
+			return o2;
+		} else if (o2 == null) {
+			return o1;
 		}
-		return d;
+		return ((Comparable) o2).compareTo(o1) < 0 ? o2 : o1;
 	}
 
-	private Object intAdd(List<Row> rows2, int index) {
-		int d=0;
-		for(Row row:rows2){
-			Number num=(Number)row.getArrayObject(index);
-			d+=num.intValue();
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static Object max(Object o1, Object o2) {
+		if (o1 == null) {
+			return o2;
+		} else if (o2 == null) {
+			return o1;
 		}
-		return d;
+		return ((Comparable) o2).compareTo(o1) > 0 ? o2 : o1;
 	}
 
-	private Object doubleAdd(List<Row> rows2, int index) {
-		double d = 0;
-		for(Row row:rows2){
-			Number num=(Number)row.getArrayObject(index);
-			d+=num.doubleValue();
+	private static BigDecimal toBigDecimal(Number n) {
+		if (n instanceof BigDecimal) {
+			return (BigDecimal) n;
+		} else if (n instanceof BigInteger) {
+			return new BigDecimal((BigInteger) n);
+		} else if (n instanceof Double || n instanceof Float) {
+			return BigDecimal.valueOf(n.doubleValue());
 		}
-		return d;
+		return BigDecimal.valueOf(n.longValue());
 	}
 
+	private static BigInteger toBigInteger(Number n) {
+		if (n instanceof BigInteger) {
+			return (BigInteger) n;
+		}
+		return BigInteger.valueOf(n.longValue());
+	}
 
 	public void setHaving(List<HavingEle> having2) {
 		this.having=having2;
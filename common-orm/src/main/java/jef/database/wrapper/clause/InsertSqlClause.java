@@ -63,6 +63,46 @@ public class InsertSqlClause{
 		return sb.toString();
 	}
 	
+	/**
+	 * 传入表名并返回一次插入多行的SQL
+	 * 
+	 * @param tablename
+	 * @param rows
+	 *            行数
+	 * @return insert into table(...) values(...),(...),...
+	 */
+	public String getSql(String tablename, int rows) {
+		StringBuilder sb = new StringBuilder(64 + (valuesPart.length() + 3) * rows);
+		sb.append(insert).append(DbUtils.escapeColumn(profile, tablename));
+		sb.append("(").append(columnsPart).append(") values");
+		for (int i = 0; i < rows; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append('(').append(valuesPart).append(')');
+		}
+		sb.append(tailer);
+		return sb.toString();
+	}
+
+	/**
+	 * 是否所有的值都是绑定变量(而不是DEFAULT、seq.nextval等表达式)
+	 * 
+	 * @return
+	 */
+	public boolean isAllBound() {
+		if (fields == null) {
+			return false;
+		}
+		for (int i = 0; i < valuesPart.length(); i++) {
+			char c = valuesPart.charAt(i);
+			if (c != '?' && c != ',') {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public String getSql() {
 		return getSql(table.getAsOneTable());
 	}
@@ -149,6 +149,8 @@ public class QueryClauseImpl implements QueryClause {
 		StringBuilder sb = new StringBuilder(200);
 		if(delayProcessGroupClause){
 			selectPart.appendNoGroupFunc(sb);
+		}else if(isMultiDatabase() && grouphavingPart.isNotEmpty()){
+			selectPart.appendPartialAggregate(sb);
 		}else{
 			selectPart.append(sb);
 		}
@@ -159,7 +161,7 @@ public class QueryClauseImpl implements QueryClause {
 			sb.append(wherePart);
 		}
 		if (!delayProcessGroupClause)
-			sb.append(grouphavingPart);
+			sb.append(grouphavingPart.getSql(!isMultiDatabase())); //多库时各库只有部分聚合结果，having在内存中计算
 		return sb.toString();
 	}
 
@@ -190,7 +192,11 @@ public class QueryClauseImpl implements QueryClause {
 		// 否则，对查询列指定别名时会产生异常。
 		if (moreTable && (grouphavingPart.isNotEmpty() || orderbyPart.isNotEmpty())) {
 			StringBuilder sb2 = new StringBuilder();
-			selectPart.append(sb2);
+			if (isMultiDatabase() && grouphavingPart.isNotEmpty()) {
+				selectPart.appendPartialAggregate(sb2);
+			} else {
+				selectPart.append(sb2);
+			}
 
 			sb2.append(" from (").append(sb).append(") t");
 			sb2.append(ORMConfig.getInstance().wrap);
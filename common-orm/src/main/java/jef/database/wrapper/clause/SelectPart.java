@@ -83,28 +83,93 @@ public class SelectPart {
 	 * @param sb
 	 */
 	public void append(StringBuilder sb) {
+		append(sb, false);
+	}
+
+	/**
+	 * 跨库分组查询时各库上使用的Select部分。AVG(x)改写为SUM(x)，并在末尾为每个AVG追加一个COUNT(x)列，
+	 * 这样各库返回的部分聚合结果可以在内存中正确合并。
+	 * 
+	 * @param sb
+	 * @throws UnsupportedOperationException
+	 *             含有COUNT/SUM/AVG(DISTINCT x)时，各库上去重后的结果无法合并
+	 * @see InMemoryGroupByHaving
+	 */
+	public void appendPartialAggregate(StringBuilder sb) {
+		append(sb, true);
+	}
+
+	private void append(StringBuilder sb, boolean partial) {
 		sb.append("select ");
 		if (distinct)
 			sb.append("distinct ");
 		Iterator<CommentEntry> iter = entries.iterator();
 		int i = 0;
+		int avgCount = 0;
 		while (iter.hasNext()) {
 			CommentEntry entry = iter.next();
 			if (i > 0)
 				sb.append(',').append(ORMConfig.getInstance().wrapt); // 从第2列开始，每列之后都需要添加,分隔符
 
-			sb.append(entry.getKey());
+			if (partial && isDistinctAggregate(entry.getKey().toUpperCase())) {
+				throw new UnsupportedOperationException("The function " + entry.getKey() + " can not be merged across databases, the partial results are distinct on each database only.");
+			}
+			if (partial && isPartialAvg(entry)) {
+				sb.append("SUM").append(entry.getKey().substring(3));
+				avgCount++;
+			} else {
+				sb.append(entry.getKey());
+			}
 			if (entry.getValue() != null) { // value 是别名
 				// PostgreSQL中，当name作为列别名需要加AS，否则会报错
 				sb.append(" AS ").append(entry.getValue());
 			}
 			i++;
 		}
+		if (avgCount > 0) {
+			int n = 0;
+			for (CommentEntry entry : entries) {
+				if (isPartialAvg(entry)) {
+					sb.append(',').append("COUNT").append(entry.getKey().substring(3));
+					sb.append(" AS ").append(InMemoryGroupByHaving.AVG_COUNT_ALIAS).append(n++);
+				}
+			}
+		}
 		if (ORMConfig.getInstance().isFormatSQL() && entries.size() > 1) {
 			sb.append("\n");
 		}
 	}
 
+	/**
+	 * 是否可以改写为SUM+COUNT的AVG函数。AVG(DISTINCT x)无法拆分。
+	 * 没有别名时改写后列名会变化，合并后恢复为原来的写法(见{@link GroupByItem#getLabel()})。
+	 * 
+	 * @param entry
+	 * @return
+	 */
+	static boolean isPartialAvg(CommentEntry entry) {
+		String exp = entry.getKey().toUpperCase();
+		return exp.startsWith("AVG(") && !isDistinctAggregate(exp);
+	}
+
+	/**
+	 * 是否为COUNT/SUM/AVG(DISTINCT x)。各库去重后的部分结果无法合并
+	 * 
+	 * @param exp
+	 *            大写的表达式
+	 * @return
+	 */
+	static boolean isDistinctAggregate(String exp) {
+		if (exp.startsWith("COUNT(")) {
+			exp = exp.substring(6);
+		} else if (exp.startsWith("SUM(") || exp.startsWith("AVG(")) {
+			exp = exp.substring(4);
+		} else {
+			return false;
+		}
+		return exp.trim().startsWith("DISTINCT ");
+	}
+
 	public void addAll(CommentEntry[] selectColumns) {
 		for (int i = 0; i < selectColumns.length; i++) {
 			entries.add(selectColumns[i]);
@@ -1,25 +1,64 @@
 package jef.database.wrapper.executor;
 
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 
+import jef.common.log.LogUtil;
 import jef.tools.Assert;
 
 public abstract class DbTask implements Runnable{
+	private static final ThreadLocal<DbTask> CURRENT = new ThreadLocal<DbTask>();
+
 	private volatile Queue<SQLException> exceptions;
 	private volatile Queue<Throwable> throwables;
 	private volatile CountDownLatch latch;
-	
+	/**
+	 * 任务所在的数据源
+	 */
+	private final String site;
+	private volatile boolean cancelled;
+	/**
+	 * 任务执行过程中使用的Statement，取消时用于中断执行
+	 */
+	private final Queue<Statement> statements = new ConcurrentLinkedQueue<Statement>();
+
+	public DbTask(){
+		this(null);
+	}
+
+	/**
+	 * 构造
+	 * @param site 任务所在的数据源名称，并行执行器据此限制每个数据源上的并发数
+	 */
+	public DbTask(String site){
+		this.site=site;
+	}
+
 	@Override
 	public final void run() {
+		// 嵌套执行时，外层任务在同一线程上
+		DbTask outer=CURRENT.get();
+		CURRENT.set(this);
 		try{
+			if(cancelled){
+				throw new SQLTimeoutException("The task on ["+site+"] was cancelled before execute.");
+			}
 			execute();
 		}catch(SQLException ex){
 			exceptions.add(ex);
 		}catch(Throwable t){
 			throwables.add(t);
 		}finally{
+			if(outer==null){
+				CURRENT.remove();
+			}else{
+				CURRENT.set(outer);
+			}
+			statements.clear();
 			latch.countDown();
 			latch=null;
 		}
@@ -34,6 +73,61 @@ public abstract class DbTask implements Runnable{
 		this.throwables=t;
 	}
 
+	/**
+	 * 取消任务。尚未开始的任务不再执行，正在执行的任务对其Statement调用cancel()
+	 */
+	public final void cancel() {
+		cancelled=true;
+		for(Statement st:statements){
+			cancel(st);
+		}
+	}
+
+	/*
+	 * 只标记取消。批量取消时先标记全部任务，避免排在后面的任务在取消前一个任务后开始执行
+	 */
+	final void markCancelled() {
+		cancelled=true;
+	}
+
+	/**
+	 * 登记当前线程上正在执行的任务所使用的Statement。当前线程不在执行任务时什么也不做。
+	 * @param st Statement
+	 */
+	public static void watch(Statement st) {
+		DbTask task=CURRENT.get();
+		if(task!=null && st!=null){
+			task.statements.add(st);
+			if(task.cancelled){
+				cancel(st);
+			}
+		}
+	}
+
+	private static void cancel(Statement st) {
+		try{
+			st.cancel();
+		}catch(SQLException e){
+			LogUtil.warn("Cancel statement error:"+e.getMessage());
+		}
+	}
+
+	/**
+	 * 当前线程是否正在执行任务。在任务中需要再次并行执行时，可以据此改为在当前线程中依次执行
+	 * @return true表示当前线程正在执行任务
+	 */
+	public static boolean isRunning() {
+		return CURRENT.get()!=null;
+	}
+
+	public final boolean isCancelled() {
+		return cancelled;
+	}
+
+	public final String getSite() {
+		return site;
+	}
+
 	public final Queue<SQLException> getExceptions() {
 		return exceptions;
 	}
@@ -0,0 +1,271 @@
+package jef.database.wrapper.executor;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jef.common.log.LogUtil;
+import jef.database.DbUtils;
+
+/**
+ * 默认的分库并行执行器
+ * <ul>
+ * <li>固定大小的线程池，任务不会退回到调用者线程中执行。</li>
+ * <li>可以限制每个数据源上同时执行的任务数，超出的任务在该数据源自己的队列中等待，不占用线程，因此一个繁忙的数据源不会耗尽全部线程。</li>
+ * <li>可以设置超时时间，超时后取消剩余任务，正在执行的语句调用Statement.cancel()。</li>
+ * <li>在本执行器的任务中再次调用{@link #execute(List)}时，在当前线程中依次执行，避免全部线程都在等待嵌套任务而死锁。</li>
+ * <li>JDK 21以上可以使用虚拟线程。</li>
+ * </ul>
+ */
+public class DefaultParallelExecutor implements ParallelExecutor {
+	/**
+	 * 当前线程正在执行哪个执行器的任务
+	 */
+	private static final ThreadLocal<DefaultParallelExecutor> WORKER = new ThreadLocal<DefaultParallelExecutor>();
+
+	private final ExecutorService pool;
+	private final int permitsPerSite;
+	private final long timeout;
+	private final ConcurrentMap<String, SiteQueue> sites = new ConcurrentHashMap<String, SiteQueue>();
+
+	// 统计
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicLong executed = new AtomicLong();
+	private final AtomicLong totalWait = new AtomicLong();
+	private final AtomicLong maxWait = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+
+	/**
+	 * 构造
+	 *
+	 * @param threads
+	 *            线程数
+	 * @param permitsPerSite
+	 *            每个数据源上同时执行的任务数，0表示不限制
+	 * @param timeout
+	 *            超时时间(毫秒)，0表示不限制
+	 * @param virtualThread
+	 *            是否使用虚拟线程，JDK不支持时使用普通线程池
+	 */
+	public DefaultParallelExecutor(int threads, int permitsPerSite, long timeout, boolean virtualThread) {
+		this.permitsPerSite = permitsPerSite;
+		this.timeout = timeout;
+		ExecutorService es = virtualThread ? newVirtualThreadExecutor() : null;
+		if (es == null) {
+			ThreadPoolExecutor tpe = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+			tpe.allowCoreThreadTimeOut(true);
+			es = tpe;
+		}
+		this.pool = es;
+	}
+
+	public void execute(List<DbTask> tasks) throws SQLException {
+		CountDownLatch latch = new CountDownLatch(tasks.size());
+		Queue<SQLException> exceptions = new ConcurrentLinkedQueue<SQLException>();
+		Queue<Throwable> throwables = new ConcurrentLinkedQueue<Throwable>();
+		boolean nested = WORKER.get() == this;
+		for (DbTask task : tasks) {
+			task.prepare(latch, exceptions, throwables);
+			if (nested) {
+				task.run();
+			} else {
+				submit(task);
+			}
+		}
+		try {
+			if (timeout <= 0) {
+				latch.await();
+			} else if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+				timeouts.incrementAndGet();
+				cancel(tasks);
+				// 被取消的任务应当很快结束，等待它们释放连接
+				latch.await(timeout, TimeUnit.MILLISECONDS);
+				throw new SQLTimeoutException("The parallel tasks were not finished in " + timeout + "ms.");
+			}
+		} catch (InterruptedException e) {
+			cancel(tasks);
+			Thread.currentThread().interrupt();
+			throw new SQLException(e);
+		}
+		if (!exceptions.isEmpty()) {
+			throw DbUtils.wrapExceptions(exceptions);
+		}
+		if (!throwables.isEmpty()) {
+			throw DbUtils.toRuntimeException(throwables.peek());
+		}
+	}
+
+	/**
+	 * 提交到线程池后立即返回。在本执行器的任务中调用时也提交到线程池，因为不等待，不会死锁
+	 */
+	public void executeAsync(DbTask task) {
+		task.prepare(new CountDownLatch(1), new ConcurrentLinkedQueue<SQLException>(), new ConcurrentLinkedQueue<Throwable>());
+		submit(task);
+	}
+
+	private void cancel(List<DbTask> tasks) {
+		for (DbTask task : tasks) {
+			task.markCancelled();
+		}
+		for (DbTask task : tasks) {
+			task.cancel();
+		}
+	}
+
+	private void submit(DbTask task) {
+		queued.incrementAndGet();
+		if (permitsPerSite > 0 && task.getSite() != null) {
+			SiteQueue site = sites.get(task.getSite());
+			if (site == null) {
+				site = new SiteQueue();
+				SiteQueue old = sites.putIfAbsent(task.getSite(), site);
+				if (old != null) {
+					site = old;
+				}
+			}
+			site.offer(new Job(task, site));
+		} else {
+			dispatch(new Job(task, null));
+		}
+	}
+
+	private void dispatch(Job job) {
+		try {
+			pool.execute(job);
+		} catch (RejectedExecutionException e) {
+			// 执行器已经关闭
+			job.run();
+		}
+	}
+
+	public int getQueueDepth() {
+		return queued.get();
+	}
+
+	public double getAverageWaitMillis() {
+		long count = executed.get();
+		return count == 0 ? 0 : totalWait.get() / 1000000d / count;
+	}
+
+	public double getMaxWaitMillis() {
+		return maxWait.get() / 1000000d;
+	}
+
+	public long getExecutedCount() {
+		return executed.get();
+	}
+
+	public long getTimeoutCount() {
+		return timeouts.get();
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	@Override
+	public String toString() {
+		return "queue:" + getQueueDepth() + " executed:" + getExecutedCount() + " avgWait:" + getAverageWaitMillis() + "ms maxWait:" + getMaxWaitMillis() + "ms timeouts:" + getTimeoutCount();
+	}
+
+	/*
+	 * JDK 21的Executors.newVirtualThreadPerTaskExecutor()
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method m = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+		} catch (Exception e) {
+			LogUtil.warn("Virtual thread is not supported in java " + System.getProperty("java.version") + ", using platform threads.");
+			return null;
+		}
+	}
+
+	final class Job implements Runnable {
+		private final DbTask task;
+		private final SiteQueue site;
+		private final long submitted = System.nanoTime();
+
+		Job(DbTask task, SiteQueue site) {
+			this.task = task;
+			this.site = site;
+		}
+
+		public void run() {
+			long wait = System.nanoTime() - submitted;
+			queued.decrementAndGet();
+			executed.incrementAndGet();
+			totalWait.addAndGet(wait);
+			long max;
+			while (wait > (max = maxWait.get()) && !maxWait.compareAndSet(max, wait))
+				;
+			WORKER.set(DefaultParallelExecutor.this);
+			try {
+				task.run();
+			} finally {
+				WORKER.remove();
+				if (site != null) {
+					site.release();
+				}
+			}
+		}
+	}
+
+	/*
+	 * 单个数据源上的任务队列，同时执行的任务数不超过permitsPerSite
+	 */
+	final class SiteQueue {
+		private int running;
+		private final ArrayDeque<Job> pending = new ArrayDeque<Job>();
+
+		void offer(Job job) {
+			synchronized (this) {
+				if (running >= permitsPerSite) {
+					pending.add(job);
+					return;
+				}
+				running++;
+			}
+			dispatch(job);
+		}
+
+		void release() {
+			Job next;
+			synchronized (this) {
+				next = pending.poll();
+				if (next == null) {
+					running--;
+					return;
+				}
+			}
+			dispatch(next);
+		}
+	}
+
+	static final class DaemonThreadFactory implements ThreadFactory {
+		private static final AtomicInteger POOL = new AtomicInteger();
+		private final AtomicInteger count = new AtomicInteger();
+		private final String prefix = "geequery-parallel-" + POOL.incrementAndGet() + "-";
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
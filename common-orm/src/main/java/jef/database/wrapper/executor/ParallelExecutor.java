@@ -0,0 +1,82 @@
+package jef.database.wrapper.executor;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import jef.common.log.LogUtil;
+
+/**
+ * 分库分表时的并行执行器，每个DbClient持有一个。
+ * <p>
+ * 可以通过{@link jef.database.DbCfg#PARTITION_PARALLEL_EXECUTOR}配置自定义的实现类，实现类需要有无参构造方法。
+ *
+ * @see DefaultParallelExecutor
+ */
+public interface ParallelExecutor {
+	/**
+	 * 并行执行多个数据库任务，等待全部任务完成后返回
+	 *
+	 * @param tasks
+	 *            任务
+	 * @throws SQLException
+	 *             任一任务出错或执行超时
+	 */
+	void execute(List<DbTask> tasks) throws SQLException;
+
+	/**
+	 * 在后台执行一个任务，不等待完成。任务中的异常需要任务自行处理。
+	 * <p>
+	 * 默认实现在当前线程中执行，实现类应当改为提交到自己的线程中。
+	 *
+	 * @param task
+	 *            任务
+	 */
+	default void executeAsync(DbTask task) {
+		try {
+			execute(Collections.singletonList(task));
+		} catch (SQLException e) {
+			LogUtil.exception(e);
+		}
+	}
+
+	/**
+	 * 已提交但尚未开始执行的任务数
+	 *
+	 * @return 队列深度
+	 */
+	int getQueueDepth();
+
+	/**
+	 * 任务从提交到开始执行的平均等待时间
+	 *
+	 * @return 毫秒
+	 */
+	double getAverageWaitMillis();
+
+	/**
+	 * 任务从提交到开始执行的最长等待时间
+	 *
+	 * @return 毫秒
+	 */
+	double getMaxWaitMillis();
+
+	/**
+	 * 已开始执行的任务总数
+	 *
+	 * @return 任务数
+	 */
+	long getExecutedCount();
+
+	/**
+	 * 因超时而被取消的批次数
+	 *
+	 * @return 超时次数
+	 */
+	long getTimeoutCount();
+
+	/**
+	 * 关闭，释放线程
+	 */
+	void shutdown();
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Set;
 
 import javax.persistence.PersistenceException;
+import javax.sql.rowset.RowSetMetaDataImpl;
 
 import jef.database.query.SqlContext;
 import jef.tools.StringUtils;
@@ -166,6 +167,54 @@ public class ColumnMeta {
 		return columns.length;
 	}
 
+	/**
+	 * 返回只包含前若干列的元数据，用于去除内存计算时追加在末尾的辅助列
+	 * 
+	 * @param count
+	 *            保留的列数
+	 * @return 新的元数据
+	 */
+	public ColumnMeta trim(int count) {
+		return trim(count, null);
+	}
+
+	/**
+	 * 返回只包含前若干列的元数据，并更改部分列的列名
+	 * 
+	 * @param count
+	 *            保留的列数
+	 * @param labels
+	 *            按列序号排列的新列名，为null的不更改
+	 * @return 新的元数据
+	 */
+	public ColumnMeta trim(int count, String[] labels) {
+		if (count >= columns.length && labels == null) {
+			return this;
+		}
+		count = Math.min(count, columns.length);
+		try {
+			RowSetMetaDataImpl md = new RowSetMetaDataImpl();
+			md.setColumnCount(count);
+			for (int i = 1; i <= count; i++) {
+				String label = labels != null && i <= labels.length ? labels[i - 1] : null;
+				md.setColumnName(i, label == null ? meta.getColumnName(i) : label);
+				md.setColumnLabel(i, label == null ? meta.getColumnLabel(i) : label);
+				md.setColumnType(i, meta.getColumnType(i));
+				md.setColumnTypeName(i, meta.getColumnTypeName(i));
+				md.setTableName(i, meta.getTableName(i));
+				md.setSchemaName(i, meta.getSchemaName(i));
+				md.setCatalogName(i, meta.getCatalogName(i));
+				md.setNullable(i, meta.isNullable(i));
+				md.setSigned(i, meta.isSigned(i));
+				md.setPrecision(i, Math.max(0, meta.getPrecision(i)));
+				md.setScale(i, Math.max(0, meta.getScale(i)));
+			}
+			return new ColumnMeta(md);
+		} catch (SQLException e) {
+			throw new PersistenceException(e);
+		}
+	}
+
 	public ResultSetMetaData getMeta() {
 		return meta;
 	}
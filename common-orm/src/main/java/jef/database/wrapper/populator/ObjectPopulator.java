@@ -5,11 +5,15 @@ import java.util.Map;
 
 import javax.persistence.PersistenceException;
 
+import jef.accelerator.bean.BeanAccessor;
+import jef.accelerator.bean.FastBeanWrapperImpl;
 import jef.database.DataObject;
 import jef.database.DebugUtil;
 import jef.database.IQueryableEntity;
 import jef.database.LazyLoadProcessor;
+import jef.database.ORMConfig;
 import jef.database.dialect.type.ColumnMappings;
+import jef.database.dialect.type.ResultSetAccessor;
 import jef.database.innerpool.InstancePopulator;
 import jef.database.jdbc.result.IResultSet;
 import jef.database.meta.ITableMetadata;
@@ -20,6 +24,9 @@ public final class ObjectPopulator implements InstancePopulator {
 	Map<String, ColumnDescription> data;
 	int bindRowidForColumn;
 	LazyLoadProcessor processor;
+	private volatile IndexedPlan plan;
+	private volatile RowMapper generated;
+	private volatile boolean generateFailed;
 
 	public ObjectPopulator(ITableMetadata meta, Map<String, ColumnDescription> data) {
 		this.meta = meta;
@@ -33,6 +40,12 @@ public final class ObjectPopulator implements InstancePopulator {
 	 * @throws SQLException
 	 */
 	public boolean processOrNull(BeanWrapper wrapper, IResultSet rs) throws SQLException {
+		RowMapper mapper = getMapper(wrapper);
+		if (mapper != null) {
+			boolean flag = mapper.populate(wrapper.getWrapped(), rs, true);
+			afterProcess(wrapper, rs);
+			return flag;
+		}
 		boolean flag = false;
 		for (Map.Entry<String, ColumnDescription> entry : data.entrySet()) {
 			String fieldName = entry.getKey();
@@ -51,19 +64,17 @@ public final class ObjectPopulator implements InstancePopulator {
 				throw new PersistenceException("Error occured while getting value from resultset. field=[" + fieldName + "], column=[" + c.getName() + "]", e);
 			}
 		}
-
-		if (bindRowidForColumn > 0) {
-			String rowid = (String) ColumnMappings.ROWID.jdbcGet(rs, bindRowidForColumn);
-			((IQueryableEntity) wrapper.getWrapped()).bindRowid(rowid);
-		}
-		if (processor != null) {
-			DataObject da = (DataObject) wrapper.getWrapped();
-			DebugUtil.addLazy(da, processor);
-		}
+		afterProcess(wrapper, rs);
 		return flag;
 	}
 
 	public void process(BeanWrapper wrapper, IResultSet rs) throws SQLException {
+		RowMapper mapper = getMapper(wrapper);
+		if (mapper != null) {
+			mapper.populate(wrapper.getWrapped(), rs, false);
+			afterProcess(wrapper, rs);
+			return;
+		}
 		for (Map.Entry<String, ColumnDescription> entry : data.entrySet()) {
 			String fieldName = entry.getKey();
 			ColumnDescription c = entry.getValue();
@@ -76,6 +87,10 @@ public final class ObjectPopulator implements InstancePopulator {
 				throw new PersistenceException("Error occured while getting value from resultset. field=[" + fieldName + "], column=[" + c.getName() + "]", e);
 			}
 		}
+		afterProcess(wrapper, rs);
+	}
+
+	private void afterProcess(BeanWrapper wrapper, IResultSet rs) throws SQLException {
 		if (bindRowidForColumn > 0) {
 			String rowid = (String) ColumnMappings.ROWID.jdbcGet(rs, bindRowidForColumn);
 			((IQueryableEntity) wrapper.getWrapped()).bindRowid(rowid);
@@ -86,6 +101,131 @@ public final class ObjectPopulator implements InstancePopulator {
 		}
 	}
 
+	/*
+	 * 开启了生成映射器时，优先使用按实体和列布局生成的映射器；
+	 * 其次在包装器使用支持按序号访问的Accessor时，使用按序号赋值的计划；否则返回null
+	 */
+	private RowMapper getMapper(BeanWrapper wrapper) {
+		if (meta != null && ORMConfig.getInstance().isGenerateRowMapper() && !generateFailed && wrapper.getWrapped().getClass() == meta.getContainerType()) {
+			RowMapper mapper = this.generated;
+			if (mapper == null) {
+				mapper = meta.getRowMapperFactory().newMapper(data);
+				if (mapper == null) {
+					generateFailed = true;
+				} else {
+					this.generated = mapper;
+					return mapper;
+				}
+			} else {
+				return mapper;
+			}
+		}
+		if (!(wrapper instanceof FastBeanWrapperImpl)) {
+			return null;
+		}
+		BeanAccessor ba = ((FastBeanWrapperImpl) wrapper).getAccessor();
+		IndexedPlan plan = this.plan;
+		if (plan == null || plan.ba != ba) {
+			plan = IndexedPlan.create(ba, data);
+			this.plan = plan;
+		}
+		return plan.supported ? plan : null;
+	}
+
+	/**
+	 * 按序号向对象赋值的计划。
+	 * <p>
+	 * 每个列对应的属性序号只计算一次，之后每行数据都不再按属性名查找。当属性是int/long/double，并且列的数据类型是数值时，
+	 * 使用rs.getInt()/getLong()/getDouble()读取，并通过setInt()/setLong()/setDouble()赋值，整个过程不发生装箱。
+	 */
+	static final class IndexedPlan extends RowMapper {
+		final BeanAccessor ba;
+		final boolean supported;
+		private final int[] ns;
+		private final int[] indexes;
+		private final int[] kinds;
+
+		private IndexedPlan(BeanAccessor ba, boolean supported, int size) {
+			this.ba = ba;
+			this.supported = supported;
+			this.ns = new int[size];
+			this.indexes = new int[size];
+			this.kinds = new int[size];
+			init(new String[size], new String[size], new ResultSetAccessor[size]);
+		}
+
+		static IndexedPlan create(BeanAccessor ba, Map<String, ColumnDescription> data) {
+			IndexedPlan plan = new IndexedPlan(ba, true, data.size());
+			int i = 0;
+			for (Map.Entry<String, ColumnDescription> entry : data.entrySet()) {
+				String name = entry.getKey();
+				ColumnDescription c = entry.getValue();
+				int index = ba.getPropertyIndex(name);
+				if (index < 0) {
+					return new IndexedPlan(ba, false, 0);
+				}
+				plan.names[i] = name;
+				plan.columns[i] = c.getName();
+				plan.accessors[i] = c.getAccessor();
+				plan.ns[i] = c.getN();
+				plan.indexes[i] = index;
+				plan.kinds[i] = getKind(ba.getPropertyType(name), c);
+				i++;
+			}
+			return plan;
+		}
+
+		@Override
+		public boolean populate(Object bean, IResultSet rs, boolean skipNull) throws SQLException {
+			boolean flag = false;
+			for (int i = 0; i < indexes.length; i++) {
+				int n = ns[i];
+				// Note: 使用getObject方法时，在Oracle 2008-2-2
+				// 10.2.4.0驱动下会变为getDate()，从而丢失时分秒。
+				try {
+					switch (kinds[i]) {
+					case INT: {
+						int v = rs.getInt(n);
+						if (!rs.wasNull()) {
+							ba.setInt(bean, indexes[i], v);
+							flag = true;
+						}
+						break;
+					}
+					case LONG: {
+						long v = rs.getLong(n);
+						if (!rs.wasNull()) {
+							ba.setLong(bean, indexes[i], v);
+							flag = true;
+						}
+						break;
+					}
+					case DOUBLE: {
+						double v = rs.getDouble(n);
+						if (!rs.wasNull()) {
+							ba.setDouble(bean, indexes[i], v);
+							flag = true;
+						}
+						break;
+					}
+					default: {
+						Object obj = accessors[i].jdbcGet(rs, n);
+						if (obj != null) {
+							flag = true;
+						} else if (skipNull) {
+							break;
+						}
+						ba.set(bean, indexes[i], obj);
+					}
+					}
+				} catch (SQLException e) {
+					throw error(e, i);
+				}
+			}
+			return flag;
+		}
+	}
+
 	public void setProcessor(LazyLoadProcessor processor) {
 		this.processor = processor;
 	}
@@ -0,0 +1,106 @@
+package jef.database.wrapper.populator;
+
+import java.sql.SQLException;
+import java.sql.Types;
+
+import javax.persistence.PersistenceException;
+
+import jef.database.dialect.type.AutoIntMapping;
+import jef.database.dialect.type.AutoLongMapping;
+import jef.database.dialect.type.CharStringMapping;
+import jef.database.dialect.type.ColumnMapping;
+import jef.database.dialect.type.ColumnMappings;
+import jef.database.dialect.type.NumBigLongMapping;
+import jef.database.dialect.type.NumDoubleDoubleMapping;
+import jef.database.dialect.type.NumIntIntMapping;
+import jef.database.dialect.type.ResultSetAccessor;
+import jef.database.dialect.type.VarcharStringMapping;
+import jef.database.jdbc.result.IResultSet;
+
+/**
+ * 将结果集中的一行数据填入对象。
+ * <p>
+ * 有两种实现：按属性序号赋值的{@link ObjectPopulator.IndexedPlan}；以及由{@link RowMapperFactory}
+ * 按实体和列布局动态生成的映射器，生成的映射器直接调用rs.getInt()等方法和实体的setter。
+ *
+ * @author jiyi
+ *
+ */
+public abstract class RowMapper {
+	static final int OBJECT = 0;
+	static final int INT = 1;
+	static final int LONG = 2;
+	static final int DOUBLE = 3;
+	static final int STRING = 4;
+
+	/**
+	 * 各列对应的属性名
+	 */
+	protected String[] names;
+	/**
+	 * 各列的列名
+	 */
+	protected String[] columns;
+	/**
+	 * 各列使用的ResultSetAccessor
+	 */
+	protected ResultSetAccessor[] accessors;
+
+	/**
+	 * 将当前行填入对象
+	 *
+	 * @param bean
+	 *            对象
+	 * @param rs
+	 *            结果集
+	 * @param skipNull
+	 *            为true时不设置null值
+	 * @return 是否有非null的值
+	 * @throws SQLException
+	 */
+	public abstract boolean populate(Object bean, IResultSet rs, boolean skipNull) throws SQLException;
+
+	final void init(String[] names, String[] columns, ResultSetAccessor[] accessors) {
+		this.names = names;
+		this.columns = columns;
+		this.accessors = accessors;
+	}
+
+	/*
+	 * 只有标准的数值映射才使用基本类型读取，字符串只处理标准的字符映射，其他的映射器可能对值有特别的转换
+	 */
+	static int getKind(Class<?> propertyType, ColumnDescription c) {
+		ResultSetAccessor accessor = c.getAccessor();
+		int type = c.getType();
+		if (propertyType == Integer.TYPE) {
+			return (accessor == ColumnMappings.INT || isMapping(accessor, propertyType, NumIntIntMapping.class, AutoIntMapping.class)) && isInteger(type) ? INT : OBJECT;
+		} else if (propertyType == Long.TYPE) {
+			return (accessor == ColumnMappings.LONG || isMapping(accessor, propertyType, NumBigLongMapping.class, AutoLongMapping.class)) && (isInteger(type) || type == Types.BIGINT) ? LONG : OBJECT;
+		} else if (propertyType == Double.TYPE) {
+			return (accessor == ColumnMappings.DOUBLE || isMapping(accessor, propertyType, NumDoubleDoubleMapping.class, null)) && (type == Types.DOUBLE || type == Types.FLOAT || type == Types.REAL || type == Types.NUMERIC || type == Types.DECIMAL) ? DOUBLE : OBJECT;
+		} else if (propertyType == String.class) {
+			return (accessor == ColumnMappings.STRING || isMapping(accessor, propertyType, VarcharStringMapping.class, CharStringMapping.class)) && (type == Types.VARCHAR || type == Types.CHAR || type == Types.NVARCHAR || type == Types.NCHAR) ? STRING : OBJECT;
+		}
+		return OBJECT;
+	}
+
+	private static boolean isMapping(ResultSetAccessor accessor, Class<?> propertyType, Class<?> c1, Class<?> c2) {
+		Class<?> clz = accessor.getClass();
+		return (clz == c1 || clz == c2) && ((ColumnMapping) accessor).getFieldType() == propertyType;
+	}
+
+	private static boolean isInteger(int type) {
+		return type == Types.INTEGER || type == Types.SMALLINT || type == Types.TINYINT || type == Types.NUMERIC || type == Types.DECIMAL;
+	}
+
+	/**
+	 * 读取第i列时出错
+	 *
+	 * @param e
+	 * @param i
+	 * @return
+	 */
+	protected final PersistenceException error(SQLException e, int i) {
+		return new PersistenceException("Error occured while getting value from resultset. field=[" + names[i] + "], column=[" + columns[i] + "]", e);
+	}
+}
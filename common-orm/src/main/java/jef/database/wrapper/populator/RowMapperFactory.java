@@ -0,0 +1,317 @@
+package jef.database.wrapper.populator;
+
+import static jef.accelerator.asm.ASMUtils.getDesc;
+import static jef.accelerator.asm.ASMUtils.getMethodDesc;
+import static jef.accelerator.asm.ASMUtils.getType;
+import static jef.accelerator.asm.ASMUtils.iconst;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.geequery.asm.ClassWriter;
+import com.github.geequery.asm.Label;
+import com.github.geequery.asm.MethodVisitor;
+import com.github.geequery.asm.Opcodes;
+
+import jef.accelerator.asm.ASMUtils;
+import jef.accelerator.bean.ClassLoaderAccessor;
+import jef.common.log.LogUtil;
+import jef.database.dialect.type.ResultSetAccessor;
+import jef.database.jdbc.result.IResultSet;
+import jef.tools.Primitives;
+import jef.tools.reflect.BeanUtils;
+import jef.tools.reflect.FieldEx;
+import jef.tools.reflect.MethodEx;
+
+/**
+ * 为一个实体类生成{@link RowMapper}。
+ * <p>
+ * 每种列布局(各列的属性、列序号、数据类型以及ResultSetAccessor的类型)生成一个映射器类，生成的代码直接调用
+ * rs.getInt()/getLong()/getDouble()/getString()和实体的setter，其余的列调用该列的ResultSetAccessor。
+ * 由于ResultSetAccessor的类型由数据库方言决定，不同数据库上的同一查询会生成不同的映射器。
+ * <p>
+ * 实体类及其setter不是public的，或者同一实体生成的映射器数量超过{@link #MAX_LAYOUTS}时，返回null，由调用者按原有方式赋值。
+ *
+ * @author jiyi
+ *
+ */
+public final class RowMapperFactory implements Opcodes {
+	/**
+	 * 每个实体最多生成的映射器类数量
+	 */
+	static final int MAX_LAYOUTS = 64;
+
+	private static final AtomicInteger SEQ = new AtomicInteger();
+	private static final Class<?> UNSUPPORTED = Void.class;
+
+	private final Class<?> beanClass;
+	private final Map<String, Class<?>> mappers = new ConcurrentHashMap<String, Class<?>>();
+	private ClassLoaderAccessor cl;
+
+	public RowMapperFactory(Class<?> beanClass) {
+		this.beanClass = beanClass;
+	}
+
+	/**
+	 * 得到指定列布局的映射器
+	 *
+	 * @param data
+	 *            属性名和列
+	 * @return 映射器，无法生成时返回null
+	 */
+	public RowMapper newMapper(Map<String, ColumnDescription> data) {
+		int size = data.size();
+		String[] names = new String[size];
+		String[] columns = new String[size];
+		ResultSetAccessor[] accessors = new ResultSetAccessor[size];
+		ColumnDescription[] descs = new ColumnDescription[size];
+		StringBuilder key = new StringBuilder();
+		int i = 0;
+		for (Map.Entry<String, ColumnDescription> entry : data.entrySet()) {
+			ColumnDescription c = entry.getValue();
+			names[i] = entry.getKey();
+			columns[i] = c.getName();
+			accessors[i] = c.getAccessor();
+			descs[i] = c;
+			key.append(names[i]).append(':').append(c.getN()).append(':').append(c.getType()).append(':').append(c.getAccessor().getClass().getName()).append(';');
+			i++;
+		}
+		Class<?> clz = getMapperClass(key.toString(), names, descs);
+		if (clz == UNSUPPORTED) {
+			return null;
+		}
+		try {
+			RowMapper mapper = (RowMapper) clz.newInstance();
+			mapper.init(names, columns, accessors);
+			return mapper;
+		} catch (InstantiationException e) {
+			throw new IllegalStateException(e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 已生成的映射器类数量
+	 *
+	 * @return
+	 */
+	public int size() {
+		int n = 0;
+		for (Class<?> c : mappers.values()) {
+			if (c != UNSUPPORTED)
+				n++;
+		}
+		return n;
+	}
+
+	private Class<?> getMapperClass(String key, String[] names, ColumnDescription[] descs) {
+		Class<?> clz = mappers.get(key);
+		if (clz != null) {
+			return clz;
+		}
+		synchronized (this) {
+			clz = mappers.get(key);
+			if (clz == null) {
+				clz = UNSUPPORTED;
+				if (mappers.size() < MAX_LAYOUTS) {
+					Method[] setters = getSetters(names);
+					if (setters != null) {
+						clz = generate(setters, descs);
+					}
+				}
+				mappers.put(key, clz);
+			}
+		}
+		return clz;
+	}
+
+	/*
+	 * 生成的类在另一个ClassLoader中，因此实体类、setter及其所在的类都必须是public的
+	 */
+	private Method[] getSetters(String[] names) {
+		if (!Modifier.isPublic(beanClass.getModifiers())) {
+			return null;
+		}
+		Method[] setters = new Method[names.length];
+		for (int i = 0; i < names.length; i++) {
+			FieldEx field = BeanUtils.getField(beanClass, names[i]);
+			if (field == null) {
+				return null;
+			}
+			MethodEx setter = BeanUtils.getSetter(field);
+			if (setter == null) {
+				return null;
+			}
+			Method m = setter.getJavaMethod();
+			if (!Modifier.isPublic(m.getModifiers()) || Modifier.isStatic(m.getModifiers()) || !Modifier.isPublic(m.getDeclaringClass().getModifiers())) {
+				return null;
+			}
+			setters[i] = m;
+		}
+		return setters;
+	}
+
+	private Class<?> generate(Method[] setters, ColumnDescription[] descs) {
+		String name = beanClass.getName().replace('.', '_') + "_RowMapper" + SEQ.incrementAndGet();
+		byte[] data = generateClass(name, setters, descs);
+		try {
+			if (cl == null) {
+				ClassLoader parent = beanClass.getClassLoader();
+				cl = new ClassLoaderAccessor(parent == null ? RowMapper.class.getClassLoader() : parent);
+			}
+			return cl.defineClz(name, data);
+		} catch (LinkageError e) {
+			LogUtil.exception("Generate row mapper for " + beanClass.getName() + " failure.", e);
+			return UNSUPPORTED;
+		}
+	}
+
+	/*
+	 * populate(Object bean, IResultSet rs, boolean skipNull)
+	 * 局部变量: 1 bean 2 rs 3 skipNull 4 转换后的bean 5 flag 6(7) 列的值
+	 */
+	private byte[] generateClass(String name, Method[] setters, ColumnDescription[] descs) {
+		String superType = getType(RowMapper.class);
+		String beanType = getType(beanClass);
+		String rsType = getType(IResultSet.class);
+
+		ClassWriter cw = new ClassWriter(0);
+		cw.visit(V1_5, ACC_PUBLIC + ACC_SUPER + ACC_FINAL, name.replace('.', '/'), null, superType, new String[] {});
+		{
+			MethodVisitor mw = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+			mw.visitVarInsn(ALOAD, 0);
+			mw.visitMethodInsn(INVOKESPECIAL, superType, "<init>", "()V");
+			mw.visitInsn(RETURN);
+			mw.visitMaxs(1, 1);
+			mw.visitEnd();
+		}
+		MethodVisitor mw = cw.visitMethod(ACC_PUBLIC, "populate", getMethodDesc(Boolean.TYPE, Object.class, IResultSet.class, Boolean.TYPE), null, new String[] { getType(SQLException.class) });
+		mw.visitVarInsn(ALOAD, 1);
+		mw.visitTypeInsn(CHECKCAST, beanType);
+		mw.visitVarInsn(ASTORE, 4);
+		mw.visitInsn(ICONST_0);
+		mw.visitVarInsn(ISTORE, 5);
+
+		Label[] handlers = new Label[setters.length];
+		for (int i = 0; i < setters.length; i++) {
+			Method setter = setters[i];
+			Class<?> type = setter.getParameterTypes()[0];
+			int n = descs[i].getN();
+			Label start = new Label();
+			Label end = new Label();
+			Label next = new Label();
+			handlers[i] = new Label();
+			mw.visitTryCatchBlock(start, end, handlers[i], getType(SQLException.class));
+			mw.visitLabel(start);
+			switch (RowMapper.getKind(type, descs[i])) {
+			case RowMapper.INT:
+				generatePrimitive(mw, rsType, "getInt", type, n, ISTORE, ILOAD, setter, next);
+				break;
+			case RowMapper.LONG:
+				generatePrimitive(mw, rsType, "getLong", type, n, LSTORE, LLOAD, setter, next);
+				break;
+			case RowMapper.DOUBLE:
+				generatePrimitive(mw, rsType, "getDouble", type, n, DSTORE, DLOAD, setter, next);
+				break;
+			case RowMapper.STRING:
+				mw.visitVarInsn(ALOAD, 2);
+				iconst(mw, n);
+				mw.visitMethodInsn(INVOKEINTERFACE, rsType, "getString", getMethodDesc(String.class, Integer.TYPE));
+				generateObject(mw, setter, type, next);
+				break;
+			default:
+				mw.visitVarInsn(ALOAD, 0);
+				mw.visitFieldInsn(GETFIELD, superType, "accessors", "[" + ASMUtils.getDesc(ResultSetAccessor.class));
+				iconst(mw, i);
+				mw.visitInsn(AALOAD);
+				mw.visitVarInsn(ALOAD, 2);
+				iconst(mw, n);
+				mw.visitMethodInsn(INVOKEINTERFACE, getType(ResultSetAccessor.class), "jdbcGet", getMethodDesc(Object.class, IResultSet.class, Integer.TYPE));
+				generateObject(mw, setter, type, next);
+			}
+			mw.visitLabel(end);
+			mw.visitLabel(next);
+		}
+		mw.visitVarInsn(ILOAD, 5);
+		mw.visitInsn(IRETURN);
+
+		// 异常处理: throw error(e, i)
+		for (int i = 0; i < handlers.length; i++) {
+			mw.visitLabel(handlers[i]);
+			mw.visitVarInsn(ALOAD, 0);
+			mw.visitInsn(SWAP);
+			iconst(mw, i);
+			mw.visitMethodInsn(INVOKEVIRTUAL, superType, "error", "(Ljava/sql/SQLException;I)Ljavax/persistence/PersistenceException;");
+			mw.visitInsn(ATHROW);
+		}
+		mw.visitMaxs(5, 8);
+		mw.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/*
+	 * v=rs.getXxx(n); if(!rs.wasNull()){bean.setXxx(v); flag=true;}
+	 */
+	private void generatePrimitive(MethodVisitor mw, String rsType, String getter, Class<?> type, int n, int store, int load, Method setter, Label next) {
+		mw.visitVarInsn(ALOAD, 2);
+		iconst(mw, n);
+		mw.visitMethodInsn(INVOKEINTERFACE, rsType, getter, getMethodDesc(type, Integer.TYPE));
+		mw.visitVarInsn(store, 6);
+		mw.visitVarInsn(ALOAD, 2);
+		mw.visitMethodInsn(INVOKEINTERFACE, rsType, "wasNull", "()Z");
+		mw.visitJumpInsn(IFNE, next);
+		mw.visitVarInsn(ALOAD, 4);
+		mw.visitVarInsn(load, 6);
+		invokeSetter(mw, setter);
+		mw.visitInsn(ICONST_1);
+		mw.visitVarInsn(ISTORE, 5);
+	}
+
+	/*
+	 * 栈顶为列的值。非null时flag=true；null值在skipNull或者属性为基本类型时不设置
+	 */
+	private void generateObject(MethodVisitor mw, Method setter, Class<?> type, Label next) {
+		Label isNull = new Label();
+		Label doSet = new Label();
+		mw.visitVarInsn(ASTORE, 6);
+		mw.visitVarInsn(ALOAD, 6);
+		mw.visitJumpInsn(IFNULL, isNull);
+		mw.visitInsn(ICONST_1);
+		mw.visitVarInsn(ISTORE, 5);
+		mw.visitJumpInsn(GOTO, doSet);
+		mw.visitLabel(isNull);
+		if (type.isPrimitive()) {
+			mw.visitJumpInsn(GOTO, next);
+		} else {
+			mw.visitVarInsn(ILOAD, 3);
+			mw.visitJumpInsn(IFNE, next);
+		}
+		mw.visitLabel(doSet);
+		mw.visitVarInsn(ALOAD, 4);
+		mw.visitVarInsn(ALOAD, 6);
+		if (type.isPrimitive()) {
+			Class<?> wrapped = Primitives.toWrapperClass(type);
+			mw.visitTypeInsn(CHECKCAST, getType(wrapped));
+			ASMUtils.doUnwrap(mw, type, wrapped);
+		} else if (type != Object.class) {
+			mw.visitTypeInsn(CHECKCAST, getType(type));
+		}
+		invokeSetter(mw, setter);
+	}
+
+	private void invokeSetter(MethodVisitor mw, Method setter) {
+		mw.visitMethodInsn(INVOKEVIRTUAL, getType(setter.getDeclaringClass()), setter.getName(), getDesc(setter));
+		Class<?> r = setter.getReturnType();
+		if (r == Long.TYPE || r == Double.TYPE) {
+			mw.visitInsn(POP2);
+		} else if (r != void.class) {
+			mw.visitInsn(POP);
+		}
+	}
+}
@@ -23,6 +23,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
+import jef.common.LongList;
 import jef.database.DbUtils;
 import jef.database.IQueryableEntity;
 import jef.database.OperateTarget;
@@ -258,7 +259,18 @@ public interface InsertStep {
 			try {
 				if (isGuessMode) {
 					Assert.isTrue(rs.next(), "The JDBC Driver may not support getGeneratedKeys() operation.");
-					long max = rs.getLong(1);
+					// 新版本的驱动可能返回全部的值，此时逐个赋值；否则取最后一个值倒推
+					LongList keys = new LongList(data.size());
+					do {
+						keys.add(rs.getLong(1));
+					} while (rs.next());
+					if (keys.size() == data.size()) {
+						for (int i = 0; i < data.size(); i++) {
+							fieldName.set(data.get(i), keys.get(i));
+						}
+						return;
+					}
+					long max = keys.get(keys.size() - 1);
 					for (int i = data.size() - 1; i >= 0; i--) {
 						IQueryableEntity o = data.get(i);
 						fieldName.set(o, max--);
@@ -47,6 +47,15 @@ public class InsertWrapper implements StatementPreparer, InsertStep {
 		return preparer.doPrepareStatement(conn, sql);
 	}
 
+	/**
+	 * 是否需要在插入后从Statement中取回数据库生成的值(自增主键、Rowid等)
+	 * 
+	 * @return
+	 */
+	public boolean isReturnKeys() {
+		return preparer != P;
+	}
+
 	public void addProcessor(InsertStep processor) {
 		if (processors.isEmpty()) {
 			processors = new ArrayList<InsertStep>();
@@ -0,0 +1,94 @@
+package jef.database.wrapper.variable;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.JDBCType;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * IN条件的参数，数据库支持时作为一个数组绑定(见
+ * {@link jef.database.dialect.DatabaseDialect#getArrayInCondition(String, int)})，
+ * 不支持时和普通的List一样展开为 in (?,?,...)
+ *
+ * @author jiyi
+ *
+ */
+public final class ArrayValues extends AbstractList<Object> implements RandomAccess {
+	private final List<?> values;
+	private final int sqlType;
+
+	public ArrayValues(List<?> values) {
+		this(values, Types.OTHER);
+	}
+
+	private ArrayValues(List<?> values, int sqlType) {
+		this.values = values;
+		this.sqlType = sqlType;
+	}
+
+	@Override
+	public Object get(int index) {
+		return values.get(index);
+	}
+
+	@Override
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * 按指定的元素类型绑定
+	 *
+	 * @param sqlType
+	 *            元素的类型，见{@link Types}
+	 * @return
+	 */
+	public ArrayValues bindAs(int sqlType) {
+		return new ArrayValues(values, sqlType);
+	}
+
+	/**
+	 * 创建绑定用的数组
+	 *
+	 * @param conn
+	 * @return
+	 * @throws SQLException
+	 */
+	public Array toSqlArray(Connection conn) throws SQLException {
+		return conn.createArrayOf(getTypeName(sqlType), values.toArray());
+	}
+
+	/**
+	 * 只有整数、数值和字符串作为数组绑定，其他类型的值可能需要映射器转换
+	 *
+	 * @param sqlType
+	 * @return
+	 */
+	public static boolean isSupported(int sqlType) {
+		switch (sqlType) {
+		case Types.INTEGER:
+		case Types.SMALLINT:
+		case Types.BIGINT:
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+		case Types.VARCHAR:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * 数组元素的类型名
+	 *
+	 * @param sqlType
+	 * @return
+	 */
+	public static String getTypeName(int sqlType) {
+		return JDBCType.valueOf(sqlType).getName().toLowerCase();
+	}
+}
@@ -66,6 +66,10 @@ public final class BindVariableContext {
 	 */
 	protected Object setValueInPsmt(int count, Object value, ColumnMapping cType) throws SQLException {
 		if (cType == null) {
+			if (value instanceof ArrayValues) {
+				psmt.setArray(count, ((ArrayValues) value).toSqlArray(psmt.getConnection()));
+				return value;
+			}
 			if (value.getClass() == java.util.Date.class) {
 				value = db.toTimestampSqlParam((Date) value);
 			}
@@ -149,12 +153,26 @@ public final class BindVariableContext {
 	 * 为Insert语句设置绑定变量
 	 * 
 	 * @param obj
-	 *            要插入的对内
+	 *            要插入的对象
 	 * @param fields
 	 * @throws SQLException
 	 */
 	public void setInsertVariables(IQueryableEntity obj, List<ColumnMapping> fields) throws SQLException {
-		int count = 0;
+		setInsertVariables(obj, fields, 0);
+	}
+
+	/**
+	 * 为Insert语句设置绑定变量，用于一条语句插入多行的场合
+	 * 
+	 * @param obj
+	 *            要插入的对象
+	 * @param fields
+	 * @param offset
+	 *            该行之前已经绑定的变量个数
+	 * @throws SQLException
+	 */
+	public void setInsertVariables(IQueryableEntity obj, List<ColumnMapping> fields, int offset) throws SQLException {
+		int count = offset;
 		for (ColumnMapping field : fields) {
 			count++;
 			Object value = field.getFieldAccessor().get(obj);
@@ -5,7 +5,9 @@ import java.util.Map;
 
 import javax.persistence.PersistenceException;
 
+import jef.database.DataObject;
 import jef.database.Field;
+import jef.database.IQueryableEntity;
 import jef.database.dialect.type.ColumnMapping;
 import jef.database.meta.ITableMetadata;
 import jef.database.query.ConditionQuery;
@@ -31,7 +33,9 @@ public class UpdateVairable extends Variable {
 		try {
 			ITableMetadata meta = query.getMeta();
 			ColumnMapping cType = meta.getColumnDef(field);
-			Map<Field, Object> updateMap = query.getInstance().getUpdateValueMap();
+			IQueryableEntity instance = query.getInstance();
+			// 位图中记录的字段不在updateMap中，取当前值
+			Map<Field, Object> updateMap = instance instanceof DataObject ? ((DataObject) instance).preparedUpdateValues() : instance.getUpdateValueMap();
 			if (updateMap.containsKey(field)) {
 				Object value = updateMap.get(field);
 				return context.setValueInPsmt(index, value, cType);
@@ -0,0 +1,217 @@
+package jef.database.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jef.database.dialect.AbstractDialect;
+import jef.database.dialect.DatabaseDialect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+/**
+ * 二级缓存的内存预算：上限、单表配额、释放，以及Zipf分布访问下的命中率
+ */
+public class CacheBudgetTest {
+	private static final DatabaseDialect PROFILE = AbstractDialect.getDialect("oracle");
+	private static final List<?> ROWS = rows(10);
+
+	@Test
+	public void testBounded() {
+		long entryWeight = CacheBudget.weigh(Arrays.asList(0), ROWS);
+		CacheBudget budget = new CacheBudget(entryWeight * 10, 100);
+		DimCache dc = newDimCache(budget, "T1");
+		for (int i = 0; i < 100; i++) {
+			access(budget, dc, "T1", i);
+		}
+		Assert.assertTrue(budget.getWeight() <= budget.getMaxWeight());
+		Assert.assertEquals(10, budget.size());
+
+		dc.remove(Arrays.asList(0));
+		dc.clear();
+		Assert.assertEquals(0, budget.getWeight());
+		Assert.assertEquals(0, budget.size());
+	}
+
+	@Test
+	public void testTableQuota() {
+		long entryWeight = CacheBudget.weigh(Arrays.asList(0), ROWS);
+		CacheBudget budget = new CacheBudget(entryWeight * 20, 50);
+		DimCache t1 = newDimCache(budget, "T1");
+		DimCache t2 = newDimCache(budget, "T2");
+		for (int i = 0; i < 5; i++) {
+			access(budget, t2, "T2", i);
+		}
+		// T1被频繁访问，也只能占用一半空间，不会挤掉T2的结果
+		for (int n = 0; n < 3; n++) {
+			for (int i = 0; i < 50; i++) {
+				access(budget, t1, "T1", i);
+			}
+		}
+		Assert.assertTrue(budget.getTableWeight("T1") <= budget.getTableQuota());
+		Assert.assertEquals(5 * entryWeight, budget.getTableWeight("T2"));
+	}
+
+	@Test
+	public void testAdmission() {
+		long entryWeight = CacheBudget.weigh(Arrays.asList(0), ROWS);
+		CacheBudget budget = new CacheBudget(entryWeight * 10, 100);
+		DimCache dc = newDimCache(budget, "T1");
+		for (int n = 0; n < 5; n++) {
+			for (int i = 0; i < 10; i++) {
+				access(budget, dc, "T1", i);
+			}
+		}
+		// 一次性访问的结果不会挤掉常用的结果
+		for (int i = 1000; i < 2000; i++) {
+			access(budget, dc, "T1", i);
+		}
+		for (int i = 0; i < 10; i++) {
+			Assert.assertNotNull(dc.load(Arrays.asList(i)));
+		}
+		Assert.assertTrue(budget.getRejectionCount() > 0);
+	}
+
+	@Test
+	public void testExpire() {
+		final AtomicLong nanos = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+		CacheBudget budget = new CacheBudget(1024 * 1024, 100, new Ticker() {
+			public long read() {
+				return nanos.get();
+			}
+		});
+		DimCache dc = new DimCacheBudgetImpl(budget, KeyDimension.forSingleTable("T1", "where id=?", null, PROFILE), "T1", 1);
+		dc.put(Arrays.asList(1), ROWS);
+		nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+		Assert.assertNotNull(dc.load(Arrays.asList(1)));
+		nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+		Assert.assertNull(dc.load(Arrays.asList(1)));
+		Assert.assertEquals(0, budget.size());
+	}
+
+	/**
+	 * 多个线程同时放入相同的查询，被替换和被拒绝的结果都不会留在预算中
+	 */
+	@Test
+	public void testConcurrentPut() throws InterruptedException {
+		long entryWeight = CacheBudget.weigh(Arrays.asList(0), ROWS);
+		final CacheBudget budget = new CacheBudget(entryWeight * 10, 100);
+		final DimCache dc = newDimCache(budget, "T1");
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						access(budget, dc, "T1", i % 20);
+						if (i % 7 == 0) {
+							dc.remove(Collections.singletonList(i % 20));
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertTrue(budget.getWeight() <= budget.getMaxWeight());
+		int cached = 0;
+		for (int i = 0; i < 20; i++) {
+			if (dc.load(Collections.singletonList(i)) != null) {
+				cached++;
+			}
+		}
+		Assert.assertEquals(cached, budget.size());
+		dc.clear();
+		Assert.assertEquals(0, budget.getWeight());
+	}
+
+	/**
+	 * 10000个查询按Zipf分布访问，缓存只能容纳其中5%，对比按访问频率准入与单纯LRU的命中率
+	 */
+	@Test
+	public void testZipfHitRate() {
+		int keys = 10000;
+		int capacity = keys / 20;
+		int accesses = 200000;
+		int[] trace = zipf(keys, 0.9, accesses, new Random(7));
+
+		long entryWeight = CacheBudget.weigh(Arrays.asList(0), ROWS);
+		CacheBudget budget = new CacheBudget(entryWeight * capacity, 100);
+		DimCache dc = newDimCache(budget, "T1");
+		int hits = 0;
+		for (int key : trace) {
+			if (access(budget, dc, "T1", key)) {
+				hits++;
+			}
+		}
+
+		Map<Integer, Boolean> lru = new LinkedHashMap<Integer, Boolean>(capacity * 2, 0.75f, true);
+		int lruHits = 0;
+		for (int key : trace) {
+			if (lru.get(key) != null) {
+				lruHits++;
+			} else {
+				lru.put(key, Boolean.TRUE);
+				if (lru.size() > capacity) {
+					lru.remove(lru.keySet().iterator().next());
+				}
+			}
+		}
+		Assert.assertTrue(budget.getWeight() <= budget.getMaxWeight());
+		Assert.assertTrue(hits > lruHits);
+	}
+
+	/*
+	 * 模拟CacheImpl的一次查询：记录访问，未命中时放入结果
+	 */
+	private static boolean access(CacheBudget budget, DimCache dc, String table, int key) {
+		List<Integer> params = Collections.singletonList(key);
+		budget.recordAccess(CacheBudget.hash(dimension(table), params));
+		if (dc.load(params) != null) {
+			return true;
+		}
+		dc.put(params, ROWS);
+		return false;
+	}
+
+	private static DimCache newDimCache(CacheBudget budget, String table) {
+		return new DimCacheBudgetImpl(budget, dimension(table), table, 0);
+	}
+
+	private static KeyDimension dimension(String table) {
+		return KeyDimension.forSingleTable(table, "where id=?", null, PROFILE);
+	}
+
+	private static List<?> rows(int n) {
+		List<Object[]> rows = new ArrayList<Object[]>();
+		for (int i = 0; i < n; i++) {
+			rows.add(new Object[5]);
+		}
+		return Collections.unmodifiableList(rows);
+	}
+
+	private static int[] zipf(int n, double s, int count, Random random) {
+		double[] cdf = new double[n];
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += 1 / Math.pow(i + 1, s);
+			cdf[i] = sum;
+		}
+		int[] trace = new int[count];
+		for (int i = 0; i < count; i++) {
+			int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+			trace[i] = index < 0 ? -index - 1 : index;
+		}
+		return trace;
+	}
+}
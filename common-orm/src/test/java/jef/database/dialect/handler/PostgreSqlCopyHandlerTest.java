@@ -0,0 +1,69 @@
+package jef.database.dialect.handler;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import jef.database.dialect.handler.PostgreSqlCopyHandler.UnsupportedValueException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * COPY文本格式的转义
+ */
+public class PostgreSqlCopyHandlerTest {
+
+	@Test
+	public void testAppendRow() {
+		StringBuilder sb = new StringBuilder();
+		PostgreSqlCopyHandler.appendRow(sb, new Object[] { 1, null, "a\tb\\c\nd\re", Boolean.TRUE, new BigDecimal("1E+3"), new byte[] { 0x0a, (byte) 0xff } });
+		Assert.assertEquals("1\t\\N\ta\\tb\\\\c\\nd\\re\tt\t1000\t\\\\x0aff\n", sb.toString());
+	}
+
+	/**
+	 * 以流和Reader绑定的值在绑定时读出，而不是记录流对象本身
+	 */
+	@Test
+	public void testCaptureStreams() throws SQLException {
+		Object[] values = new Object[5];
+		PreparedStatement st = PostgreSqlCopyHandler.capture(values);
+		st.setBinaryStream(1, new ByteArrayInputStream(new byte[] { 0x0a, (byte) 0xff }));
+		st.setCharacterStream(2, new StringReader("x\\ty"), 4);
+		st.setAsciiStream(3, new ByteArrayInputStream("abc".getBytes()), 3L);
+		st.setBytes(4, new byte[] { 1 });
+		st.setNull(5, Types.VARCHAR);
+		StringBuilder sb = new StringBuilder();
+		PostgreSqlCopyHandler.appendRow(sb, values);
+		Assert.assertEquals("\\\\x0aff\tx\\\\ty\tabc\t\\\\x01\t\\N\n", sb.toString());
+	}
+
+	/**
+	 * 数组等需要连接创建的值无法转换，由insert()退回到多行insert语句
+	 */
+	@Test
+	public void testCaptureUnsupported() throws SQLException {
+		PreparedStatement st = PostgreSqlCopyHandler.capture(new Object[1]);
+		try {
+			st.getConnection();
+			Assert.fail();
+		} catch (UnsupportedValueException e) {
+		}
+		try {
+			st.setArray(1, (Array) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Array.class }, new InvocationHandler() {
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					return null;
+				}
+			}));
+			Assert.fail();
+		} catch (UnsupportedValueException e) {
+		}
+	}
+}
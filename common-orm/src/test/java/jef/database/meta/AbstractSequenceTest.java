@@ -0,0 +1,142 @@
+package jef.database.meta;
+
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jef.database.DbClient;
+import jef.database.wrapper.executor.DefaultParallelExecutor;
+import jef.database.wrapper.executor.ParallelExecutor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Sequence缓存的区段分配、预取和批次放大
+ */
+public class AbstractSequenceTest {
+
+	@Test
+	public void testSequential() {
+		MockSequence seq = new MockSequence(10);
+		for (long i = 1; i <= 35; i++) {
+			Assert.assertEquals(i, seq.next());
+		}
+		Assert.assertEquals(4, seq.fetches.get());
+		// 塞回的值排在已缓存的值之后
+		seq.pushBack(35);
+		for (long i = 36; i <= 40; i++) {
+			Assert.assertEquals(i, seq.next());
+		}
+		Assert.assertEquals(35, seq.next());
+		Assert.assertEquals(41, seq.next());
+		seq.clear();
+		Assert.assertEquals(51, seq.next());
+	}
+
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		final MockSequence seq = new MockSequence(7);
+		final int threads = 8;
+		final int each = 20000;
+		final ConcurrentHashMap<Long, Boolean> values = new ConcurrentHashMap<Long, Boolean>();
+		final CountDownLatch latch = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			new Thread() {
+				public void run() {
+					try {
+						for (int i = 0; i < each; i++) {
+							Assert.assertNull(values.put(seq.next(), Boolean.TRUE));
+						}
+					} finally {
+						latch.countDown();
+					}
+				}
+			}.start();
+		}
+		latch.await();
+		Assert.assertEquals(threads * each, values.size());
+		// 每次只获取一批，不会重复获取
+		Assert.assertEquals((threads * each + 6) / 7, seq.fetches.get());
+	}
+
+	@Test
+	public void testPrefetch() throws InterruptedException {
+		MockSequence seq = new MockSequence(10);
+		seq.setPrefetch(true);
+		Assert.assertEquals(1, seq.next());
+		for (long i = 2; i <= 6; i++) {
+			Assert.assertEquals(i, seq.next());
+		}
+		// 用掉一半后在后台获取下一批
+		for (int i = 0; i < 100 && seq.fetches.get() < 2; i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(2, seq.fetches.get());
+		for (long i = 7; i <= 20; i++) {
+			Assert.assertEquals(i, seq.next());
+		}
+	}
+
+	@Test
+	public void testAdaptiveScale() {
+		MockSequence seq = new MockSequence(10);
+		seq.setMaxScale(4);
+		for (int i = 0; i < 200; i++) {
+			seq.next();
+		}
+		Assert.assertEquals(4, seq.getScale());
+		Assert.assertEquals(40, seq.lastSize);
+	}
+
+	/**
+	 * 模拟的Sequence，每次获取size个连续的值，其中第二段分两次推送
+	 */
+	static class MockSequence extends AbstractSequence {
+		private static final ParallelExecutor EXECUTOR = new DefaultParallelExecutor(1, 0, 0, false);
+		private final AtomicLong value = new AtomicLong();
+		final AtomicInteger fetches = new AtomicInteger();
+		volatile int lastSize;
+
+		MockSequence(int cacheSize) {
+			super(null, null);
+			setCacheSize(cacheSize);
+		}
+
+		@Override
+		protected boolean doInit(DbClient session, String dbKey) throws SQLException {
+			return true;
+		}
+
+		@Override
+		protected ParallelExecutor getPrefetchExecutor() {
+			return EXECUTOR;
+		}
+
+		@Override
+		protected long getFirstAndPushOthers(int size, DbClient client, String dbKey) throws SQLException {
+			fetches.incrementAndGet();
+			lastSize = size;
+			long first = value.get() + 1;
+			long last = value.addAndGet(size);
+			long middle = (first + last) / 2;
+			pushRange(first + 1, middle);
+			pushRange(middle + 1, last);
+			return first;
+		}
+
+		public boolean isTable() {
+			return false;
+		}
+
+		public boolean isRawNative() {
+			return false;
+		}
+
+		public String getName() {
+			return "mock";
+		}
+	}
+}
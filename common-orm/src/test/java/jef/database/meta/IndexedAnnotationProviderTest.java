@@ -0,0 +1,184 @@
+package jef.database.meta;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.database.DataObject;
+import jef.database.IQueryableEntity;
+import jef.database.annotation.PartitionKey;
+import jef.database.annotation.PartitionTable;
+import jef.database.meta.AnnotationProvider.ClassAnnotationProvider;
+import jef.database.meta.AnnotationProvider.FieldAnnotationProvider;
+import jef.database.routing.function.KeyFunction;
+import jef.database.support.EntityIndex;
+import jef.database.support.EntityMetaReader;
+import jef.tools.IOUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 从实体索引中得到的注解和反射读取的注解一致
+ */
+public class IndexedAnnotationProviderTest {
+	private static final String ORDER = "jef.database.meta.IndexedAnnotationProviderTest$Order";
+	private File root;
+
+	@Before
+	public void setUp() {
+		root = new File(System.getProperty("java.io.tmpdir"), "entity-meta-" + System.nanoTime());
+		EntityIndex.clear();
+	}
+
+	@After
+	public void tearDown() {
+		IOUtils.deleteTree(root, true);
+		EntityIndex.clear();
+	}
+
+	@Test
+	public void testIndexed() throws Exception {
+		byte[] data = copyClass(ORDER);
+		copyClass(ORDER + "$Field");
+		Map<String, Map<String, Object>> metadata = Collections.singletonMap(ORDER, EntityMetaReader.read(data));
+		EntityIndex.write(root, Arrays.asList(ORDER), metadata).setLastModified(System.currentTimeMillis());
+
+		Class<?> indexed = new EntityClassLoader(root).loadClass(ORDER);
+		Assert.assertNotSame(Order.class, indexed);
+		ClassAnnotationProvider provider = new DefaultMetaLoader().getAnnotations(indexed);
+		Assert.assertTrue(provider instanceof IndexedAnnotationProvider);
+
+		Table table = provider.getAnnotation(Table.class);
+		Assert.assertEquals("T_INDEXED_ORDER", table.name());
+		Assert.assertEquals("", table.schema());
+		Assert.assertNotNull(provider.getAnnotation(Entity.class));
+
+		FieldAnnotationProvider id = provider.forField(indexed.getDeclaredField("id"));
+		Assert.assertNotNull(id.getAnnotation(Id.class));
+		Assert.assertEquals(GenerationType.SEQUENCE, id.getAnnotation(GeneratedValue.class).strategy());
+		Assert.assertEquals("ORDER_ID", id.getAnnotation(Column.class).name());
+		for (String name : new String[] { "id", "name", "amount", "created" }) {
+			assertColumn(Order.class.getDeclaredField(name), provider.forField(indexed.getDeclaredField(name)));
+		}
+		Assert.assertNull(provider.forField(indexed.getDeclaredField("created")).getAnnotation(Column.class));
+
+		@SuppressWarnings("unchecked")
+		PartitionTable partition = new DefaultPartitionStrategyLoader().get((Class<? extends IQueryableEntity>) indexed);
+		PartitionTable expected = Order.class.getAnnotation(PartitionTable.class);
+		Assert.assertEquals(expected.appender(), partition.appender());
+		Assert.assertEquals(1, partition.key().length);
+		PartitionKey key = partition.key()[0];
+		Assert.assertEquals("created", key.field());
+		Assert.assertEquals(KeyFunction.YEAR_MONTH, key.function());
+		Assert.assertEquals(6, key.length());
+		Assert.assertEquals('X', key.filler());
+		Assert.assertEquals(0, key.functionConstructorParams().length);
+	}
+
+	@Test
+	public void testStale() throws Exception {
+		byte[] data = copyClass(ORDER);
+		copyClass(ORDER + "$Field");
+		Map<String, Map<String, Object>> metadata = Collections.singletonMap(ORDER, EntityMetaReader.read(data));
+		EntityIndex.write(root, Arrays.asList(ORDER), metadata);
+		// 索引生成后类重新编译，回到反射
+		new File(root, ORDER.replace('.', '/') + ".class").setLastModified(System.currentTimeMillis() + 60000);
+
+		Class<?> indexed = new EntityClassLoader(root).loadClass(ORDER);
+		ClassAnnotationProvider provider = new DefaultMetaLoader().getAnnotations(indexed);
+		Assert.assertFalse(provider instanceof IndexedAnnotationProvider);
+		Assert.assertEquals("T_INDEXED_ORDER", provider.getAnnotation(Table.class).name());
+	}
+
+	private static void assertColumn(Field field, FieldAnnotationProvider indexed) {
+		Column expected = field.getAnnotation(Column.class);
+		Column actual = indexed.getAnnotation(Column.class);
+		if (expected == null) {
+			Assert.assertNull(actual);
+			return;
+		}
+		Assert.assertEquals(expected.name(), actual.name());
+		Assert.assertEquals(expected.length(), actual.length());
+		Assert.assertEquals(expected.precision(), actual.precision());
+		Assert.assertEquals(expected.scale(), actual.scale());
+		Assert.assertEquals(expected.nullable(), actual.nullable());
+		Assert.assertEquals(expected.unique(), actual.unique());
+		Assert.assertEquals(expected.columnDefinition(), actual.columnDefinition());
+	}
+
+	private byte[] copyClass(String className) throws IOException {
+		String resource = className.replace('.', '/') + ".class";
+		byte[] data = IOUtils.toByteArray(getClass().getClassLoader().getResource(resource));
+		File file = new File(root, resource);
+		file.getParentFile().mkdirs();
+		IOUtils.saveAsFile(file, data);
+		file.setLastModified(System.currentTimeMillis() - 60000);
+		return data;
+	}
+
+	/*
+	 * 测试的实体类从临时目录中加载，使其位于有索引的classpath根路径下，其他类仍由父加载器加载
+	 */
+	private static class EntityClassLoader extends URLClassLoader {
+		EntityClassLoader(File root) throws IOException {
+			super(new URL[] { root.toURI().toURL() }, IndexedAnnotationProviderTest.class.getClassLoader());
+		}
+
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.startsWith(ORDER)) {
+				return super.loadClass(name, resolve);
+			}
+			Class<?> c = findLoadedClass(name);
+			return c == null ? findClass(name) : c;
+		}
+
+		@Override
+		public URL getResource(String name) {
+			if (name.startsWith(ORDER.replace('.', '/'))) {
+				return findResource(name);
+			}
+			return super.getResource(name);
+		}
+	}
+
+	@Entity
+	@Table(name = "T_INDEXED_ORDER")
+	@PartitionTable(key = { @PartitionKey(field = "created", function = KeyFunction.YEAR_MONTH, length = 6, filler = 'X') })
+	public static class Order extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		@GeneratedValue(strategy = GenerationType.SEQUENCE)
+		@Column(name = "ORDER_ID")
+		private int id;
+
+		@Column(length = 64, nullable = false, unique = true)
+		private String name;
+
+		@Column(precision = 12, scale = 2, columnDefinition = "decimal(12,2)")
+		private double amount;
+
+		private Date created;
+
+		public enum Field implements jef.database.Field {
+			id, name, amount, created
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package jef.database.support;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import jef.tools.IOUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 实体索引的读取和过期判断
+ */
+public class EntityIndexTest {
+	private File root;
+
+	@Before
+	public void setUp() throws IOException {
+		root = new File(System.getProperty("java.io.tmpdir"), "entity-index-" + System.nanoTime());
+		classFile("com/demo/a/Foo.class");
+		classFile("com/demo/b/Bar.class");
+		EntityIndex.clear();
+	}
+
+	@After
+	public void tearDown() {
+		IOUtils.deleteTree(root, true);
+		EntityIndex.clear();
+	}
+
+	@Test
+	public void testDirectory() throws IOException {
+		URLClassLoader cl = new URLClassLoader(new URL[] { root.toURI().toURL() }, null);
+		// 没有索引
+		Assert.assertNull(EntityIndex.getEntityClasses(cl, "com.demo"));
+
+		File index = EntityIndex.write(root, Arrays.asList("com.demo.a.Foo", "com.demo.b.Bar", "org.other.Baz"));
+		index.setLastModified(System.currentTimeMillis());
+		EntityIndex.clear();
+		Assert.assertEquals(Arrays.asList("com.demo.a.Foo", "com.demo.b.Bar"), EntityIndex.getEntityClasses(cl, "com.demo"));
+		Assert.assertEquals(Arrays.asList("com.demo.a.Foo"), EntityIndex.getEntityClasses(cl, "com.demo.a"));
+		Assert.assertTrue(EntityIndex.isIndexed(cl.getResource("com/demo/a/Foo.class"), "com.demo.a.Foo"));
+		// 扫描全部classpath时不使用索引
+		Assert.assertNull(EntityIndex.getEntityClasses(cl, ""));
+
+		// 索引生成后有类重新编译
+		new File(root, "com/demo/b/Bar.class").setLastModified(System.currentTimeMillis() + 60000);
+		EntityIndex.clear();
+		Assert.assertNull(EntityIndex.getEntityClasses(cl, "com.demo"));
+		Assert.assertFalse(EntityIndex.isIndexed(cl.getResource("com/demo/a/Foo.class"), "com.demo.a.Foo"));
+	}
+
+	@Test
+	public void testJar() throws IOException {
+		File jar = new File(root, "entities.jar");
+		long time = System.currentTimeMillis() - 60000;
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			// 和maven打包的jar一样包含目录
+			putEntry(out, "com/", "", time);
+			putEntry(out, "com/demo/", "", time);
+			putEntry(out, "com/demo/a/", "", time);
+			putEntry(out, "com/demo/a/Foo.class", "", time);
+			putEntry(out, EntityIndex.RESOURCE, "#GeeQuery entity index\ncom.demo.a.Foo\n", time);
+		} finally {
+			out.close();
+		}
+		URLClassLoader cl = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+		Assert.assertEquals(Arrays.asList("com.demo.a.Foo"), EntityIndex.getEntityClasses(cl, "com.demo"));
+		Assert.assertTrue(EntityIndex.isIndexed(cl.getResource("com/demo/a/Foo.class"), "com.demo.a.Foo"));
+		Assert.assertFalse(EntityIndex.isIndexed(cl.getResource("com/demo/a/Foo.class"), "com.demo.a.Other"));
+	}
+
+	private void classFile(String name) throws IOException {
+		File file = new File(root, name);
+		file.getParentFile().mkdirs();
+		IOUtils.saveAsFile(file, new byte[] { (byte) 0xCA, (byte) 0xFE });
+		file.setLastModified(System.currentTimeMillis() - 60000);
+	}
+
+	private static void putEntry(JarOutputStream out, String name, String content, long time) throws IOException {
+		JarEntry entry = new JarEntry(name);
+		entry.setTime(time);
+		out.putNextEntry(entry);
+		out.write(content.getBytes("UTF-8"));
+		out.closeEntry();
+	}
+}
@@ -8,6 +8,7 @@ import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 
 import jef.codegen.EntityEnhancer;
+import jef.database.support.EntityIndex;
 
 /**
  * Goal which touches a timestamp file.
@@ -30,6 +31,13 @@ public class EnhanceMojo extends AbstractMojo {
      */
     private File classesDirectory;
 
+    /**
+     * 是否在增强后生成实体索引，启动时直接从索引加载实体类和映射注解，不再扫描和反射读取注解
+     * 
+     * @parameter expression="${enhance.index}" default-value="true"
+     */
+    private boolean index = true;
+
     /**
      * 基路径
      * 
@@ -62,6 +70,10 @@ public class EnhanceMojo extends AbstractMojo {
 
             EntityEnhancer en = new EntityEnhancer().addRoot(new URL("file://" + workPath));
             en.enhance();
+            if (index) {
+                File file = EntityIndex.write(new File(workPath), en.getEntityClasses(), en.getEntityMetadata());
+                this.getLog().info("Easybuilder wrote " + en.getEntityClasses().size() + " entities to " + file.getAbsolutePath());
+            }
 
             this.getLog().info("Easybuilder enhance entity classes total use " + (System.currentTimeMillis() - time) + "ms");
         } catch (Exception e) {
@@ -85,6 +97,10 @@ public class EnhanceMojo extends AbstractMojo {
         return classesDirectory;
     }
 
+    public void setIndex(boolean index) {
+        this.index = index;
+    }
+
     public String getBasedir() {
         return basedir;
     }
@@ -0,0 +1,297 @@
+package jef.database;
+
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.database.meta.MetaHolder;
+import jef.database.support.DefaultDbOperListener;
+import jef.database.wrapper.executor.DbTask;
+import jef.database.wrapper.executor.DefaultParallelExecutor;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 批量加载时in条件的分批、补齐、数组绑定和并行查询
+ */
+public class BatchLoadChunkTest {
+	private static final int ROWS = 1000;
+	private static DbClient db;
+
+	@BeforeClass
+	public static void setUp() throws SQLException {
+		// 必须在类加载前增强，因此不能使用Item.class
+		new EntityEnhancer().enhanceClass("jef.database.BatchLoadChunkTest$Item");
+		new EntityEnhancer().enhanceClass("jef.database.BatchLoadChunkTest$Pair");
+		db = new DbClientBuilder("jdbc:h2:mem:batch_load_chunk_test", "sa", "").build();
+		db.createTable(Item.class, Pair.class);
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 0; i < ROWS; i++) {
+			Item item = new Item();
+			item.setId(i);
+			item.setName("name" + i);
+			items.add(item);
+		}
+		db.batchInsert(items);
+		List<Pair> pairs = new ArrayList<Pair>();
+		for (int i = 0; i < 100; i++) {
+			Pair pair = new Pair();
+			pair.setA(i / 10);
+			pair.setB(i % 10);
+			pairs.add(pair);
+		}
+		db.batchInsert(pairs);
+	}
+
+	@After
+	public void reset() {
+		ORMConfig config = ORMConfig.getInstance();
+		config.setMaxInConditions(500);
+		config.setInConditionsPadding(false);
+		config.setInConditionsArrayBinding(false);
+		config.setParallelBatchLoad(false);
+	}
+
+	@AfterClass
+	public static void close() {
+		db.close();
+	}
+
+	@Test
+	public void testPadInValues() {
+		Assert.assertEquals(Arrays.asList(1), DbUtils.padInValues(Arrays.asList(1), 500));
+		Assert.assertEquals(Arrays.asList(1, 2, 3, 3), DbUtils.padInValues(Arrays.asList(1, 2, 3), 500));
+		Assert.assertEquals(Arrays.asList(1, 2, 3, 4), DbUtils.padInValues(Arrays.asList(1, 2, 3, 4), 500));
+		Assert.assertEquals(8, DbUtils.padInValues(Arrays.asList(1, 2, 3, 4, 5), 500).size());
+		// 不超过最大个数
+		Assert.assertEquals(100, DbUtils.padInValues(new ArrayList<Integer>(ids(0, 70)), 100).size());
+		Assert.assertEquals(100, DbUtils.padInValues(new ArrayList<Integer>(ids(0, 100)), 100).size());
+	}
+
+	@Test
+	public void testPadding() throws SQLException {
+		ORMConfig.getInstance().setMaxInConditions(100);
+		List<Integer> ids = ids(3, 250);
+		Set<Integer> expected = new TreeSet<Integer>(ids);
+		Assert.assertEquals(expected, idsOf(db.batchLoad(Item.class, ids)));
+
+		ORMConfig.getInstance().setInConditionsPadding(true);
+		List<?> result = db.batchLoad(Item.class, ids);
+		// 重复的参数不会产生重复的记录
+		Assert.assertEquals(ids.size(), result.size());
+		Assert.assertEquals(expected, idsOf(result));
+	}
+
+	@Test
+	public void testArrayBinding() throws SQLException {
+		ORMConfig.getInstance().setMaxInConditions(100);
+		ORMConfig.getInstance().setInConditionsArrayBinding(true);
+		List<Integer> ids = ids(0, 230);
+		Assert.assertEquals(new TreeSet<Integer>(ids), idsOf(db.batchLoad(Item.class, ids)));
+
+		List<String> names = Arrays.asList("name1", "name500", "name999", "none");
+		Assert.assertEquals(new TreeSet<Integer>(Arrays.asList(1, 500, 999)), idsOf(db.batchLoadByField(Item.Field.name, names)));
+	}
+
+	@Test
+	public void testParallel() throws SQLException {
+		ORMConfig.getInstance().setMaxInConditions(64);
+		ORMConfig.getInstance().setParallelBatchLoad(true);
+		ORMConfig.getInstance().setInConditionsPadding(true);
+		List<Integer> ids = ids(10, 600);
+		List<?> result = db.batchLoad(Item.class, ids);
+		Assert.assertEquals(ids.size(), result.size());
+		Assert.assertEquals(new TreeSet<Integer>(ids), idsOf(result));
+	}
+
+	/**
+	 * 在并行任务中批量加载时依次查询，只有一个并行线程时也不会死锁
+	 */
+	@Test
+	public void testParallelInTask() throws SQLException {
+		ORMConfig.getInstance().setMaxInConditions(64);
+		ORMConfig.getInstance().setParallelBatchLoad(true);
+		db.setParallelExecutor(new DefaultParallelExecutor(1, 0, 5000, false));
+		try {
+			final List<Integer> ids = ids(0, 300);
+			final List<List<?>> result = new ArrayList<List<?>>();
+			List<DbTask> tasks = new ArrayList<DbTask>();
+			tasks.add(new DbTask() {
+				public void execute() throws SQLException {
+					result.add(db.batchLoad(Item.class, ids));
+				}
+			});
+			db.getParallelExecutor().execute(tasks);
+			Assert.assertEquals(new TreeSet<Integer>(ids), idsOf(result.get(0)));
+		} finally {
+			db.setParallelExecutor(null);
+		}
+	}
+
+	/**
+	 * 复合主键每次查询的主键值个数按绑定参数计算
+	 */
+	@Test
+	public void testComplexKey() throws SQLException {
+		ORMConfig.getInstance().setMaxInConditions(10);
+		List<Serializable> keys = new ArrayList<Serializable>();
+		for (int i = 0; i < 37; i++) {
+			keys.add(new Integer[] { i % 10, i / 10 });
+		}
+		keys.add(new Integer[] { 20, 0 });
+		List<Pair> result = db.batchLoad(MetaHolder.getMeta(Pair.class), keys);
+		Assert.assertEquals(37, result.size());
+		for (int i = 0; i < result.size(); i++) {
+			Assert.assertEquals(i % 10, result.get(i).getA());
+			Assert.assertEquals(i / 10, result.get(i).getB());
+		}
+	}
+
+	/**
+	 * 用IN条件批量删除时，删除事件中是每个对象实际删除的行数
+	 */
+	@Test
+	public void testDeleteCount() throws SQLException {
+		ORMConfig.getInstance().setMaxInConditions(4);
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 2000; i < 2006; i++) {
+			Item item = new Item();
+			item.setId(i);
+			items.add(item);
+		}
+		db.batchInsert(items);
+		for (int i = 3000; i < 3003; i++) {
+			Item item = new Item();
+			item.setId(i);
+			items.add(i - 3000, item);
+		}
+		final Map<Integer, Integer> counts = new LinkedHashMap<Integer, Integer>();
+		db.addEventListener(new DefaultDbOperListener() {
+			@Override
+			public void afterDelete(IQueryableEntity obj, int n, Session session) {
+				counts.put(((Item) obj).getId(), n);
+			}
+		});
+		Assert.assertEquals(6, db.batchDeleteByPK(items));
+		Assert.assertEquals(items.size(), counts.size());
+		for (Item item : items) {
+			Assert.assertEquals(item.getId() < 3000 ? 1 : 0, counts.get(item.getId()).intValue());
+		}
+	}
+
+	/**
+	 * Query中另外指定的条件(如版本号)在批量删除时仍然生效
+	 */
+	@Test
+	public void testDeleteWithCondition() throws SQLException {
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 4000; i < 4004; i++) {
+			Item item = new Item();
+			item.setId(i);
+			item.setName("name" + i);
+			items.add(item);
+		}
+		db.batchInsert(items);
+		// 条件不满足，不删除
+		items.get(1).getQuery().addCondition(Item.Field.id, 4001);
+		items.get(1).getQuery().addCondition(Item.Field.name, "stale");
+		items.get(2).getQuery().addCondition(Item.Field.id, 4002);
+		items.get(2).getQuery().addCondition(Item.Field.name, "name4002");
+		Assert.assertEquals(3, db.batchDeleteByPK(items));
+		Assert.assertNotNull(db.load(Item.class, 4001));
+		Assert.assertNull(db.load(Item.class, 4002));
+		Assert.assertNull(db.load(Item.class, 4003));
+	}
+
+	private static List<Integer> ids(int from, int count) {
+		List<Integer> ids = new ArrayList<Integer>(count);
+		for (int i = from; i < from + count; i++) {
+			ids.add(i);
+		}
+		return ids;
+	}
+
+	private static Set<Integer> idsOf(List<?> items) {
+		Set<Integer> ids = new TreeSet<Integer>();
+		for (Object o : items) {
+			ids.add(((Item) o).getId());
+		}
+		return ids;
+	}
+
+	@Entity
+	@Table(name = "BATCH_LOAD_CHUNK_TEST")
+	public static class Item extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name
+		}
+	}
+
+	@Entity
+	@Table(name = "BATCH_LOAD_CHUNK_PAIR")
+	public static class Pair extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int a;
+		@Id
+		private int b;
+
+		public int getA() {
+			return a;
+		}
+
+		public void setA(int a) {
+			this.a = a;
+		}
+
+		public int getB() {
+			return b;
+		}
+
+		public void setB(int b) {
+			this.b = b;
+		}
+
+		public enum Field implements jef.database.Field {
+			a, b
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.sql.DataSource;
+
+import jef.codegen.EntityEnhancer;
+import jef.database.annotation.PartitionKey;
+import jef.database.annotation.PartitionTable;
+import jef.database.datasource.MapDataSourceLookup;
+import jef.database.datasource.RoutingDataSource;
+import jef.database.routing.function.KeyFunction;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 分表后的批操作，各组并行提交
+ */
+public class BatchParallelGroupTest {
+	private static final int TABLES = 4;
+	private static DbClient db;
+
+	@BeforeClass
+	public static void setUp() throws SQLException {
+		// 必须在类加载前增强，因此不能使用Row.class
+		new EntityEnhancer().enhanceClass("jef.database.BatchParallelGroupTest$Row");
+		new EntityEnhancer().enhanceClass("jef.database.BatchParallelGroupTest$SiteRow");
+		db = new DbClientBuilder("jdbc:h2:mem:batch_parallel_group_test", "sa", "").build();
+	}
+
+	@Before
+	public void recreate() throws SQLException {
+		for (int i = 0; i < TABLES; i++) {
+			db.executeSql("drop table if exists BATCH_PARALLEL_" + i);
+		}
+		db.createTable(Row.class);
+	}
+
+	@AfterClass
+	public static void close() {
+		db.close();
+	}
+
+	@Test
+	public void testParallel() throws SQLException {
+		List<Row> rows = rows(0, 1000);
+		Batch<Row> batch = db.startBatchInsert(rows.get(0), false);
+		batch.setParallelGroups(TABLES);
+		long executed = db.getParallelExecutor().getExecutedCount();
+		Assert.assertEquals(1000, batch.execute(rows));
+		Assert.assertEquals(TABLES, db.getParallelExecutor().getExecutedCount() - executed);
+		for (int i = 0; i < TABLES; i++) {
+			Assert.assertEquals(250, countTable(i));
+		}
+	}
+
+	@Test
+	public void testErrors() throws SQLException {
+		// 预先插入两条，使两张表上的分组主键冲突
+		Row r = new Row();
+		r.setId(1);
+		db.insert(r);
+		r = new Row();
+		r.setId(2);
+		db.insert(r);
+
+		List<Row> rows = rows(0, 100);
+		Batch<Row> batch = db.startBatchInsert(rows.get(0), false);
+		batch.setParallelGroups(2);
+		try {
+			batch.execute(rows);
+			Assert.fail();
+		} catch (SQLException e) {
+			// 两组的错误都被报告
+			Assert.assertNotNull(e.getNextException());
+		}
+		// 其他组不受影响
+		Assert.assertEquals(25, countTable(0));
+		Assert.assertEquals(25, countTable(3));
+	}
+
+	@Test
+	public void testInTransaction() throws SQLException {
+		Transaction tx = db.startTransaction();
+		try {
+			List<Row> rows = rows(0, 400);
+			Batch<Row> batch = tx.startBatchInsert(rows.get(0), false);
+			batch.setParallelGroups(TABLES);
+			Assert.assertEquals(400, batch.execute(rows));
+			tx.rollback();
+		} finally {
+			tx.close();
+		}
+		for (int i = 0; i < TABLES; i++) {
+			Assert.assertEquals(0, countTable(i));
+		}
+
+		tx = db.startTransaction();
+		try {
+			List<Row> rows = rows(0, 400);
+			Batch<Row> batch = tx.startBatchInsert(rows.get(0), false);
+			batch.setParallelGroups(TABLES);
+			Assert.assertEquals(400, batch.execute(rows));
+			tx.commit();
+		} finally {
+			tx.close();
+		}
+		for (int i = 0; i < TABLES; i++) {
+			Assert.assertEquals(100, countTable(i));
+		}
+	}
+
+	/**
+	 * 事务中不同数据源上的组并行提交，共用事务的路由连接
+	 */
+	@Test
+	public void testSitesInTransaction() throws SQLException {
+		Map<String, DataSource> map = new HashMap<String, DataSource>();
+		map.put("site1", DbUtils.createSimpleDataSource("jdbc:h2:mem:batch_parallel_site1;DB_CLOSE_DELAY=-1", "sa", ""));
+		map.put("site2", DbUtils.createSimpleDataSource("jdbc:h2:mem:batch_parallel_site2;DB_CLOSE_DELAY=-1", "sa", ""));
+		DbClient routing = new DbClient(new RoutingDataSource(new MapDataSourceLookup(map)));
+		try {
+			for (String site : map.keySet()) {
+				routing.getSqlTemplate(site).executeSql("create table BATCH_SITE (ID int primary key, SITE varchar(10), NAME varchar(20))");
+			}
+			List<SiteRow> rows = new ArrayList<SiteRow>();
+			for (int i = 0; i < 400; i++) {
+				SiteRow row = new SiteRow();
+				row.setId(i);
+				row.setSite(i < 200 ? "site1" : "site2");
+				row.setName("row" + i);
+				rows.add(row);
+			}
+			for (int n = 0; n < 20; n++) {
+				Transaction tx = routing.startTransaction();
+				try {
+					Batch<SiteRow> batch = tx.startBatchInsert(rows.get(0), false);
+					batch.setParallelGroups(2);
+					Assert.assertEquals(400, batch.execute(rows));
+					for (String site : map.keySet()) {
+						Assert.assertEquals(200, tx.getSqlTemplate(site).loadBySql("select count(*) from BATCH_SITE", Integer.class).intValue());
+					}
+					tx.rollback();
+				} finally {
+					tx.close();
+				}
+			}
+		} finally {
+			routing.close();
+		}
+	}
+
+	private static int countTable(int i) throws SQLException {
+		return db.loadBySql("select count(*) from BATCH_PARALLEL_" + i, Integer.class);
+	}
+
+	private static List<Row> rows(int from, int count) {
+		List<Row> rows = new ArrayList<Row>(count);
+		for (int i = from; i < from + count; i++) {
+			Row row = new Row();
+			row.setId(i);
+			row.setName("row" + i);
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	@Entity
+	@Table(name = "BATCH_SITE")
+	@PartitionTable(key = @PartitionKey(field = "site", isDbName = true))
+	public static class SiteRow extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String site;
+		private String name;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getSite() {
+			return site;
+		}
+
+		public void setSite(String site) {
+			this.site = site;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, site, name
+		}
+	}
+
+	@Entity
+	@Table(name = "BATCH_PARALLEL")
+	@PartitionTable(key = @PartitionKey(field = "id", function = KeyFunction.MODULUS, functionConstructorParams = { "4" }))
+	public static class Row extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package jef.database;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.common.log.LogUtil;
+import jef.tools.IOUtils;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 以Iterator为数据源流式写入大量记录时，堆内存占用保持平稳，以及写入的吞吐量。
+ * <p>
+ * 使用落盘的H2和HSQLDB(CACHED表)并限制数据库的缓存大小，避免表数据本身占用堆内存。
+ */
+public class BatchStreamBenchmarkTest {
+	private static final int ROWS = 200000;
+	private static final int CHUNK = 1000;
+	private static final int NAME_LENGTH = 200;
+	/*
+	 * 20万条记录全部放在内存中约占用100MB，流式写入时堆内存的增长应远小于此
+	 */
+	private static final long MAX_GROWTH = 32L * 1024 * 1024;
+	private static final File DIR = new File("target/batch_stream_benchmark");
+
+	@BeforeClass
+	public static void setUp() {
+		// 必须在类加载前增强，因此不能使用Row.class
+		new EntityEnhancer().enhanceClass("jef.database.BatchStreamBenchmarkTest$Row");
+		IOUtils.deleteTree(DIR, true);
+	}
+
+	@Test
+	public void testH2() throws SQLException {
+		benchmark("H2", "jdbc:h2:" + new File(DIR, "h2").getAbsolutePath() + ";CACHE_SIZE=4096", "sa");
+	}
+
+	@Test
+	public void testHsqlDb() throws SQLException {
+		benchmark("HSQLDB", "jdbc:hsqldb:file:" + new File(DIR, "hsqldb").getAbsolutePath() + ";hsqldb.default_table_type=cached;hsqldb.cache_rows=10000;shutdown=true", "sa");
+	}
+
+	private void benchmark(String name, String url, String user) throws SQLException {
+		DbClient db = new DbClientBuilder(url, user, "").build();
+		try {
+			db.dropTable(Row.class);
+			db.createTable(Row.class);
+			Batch<Row> batch = db.startBatchInsert(new Row(), false);
+			batch.setChunkSize(CHUNK);
+			final List<Long> heap = new ArrayList<Long>();
+			batch.setProgressListener(new Batch.ProgressListener() {
+				private int chunks;
+
+				public void onChunk(long rows, long affected, long elapsed) {
+					// 前10批作为预热，之后每20批采样一次
+					if (++chunks % 20 == 10) {
+						heap.add(usedHeap());
+					}
+				}
+			});
+			long start = System.currentTimeMillis();
+			Assert.assertEquals(ROWS, batch.execute(rows(ROWS)));
+			long cost = System.currentTimeMillis() - start;
+			Assert.assertEquals(ROWS, db.count(QB.create(Row.class)));
+
+			long growth = Collections.max(heap) - heap.get(0);
+			LogUtil.info(name + ": " + ROWS * 1000L / Math.max(1, cost) + " rows/s, heap samples(KB) " + toKb(heap) + ", growth " + growth / 1024 + "KB");
+			Assert.assertTrue(name + " heap grew " + growth / 1024 + "KB", growth < MAX_GROWTH);
+			db.dropTable(Row.class);
+		} finally {
+			db.close();
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		System.gc();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	private static List<Long> toKb(List<Long> heap) {
+		List<Long> result = new ArrayList<Long>(heap.size());
+		for (Long l : heap) {
+			result.add(l / 1024);
+		}
+		return result;
+	}
+
+	/*
+	 * 按需生成对象，不预先创建全部对象
+	 */
+	private static Iterator<Row> rows(final int count) {
+		return new Iterator<Row>() {
+			private int n;
+
+			public boolean hasNext() {
+				return n < count;
+			}
+
+			public Row next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Row row = new Row();
+				row.setId(n);
+				StringBuilder sb = new StringBuilder(NAME_LENGTH);
+				for (int i = 0; i < NAME_LENGTH; i++) {
+					sb.append((char) ('a' + (n + i) % 26));
+				}
+				row.setName(sb.toString());
+				n++;
+				return row;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Entity
+	@Table(name = "BATCH_STREAM_BENCHMARK")
+	public static class Row extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name
+		}
+	}
+}
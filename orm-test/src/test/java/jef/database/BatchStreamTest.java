@@ -0,0 +1,219 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 以Iterator/Stream为数据源的分批执行
+ */
+public class BatchStreamTest {
+	private static DbClient db;
+
+	@BeforeClass
+	public static void setUp() throws SQLException {
+		// 必须在类加载前增强，因此不能使用Row.class
+		new EntityEnhancer().enhanceClass("jef.database.BatchStreamTest$Row");
+		db = new DbClientBuilder("jdbc:h2:mem:batch_stream_test", "sa", "").build();
+	}
+
+	@Before
+	public void recreate() throws SQLException {
+		db.dropTable(Row.class);
+		db.createTable(Row.class);
+	}
+
+	@AfterClass
+	public static void close() throws SQLException {
+		db.dropTable(Row.class);
+		db.close();
+	}
+
+	@Test
+	public void testChunks() throws SQLException {
+		Batch<Row> batch = db.startBatchInsert(new Row(), false);
+		batch.setChunkSize(1000);
+		final List<long[]> progress = new ArrayList<long[]>();
+		batch.setProgressListener(new Batch.ProgressListener() {
+			public void onChunk(long rows, long affected, long elapsed) {
+				progress.add(new long[] { rows, affected });
+			}
+		});
+		Assert.assertEquals(2500, batch.execute(rows(0, 2500, 10)));
+		Assert.assertEquals(3, progress.size());
+		Assert.assertArrayEquals(new long[] { 1000, 1000 }, progress.get(0));
+		Assert.assertArrayEquals(new long[] { 2000, 2000 }, progress.get(1));
+		Assert.assertArrayEquals(new long[] { 2500, 2500 }, progress.get(2));
+		Assert.assertEquals(2500, db.count(QB.create(Row.class)));
+	}
+
+	@Test
+	public void testMaxChunkBytes() throws SQLException {
+		Batch<Row> batch = db.startBatchInsert(new Row(), false);
+		batch.setChunkSize(1000);
+		// 每条记录估算约400字节，每批10条
+		batch.setMaxChunkBytes(4000);
+		final int[] chunks = new int[1];
+		batch.setProgressListener(new Batch.ProgressListener() {
+			public void onChunk(long rows, long affected, long elapsed) {
+				chunks[0]++;
+			}
+		});
+		Assert.assertEquals(100, batch.execute(rows(0, 100, 200)));
+		Assert.assertEquals(10, chunks[0]);
+	}
+
+	@Test
+	public void testStream() throws SQLException {
+		Batch<Row> batch = db.startBatchInsert(new Row(), false);
+		batch.setChunkSize(7);
+		final Iterator<Row> source = rows(0, 50, 10);
+		Stream<Row> stream = Stream.generate(new Supplier<Row>() {
+			public Row get() {
+				return source.next();
+			}
+		}).limit(50);
+		Assert.assertEquals(50, batch.execute(stream));
+		Assert.assertEquals(50, db.count(QB.create(Row.class)));
+	}
+
+	@Test
+	public void testCommitPerChunk() throws SQLException {
+		db.insert(row(150, 10));
+		Transaction tx = db.startTransaction();
+		try {
+			Batch<Row> batch = tx.startBatchInsert(new Row(), false);
+			batch.setChunkSize(100);
+			batch.setCommitPerChunk(true);
+			try {
+				// 第二批主键冲突
+				batch.execute(rows(0, 200, 10));
+				Assert.fail();
+			} catch (SQLException e) {
+				tx.rollback();
+			}
+		} finally {
+			tx.close();
+		}
+		// 第一批已经提交
+		Assert.assertEquals(101, db.count(QB.create(Row.class)));
+	}
+
+	/**
+	 * 每批只从数据源读取一批记录，写入后再读下一批；记录数正好是批次的整数倍时不会多写一个空批次
+	 */
+	@Test
+	public void testChunkBoundaries() throws SQLException {
+		final Iterator<Row> source = rows(0, 3000, 10);
+		final int[] consumed = new int[1];
+		Iterator<Row> counting = new Iterator<Row>() {
+			public boolean hasNext() {
+				return source.hasNext();
+			}
+
+			public Row next() {
+				consumed[0]++;
+				return source.next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		Batch<Row> batch = db.startBatchInsert(new Row(), false);
+		batch.setChunkSize(1000);
+		final List<long[]> flushes = new ArrayList<long[]>();
+		batch.setProgressListener(new Batch.ProgressListener() {
+			public void onChunk(long rows, long affected, long elapsed) {
+				flushes.add(new long[] { rows, consumed[0] });
+			}
+		});
+		Assert.assertEquals(3000, batch.execute(counting));
+		Assert.assertEquals(3, flushes.size());
+		for (int i = 0; i < flushes.size(); i++) {
+			Assert.assertArrayEquals(new long[] { (i + 1) * 1000, (i + 1) * 1000 }, flushes.get(i));
+		}
+		Assert.assertEquals(3000, db.count(QB.create(Row.class)));
+	}
+
+	/*
+	 * 按需生成对象，不预先创建全部对象
+	 */
+	private static Iterator<Row> rows(final int from, final int count, final int length) {
+		return new Iterator<Row>() {
+			private int n = from;
+
+			public boolean hasNext() {
+				return n < from + count;
+			}
+
+			public Row next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return row(n++, length);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private static Row row(int id, int length) {
+		Row row = new Row();
+		row.setId(id);
+		StringBuilder sb = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append((char) ('a' + (id + i) % 26));
+		}
+		row.setName(sb.toString());
+		return row;
+	}
+
+	@Entity
+	@Table(name = "BATCH_STREAM_TEST")
+	public static class Row extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.database.DbMetaData.ObjectType;
+import jef.database.dialect.ColumnType;
+import jef.database.dialect.type.ColumnMapping;
+import jef.database.meta.ColumnModification;
+import jef.database.meta.ITableMetadata;
+import jef.database.meta.MetaHolder;
+import jef.database.meta.object.Column;
+import jef.database.meta.object.Index;
+import jef.database.support.MetadataEventListener;
+import jef.database.wrapper.executor.StatementExecutor;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 批量核对表结构：一次查询所有的列，并行建表和修改表
+ */
+public class BulkRefreshTableTest {
+
+	@BeforeClass
+	public static void enhance() {
+		// 必须在类加载前增强，因此不能使用Alpha.class
+		EntityEnhancer en = new EntityEnhancer();
+		en.enhanceClass("jef.database.BulkRefreshTableTest$Alpha");
+		en.enhanceClass("jef.database.BulkRefreshTableTest$Beta");
+	}
+
+	@Test
+	public void testRefreshTables() throws SQLException {
+		DbClient db = new DbClientBuilder("jdbc:h2:mem:bulk_refresh_tables", "sa", "").build();
+		try {
+			db.executeSql("create table BULK_REFRESH_ALPHA (ID INT PRIMARY KEY, OLD_COL VARCHAR(10))");
+			DbMetaData meta = db.getMetaData(null);
+			Map<String, List<Column>> all = meta.getAllColumns();
+			Assert.assertEquals(set("ID", "OLD_COL"), names(all.get("BULK_REFRESH_ALPHA")));
+			Assert.assertFalse(all.containsKey("BULK_REFRESH_BETA"));
+
+			ORMConfig.getInstance().setTableRefreshThreads(2);
+			db.refreshTables(Arrays.asList(MetaHolder.getMeta(Alpha.class), MetaHolder.getMeta(Beta.class)), null, true, true);
+			// 增加缺少的列、删除多余的列，不存在的表被创建
+			Assert.assertEquals(set("ID", "NAME", "AMOUNT"), names(meta.getColumns("BULK_REFRESH_ALPHA")));
+			Assert.assertTrue(meta.existTable("BULK_REFRESH_BETA"));
+		} finally {
+			ORMConfig.getInstance().setTableRefreshThreads(4);
+			db.close();
+		}
+	}
+
+	/**
+	 * 约束在全部表建好之后才修改
+	 */
+	@Test
+	public void testConstraintsAfterCreate() throws SQLException {
+		DbClient db = new DbClientBuilder("jdbc:h2:mem:bulk_refresh_constraints", "sa", "").build();
+		try {
+			db.executeSql("create table BULK_REFRESH_ALPHA (ID INT NOT NULL, NAME VARCHAR(255), AMOUNT DOUBLE)");
+			ORMConfig.getInstance().setTableRefreshThreads(2);
+			EventRecorder events = new EventRecorder();
+			db.refreshTables(Arrays.asList(MetaHolder.getMeta(Alpha.class), MetaHolder.getMeta(Beta.class)), events, true, true);
+			Assert.assertTrue(db.getMetaData(null).getPrimaryKey("BULK_REFRESH_ALPHA").isPresent());
+			int created = events.events.indexOf("create BULK_REFRESH_BETA");
+			int constraint = events.events.indexOf("constraint BULK_REFRESH_ALPHA");
+			Assert.assertTrue(events.events.toString(), created > -1 && constraint > created);
+		} finally {
+			ORMConfig.getInstance().setTableRefreshThreads(4);
+			db.close();
+		}
+	}
+
+	/**
+	 * 一次查询得到所有表的索引和所有序列，结果和逐表、逐个查询一致
+	 */
+	@Test
+	public void testSchemaIndexesAndSequences() throws SQLException {
+		DbClient db = new DbClientBuilder("jdbc:h2:mem:bulk_refresh_indexes", "sa", "").build();
+		try {
+			db.executeSql("create table BULK_REFRESH_ALPHA (ID INT PRIMARY KEY, NAME VARCHAR(255), AMOUNT DOUBLE)");
+			db.executeSql("create index IX_BULK_NAME on BULK_REFRESH_ALPHA (NAME desc, AMOUNT)");
+			db.executeSql("create sequence BULK_REFRESH_SEQ");
+			DbMetaData meta = db.getMetaData(null);
+
+			Map<String, List<Index>> all = meta.getAllIndexes();
+			Assert.assertNotNull(all);
+			Map<String, Index> expected = new HashMap<String, Index>();
+			for (Index index : meta.getIndexes("BULK_REFRESH_ALPHA")) {
+				expected.put(index.getIndexName(), index);
+			}
+			Assert.assertEquals(2, expected.size());
+			Assert.assertEquals(expected.size(), all.get("BULK_REFRESH_ALPHA").size());
+			for (Index index : all.get("BULK_REFRESH_ALPHA")) {
+				Index e = expected.get(index.getIndexName());
+				Assert.assertEquals(e, index);
+				Assert.assertArrayEquals(e.getColumnNamesWithOrder(), index.getColumnNamesWithOrder());
+			}
+
+			meta.preloadSequences();
+			try {
+				Assert.assertTrue(meta.existsInSchema(ObjectType.SEQUENCE, null, "BULK_REFRESH_SEQ"));
+				Assert.assertFalse(meta.existsInSchema(ObjectType.SEQUENCE, null, "BULK_REFRESH_SEQ2"));
+				meta.createSequence(null, "BULK_REFRESH_SEQ2", 1, null);
+				Assert.assertTrue(meta.existsInSchema(ObjectType.SEQUENCE, null, "BULK_REFRESH_SEQ2"));
+			} finally {
+				meta.clearPreloadedSequences();
+			}
+
+			// 按预先查询的索引修改，结果和逐表查询时相同
+			db.refreshTables(Arrays.asList(MetaHolder.getMeta(Alpha.class)), null, true, true);
+			Set<String> bulk = indexNames(meta.getIndexes("BULK_REFRESH_ALPHA"));
+			meta.refreshTable(MetaHolder.getMeta(Alpha.class), "BULK_REFRESH_ALPHA", null, true, true);
+			Assert.assertEquals(indexNames(meta.getIndexes("BULK_REFRESH_ALPHA")), bulk);
+		} finally {
+			db.close();
+		}
+	}
+
+	@Test
+	public void testScanner() throws SQLException {
+		DbClient old = new DbClientBuilder("jdbc:h2:mem:bulk_refresh_scanner", "sa", "").build();
+		try {
+			old.executeSql("create table BULK_REFRESH_ALPHA (ID INT PRIMARY KEY, OLD_COL VARCHAR(10))");
+			DbClientBuilder builder = new DbClientBuilder("jdbc:h2:mem:bulk_refresh_scanner", "sa", "");
+			builder.setAnnotatedClasses(new String[] { "jef.database.BulkRefreshTableTest$Alpha", "jef.database.BulkRefreshTableTest$Beta" });
+			builder.setBulkRefreshTable(true);
+			DbClient db = builder.build();
+			try {
+				DbMetaData meta = db.getMetaData(null);
+				// 默认不允许删除列
+				Assert.assertEquals(set("ID", "OLD_COL", "NAME", "AMOUNT"), names(meta.getColumns("BULK_REFRESH_ALPHA")));
+				Assert.assertTrue(meta.existTable("BULK_REFRESH_BETA"));
+			} finally {
+				db.close();
+			}
+		} finally {
+			old.close();
+		}
+	}
+
+	private static Set<String> set(String... names) {
+		return new TreeSet<String>(Arrays.asList(names));
+	}
+
+	private static Set<String> indexNames(Collection<Index> indexes) {
+		Set<String> names = new TreeSet<String>();
+		for (Index index : indexes) {
+			names.add(index.getIndexName());
+		}
+		return names;
+	}
+
+	// 新增列的顺序不确定
+	private static Set<String> names(List<Column> columns) {
+		Set<String> names = new TreeSet<String>();
+		for (Column c : columns) {
+			names.add(c.getColumnName());
+		}
+		return names;
+	}
+
+	/*
+	 * 记录建表和修改约束的顺序，事件可能在多个线程中触发
+	 */
+	static class EventRecorder implements MetadataEventListener {
+		final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+		public boolean beforeTableRefresh(ITableMetadata meta, String table) {
+			return true;
+		}
+
+		public boolean onTableCreate(ITableMetadata meta, String tablename) {
+			events.add("create " + tablename.toUpperCase());
+			return true;
+		}
+
+		public boolean onColumnsCompared(String tablename, ITableMetadata meta, Map<String, ColumnType> insert, List<ColumnModification> changed, List<String> delete) {
+			return true;
+		}
+
+		public void beforeAlterTable(String tablename, ITableMetadata meta, StatementExecutor conn, List<String> sql) {
+		}
+
+		public void onAlterSqlFinished(String tablename, String sql, List<String> sqls, int n, long cost) {
+			if (sql.toUpperCase().contains("CONSTRAINT")) {
+				events.add("constraint " + tablename.toUpperCase());
+			}
+		}
+
+		public boolean onSqlExecuteError(SQLException e, String tablename, String sql, List<String> sqls, int n) {
+			return false;
+		}
+
+		public void onTableFinished(ITableMetadata meta, String tablename) {
+		}
+
+		public boolean onCompareColumns(String tablename, List<Column> columns, Map<jef.database.Field, ColumnMapping> defined) {
+			return true;
+		}
+	}
+
+	@Entity
+	@Table(name = "BULK_REFRESH_ALPHA")
+	public static class Alpha extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+		private double amount;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public double getAmount() {
+			return amount;
+		}
+
+		public void setAmount(double amount) {
+			this.amount = amount;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name, amount
+		}
+	}
+
+	@Entity
+	@Table(name = "BULK_REFRESH_BETA")
+	public static class Beta extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String code;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public void setCode(String code) {
+			this.code = code;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, code
+		}
+	}
+}
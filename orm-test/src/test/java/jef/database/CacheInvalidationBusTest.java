@@ -0,0 +1,320 @@
+package jef.database;
+
+import java.math.BigDecimal;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.database.cache.Cache;
+import jef.database.cache.CacheImpl;
+import jef.database.cache.CacheKey;
+import jef.database.cache.InvalidationEvent;
+import jef.database.cache.KeyDimension;
+import jef.database.cache.LoopbackInvalidationBus;
+import jef.database.cache.SqlCacheKey;
+import jef.database.cache.UdpInvalidationBus;
+import jef.database.query.Query;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 二级缓存的失效消息总线：两个DbClient模拟集群中的两个节点，一个节点修改数据后另一个节点的缓存随之失效
+ */
+public class CacheInvalidationBusTest {
+	private static DbClient node1;
+	private static DbClient node2;
+	private static Cache cache2;
+
+	@BeforeClass
+	public static void setUp() throws SQLException {
+		new EntityEnhancer().enhanceClass("jef.database.CacheInvalidationBusTest$Item");
+		ORMConfig config = ORMConfig.getInstance();
+		config.setCacheLevel2(600);
+		config.setCacheDebug(true);
+		config.setCacheGlobalInvalidationBus(LoopbackInvalidationBus.class.getName());
+		config.setCacheGlobalInvalidationInterval(0);
+		try {
+			node1 = new DbClientBuilder("jdbc:h2:mem:cache_bus_test;DB_CLOSE_DELAY=-1", "sa", "").build();
+			node2 = new DbClientBuilder("jdbc:h2:mem:cache_bus_test;DB_CLOSE_DELAY=-1", "sa", "").build();
+		} finally {
+			config.setCacheLevel2(0);
+			config.setCacheGlobalInvalidationBus("");
+		}
+		cache2 = DebugUtil.getCache(node2);
+		node1.createTable(Item.class);
+	}
+
+	@AfterClass
+	public static void close() {
+		ORMConfig.getInstance().setCacheDebug(false);
+		ORMConfig.getInstance().setCacheGlobalInvalidationInterval(20);
+		node1.shutdown();
+		node2.shutdown();
+	}
+
+	@Before
+	public void reset() throws SQLException {
+		// 经过缓存的删除，其他节点的缓存随之清除
+		node1.executeSql("delete from CACHE_BUS_ITEM where id > ?", 0);
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 1; i <= 10; i++) {
+			items.add(new Item(i, "name" + i, i <= 5 ? "A" : "B"));
+		}
+		node1.batchInsert(items);
+	}
+
+	@Test
+	public void testUpdateOnOtherNode() throws SQLException {
+		warmUp(node2);
+		Item item = new Item();
+		item.setId(1);
+		item.setName("changed");
+		node1.update(item);
+
+		Assert.assertFalse(isHit(byId(1)));
+		Assert.assertEquals("changed", node2.load(Item.class, 1).getName());
+		Assert.assertTrue(isHit(byId(2)));
+		Assert.assertFalse(isHit(byStatus("A")));
+		Assert.assertTrue(isHit(byStatus("B")));
+		Assert.assertFalse(isHit(byName("name7")));
+
+		// 插入的记录可能出现在任何查询结果中，整表失效
+		node1.insert(new Item(11, "name11", "B"));
+		Assert.assertFalse(isHit(byStatus("B")));
+		Assert.assertEquals(6, node2.select(byStatus("B")).size());
+	}
+
+	@Test
+	public void testLostEvent() throws SQLException {
+		warmUp(node2);
+		Assert.assertTrue(isHit(byId(2)));
+		LoopbackInvalidationBus other = new LoopbackInvalidationBus();
+		other.start(null);
+		try {
+			List<InvalidationEvent.Change> changes = Collections.singletonList(new InvalidationEvent.Change("OTHER_TABLE", null, null));
+			other.publish(new InvalidationEvent("other-node", 1, changes));
+			Assert.assertTrue(isHit(byId(2)));
+			// 第2条消息丢失，无法得知修改了哪些记录，清除全部缓存
+			other.publish(new InvalidationEvent("other-node", 3, changes));
+			// 清除的结果同时释放内存预算
+			Assert.assertEquals(0, ((CacheImpl) cache2).getBudget().getWeight());
+			Assert.assertEquals(0, ((CacheImpl) cache2).getBudget().size());
+			Assert.assertFalse(isHit(byId(2)));
+		} finally {
+			other.close();
+		}
+	}
+
+	/**
+	 * 查询开始后收到失效消息，查询结果是修改前的数据，不能放入缓存
+	 */
+	@Test
+	public void testStaleLoad() throws SQLException {
+		CacheKey key = new SqlCacheKey(KeyDimension.forSingleTable("CACHE_BUS_ITEM", "where id=?", null, node2.getProfile(null)), Arrays.asList(1));
+		CacheKey nested = new SqlCacheKey(KeyDimension.forSingleTable("CACHE_BUS_ITEM", "where status=?", null, node2.getProfile(null)), Arrays.asList("A"));
+		Assert.assertNull(cache2.load(key));
+		// 查询过程中嵌套的查询(如级联加载)不影响外层查询的检查
+		Assert.assertNull(cache2.load(nested));
+		Item stale = new Item(1, "name1", "A");
+
+		Item item = new Item();
+		item.setId(1);
+		item.setName("changed");
+		node1.update(item);
+
+		cache2.onLoad(nested, Arrays.asList(stale), Item.class);
+		cache2.onLoad(key, Arrays.asList(stale), Item.class);
+		Assert.assertNull(cache2.load(key));
+		Assert.assertNull(cache2.load(nested));
+	}
+
+	/**
+	 * 事务中的修改在提交后才通知其他节点，回滚时不通知
+	 */
+	@Test
+	public void testPublishOnCommit() throws SQLException {
+		warmUp(node2);
+		Transaction tx = node1.startTransaction();
+		try {
+			Item item = new Item();
+			item.setId(1);
+			item.setName("tx");
+			tx.update(item);
+			Assert.assertTrue(isHit(byId(1)));
+			tx.rollback();
+		} finally {
+			tx.close();
+		}
+		Assert.assertTrue(isHit(byId(1)));
+
+		tx = node1.startTransaction();
+		try {
+			Item item = new Item();
+			item.setId(1);
+			item.setName("tx");
+			tx.update(item);
+			// 提交前其他节点读到的仍是修改前的数据，放入缓存的结果在提交后清除
+			Assert.assertTrue(isHit(byId(1)));
+			tx.commit();
+		} finally {
+			tx.close();
+		}
+		Assert.assertFalse(isHit(byId(1)));
+		Assert.assertEquals("tx", node2.load(Item.class, 1).getName());
+		Assert.assertTrue(isHit(byId(2)));
+	}
+
+	@Test
+	public void testUdp() throws Exception {
+		InetSocketAddress local = new InetSocketAddress("127.0.0.1", 0);
+		UdpInvalidationBus bus1 = new UdpInvalidationBus(local, Collections.<InetSocketAddress> emptyList());
+		UdpInvalidationBus bus2 = new UdpInvalidationBus(local, Collections.singletonList(bus1.getLocalAddress()));
+		bus1.addPeer(bus2.getLocalAddress());
+		node1.setCacheInvalidationBus(bus1);
+		node2.setCacheInvalidationBus(bus2);
+		DatagramSocket forger = new DatagramSocket(local);
+		try {
+			warmUp(node2);
+			// 不是已配置节点发出的消息被丢弃
+			byte[] forged = new InvalidationEvent("forger", 1, Collections.singletonList(new InvalidationEvent.Change("CACHE_BUS_ITEM", null, null))).toBytes();
+			forger.send(new DatagramPacket(forged, forged.length, bus2.getLocalAddress()));
+			Item item = new Item();
+			item.setId(3);
+			item.setStatus("B");
+			node1.update(item);
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (isHit(byId(3))) {
+				Assert.assertTrue("No invalidation event received.", System.currentTimeMillis() < deadline);
+				Thread.sleep(20);
+			}
+			Assert.assertEquals("B", node2.load(Item.class, 3).getStatus());
+			Assert.assertTrue(isHit(byId(2)));
+			Assert.assertFalse(isHit(byStatus("B")));
+		} finally {
+			forger.close();
+			node1.setCacheInvalidationBus(new LoopbackInvalidationBus());
+			node2.setCacheInvalidationBus(new LoopbackInvalidationBus());
+		}
+	}
+
+	@Test
+	public void testEncode() throws Exception {
+		Set<List<Object>> keys = new HashSet<List<Object>>();
+		keys.add(Arrays.<Object> asList(1L, "a"));
+		keys.add(Arrays.<Object> asList(new BigDecimal("2.5"), null));
+		Set<String> columns = new HashSet<String>(Arrays.asList("NAME"));
+		List<InvalidationEvent.Change> changes = new ArrayList<InvalidationEvent.Change>();
+		changes.add(new InvalidationEvent.Change("T1", keys, columns));
+		changes.add(new InvalidationEvent.Change("T2", null, null));
+		changes.add(new InvalidationEvent.Change("T3", Collections.singleton(Arrays.<Object> asList(new Date())), columns));
+
+		byte[] data = new InvalidationEvent("node", 7, changes).toBytes();
+		InvalidationEvent event = InvalidationEvent.fromBytes(data, 0, data.length);
+		Assert.assertEquals("node", event.getSource());
+		Assert.assertEquals(7, event.getVersion());
+		Assert.assertEquals(keys, event.getChanges().get(0).getKeys());
+		Assert.assertEquals(columns, event.getChanges().get(0).getColumns());
+		Assert.assertNull(event.getChanges().get(1).getKeys());
+		// 无法编码的主键按整表失效
+		Assert.assertEquals("T3", event.getChanges().get(2).getTable());
+		Assert.assertNull(event.getChanges().get(2).getKeys());
+
+		data = new InvalidationEvent("node", 8, changes).toBytes(true);
+		Assert.assertNull(InvalidationEvent.fromBytes(data, 0, data.length).getChanges().get(0).getKeys());
+	}
+
+	private static void warmUp(DbClient db) throws SQLException {
+		db.select(byId(1));
+		db.select(byId(2));
+		db.select(byId(3));
+		db.select(byStatus("A"));
+		db.select(byStatus("B"));
+		db.select(byName("name7"));
+	}
+
+	private static boolean isHit(Query<Item> q) throws SQLException {
+		long hit = cache2.getHitCount();
+		node2.select(q);
+		return cache2.getHitCount() == hit + 1;
+	}
+
+	private static Query<Item> byId(int id) {
+		return QB.create(Item.class).addCondition(QB.eq(Item.Field.id, id));
+	}
+
+	private static Query<Item> byStatus(String status) {
+		return QB.create(Item.class).addCondition(QB.eq(Item.Field.status, status));
+	}
+
+	private static Query<Item> byName(String name) {
+		return QB.create(Item.class).addCondition(QB.eq(Item.Field.name, name));
+	}
+
+	@Entity
+	@Cacheable
+	@Table(name = "CACHE_BUS_ITEM")
+	public static class Item extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+		private String status;
+
+		public Item() {
+		}
+
+		public Item(int id, String name, String status) {
+			this.id = id;
+			this.name = name;
+			this.status = status;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getStatus() {
+			return status;
+		}
+
+		public void setStatus(String status) {
+			this.status = status;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name, status
+		}
+	}
+}
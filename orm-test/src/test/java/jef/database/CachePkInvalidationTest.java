@@ -0,0 +1,181 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.database.cache.Cache;
+import jef.database.query.Query;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 二级缓存按主键清除：按主键修改记录时，只清除含有该记录的结果，以及条件中含有被更新列的结果
+ */
+public class CachePkInvalidationTest {
+	private static DbClient db;
+	private static Cache cache;
+
+	@BeforeClass
+	public static void setUp() throws SQLException {
+		// 必须在类加载前增强，因此不能使用Item.class
+		new EntityEnhancer().enhanceClass("jef.database.CachePkInvalidationTest$Item");
+		ORMConfig.getInstance().setCacheLevel2(600);
+		ORMConfig.getInstance().setCacheDebug(true);
+		try {
+			db = new DbClientBuilder("jdbc:h2:mem:cache_pk_invalidation_test", "sa", "").build();
+		} finally {
+			ORMConfig.getInstance().setCacheLevel2(0);
+		}
+		cache = DebugUtil.getCache(db);
+		db.createTable(Item.class);
+		List<Item> items = new ArrayList<Item>();
+		for (int i = 1; i <= 10; i++) {
+			items.add(new Item(i, "name" + i, i <= 5 ? "A" : "B"));
+		}
+		db.batchInsert(items);
+	}
+
+	@AfterClass
+	public static void close() {
+		ORMConfig.getInstance().setCacheDebug(false);
+		db.close();
+	}
+
+	@Test
+	public void testInvalidateByPrimaryKey() throws SQLException {
+		warmUp();
+		Item item = new Item();
+		item.setId(1);
+		item.setName("changed");
+		db.update(item);
+
+		Assert.assertFalse(isHit(byId(1)));
+		Assert.assertTrue(isHit(byId(2)));
+		// 含有该记录的结果被清除
+		Assert.assertFalse(isHit(byStatus("A")));
+		// 不含该记录、条件中也没有被更新的列，不受影响
+		Assert.assertTrue(isHit(byStatus("B")));
+		// 条件中含有被更新的列，可能因此含有该记录，全部清除
+		Assert.assertFalse(isHit(byName("name7")));
+
+		Item deleted = new Item();
+		deleted.setId(6);
+		db.delete(deleted);
+		Assert.assertFalse(isHit(byStatus("B")));
+		Assert.assertTrue(isHit(byStatus("A")));
+		Assert.assertTrue(isHit(byName("name7")));
+		Assert.assertEquals(4, db.select(byStatus("B")).size());
+	}
+
+	@Test
+	public void testBatchDeleteByPrimaryKey() throws SQLException {
+		Item a = new Item(21, "name21", "C");
+		Item b = new Item(22, "name22", "C");
+		db.batchInsert(Arrays.asList(a, b));
+		warmUp();
+		Assert.assertEquals(2, db.select(byStatus("C")).size());
+		db.batchDeleteByPK(Arrays.asList(a, b));
+		Assert.assertTrue(isHit(byStatus("A")));
+		Assert.assertFalse(isHit(byStatus("C")));
+	}
+
+	@Test
+	public void testFallback() throws SQLException {
+		warmUp();
+		Item item = new Item();
+		item.getQuery().addCondition(QB.eq(Item.Field.status, "A"));
+		item.setName("none");
+		db.update(item);
+		// 不是按主键修改，该表其他维度的缓存全部清除
+		Assert.assertFalse(isHit(byId(3)));
+		Assert.assertFalse(isHit(byName("name7")));
+		Assert.assertFalse(isHit(byStatus("A")));
+	}
+
+	private static void warmUp() throws SQLException {
+		db.select(byId(1));
+		db.select(byId(2));
+		db.select(byId(3));
+		db.select(byStatus("A"));
+		db.select(byStatus("B"));
+		db.select(byName("name7"));
+	}
+
+	private static boolean isHit(Query<Item> q) throws SQLException {
+		long hit = cache.getHitCount();
+		db.select(q);
+		return cache.getHitCount() == hit + 1;
+	}
+
+	private static Query<Item> byId(int id) {
+		return QB.create(Item.class).addCondition(QB.eq(Item.Field.id, id));
+	}
+
+	private static Query<Item> byStatus(String status) {
+		return QB.create(Item.class).addCondition(QB.eq(Item.Field.status, status));
+	}
+
+	private static Query<Item> byName(String name) {
+		return QB.create(Item.class).addCondition(QB.eq(Item.Field.name, name));
+	}
+
+	@Entity
+	@Cacheable
+	@Table(name = "CACHE_PK_ITEM")
+	public static class Item extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+		private String status;
+
+		public Item() {
+		}
+
+		public Item(int id, String name, String status) {
+			this.id = id;
+			this.name = name;
+			this.status = status;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getStatus() {
+			return status;
+		}
+
+		public void setStatus(String status) {
+			this.status = status;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name, status
+		}
+	}
+}
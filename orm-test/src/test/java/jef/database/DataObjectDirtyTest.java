@@ -0,0 +1,142 @@
+package jef.database;
+
+import java.util.Map;
+
+import jef.codegen.EntityEnhancer;
+import jef.database.query.JpqlExpression;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 增强后setter的修改记录(位图)
+ */
+public class DataObjectDirtyTest {
+	@BeforeClass
+	public static void setUp() {
+		// 必须在类加载前增强，因此不能使用Item.class
+		EntityEnhancer en = new EntityEnhancer();
+		en.enhanceClass("jef.database.DataObjectDirtyTest$Item");
+		en.enhanceClass("jef.database.DataObjectDirtyTest$SubItem");
+	}
+
+	@Test
+	public void testDirtyMask() {
+		Item e = new Item();
+		Assert.assertFalse(e.needUpdate());
+		e.setName("a");
+		e.setAmount(1);
+		e.setName("b");
+		Assert.assertTrue(e.needUpdate());
+		Assert.assertTrue(e.isUsed(Item.Field.name));
+		Assert.assertTrue(e.isUsed(Item.Field.amount));
+		Assert.assertFalse(e.isUsed(Item.Field.id));
+		// 记录在位图中，没有构造updateValueMap
+		Assert.assertTrue(e.preparedUpdateValues().isEmpty());
+
+		Map<Field, Object> map = e.getUpdateValueMap();
+		Assert.assertEquals(2, map.size());
+		Assert.assertEquals("b", map.get(Item.Field.name));
+		Assert.assertEquals(1, map.get(Item.Field.amount));
+
+		e.clearUpdate();
+		Assert.assertFalse(e.needUpdate());
+		Assert.assertTrue(e.getUpdateValueMap().isEmpty());
+	}
+
+	@Test
+	public void testPrepareUpdate() {
+		Item e = new Item();
+		e.setName("a");
+		JpqlExpression exp = new JpqlExpression("amount + 1");
+		e.prepareUpdate(Item.Field.amount, exp);
+		Assert.assertSame(exp, e.preparedUpdateValues().get(Item.Field.amount));
+		Assert.assertEquals("a", e.preparedUpdateValues().get(Item.Field.name));
+
+		// 后设置的值覆盖表达式
+		e.setAmount(2);
+		Assert.assertEquals(2, e.getUpdateValueMap().get(Item.Field.amount));
+
+		e.touchUsedFlag(Item.Field.name, false);
+		Assert.assertFalse(e.isUsed(Item.Field.name));
+		e.touchUsedFlag(Item.Field.id, true);
+		Assert.assertTrue(e.isUsed(Item.Field.id));
+	}
+
+	@Test
+	public void testTouchUsedFlag() {
+		Item e = new Item();
+		e.stopUpdate();
+		e.setName("x");
+		e.startUpdate();
+		Assert.assertFalse(e.needUpdate());
+		e.touchUsedFlag(Item.Field.name, true);
+		Assert.assertTrue(e.isUsed(Item.Field.name));
+		Assert.assertTrue(e.preparedUpdateValues().isEmpty());
+		Assert.assertEquals("x", e.getUpdateValueMap().get(Item.Field.name));
+	}
+
+	@Test
+	public void testInheritedFields() {
+		SubItem e = new SubItem();
+		e.setMemo("sub");
+		e.setName("parent");
+		Assert.assertTrue(e.isUsed(SubItem.Field.memo));
+		Assert.assertTrue(e.isUsed(Item.Field.name));
+		Map<Field, Object> map = e.getUpdateValueMap();
+		Assert.assertEquals(2, map.size());
+		Assert.assertEquals("sub", map.get(SubItem.Field.memo));
+		Assert.assertEquals("parent", map.get(Item.Field.name));
+	}
+
+	public static class Item extends DataObject {
+		private int id;
+		private String name;
+		private int amount;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getAmount() {
+			return amount;
+		}
+
+		public void setAmount(int amount) {
+			this.amount = amount;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name, amount
+		}
+	}
+
+	public static class SubItem extends Item {
+		private String memo;
+
+		public String getMemo() {
+			return memo;
+		}
+
+		public void setMemo(String memo) {
+			this.memo = memo;
+		}
+
+		public enum Field implements jef.database.Field {
+			memo
+		}
+	}
+}
@@ -0,0 +1,227 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.common.log.LogUtil;
+import jef.database.query.Query;
+import jef.database.query.QueryBuilder;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * extremeInsert使用多行insert语句写入，以及和JDBC batch的吞吐量对比
+ */
+public class ExtremeInsertBenchmarkTest {
+	private static final int ROWS = 20000;
+
+	@BeforeClass
+	public static void enhance() {
+		// 必须在类加载前增强，因此不能使用Row.class
+		EntityEnhancer en = new EntityEnhancer();
+		en.enhanceClass("jef.database.ExtremeInsertBenchmarkTest$Row");
+		en.enhanceClass("jef.database.ExtremeInsertBenchmarkTest$Ident");
+	}
+
+	@After
+	public void reset() {
+		ORMConfig.getInstance().setExtremeInsertRows(1000);
+	}
+
+	@Test
+	public void testMultiRow() throws SQLException {
+		ORMConfig.getInstance().setExtremeInsertRows(100);
+		DbClient db = new DbClientBuilder("jdbc:h2:mem:extreme_insert_multi_row", "sa", "").build();
+		try {
+			db.createTable(Row.class);
+			// 2345 = 23 * 100 + 45，最后一条语句行数不同
+			db.extremeInsert(rows(0, 2345), false);
+			Assert.assertEquals(2345, db.count(QueryBuilder.create(Row.class)));
+			Query<Row> query = QueryBuilder.create(Row.class);
+			query.orderByAsc(Row.Field.id);
+			List<Row> loaded = db.select(query);
+			for (int i = 0; i < loaded.size(); i++) {
+				Row row = loaded.get(i);
+				Assert.assertEquals(i, row.getId());
+				Assert.assertEquals(i % 10 == 0 ? null : "name\t" + i, row.getName());
+				Assert.assertEquals(i * 1.5, row.getAmount(), 0.0001);
+			}
+		} finally {
+			db.close();
+		}
+	}
+
+	@Test
+	public void testIdentity() throws SQLException {
+		DbClient db = new DbClientBuilder("jdbc:h2:mem:extreme_insert_identity", "sa", "").build();
+		try {
+			db.createTable(Ident.class);
+			List<Ident> list = new ArrayList<Ident>();
+			for (int i = 0; i < 500; i++) {
+				Ident ident = new Ident();
+				ident.setName("ident" + i);
+				list.add(ident);
+			}
+			// 自增列在每一行中都写作DEFAULT
+			db.extremeInsert(list, false);
+			List<Ident> loaded = db.select(QueryBuilder.create(Ident.class));
+			Set<Integer> ids = new TreeSet<Integer>();
+			for (Ident ident : loaded) {
+				ids.add(ident.getId());
+			}
+			Assert.assertEquals(500, ids.size());
+		} finally {
+			db.close();
+		}
+	}
+
+	@Test
+	public void testDisabled() throws SQLException {
+		ORMConfig.getInstance().setExtremeInsertRows(1);
+		DbClient db = new DbClientBuilder("jdbc:h2:mem:extreme_insert_disabled", "sa", "").build();
+		try {
+			db.createTable(Row.class);
+			db.extremeInsert(rows(0, 300), false);
+			Assert.assertEquals(300, db.count(QueryBuilder.create(Row.class)));
+		} finally {
+			db.close();
+		}
+	}
+
+	@Test
+	public void testThroughput() throws SQLException {
+		benchmark("H2", "jdbc:h2:mem:extreme_insert_benchmark", "sa");
+		benchmark("HSQLDB", "jdbc:hsqldb:mem:extreme_insert_benchmark", "sa");
+		// Derby没有批量写入的实现，extremeInsert仍使用JDBC batch
+		benchmark("Derby", "jdbc:derby:memory:extreme_insert_benchmark;create=true", "");
+	}
+
+	private void benchmark(String name, String url, String user) throws SQLException {
+		DbClient db = new DbClientBuilder(url, user, "").build();
+		try {
+			long batch = run(db, false);
+			long extreme = run(db, true);
+			LogUtil.info(name + ": batchInsert " + ROWS * 1000L / Math.max(1, batch) + " rows/s, extremeInsert " + ROWS * 1000L / Math.max(1, extreme) + " rows/s");
+			db.dropTable(Row.class);
+		} finally {
+			db.close();
+		}
+	}
+
+	/*
+	 * 重建表后写入，返回耗时
+	 */
+	private long run(DbClient db, boolean extreme) throws SQLException {
+		db.dropTable(Row.class);
+		db.createTable(Row.class);
+		List<Row> rows = rows(0, ROWS);
+		long start = System.currentTimeMillis();
+		if (extreme) {
+			db.extremeInsert(rows, false);
+		} else {
+			db.batchInsert(rows, false);
+		}
+		long cost = System.currentTimeMillis() - start;
+		Assert.assertEquals(ROWS, db.count(QueryBuilder.create(Row.class)));
+		return cost;
+	}
+
+	/*
+	 * 测试类的方法签名中不能出现实体类，否则JUnit反射时会提前加载未增强的实体类
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static List rows(int from, int count) {
+		List<Row> rows = new ArrayList<Row>(count);
+		for (int i = from; i < from + count; i++) {
+			Row row = new Row();
+			row.setId(i);
+			row.setName(i % 10 == 0 ? null : "name\t" + i);
+			row.setAmount(i * 1.5);
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	@Entity
+	@Table(name = "EXTREME_INSERT_ROW")
+	public static class Row extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+		private double amount;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public double getAmount() {
+			return amount;
+		}
+
+		public void setAmount(double amount) {
+			this.amount = amount;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name, amount
+		}
+	}
+
+	@Entity
+	@Table(name = "EXTREME_INSERT_IDENT")
+	public static class Ident extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		@GeneratedValue(strategy = GenerationType.IDENTITY)
+		private int id;
+		private String name;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package jef.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToMany;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.database.annotation.JoinDescription;
+import jef.database.query.Query;
+import jef.database.query.QueryBuilder;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 级联关系的批量延迟加载
+ */
+public class LazyLoadBatchTest {
+	private static final int PARENTS = 10;
+	private static DbClient db;
+
+	@BeforeClass
+	public static void setUp() throws SQLException {
+		// 必须在类加载前增强，因此不能使用Parent.class
+		EntityEnhancer en = new EntityEnhancer();
+		en.enhanceClass("jef.database.LazyLoadBatchTest$Parent");
+		en.enhanceClass("jef.database.LazyLoadBatchTest$Child");
+		en.enhanceClass("jef.database.LazyLoadBatchTest$Limited");
+		db = new DbClientBuilder("jdbc:h2:mem:lazy_load_batch_test", "sa", "").build();
+		db.createTable(Parent.class, Child.class);
+		List<Parent> parents = new ArrayList<Parent>();
+		List<Child> children = new ArrayList<Child>();
+		for (int i = 0; i < PARENTS; i++) {
+			Parent p = new Parent();
+			p.setId(i);
+			p.setName("parent" + i);
+			parents.add(p);
+			// 第i个对象有i个子对象
+			for (int j = 0; j < i; j++) {
+				Child c = new Child();
+				c.setId(i * 100 + j);
+				c.setParentId(i);
+				c.setName("child" + i + "_" + j);
+				children.add(c);
+			}
+		}
+		db.batchInsert(parents);
+		db.batchInsert(children);
+	}
+
+	@AfterClass
+	public static void close() {
+		ORMConfig.getInstance().setLazyLoadBatchSize(1);
+		db.close();
+	}
+
+	@Test
+	public void testBatchLoad() throws SQLException {
+		ORMConfig.getInstance().setLazyLoadBatchSize(4);
+		try {
+			List<Parent> parents = select();
+			Assert.assertEquals(PARENTS, parents.size());
+			for (Parent p : parents) {
+				Assert.assertNotNull(lazyload(p));
+			}
+			assertChildren(parents.get(0).getId(), parents.get(0).getChildren());
+			// 同一批次的对象已经加载
+			for (int i = 1; i < 4; i++) {
+				Assert.assertNull(lazyload(parents.get(i)));
+			}
+			Assert.assertNotNull(lazyload(parents.get(4)));
+			for (Parent p : parents) {
+				assertChildren(p.getId(), p.getChildren());
+			}
+		} finally {
+			ORMConfig.getInstance().setLazyLoadBatchSize(1);
+		}
+	}
+
+	@Test
+	public void testNoBatch() throws SQLException {
+		List<Parent> parents = select();
+		assertChildren(parents.get(3).getId(), parents.get(3).getChildren());
+		Assert.assertNull(lazyload(parents.get(3)));
+		Assert.assertNotNull(lazyload(parents.get(2)));
+		Assert.assertNotNull(lazyload(parents.get(4)));
+		for (Parent p : parents) {
+			assertChildren(p.getId(), p.getChildren());
+		}
+	}
+
+	@Test
+	public void testAnnotationOverride() throws SQLException {
+		// 关系上的batchSize覆盖全局配置
+		ORMConfig.getInstance().setLazyLoadBatchSize(100);
+		try {
+			Query<Limited> query = QueryBuilder.create(Limited.class);
+			query.orderByAsc(Limited.Field.id);
+			List<Limited> parents = db.select(query);
+			Assert.assertEquals(4, parents.get(4).getChildren().size());
+			// 从尚未加载的第一个对象开始凑满一批
+			Assert.assertNull(lazyload(parents.get(0)));
+			Assert.assertNotNull(lazyload(parents.get(1)));
+			Assert.assertNotNull(lazyload(parents.get(5)));
+			Assert.assertEquals(1, parents.get(1).getChildren().size());
+			Assert.assertNull(lazyload(parents.get(2)));
+			Assert.assertNotNull(lazyload(parents.get(3)));
+			for (Limited p : parents) {
+				Assert.assertEquals(p.getId(), p.getChildren().size());
+			}
+		} finally {
+			ORMConfig.getInstance().setLazyLoadBatchSize(1);
+		}
+	}
+
+	private List<Parent> select() throws SQLException {
+		Query<Parent> query = QueryBuilder.create(Parent.class);
+		query.orderByAsc(Parent.Field.id);
+		return db.select(query);
+	}
+
+	/*
+	 * 测试类的方法签名中不能出现实体类，否则JUnit反射时会提前加载未增强的实体类
+	 */
+	private static ILazyLoadContext lazyload(Object obj) {
+		return ((DataObject) obj).lazyload;
+	}
+
+	private static void assertChildren(int id, List<Child> children) {
+		Assert.assertEquals(id, children.size());
+		for (Child c : children) {
+			Assert.assertEquals(id, c.getParentId());
+			Assert.assertTrue(c.getName().startsWith("child" + id + "_"));
+		}
+	}
+
+	@Entity
+	@Table(name = "LAZY_BATCH_PARENT")
+	public static class Parent extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+
+		@OneToMany(targetEntity = Child.class)
+		@JoinColumn(name = "id", referencedColumnName = "parentId")
+		private List<Child> children;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public List<Child> getChildren() {
+			return children;
+		}
+
+		public void setChildren(List<Child> children) {
+			this.children = children;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name
+		}
+	}
+
+	@Entity
+	@Table(name = "LAZY_BATCH_PARENT")
+	public static class Limited extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+
+		@OneToMany(targetEntity = Child.class)
+		@JoinColumn(name = "id", referencedColumnName = "parentId")
+		@JoinDescription(batchSize = 2)
+		private List<Child> children;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public List<Child> getChildren() {
+			return children;
+		}
+
+		public void setChildren(List<Child> children) {
+			this.children = children;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name
+		}
+	}
+
+	@Entity
+	@Table(name = "LAZY_BATCH_CHILD")
+	public static class Child extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		// 与Parent.id类型不同
+		private long parentId;
+		private String name;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public long getParentId() {
+			return parentId;
+		}
+
+		public void setParentId(long parentId) {
+			this.parentId = parentId;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, parentId, name
+		}
+	}
+}
@@ -151,7 +151,7 @@ public class SequenceKeyHolderTest {
 	private long getNextSequenceValue(Sequence holder) throws SQLException {
 		long next = holder.next();
 		System.out.println("next value of ".concat(SEQ_NAME).concat("=") + next);
-		Queue cacheQueue = (Queue) BeanUtils.getFieldValue(holder, "cache");
+		Queue cacheQueue = (Queue) BeanUtils.getFieldValue(holder, "ranges");
 		System.out.println("cache: " + ArrayUtils.toString(cacheQueue.toArray()));
 		return next;
 	}
@@ -0,0 +1,107 @@
+package jef.database.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.database.DataObject;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+/**
+ * 结果被删除、过期或清除后，主键记录随之去掉，不会无限增长
+ */
+public class DimCachePkIndexTest {
+	@BeforeClass
+	public static void setUp() {
+		// 必须在类加载前增强，因此不能使用Item.class
+		new EntityEnhancer().enhanceClass("jef.database.cache.DimCachePkIndexTest$Item");
+	}
+
+	@Test
+	public void testRemove() {
+		DimCache dc = new DimCacheImpl();
+		dc.trackPrimaryKeys();
+		put(dc, Arrays.asList("A"), Arrays.asList(new Item(1), new Item(2)));
+		put(dc, Arrays.asList("B"), Arrays.asList(new Item(1)));
+		Assert.assertEquals(2, dc.indexSize());
+
+		dc.remove(Arrays.asList("A"));
+		Assert.assertEquals(1, dc.indexSize());
+		dc.remove(Arrays.asList("B"));
+		Assert.assertEquals(0, dc.indexSize());
+	}
+
+	@Test
+	public void testExpire() {
+		final AtomicLong nanos = new AtomicLong();
+		DimCacheExpImpl dc = new DimCacheExpImpl(10, new Ticker() {
+			public long read() {
+				return nanos.get();
+			}
+		});
+		dc.trackPrimaryKeys();
+		put(dc, Arrays.asList("A"), Arrays.asList(new Item(1), new Item(2)));
+		Assert.assertEquals(2, dc.indexSize());
+
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(11));
+		dc.cleanUp();
+		Assert.assertNull(dc.load(Arrays.asList("A")));
+		Assert.assertEquals(0, dc.indexSize());
+
+		put(dc, Arrays.asList("A"), Arrays.asList(new Item(1)));
+		put(dc, Arrays.asList("B"), Arrays.asList(new Item(3)));
+		dc.remove(Arrays.asList("A"));
+		Assert.assertEquals(1, dc.indexSize());
+		// 替换的结果不再含有的主键也要去掉
+		put(dc, Arrays.asList("B"), Collections.<Item> emptyList());
+		Assert.assertEquals(0, dc.indexSize());
+	}
+
+	/*
+	 * 和CacheImpl一样先放入结果，再记录主键
+	 */
+	private static void put(DimCache dc, List<?> params, List<?> result) {
+		dc.put(params, result);
+		dc.index(params, result);
+	}
+
+	@Entity
+	@Table(name = "DIM_CACHE_PK_INDEX_ITEM")
+	public static class Item extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+
+		public Item() {
+		}
+
+		public Item(int id) {
+			this.id = id;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public enum Field implements jef.database.Field {
+			id
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package jef.database.innerpool;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jef.database.jdbc.statement.DelegatingStatement;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 连接上的PreparedStatement缓存
+ */
+public class StatementCacheTest {
+	private static Connection raw;
+
+	@BeforeClass
+	public static void setup() throws SQLException {
+		raw = DriverManager.getConnection("jdbc:h2:mem:stmt_cache_test", "sa", "");
+		Statement st = raw.createStatement();
+		st.executeUpdate("create table t_cache (id int, name varchar(20))");
+		st.executeUpdate("insert into t_cache values (1,'a')");
+		st.executeUpdate("insert into t_cache values (2,'b')");
+		st.close();
+	}
+
+	@AfterClass
+	public static void close() throws SQLException {
+		raw.close();
+	}
+
+	@Test
+	public void testReuse() throws SQLException {
+		AtomicLong hits = new AtomicLong();
+		AtomicLong misses = new AtomicLong();
+		SingleConnection conn = new SingleConnection(raw, null, new StatementCache(2, hits, misses));
+		String sql = "select name from t_cache where id=?";
+
+		PreparedStatement st = conn.prepareStatement(sql);
+		Statement physical = ((DelegatingStatement) st).getInnermostDelegate();
+		st.setInt(1, 1);
+		st.setMaxRows(1);
+		ResultSet rs = st.executeQuery();
+		Assert.assertTrue(rs.next());
+		Assert.assertEquals("a", rs.getString(1));
+		st.close();
+		Assert.assertTrue(st.isClosed());
+		Assert.assertFalse(physical.isClosed());
+		Assert.assertTrue(rs.isClosed());
+
+		PreparedStatement st2 = conn.prepareStatement(sql);
+		Assert.assertSame(physical, ((DelegatingStatement) st2).getInnermostDelegate());
+		Assert.assertFalse(st2.isClosed());
+		// 属性已恢复
+		Assert.assertEquals(0, st2.getMaxRows());
+		st2.setInt(1, 2);
+		rs = st2.executeQuery();
+		Assert.assertTrue(rs.next());
+		Assert.assertEquals("b", rs.getString(1));
+		rs.close();
+
+		// 使用中的语句不会被再次取出
+		PreparedStatement st3 = conn.prepareStatement(sql);
+		Assert.assertNotSame(physical, ((DelegatingStatement) st3).getInnermostDelegate());
+		st2.close();
+		st3.close();
+		Assert.assertEquals(1, hits.get());
+		Assert.assertEquals(2, misses.get());
+
+		// 不同的自增键模式使用不同的语句
+		PreparedStatement st4 = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+		Assert.assertNotSame(physical, ((DelegatingStatement) st4).getInnermostDelegate());
+		st4.close();
+	}
+
+	@Test
+	public void testEvictAndClear() throws SQLException {
+		StatementCache cache = new StatementCache(2, new AtomicLong(), new AtomicLong());
+		SingleConnection conn = new SingleConnection(raw, null, cache);
+		PreparedStatement[] sts = new PreparedStatement[3];
+		for (int i = 0; i < sts.length; i++) {
+			sts[i] = conn.prepareStatement("select " + i + " from t_cache");
+		}
+		Statement first = ((DelegatingStatement) sts[0]).getInnermostDelegate();
+		Statement last = ((DelegatingStatement) sts[2]).getInnermostDelegate();
+		for (PreparedStatement st : sts) {
+			st.close();
+		}
+		Assert.assertEquals(2, cache.size());
+		// 最久未使用的被关闭
+		Assert.assertTrue(first.isClosed());
+		Assert.assertFalse(last.isClosed());
+
+		// 清除时关闭缓存中的全部语句，之前取出的语句也不再放回
+		PreparedStatement inUse = conn.prepareStatement("select 1 from t_cache");
+		Statement inUsePhysical = ((DelegatingStatement) inUse).getInnermostDelegate();
+		cache.clear();
+		Assert.assertTrue(last.isClosed());
+		inUse.close();
+		Assert.assertTrue(inUsePhysical.isClosed());
+		Assert.assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,82 @@
+package jef.database.jdbc.result;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import jef.database.wrapper.clause.GroupByItem;
+import jef.database.wrapper.clause.GroupFunctionType;
+import jef.database.wrapper.clause.InMemoryGroupByHaving;
+import jef.database.wrapper.clause.InMemoryOrderBy;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 多库分组查询的部分聚合合并
+ */
+public class InMemoryGroupByTest {
+	private static Connection conn;
+
+	// 每个库的数据 {dept, salary}
+	private static final int[][][] SHARDS = { { { 1, 10 }, { 1, 20 }, { 2, 5 } }, { { 1, 30 }, { 2, 7 }, { 2, 9 }, { 2, 11 } }, { { 3, 100 } } };
+
+	@BeforeClass
+	public static void setup() throws SQLException {
+		conn = DriverManager.getConnection("jdbc:h2:mem:group_test", "sa", "");
+		Statement st = conn.createStatement();
+		for (int i = 0; i < SHARDS.length; i++) {
+			st.executeUpdate("create table emp_" + i + " (dept int, salary int)");
+			for (int[] row : SHARDS[i]) {
+				st.executeUpdate("insert into emp_" + i + " values (" + row[0] + "," + row[1] + ")");
+			}
+		}
+		st.close();
+	}
+
+	@AfterClass
+	public static void close() throws SQLException {
+		conn.close();
+	}
+
+	/**
+	 * AVG按SUM+COUNT合并，结果与所有样本的平均值一致，辅助的COUNT列不出现在结果中
+	 */
+	@Test
+	public void testPartialAggregate() throws SQLException {
+		ResultSetContainer container = new ResultSetContainer(false);
+		for (int i = 0; i < SHARDS.length; i++) {
+			Statement st = conn.createStatement();
+			container.add(new ResultSetHolder(null, st, st.executeQuery("select dept, count(*) cnt, sum(salary) total, min(salary) lo, max(salary) hi, sum(salary) av, count(salary) avg__cnt0 from emp_" + i + " group by dept")));
+		}
+		GroupByItem avg = new GroupByItem(5, GroupFunctionType.AVG, "AV");
+		avg.setCountIndex(6);
+		container.setInMemoryGroups(new InMemoryGroupByHaving(Arrays.asList(new GroupByItem(0, GroupFunctionType.GROUP, "DEPT")), Arrays.asList(new GroupByItem(1, GroupFunctionType.COUNT, "CNT"), new GroupByItem(2, GroupFunctionType.SUM, "TOTAL"), new GroupByItem(3, GroupFunctionType.MIN, "LO"), new GroupByItem(4, GroupFunctionType.MAX, "HI"), avg)));
+		container.setInMemoryOrder(new InMemoryOrderBy(new int[] { 1 }, new boolean[] { true }));
+		IResultSet rs = container.toProperResultSet(null);
+		Assert.assertEquals(6, rs.getMetaData().getColumnCount());
+
+		Assert.assertTrue(rs.next());
+		assertRow(rs, 1, 3, 60, 10, 30, 20.0);
+		Assert.assertTrue(rs.next());
+		// 各库平均值为5和9，所有样本的平均值为8
+		assertRow(rs, 2, 4, 32, 5, 11, 8.0);
+		Assert.assertTrue(rs.next());
+		assertRow(rs, 3, 1, 100, 100, 100, 100.0);
+		Assert.assertFalse(rs.next());
+		container.close();
+	}
+
+	private void assertRow(IResultSet rs, int dept, long count, long total, int min, int max, double avg) throws SQLException {
+		Assert.assertEquals(dept, rs.getInt(1));
+		Assert.assertEquals(count, rs.getLong(2));
+		Assert.assertEquals(total, rs.getLong(3));
+		Assert.assertEquals(min, rs.getInt(4));
+		Assert.assertEquals(max, rs.getInt(5));
+		Assert.assertEquals(avg, rs.getDouble(6), 0.0001);
+	}
+}
@@ -0,0 +1,91 @@
+package jef.database.jdbc.result;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jef.database.wrapper.clause.InMemoryOrderBy;
+import jef.database.wrapper.clause.InMemoryPaging;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 多库排序结果集的流式归并
+ */
+public class ReorderResultSetTest {
+	private static Connection conn;
+
+	private static final int[][] SHARDS = { { 1, 4, 7, 10 }, { 2, 5, 8 }, { 3, 6, 9 } };
+
+	@BeforeClass
+	public static void setup() throws SQLException {
+		conn = DriverManager.getConnection("jdbc:h2:mem:reorder_test", "sa", "");
+		Statement st = conn.createStatement();
+		for (int i = 0; i < SHARDS.length; i++) {
+			st.executeUpdate("create table shard_" + i + " (id int, name varchar(20))");
+			for (int id : SHARDS[i]) {
+				st.executeUpdate("insert into shard_" + i + " values (" + id + ",'n" + id + "')");
+			}
+		}
+		st.close();
+	}
+
+	@AfterClass
+	public static void close() throws SQLException {
+		conn.close();
+	}
+
+	@Test
+	public void testMerge() throws SQLException {
+		ResultSetContainer container = new ResultSetContainer(false);
+		openShards(container, "asc");
+		container.setInMemoryOrder(new InMemoryOrderBy(new int[] { 1 }, new boolean[] { true }));
+		IResultSet rs = container.toProperResultSet(null);
+		Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), readIds(rs));
+		container.close();
+	}
+
+	@Test
+	public void testMergeWithPage() throws SQLException {
+		ResultSetContainer container = new ResultSetContainer(false);
+		List<ResultSet> raw = openShards(container, "desc");
+		container.setInMemoryOrder(new InMemoryOrderBy(new int[] { 1 }, new boolean[] { false }));
+		container.setInMemoryPage(new InMemoryPaging(2, 3));
+		IResultSet rs = container.toProperResultSet(null);
+		Assert.assertEquals(Arrays.asList(8, 7, 6), readIds(rs));
+
+		// 凑足offset+limit条记录后，其余库的游标已经提前关闭
+		Assert.assertTrue(raw.get(0).isClosed());
+		Assert.assertTrue(raw.get(1).isClosed());
+		Assert.assertFalse(raw.get(2).isClosed());
+		container.close();
+		Assert.assertTrue(raw.get(2).isClosed());
+	}
+
+	private List<ResultSet> openShards(ResultSetContainer container, String order) throws SQLException {
+		List<ResultSet> raw = new ArrayList<ResultSet>();
+		for (int i = 0; i < SHARDS.length; i++) {
+			Statement st = conn.createStatement();
+			ResultSet rs = st.executeQuery("select id, name from shard_" + i + " order by id " + order);
+			raw.add(rs);
+			container.add(new ResultSetHolder(null, st, rs));
+		}
+		return raw;
+	}
+
+	private List<Integer> readIds(IResultSet rs) throws SQLException {
+		List<Integer> ids = new ArrayList<Integer>();
+		while (rs.next()) {
+			ids.add(rs.getInt(1));
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,161 @@
+package jef.database.jpa;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.database.DataObject;
+import jef.database.DbClient;
+import jef.database.DbClientBuilder;
+import jef.database.query.QueryBuilder;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * JPA事务中延迟写入，flush和提交时批量执行
+ */
+public class WriteBehindTest {
+	private static DbClient db;
+	private static JefEntityManagerFactory emf;
+
+	@BeforeClass
+	public static void setUp() throws SQLException {
+		// 必须在类加载前增强，因此不能使用Item.class
+		new EntityEnhancer().enhanceClass("jef.database.jpa.WriteBehindTest$Item");
+		db = new DbClientBuilder("jdbc:h2:mem:write_behind", "sa", "").build();
+		db.createTable(Item.class);
+		emf = new JefEntityManagerFactory(db);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		db.close();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testPersistMergeRemove() throws SQLException {
+		db.truncate(Item.class);
+		JefEntityManager em = newEntityManager();
+		em.getTransaction().begin();
+		List<Item> items = items(500);
+		for (Item item : items) {
+			em.persist(item);
+		}
+		// 尚未写入
+		Assert.assertEquals(0, db.count(QueryBuilder.create(Item.class)));
+		em.getTransaction().commit();
+		Assert.assertEquals(500, db.count(QueryBuilder.create(Item.class)));
+		// 自增主键回写
+		Set<Integer> ids = new HashSet<Integer>();
+		for (Item item : items) {
+			ids.add(item.getId());
+		}
+		Assert.assertEquals(500, ids.size());
+
+		em = newEntityManager();
+		em.getTransaction().begin();
+		for (int i = 0; i < 10; i++) {
+			Item item = new Item();
+			item.setId(items.get(i).getId());
+			item.setName("changed" + i);
+			em.merge(item);
+		}
+		for (int i = 10; i < 20; i++) {
+			em.remove(items.get(i));
+		}
+		// 查询前自动写入
+		Item loaded = em.find(Item.class, items.get(3).getId());
+		Assert.assertEquals("changed3", loaded.getName());
+		Assert.assertNull(em.find(Item.class, items.get(15).getId()));
+		em.getTransaction().commit();
+		Assert.assertEquals(490, db.count(QueryBuilder.create(Item.class)));
+		Assert.assertEquals("changed9", db.load(Item.class, items.get(9).getId()).getName());
+		Assert.assertEquals("item20", db.load(Item.class, items.get(20).getId()).getName());
+	}
+
+	@Test
+	public void testRollback() throws SQLException {
+		db.truncate(Item.class);
+		JefEntityManager em = newEntityManager();
+		em.getTransaction().begin();
+		for (Object item : items(5)) {
+			em.persist(item);
+		}
+		em.getTransaction().rollback();
+		em.flush();
+		Assert.assertEquals(0, db.count(QueryBuilder.create(Item.class)));
+	}
+
+	@Test
+	public void testWithoutTransaction() throws SQLException {
+		db.truncate(Item.class);
+		JefEntityManager em = newEntityManager();
+		// 没有事务时立即写入
+		em.persist(items(1).get(0));
+		Assert.assertEquals(1, db.count(QueryBuilder.create(Item.class)));
+	}
+
+	private JefEntityManager newEntityManager() {
+		JefEntityManager em = (JefEntityManager) emf.createEntityManager();
+		em.setWriteBehind(true);
+		return em;
+	}
+
+	/*
+	 * 测试类的方法签名中不能出现实体类，否则JUnit反射时会提前加载未增强的实体类
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static List items(int count) {
+		List<Item> items = new ArrayList<Item>(count);
+		for (int i = 0; i < count; i++) {
+			Item item = new Item();
+			item.setName("item" + i);
+			items.add(item);
+		}
+		return items;
+	}
+
+	@Entity
+	@Table(name = "WRITE_BEHIND_ITEM")
+	public static class Item extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		@GeneratedValue(strategy = GenerationType.IDENTITY)
+		private int id;
+		private String name;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package jef.database.jsqlparser;
+
+import java.io.StringReader;
+
+import jef.common.log.LogUtil;
+import jef.database.jsqlparser.parser.ParseException;
+import jef.database.jsqlparser.parser.StSqlParser;
+import jef.database.jsqlparser.visitor.Statement;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 每次重新解析和命中解析缓存(取副本/共享语法树)的开销对比
+ */
+public class SqlParseBenchmarkTest {
+	private static final String[] SQLS = {
+			"select t.id, t.name, count(*) as cnt from emp t left join dept d on t.dept_id=d.id where t.id in (?,?,?) and t.name like ? and d.code = 'X' group by t.id, t.name having count(*)>1 order by t.id desc",
+			"insert into emp(id, name, dept_id, created) values(?, ?, ?, ?)",
+			"update emp set name=?, dept_id=? where id=? and version=?",
+			"delete from emp where dept_id in (select id from dept where code like ?)" };
+	private static final int LOOP = 2000;
+	private static final int ROUNDS = 3;
+
+	@Test
+	public void testCost() throws ParseException {
+		SqlParseCache.clear();
+		String[] expected = new String[SQLS.length];
+		for (int i = 0; i < SQLS.length; i++) {
+			expected[i] = parse(SQLS[i]).toString();
+		}
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < LOOP; i++) {
+				for (int j = 0; j < SQLS.length; j++) {
+					Assert.assertNotNull(parse(SQLS[j]));
+				}
+			}
+			long cold = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < LOOP; i++) {
+				for (int j = 0; j < SQLS.length; j++) {
+					Assert.assertNotNull(SqlParseCache.copyNative(SQLS[j]));
+				}
+			}
+			long copy = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < LOOP; i++) {
+				for (int j = 0; j < SQLS.length; j++) {
+					Assert.assertNotNull(SqlParseCache.getNative(SQLS[j]));
+				}
+			}
+			long shared = System.nanoTime() - start;
+
+			int count = LOOP * SQLS.length;
+			LogUtil.info("round " + round + ": parse " + cold / count + " ns, cached copy " + copy / count + " ns, cached shared " + shared / count + " ns");
+		}
+		// 每条语句只解析过一次，命中缓存得到的语法树和重新解析的结果相同
+		Assert.assertEquals(SQLS.length, SqlParseCache.size());
+		for (int i = 0; i < SQLS.length; i++) {
+			Assert.assertEquals(expected[i], SqlParseCache.copyNative(SQLS[i]).toString());
+			Assert.assertEquals(expected[i], SqlParseCache.getNative(SQLS[i]).toString());
+		}
+	}
+
+	private static Statement parse(String sql) throws ParseException {
+		return new StSqlParser(new StringReader(sql)).Statement();
+	}
+}
@@ -0,0 +1,67 @@
+package jef.database.jsqlparser;
+
+import java.io.StringReader;
+
+import jef.database.jsqlparser.expression.Table;
+import jef.database.jsqlparser.parser.ParseException;
+import jef.database.jsqlparser.parser.StSqlParser;
+import jef.database.jsqlparser.visitor.Statement;
+import jef.database.jsqlparser.visitor.VisitorAdapter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlParseCacheTest {
+	private static final String SQL = "select t.id, t.name, count(*) as cnt from emp t left join dept d on t.dept_id=d.id where t.id in (?,?,?) and t.name like ? and d.code = 'X' group by t.id, t.name having count(*)>1 order by t.id desc";
+
+	@Test
+	public void testCopyOnRewrite() throws ParseException {
+		Statement shared = SqlParseCache.getNative(SQL);
+		Assert.assertSame(shared, SqlParseCache.getNative(SQL));
+		String origin = shared.toString();
+
+		Statement copy = SqlParseCache.copyNative(SQL);
+		Assert.assertNotSame(shared, copy);
+		Assert.assertEquals(origin, copy.toString());
+		copy.accept(new VisitorAdapter() {
+			@Override
+			public void visit(Table table) {
+				table.setName(table.getName() + "_1");
+			}
+		});
+		Assert.assertTrue(copy.toString().contains("emp_1"));
+		// 改写副本不影响缓存中的语法树
+		Assert.assertEquals(origin, shared.toString());
+		Assert.assertEquals(origin, SqlParseCache.copyNative(SQL).toString());
+	}
+
+	@Test
+	public void testGrammar() throws ParseException {
+		String sql = "select * from person where id=1";
+		Assert.assertNotSame(SqlParseCache.getJpql(sql), SqlParseCache.getNative(sql));
+	}
+
+	@Test
+	public void testParseError() {
+		for (int i = 0; i < 2; i++) {
+			try {
+				SqlParseCache.getNative("select from where");
+				Assert.fail();
+			} catch (ParseException e) {
+				Assert.assertNotNull(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * 从缓存中取得的副本和重新解析的结果相同
+	 */
+	@Test
+	public void testCopySameAsParse() throws ParseException {
+		String parsed = new StSqlParser(new StringReader(SQL)).Statement().toString();
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(parsed, SqlParseCache.copyNative(SQL).toString());
+		}
+		Assert.assertEquals(parsed, SqlParseCache.getNative(SQL).toString());
+	}
+}
@@ -0,0 +1,165 @@
+package jef.database.pooltest;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import jef.common.log.LogUtil;
+import jef.database.DbUtils;
+import jef.database.ORMConfig;
+import jef.database.innerpool.IConnection;
+import jef.database.innerpool.IUserManagedPool;
+import jef.database.innerpool.PoolService;
+import jef.tools.ThreadUtils;
+
+import org.easyframe.enterprise.spring.TransactionMode;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 内嵌连接池的取还、等待和超时，以及两种实现在多线程争用下的吞吐量对比
+ */
+public class PoolEngineBenchmarkTest {
+	private static final int THREADS = 32;
+	private static final int LOOPS = 2000;
+
+	@After
+	public void reset() {
+		ORMConfig.getInstance().setPoolEngine("concurrent");
+		ORMConfig.getInstance().setPoolAcquireTimeout(5000);
+	}
+
+	@Test
+	public void testReentrant() throws SQLException {
+		IUserManagedPool pool = newPool("pool_reentrant", 1, 5);
+		try {
+			IConnection conn = pool.poll();
+			Assert.assertSame(conn, pool.poll());
+			Object tx = new Object();
+			IConnection txConn = pool.getConnection(tx);
+			Assert.assertNotSame(conn, txConn);
+			Assert.assertSame(txConn, pool.getConnection(tx));
+			conn.close();
+			conn.close();
+			txConn.close();
+			txConn.close();
+			Assert.assertEquals(0, pool.getStatus().getUsedCount());
+			// 线程再次取连接时取回上次的连接
+			Assert.assertSame(conn, pool.poll());
+			conn.close();
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testWarmUpAndTimeout() throws SQLException {
+		IUserManagedPool pool = newPool("pool_timeout", 2, 2);
+		try {
+			for (int i = 0; i < 50 && pool.getStatus().getCurrentSize() < 2; i++) {
+				ThreadUtils.doSleep(20);
+			}
+			Assert.assertEquals(2, pool.getStatus().getCurrentSize());
+
+			pool.getConnection("a");
+			pool.getConnection("b");
+			ORMConfig.getInstance().setPoolAcquireTimeout(200);
+			long start = System.currentTimeMillis();
+			try {
+				pool.getConnection("c");
+				Assert.fail();
+			} catch (SQLException e) {
+				Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+			}
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testHandoff() throws Exception {
+		final IUserManagedPool pool = newPool("pool_handoff", 1, 1);
+		try {
+			IConnection conn = pool.getConnection("a");
+			final AtomicReference<Object> got = new AtomicReference<Object>();
+			final CountDownLatch done = new CountDownLatch(1);
+			new Thread() {
+				public void run() {
+					try {
+						got.set(pool.getConnection("b"));
+					} catch (SQLException e) {
+						got.set(e);
+					}
+					done.countDown();
+				}
+			}.start();
+			ThreadUtils.doSleep(100);
+			conn.close();
+			done.await();
+			// 归还的连接交给等待中的线程
+			Assert.assertSame(conn, got.get());
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testContention() throws Exception {
+		long queue = run("queue");
+		long concurrent = run("concurrent");
+		LogUtil.show("Pool contention " + THREADS + " threads x " + LOOPS + ": queue " + queue + "ms, concurrent " + concurrent + "ms");
+	}
+
+	/*
+	 * 线程数多于连接数，每次取连接执行一条查询后归还
+	 */
+	private long run(String engine) throws Exception {
+		ORMConfig.getInstance().setPoolEngine(engine);
+		final IUserManagedPool pool = newPool("pool_contention_" + engine, 4, 8);
+		try {
+			final AtomicInteger errors = new AtomicInteger();
+			final CountDownLatch done = new CountDownLatch(THREADS);
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < THREADS; i++) {
+				new Thread() {
+					public void run() {
+						for (int j = 0; j < LOOPS; j++) {
+							try {
+								IConnection conn = pool.poll();
+								try {
+									Statement st = conn.createStatement();
+									ResultSet rs = st.executeQuery("select 1");
+									rs.next();
+									DbUtils.close(rs);
+									DbUtils.close(st);
+								} finally {
+									conn.close();
+								}
+							} catch (SQLException e) {
+								errors.incrementAndGet();
+							}
+						}
+						done.countDown();
+					}
+				}.start();
+			}
+			done.await();
+			Assert.assertEquals(0, errors.get());
+			Assert.assertEquals(0, pool.getStatus().getUsedCount());
+			return System.currentTimeMillis() - start;
+		} finally {
+			pool.close();
+		}
+	}
+
+	private static IUserManagedPool newPool(String name, int min, int max) {
+		DataSource ds = DbUtils.createSimpleDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+		return PoolService.getPool(ds, min, max, TransactionMode.JPA);
+	}
+}
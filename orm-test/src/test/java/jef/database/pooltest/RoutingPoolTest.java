@@ -0,0 +1,139 @@
+package jef.database.pooltest;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import jef.common.pool.PoolStatus;
+import jef.database.DbUtils;
+import jef.database.datasource.MapDataSourceLookup;
+import jef.database.datasource.RoutingDataSource;
+import jef.database.innerpool.IRoutingConnectionPool;
+import jef.database.innerpool.IUserManagedPool;
+import jef.database.innerpool.PoolService;
+
+import org.easyframe.enterprise.spring.TransactionMode;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 内嵌多连接池：按数据源建立子池，子池在首次使用时创建，状态中包含各数据源的使用情况
+ */
+public class RoutingPoolTest {
+
+	@Test
+	public void testSitePools() throws SQLException {
+		Map<String, DataSource> map = new HashMap<String, DataSource>();
+		map.put("site1", DbUtils.createSimpleDataSource("jdbc:h2:mem:routing_site1;DB_CLOSE_DELAY=-1", "sa", ""));
+		map.put("site2", DbUtils.createSimpleDataSource("jdbc:h2:mem:routing_site2;DB_CLOSE_DELAY=-1", "sa", ""));
+		RoutingDataSource rds = new RoutingDataSource(new MapDataSourceLookup(map));
+
+		IUserManagedPool pool = PoolService.getPool(rds, 1, 2, TransactionMode.JPA);
+		Assert.assertFalse(pool.isDummy());
+		IRoutingConnectionPool routing = (IRoutingConnectionPool) pool;
+		try {
+			Assert.assertTrue(pool.getStatus().getSites().isEmpty());
+
+			Connection c1 = routing.getCachedConnection("site1");
+			Connection c2 = routing.getCachedConnection("site1");
+			Assert.assertNotSame(c1, c2);
+			// 只有用到的数据源才建立子池
+			PoolStatus status = pool.getStatus();
+			Assert.assertEquals(1, status.getSites().size());
+			Assert.assertEquals(2, status.getSites().get("site1").getUsedCount());
+			Assert.assertEquals(2, status.getUsedCount());
+
+			routing.putback("site1", c1);
+			routing.putback("site1", c2);
+			Assert.assertEquals(0, pool.getStatus().getUsedCount());
+			// 归还的连接留在子池中，不会关闭
+			Assert.assertFalse(c1.isClosed());
+			Connection c3 = routing.getCachedConnection("site1");
+			Assert.assertTrue(c3 == c1 || c3 == c2);
+			routing.putback("site1", c3);
+
+			Connection c4 = routing.getCachedConnection("site2");
+			status = pool.getStatus();
+			Assert.assertEquals(2, status.getSites().size());
+			Assert.assertEquals(1, status.getSites().get("site2").getUsedCount());
+			Assert.assertEquals(0, status.getSites().get("site1").getUsedCount());
+			Assert.assertEquals(4, status.getMaxSize());
+			routing.putback("site2", c4);
+		} finally {
+			pool.close();
+		}
+	}
+
+	/**
+	 * 使用者修改的连接设置在归还时恢复，下次取到的连接仍是创建时的设置
+	 */
+	@Test
+	public void testRestoreDefaults() throws SQLException {
+		Map<String, DataSource> map = new HashMap<String, DataSource>();
+		map.put("site1", DbUtils.createSimpleDataSource("jdbc:h2:mem:routing_defaults;DB_CLOSE_DELAY=-1", "sa", ""));
+		IRoutingConnectionPool pool = (IRoutingConnectionPool) PoolService.getPool(new RoutingDataSource(new MapDataSourceLookup(map)), 1, 1, TransactionMode.JPA);
+		try {
+			Connection c1 = pool.getCachedConnection("site1");
+			boolean readOnly = c1.isReadOnly();
+			int isolation = c1.getTransactionIsolation();
+			Assert.assertTrue(c1.getAutoCommit());
+			c1.setAutoCommit(false);
+			c1.setReadOnly(!readOnly);
+			c1.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+			pool.putback("site1", c1);
+
+			Connection c2 = pool.getCachedConnection("site1");
+			Assert.assertSame(c1, c2);
+			Assert.assertTrue(c2.getAutoCommit());
+			Assert.assertEquals(readOnly, c2.isReadOnly());
+			Assert.assertEquals(isolation, c2.getTransactionIsolation());
+			pool.putback("site1", c2);
+		} finally {
+			pool.close();
+		}
+	}
+
+	/**
+	 * 各数据源的子池共用后台线程，线程数不随数据源增加
+	 */
+	@Test
+	public void testSharedWorker() throws SQLException {
+		Map<String, DataSource> map = new HashMap<String, DataSource>();
+		for (int i = 0; i < 8; i++) {
+			map.put("site" + i, DbUtils.createSimpleDataSource("jdbc:h2:mem:routing_worker" + i + ";DB_CLOSE_DELAY=-1", "sa", ""));
+		}
+		// 其他测试中的连接池的后台线程
+		Set<String> others = workers();
+		IRoutingConnectionPool pool = (IRoutingConnectionPool) PoolService.getPool(new RoutingDataSource(new MapDataSourceLookup(map)), 1, 2, TransactionMode.JPA);
+		try {
+			Set<String> workers = new HashSet<String>();
+			for (String site : map.keySet()) {
+				pool.putback(site, pool.getCachedConnection(site));
+				workers.addAll(workers());
+			}
+			workers.removeAll(others);
+			Assert.assertEquals(8, pool.getStatus().getSites().size());
+			Assert.assertEquals(1, workers.size());
+		} finally {
+			pool.close();
+		}
+	}
+
+	/*
+	 * 后台线程名去掉序号，即所属的线程组
+	 */
+	private static Set<String> workers() {
+		Set<String> result = new HashSet<String>();
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.getName().startsWith("thread-JEFPoolWorker-")) {
+				result.add(t.getName().substring(0, t.getName().lastIndexOf('-')));
+			}
+		}
+		return result;
+	}
+}
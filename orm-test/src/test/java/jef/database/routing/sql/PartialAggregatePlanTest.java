@@ -0,0 +1,158 @@
+package jef.database.routing.sql;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import jef.database.jdbc.result.IResultSet;
+import jef.database.jdbc.result.ResultSetContainer;
+import jef.database.jsqlparser.parser.ParseException;
+import jef.database.jsqlparser.parser.StSqlParser;
+import jef.database.jsqlparser.statement.select.PlainSelect;
+import jef.database.jsqlparser.statement.select.Select;
+import jef.database.jsqlparser.visitor.Expression;
+import jef.database.wrapper.clause.InMemoryOrderBy;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 跨库分组时各库上执行的SQL，以及合并后计算的AVG和having
+ */
+public class PartialAggregatePlanTest {
+	private static Connection conn;
+
+	// 每个库的数据 {dept, salary}
+	private static final int[][][] SHARDS = { { { 1, 10 }, { 1, 20 }, { 2, 5 } }, { { 1, 30 }, { 2, 7 }, { 2, 9 }, { 2, 11 } }, { { 3, 100 } } };
+
+	@BeforeClass
+	public static void setup() throws SQLException {
+		conn = DriverManager.getConnection("jdbc:h2:mem:partial_aggregate_test", "sa", "");
+		Statement st = conn.createStatement();
+		for (int i = 0; i < SHARDS.length; i++) {
+			st.executeUpdate("create table emp_" + i + " (dept int, salary int)");
+			for (int[] row : SHARDS[i]) {
+				st.executeUpdate("insert into emp_" + i + " values (" + row[0] + "," + row[1] + ")");
+			}
+		}
+		st.close();
+	}
+
+	@AfterClass
+	public static void close() throws SQLException {
+		conn.close();
+	}
+
+	/**
+	 * 没有别名的AVG也拆分为SUM+COUNT，列名恢复为原来的写法；having中不在select里的聚合函数作为辅助列追加
+	 */
+	@Test
+	public void testAvgAndHaving() throws Exception {
+		IResultSet rs = query("select dept, avg(salary), sum(salary) total from emp group by dept having count(*) > ? and avg(salary) >= 8", 1);
+		Assert.assertEquals(3, rs.getColumns().length());
+		Assert.assertEquals("AVG(SALARY)", rs.getColumns().getN(1).getName().toUpperCase());
+
+		Assert.assertTrue(rs.next());
+		Assert.assertEquals(1, rs.getInt(1));
+		Assert.assertEquals(20.0, rs.getDouble(2), 0.0001);
+		Assert.assertEquals(60, rs.getLong(3));
+		Assert.assertTrue(rs.next());
+		// 各库平均值为5和9，所有样本的平均值为8
+		Assert.assertEquals(2, rs.getInt(1));
+		Assert.assertEquals(8.0, rs.getDouble(2), 0.0001);
+		Assert.assertEquals(32, rs.getLong(3));
+		// dept 3只有一行，被having过滤
+		Assert.assertFalse(rs.next());
+		rs.close();
+	}
+
+	/**
+	 * having在合并后计算：每个库上dept 1的合计都不超过30，合并后为60
+	 */
+	@Test
+	public void testHavingAfterMerge() throws Exception {
+		IResultSet rs = query("select dept, sum(salary) s from emp where salary > ? group by dept having sum(salary) > ?", 6, 30);
+		Assert.assertEquals(2, rs.getColumns().length());
+		Assert.assertTrue(rs.next());
+		Assert.assertEquals(1, rs.getInt(1));
+		Assert.assertEquals(60, rs.getLong(2));
+		Assert.assertTrue(rs.next());
+		Assert.assertEquals(3, rs.getInt(1));
+		Assert.assertEquals(100, rs.getLong(2));
+		Assert.assertFalse(rs.next());
+		rs.close();
+	}
+
+	@Test
+	public void testShardSql() throws Exception {
+		PartialAggregatePlan plan = plan(parse("select dept, avg(salary) a from emp where salary > ? group by dept having max(salary) < ?"), Arrays.<Object> asList(6, 50));
+		Assert.assertEquals(4, plan.getShardItems().size());
+		Assert.assertEquals("SUM(salary) AS a", plan.getShardItems().get(1).toString());
+		Assert.assertEquals("max(salary) AS having__0", plan.getShardItems().get(2).toString());
+		Assert.assertEquals("COUNT(salary) AS avg__cnt0", plan.getShardItems().get(3).toString());
+		// having中的绑定变量不再传给各库
+		Assert.assertEquals(Arrays.<Object> asList(6), plan.getShardParams(Arrays.<Object> asList(6, 50)));
+	}
+
+	@Test
+	public void testUnsupported() throws Exception {
+		assertUnsupported("select dept, count(distinct salary) c from emp group by dept");
+		assertUnsupported("select dept, sum(salary) s from emp group by dept having sum(salary) > 10 or count(*) > 1");
+		assertUnsupported("select dept, sum(salary) s from emp group by dept having sum(salary) > count(*)");
+	}
+
+	private void assertUnsupported(String sql) throws ParseException {
+		Select select = parse(sql);
+		try {
+			plan(select, Collections.emptyList());
+			Assert.fail(sql);
+		} catch (SQLFeatureNotSupportedException e) {
+			// expected
+		}
+	}
+
+	/*
+	 * 和SelectExecutionPlan一样在每个库上执行改写后的SQL，再在内存中合并，结果按dept排序
+	 */
+	private IResultSet query(String sql, Object... params) throws Exception {
+		Select statement = parse(sql);
+		PlainSelect select = (PlainSelect) statement.getSelectBody();
+		List<Object> values = Arrays.asList(params);
+		PartialAggregatePlan plan = plan(statement, values);
+		Expression having = select.getHaving();
+		select.setSelectItems(plan.getShardItems());
+		select.setHaving(null);
+		String shardSql = select.toString();
+		select.setHaving(having);
+		List<Object> shardParams = plan.getShardParams(values);
+
+		ResultSetContainer container = new ResultSetContainer(false);
+		for (int i = 0; i < SHARDS.length; i++) {
+			PreparedStatement st = conn.prepareStatement(shardSql.replace(" from emp ", " from emp_" + i + " "));
+			for (int j = 0; j < shardParams.size(); j++) {
+				st.setObject(j + 1, shardParams.get(j));
+			}
+			container.add(st.executeQuery(), st, null);
+		}
+		container.setInMemoryGroups(plan.newProcessor());
+		container.setInMemoryOrder(new InMemoryOrderBy(new int[] { 1 }, new boolean[] { true }));
+		return container.toProperResultSet(null);
+	}
+
+	private static PartialAggregatePlan plan(Select select, List<Object> values) throws SQLFeatureNotSupportedException {
+		return new PartialAggregatePlan((PlainSelect) select.getSelectBody(), SqlAnalyzer.reverse(select, values));
+	}
+
+	private static Select parse(String sql) throws ParseException {
+		return (Select) new StSqlParser(new StringReader(sql)).Statement();
+	}
+}
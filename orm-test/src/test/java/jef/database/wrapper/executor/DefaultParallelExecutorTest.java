@@ -0,0 +1,144 @@
+package jef.database.wrapper.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DefaultParallelExecutorTest {
+
+	/**
+	 * 每个数据源上同时执行的任务数不超过限制，其他数据源不受影响
+	 */
+	@Test
+	public void testPermitsPerSite() throws SQLException {
+		DefaultParallelExecutor executor = new DefaultParallelExecutor(8, 2, 0, false);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicInteger done = new AtomicInteger();
+		List<DbTask> tasks = new ArrayList<DbTask>();
+		for (int i = 0; i < 10; i++) {
+			tasks.add(new DbTask("hot") {
+				public void execute() throws SQLException {
+					int n = running.incrementAndGet();
+					int max;
+					while (n > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, n))
+						;
+					sleep(20);
+					running.decrementAndGet();
+					done.incrementAndGet();
+				}
+			});
+		}
+		tasks.add(new DbTask("other") {
+			public void execute() throws SQLException {
+				done.incrementAndGet();
+			}
+		});
+		executor.execute(tasks);
+		Assert.assertEquals(11, done.get());
+		Assert.assertTrue(maxRunning.get() <= 2);
+		Assert.assertEquals(0, executor.getQueueDepth());
+		Assert.assertEquals(11, executor.getExecutedCount());
+		Assert.assertTrue(executor.getMaxWaitMillis() > 0);
+		executor.shutdown();
+	}
+
+	/**
+	 * 超时后取消正在执行的Statement，尚未开始的任务不再执行
+	 */
+	@Test
+	public void testTimeoutCancel() throws SQLException {
+		DefaultParallelExecutor executor = new DefaultParallelExecutor(1, 0, 200, false);
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		final AtomicInteger executed = new AtomicInteger();
+		final Statement st = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Statement.class }, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("cancel".equals(method.getName())) {
+					cancelled.countDown();
+				}
+				return null;
+			}
+		});
+		List<DbTask> tasks = new ArrayList<DbTask>();
+		tasks.add(new DbTask("db1") {
+			public void execute() throws SQLException {
+				DbTask.watch(st);
+				try {
+					// 模拟一个长时间执行的语句，直到被cancel
+					if (!cancelled.await(10, TimeUnit.SECONDS)) {
+						Assert.fail();
+					}
+				} catch (InterruptedException e) {
+					throw new SQLException(e);
+				}
+				throw new SQLException("cancelled");
+			}
+		});
+		tasks.add(new DbTask("db2") {
+			public void execute() throws SQLException {
+				executed.incrementAndGet();
+			}
+		});
+		try {
+			executor.execute(tasks);
+			Assert.fail();
+		} catch (SQLTimeoutException e) {
+			// expected
+		}
+		Assert.assertEquals(0, cancelled.getCount());
+		Assert.assertEquals(0, executed.get());
+		Assert.assertEquals(1, executor.getTimeoutCount());
+		executor.shutdown();
+	}
+
+	/**
+	 * 任务中再次调用execute()时在当前线程中执行，只有一个线程时也不会死锁
+	 */
+	@Test
+	public void testNestedExecute() throws SQLException {
+		final DefaultParallelExecutor executor = new DefaultParallelExecutor(1, 1, 5000, false);
+		final AtomicInteger done = new AtomicInteger();
+		final Thread[] threads = new Thread[2];
+		List<DbTask> tasks = new ArrayList<DbTask>();
+		tasks.add(new DbTask("db1") {
+			public void execute() throws SQLException {
+				threads[0] = Thread.currentThread();
+				List<DbTask> inner = new ArrayList<DbTask>();
+				for (int i = 0; i < 3; i++) {
+					inner.add(new DbTask("db1") {
+						public void execute() throws SQLException {
+							threads[1] = Thread.currentThread();
+							done.incrementAndGet();
+						}
+					});
+				}
+				executor.execute(inner);
+				done.incrementAndGet();
+			}
+		});
+		executor.execute(tasks);
+		Assert.assertEquals(4, done.get());
+		Assert.assertSame(threads[0], threads[1]);
+		Assert.assertEquals(0, executor.getTimeoutCount());
+		executor.shutdown();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package jef.database.wrapper.populator;
+
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.accelerator.bean.BeanAccessor;
+import jef.accelerator.bean.FastBeanWrapperImpl;
+import jef.codegen.EntityEnhancer;
+import jef.common.log.LogUtil;
+import jef.database.DataObject;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 实体上按属性名赋值和按序号(含基本类型专用方法)赋值的开销对比
+ */
+public class BeanAccessorBenchmarkTest {
+	private static final int LOOP = 200000;
+	private static final int ROUNDS = 3;
+
+	@BeforeClass
+	public static void enhance() {
+		// 必须在类加载前增强，因此不能使用Item.class
+		new EntityEnhancer().enhanceClass("jef.database.wrapper.populator.BeanAccessorBenchmarkTest$Item");
+	}
+
+	@Test
+	public void testCost() {
+		BeanAccessor ba = FastBeanWrapperImpl.getAccessorFor(Item.class);
+		int id = ba.getPropertyIndex("id");
+		int amount = ba.getPropertyIndex("amount");
+		int score = ba.getPropertyIndex("score");
+		int name = ba.getPropertyIndex("name");
+		int created = ba.getPropertyIndex("created");
+		Assert.assertTrue(id >= 0 && amount >= 0 && score >= 0 && name >= 0 && created >= 0);
+		Date date = new Date(1500000000000L);
+
+		Item byName = new Item();
+		Item byIndex = new Item();
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < LOOP; i++) {
+				ba.setProperty(byName, "id", i);
+				ba.setProperty(byName, "amount", i * 1000L);
+				ba.setProperty(byName, "score", i / 4d);
+				ba.setProperty(byName, "name", "n");
+				ba.setProperty(byName, "created", date);
+			}
+			long nameCost = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < LOOP; i++) {
+				ba.setInt(byIndex, id, i);
+				ba.setLong(byIndex, amount, i * 1000L);
+				ba.setDouble(byIndex, score, i / 4d);
+				ba.set(byIndex, name, "n");
+				ba.set(byIndex, created, date);
+			}
+			long indexCost = System.nanoTime() - start;
+
+			for (String property : ba.getPropertyNames()) {
+				Assert.assertEquals(ba.getProperty(byName, property), ba.getProperty(byIndex, property));
+			}
+			LogUtil.info("round " + round + ": by name " + nameCost / LOOP + " ns/row, by index " + indexCost / LOOP + " ns/row");
+		}
+		Assert.assertEquals(LOOP - 1, byIndex.getId());
+		Assert.assertEquals((LOOP - 1) * 1000L, byIndex.getAmount());
+	}
+
+	@Entity
+	@Table(name = "BEAN_ACCESSOR_BENCHMARK")
+	public static class Item extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private long amount;
+		private double score;
+		private String name;
+		private Date created;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public long getAmount() {
+			return amount;
+		}
+
+		public void setAmount(long amount) {
+			this.amount = amount;
+		}
+
+		public double getScore() {
+			return score;
+		}
+
+		public void setScore(double score) {
+			this.score = score;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Date getCreated() {
+			return created;
+		}
+
+		public void setCreated(Date created) {
+			this.created = created;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, amount, score, name, created
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package jef.database.wrapper.populator;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.common.log.LogUtil;
+import jef.database.DataObject;
+import jef.database.DbClient;
+import jef.database.DbClientBuilder;
+import jef.database.ORMConfig;
+import jef.database.query.Query;
+import jef.database.query.QueryBuilder;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 较宽的表上，生成的结果集映射器和按属性赋值的populator的吞吐量对比
+ */
+public class RowMapperBenchmarkTest {
+	private static final int ROWS = 5000;
+	private static final int ROUNDS = 5;
+	private static DbClient db;
+
+	@BeforeClass
+	public static void setUp() throws SQLException {
+		// 必须在类加载前增强，因此不能使用Wide.class
+		new EntityEnhancer().enhanceClass("jef.database.wrapper.populator.RowMapperBenchmarkTest$Wide");
+		db = new DbClientBuilder("jdbc:h2:mem:row_mapper_benchmark", "sa", "").build();
+		db.createTable(Wide.class);
+		db.batchInsert(rows());
+	}
+
+	@AfterClass
+	public static void close() {
+		ORMConfig.getInstance().setGenerateRowMapper(false);
+		db.close();
+	}
+
+	@Test
+	public void testThroughput() throws SQLException {
+		Query<Wide> query = QueryBuilder.create(Wide.class);
+		query.orderByAsc(Wide.Field.id);
+		try {
+			for (int round = 0; round < ROUNDS; round++) {
+				ORMConfig.getInstance().setGenerateRowMapper(false);
+				long start = System.nanoTime();
+				List<Wide> reflective = db.select(query);
+				long reflectiveCost = System.nanoTime() - start;
+
+				ORMConfig.getInstance().setGenerateRowMapper(true);
+				start = System.nanoTime();
+				List<Wide> generated = db.select(query);
+				long generatedCost = System.nanoTime() - start;
+
+				assertSameRows(reflective, generated);
+				LogUtil.info("round " + round + ": populator " + reflectiveCost / ROWS + " ns/row, generated mapper " + generatedCost / ROWS + " ns/row");
+			}
+		} finally {
+			ORMConfig.getInstance().setGenerateRowMapper(false);
+		}
+	}
+
+	/*
+	 * 测试类的方法签名中不能出现实体类，否则JUnit反射时会提前加载未增强的实体类
+	 */
+	private static void assertSameRows(List<?> expected, List<?> actual) {
+		Assert.assertEquals(ROWS, expected.size());
+		Assert.assertEquals(ROWS, actual.size());
+		for (int i = 0; i < ROWS; i++) {
+			Wide e = (Wide) expected.get(i);
+			Wide a = (Wide) actual.get(i);
+			Assert.assertEquals(e.getId(), a.getId());
+			Assert.assertEquals(e.getName(), a.getName());
+			Assert.assertEquals(e.getCode(), a.getCode());
+			Assert.assertEquals(e.getAmount(), a.getAmount());
+			Assert.assertEquals(e.getScore(), a.getScore(), 0);
+			Assert.assertEquals(e.getPrice(), a.getPrice(), 0);
+			Assert.assertEquals(e.getQty(), a.getQty());
+			Assert.assertEquals(e.getCount(), a.getCount());
+			Assert.assertEquals(e.getCreated(), a.getCreated());
+			Assert.assertEquals(e.getRemark(), a.getRemark());
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static List rows() {
+		List<Wide> rows = new ArrayList<Wide>(ROWS);
+		for (int i = 0; i < ROWS; i++) {
+			Wide row = new Wide();
+			row.setId(i);
+			row.setName(i % 10 == 0 ? null : "name" + i);
+			row.setCode("C" + i % 100);
+			row.setAmount(i * 10000000000L);
+			row.setScore(i / 4d);
+			row.setPrice(i * 0.01d);
+			row.setQty(i % 50);
+			row.setCount(i % 3 == 0 ? null : i);
+			row.setCreated(new Date(1500000000000L + i));
+			row.setRemark("remark of row " + i);
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	@Entity
+	@Table(name = "ROW_MAPPER_BENCHMARK")
+	public static class Wide extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+		private String code;
+		private long amount;
+		private double score;
+		private double price;
+		private int qty;
+		private Integer count;
+		private Date created;
+		private String remark;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public void setCode(String code) {
+			this.code = code;
+		}
+
+		public long getAmount() {
+			return amount;
+		}
+
+		public void setAmount(long amount) {
+			this.amount = amount;
+		}
+
+		public double getScore() {
+			return score;
+		}
+
+		public void setScore(double score) {
+			this.score = score;
+		}
+
+		public double getPrice() {
+			return price;
+		}
+
+		public void setPrice(double price) {
+			this.price = price;
+		}
+
+		public int getQty() {
+			return qty;
+		}
+
+		public void setQty(int qty) {
+			this.qty = qty;
+		}
+
+		public Integer getCount() {
+			return count;
+		}
+
+		public void setCount(Integer count) {
+			this.count = count;
+		}
+
+		public Date getCreated() {
+			return created;
+		}
+
+		public void setCreated(Date created) {
+			this.created = created;
+		}
+
+		public String getRemark() {
+			return remark;
+		}
+
+		public void setRemark(String remark) {
+			this.remark = remark;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name, code, amount, score, price, qty, count, created, remark
+		}
+	}
+}
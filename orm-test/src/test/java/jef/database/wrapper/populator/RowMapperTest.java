@@ -0,0 +1,159 @@
+package jef.database.wrapper.populator;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import jef.codegen.EntityEnhancer;
+import jef.database.DataObject;
+import jef.database.DbClient;
+import jef.database.DbClientBuilder;
+import jef.database.ORMConfig;
+import jef.database.meta.ITableMetadata;
+import jef.database.meta.MetaHolder;
+import jef.database.query.Query;
+import jef.database.query.QueryBuilder;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * 生成的结果集映射器
+ */
+public class RowMapperTest {
+	private static final int ROWS = 2000;
+	private static DbClient db;
+
+	@BeforeClass
+	public static void setUp() throws SQLException {
+		// 必须在类加载前增强，因此不能使用Row.class
+		new EntityEnhancer().enhanceClass("jef.database.wrapper.populator.RowMapperTest$Row");
+		db = new DbClientBuilder("jdbc:h2:mem:row_mapper_test", "sa", "").build();
+		db.createTable(Row.class);
+		List<Row> rows = new ArrayList<Row>();
+		for (int i = 0; i < ROWS; i++) {
+			Row row = new Row();
+			row.setId(i);
+			row.setName(i % 10 == 0 ? null : "name" + i);
+			row.setAmount(i * 10000000000L);
+			row.setScore(i / 4d);
+			row.setCreated(new Date(1500000000000L + i));
+			row.setCount(i % 3 == 0 ? null : i);
+			rows.add(row);
+		}
+		db.batchInsert(rows);
+	}
+
+	@AfterClass
+	public static void close() {
+		ORMConfig.getInstance().setGenerateRowMapper(false);
+		db.close();
+	}
+
+	@Test
+	public void testSameResult() throws SQLException {
+		Query<Row> query = QueryBuilder.create(Row.class);
+		query.orderByAsc(Row.Field.id);
+		ORMConfig.getInstance().setGenerateRowMapper(false);
+		List<Row> expected = db.select(query);
+
+		ORMConfig.getInstance().setGenerateRowMapper(true);
+		List<Row> actual = db.select(query);
+		Assert.assertEquals(ROWS, actual.size());
+		for (int i = 0; i < ROWS; i++) {
+			Row e = expected.get(i);
+			Row a = actual.get(i);
+			Assert.assertEquals(e.getId(), a.getId());
+			Assert.assertEquals(e.getName(), a.getName());
+			Assert.assertEquals(e.getAmount(), a.getAmount());
+			Assert.assertEquals(e.getScore(), a.getScore(), 0);
+			Assert.assertEquals(e.getCreated(), a.getCreated());
+			Assert.assertEquals(e.getCount(), a.getCount());
+			Assert.assertFalse(a.needUpdate());
+		}
+		Assert.assertNull(actual.get(0).getName());
+		Assert.assertNull(actual.get(0).getCount());
+		Assert.assertEquals(Integer.valueOf(1), actual.get(1).getCount());
+
+		ITableMetadata meta = MetaHolder.getMeta(Row.class);
+		int size = meta.getRowMapperFactory().size();
+		Assert.assertTrue(size > 0);
+		// 相同的列布局不再生成
+		db.select(query);
+		Assert.assertEquals(size, meta.getRowMapperFactory().size());
+		ORMConfig.getInstance().setGenerateRowMapper(false);
+	}
+
+	@Entity
+	@Table(name = "ROW_MAPPER_TEST")
+	public static class Row extends DataObject {
+		private static final long serialVersionUID = 1L;
+
+		@Id
+		private int id;
+		private String name;
+		private long amount;
+		private double score;
+		private Date created;
+		private Integer count;
+
+		public int getId() {
+			return id;
+		}
+
+		public void setId(int id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public long getAmount() {
+			return amount;
+		}
+
+		public void setAmount(long amount) {
+			this.amount = amount;
+		}
+
+		public double getScore() {
+			return score;
+		}
+
+		public void setScore(double score) {
+			this.score = score;
+		}
+
+		public Date getCreated() {
+			return created;
+		}
+
+		public void setCreated(Date created) {
+			this.created = created;
+		}
+
+		public Integer getCount() {
+			return count;
+		}
+
+		public void setCount(Integer count) {
+			this.count = count;
+		}
+
+		public enum Field implements jef.database.Field {
+			id, name, amount, score, created, count
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2008-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.geequery.springdata.repository;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+
+/**
+ * 按键值翻页(Keyset/Seek分页)的分页参数。
+ * <p>
+ * 普通的分页使用OFFSET跳过前面的记录，越往后翻数据库需要扫描并丢弃的记录越多。
+ * 按键值翻页时，下一页的查询条件是“排序字段的值在上一页最后一条记录之后”，因此每一页的代价相同，适合导出全表等大结果集的逐页处理。
+ * <p>
+ * 用法：方法名查询的返回值声明为{@link Slice}，传入{@link #of(int, Sort)}得到第一页，之后通过{@link Slice#nextPageable()}得到下一页。
+ * 
+ * <pre>
+ * <tt>Slice&lt;Foo&gt; slice = dao.findByAge(10, KeysetPageable.of(500, Sort.by("name")));
+ * while (true) {
+ * 	// do something
+ * 	if (!slice.hasNext())
+ * 		break;
+ * 	slice = dao.findByAge(10, slice.nextPageable());
+ * }</tt>
+ * </pre>
+ * 
+ * 注意事项：
+ * <ul>
+ * <li>排序字段必须是实体的字段，不能为null。主键不在排序字段中时自动追加主键作为最后的排序字段，保证顺序唯一</li>
+ * <li>只能逐页向后翻，不能跳到指定的页</li>
+ * <li>目前只支持方法名(PartTree)定义的查询</li>
+ * </ul>
+ * 
+ * @author jiyi
+ *
+ */
+public final class KeysetPageable implements Pageable, Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final int page;
+	private final int size;
+	private final Sort sort;
+	/**
+	 * 本页从这些键值之后开始，null表示第一页
+	 */
+	private final Object[] after;
+	/**
+	 * 本页最后一条记录的键值，查询之后才知道
+	 */
+	private final Object[] last;
+
+	private KeysetPageable(int page, int size, Sort sort, Object[] after, Object[] last) {
+		Assert.isTrue(size > 0, "Page size must not be less than one!");
+		this.page = page;
+		this.size = size;
+		this.sort = sort == null ? Sort.unsorted() : sort;
+		this.after = after;
+		this.last = last;
+	}
+
+	/**
+	 * 第一页
+	 * 
+	 * @param size
+	 *            每页的记录数
+	 * @param sort
+	 *            排序，可以为null，此时按主键排序
+	 * @return
+	 */
+	public static KeysetPageable of(int size, Sort sort) {
+		return new KeysetPageable(0, size, sort, null, null);
+	}
+
+	/**
+	 * 第一页，按主键排序
+	 * 
+	 * @param size
+	 * @return
+	 */
+	public static KeysetPageable of(int size) {
+		return of(size, null);
+	}
+
+	/**
+	 * 本页从这些键值之后开始，null表示第一页。键值的顺序和查询的排序字段(含追加的主键)一致
+	 * 
+	 * @return
+	 */
+	public Object[] getAfter() {
+		return after;
+	}
+
+	/**
+	 * 得到记录了本页最后一条记录键值的分页参数，由查询执行后调用
+	 * 
+	 * @param last
+	 *            本页最后一条记录的键值
+	 * @return
+	 */
+	public KeysetPageable withLast(Object[] last) {
+		return new KeysetPageable(page, size, sort, after, last);
+	}
+
+	@Override
+	public int getPageNumber() {
+		return page;
+	}
+
+	@Override
+	public int getPageSize() {
+		return size;
+	}
+
+	/**
+	 * 仅供参考，查询时不使用偏移量
+	 */
+	@Override
+	public long getOffset() {
+		return (long) page * size;
+	}
+
+	@Override
+	public Sort getSort() {
+		return sort;
+	}
+
+	/**
+	 * 下一页，只有查询得到的分片才能翻到下一页
+	 */
+	@Override
+	public Pageable next() {
+		if (last == null) {
+			throw new IllegalStateException("The next page of a keyset pagination must be obtained from Slice.nextPageable().");
+		}
+		return new KeysetPageable(page + 1, size, sort, last, null);
+	}
+
+	/**
+	 * 不能向前翻页，总是返回第一页
+	 */
+	@Override
+	public Pageable previousOrFirst() {
+		return first();
+	}
+
+	@Override
+	public Pageable first() {
+		return new KeysetPageable(0, size, sort, null, null);
+	}
+
+	@Override
+	public boolean hasPrevious() {
+		return page > 0;
+	}
+
+	@Override
+	public String toString() {
+		return "Keyset page " + page + " size " + size + ", sort " + sort + ", after " + Arrays.toString(after);
+	}
+}
@@ -15,24 +15,35 @@
  */
 package com.github.geequery.springdata.repository.query;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 
 import jef.database.Session;
 import jef.database.jpa.JefEntityManager;
+import jef.database.wrapper.ResultIterator;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.repository.query.RepositoryQuery;
 import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
 import com.github.geequery.springdata.repository.query.GqQueryExecution.CollectionExecution;
 import com.github.geequery.springdata.repository.query.GqQueryExecution.ModifyingExecution;
 import com.github.geequery.springdata.repository.query.GqQueryExecution.PagedExecution;
 import com.github.geequery.springdata.repository.query.GqQueryExecution.SingleEntityExecution;
+import com.github.geequery.springdata.repository.query.GqQueryExecution.SliceExecution;
 import com.github.geequery.springdata.repository.query.GqQueryExecution.StreamExecution;
 
 /**
@@ -71,9 +82,11 @@ public abstract class AbstractGqQuery implements RepositoryQuery {
 		} else if (method.isCollectionQuery()) {
 			return new CollectionExecution();
 		} else if (method.isStreamQuery()) {
-		    return new StreamExecution(new CollectionExecution());
+			return new StreamExecution();
 		} else if (method.isPageQuery()) {
 			return new PagedExecution(method.getParameters());
+		} else if (method.isSliceQuery()) {
+			return new SliceExecution(method.getParameters());
 		} else if (method.isModifyingQuery()) {
 			return method.getClearAutomatically() ? new ModifyingExecution(method, emf) : new ModifyingExecution(method, null);
 		} else {
@@ -88,6 +101,28 @@ public abstract class AbstractGqQuery implements RepositoryQuery {
 
 	protected abstract List<?> getResultList(Object[] values, Pageable page);
 
+	/**
+	 * 以流的形式返回查询结果。默认实现先查出全部结果，支持游标的查询应当覆盖此方法
+	 * 
+	 * @param values
+	 * @return
+	 */
+	protected Stream<?> getResultStream(Object[] values) {
+		return getResultList(values, null).stream();
+	}
+
+	/**
+	 * 查询一个分片。默认实现按页查询，取满一页时认为还有下一页；覆盖此方法可以多取一条记录准确判断
+	 * 
+	 * @param values
+	 * @param page
+	 * @return
+	 */
+	protected Slice<?> getResultSlice(Object[] values, Pageable page) {
+		List<?> content = getResultList(values, page);
+		return new SliceImpl<Object>(new ArrayList<Object>(content), page, content.size() >= page.getPageSize());
+	}
+
 	protected abstract Object getSingleResult(Object[] values);
 
 	protected abstract int executeUpdate(Object[] values);
@@ -106,4 +141,23 @@ public abstract class AbstractGqQuery implements RepositoryQuery {
 		}
 		throw new IllegalArgumentException(em.getClass().getName());
 	}
+
+	/**
+	 * 将结果遍历器包装为流。流关闭时关闭遍历器；如果当前有Spring事务，事务结束时也会关闭，避免调用者忘记关闭流造成游标泄漏。
+	 * 没有事务时调用者必须关闭流(例如使用try-with-resources)，或者遍历完所有元素。
+	 * 
+	 * @param iter
+	 * @return
+	 */
+	protected static <T> Stream<T> toStream(final ResultIterator<T> iter) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					iter.close();
+				}
+			});
+		}
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iter, Spliterator.ORDERED), false).onClose(iter::close);
+	}
 }
@@ -15,8 +15,10 @@
  */
 package com.github.geequery.springdata.repository.query;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceException;
@@ -26,6 +28,8 @@ import jef.database.NativeQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 
 import com.github.geequery.springdata.repository.query.GqParameters.GqParameter;
@@ -57,6 +61,30 @@ final class GqNativeQuery extends AbstractGqQuery {
 		return query.getResultList();
 	}
 
+	@Override
+	protected Stream<?> getResultStream(Object[] values) {
+		NativeQuery<?> query = getThreadQuery();
+		int fetchSize = getQueryMethod().getFetchSize();
+		if (fetchSize > 0) {
+			query.setFetchSize(fetchSize);
+		}
+		applyParamters(query, values);
+		return toStream(query.getResultIterator());
+	}
+
+	@Override
+	protected Slice<?> getResultSlice(Object[] values, Pageable page) {
+		NativeQuery<?> query = getThreadQuery();
+		// 多取一条记录，判断是否还有下一页
+		query.setRange(page.getOffset(), page.getPageSize() + 1);
+		assertNoSort(page.getSort());
+		applyParamters(query, values);
+		List<?> list = query.getResultList();
+		boolean hasNext = list.size() > page.getPageSize();
+		List<Object> content = new ArrayList<Object>(hasNext ? list.subList(0, page.getPageSize()) : list);
+		return new SliceImpl<Object>(content, page, hasNext);
+	}
+
 	private void assertNoSort(Sort sort) {
 		if (sort != null) {
 			log.warn("The input parameter Sort [" + sort + "]can not be set into a SQL Query, and was ignored.");
@@ -16,9 +16,11 @@
 package com.github.geequery.springdata.repository.query;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManagerFactory;
 
@@ -35,11 +37,14 @@ import jef.database.jpa.JefEntityManagerFactory;
 import jef.database.meta.ITableMetadata;
 import jef.database.meta.MetaHolder;
 import jef.database.query.ConditionQuery;
+import jef.database.query.OrderField;
 import jef.database.query.Query;
 import jef.database.query.SqlExpression;
 import jef.tools.PageLimit;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Order;
 import org.springframework.data.mapping.PropertyPath;
@@ -48,6 +53,7 @@ import org.springframework.data.repository.query.parser.PartTree;
 
 import com.github.geequery.springdata.annotation.FindBy;
 import com.github.geequery.springdata.annotation.IgnoreIf;
+import com.github.geequery.springdata.repository.KeysetPageable;
 import com.github.geequery.springdata.repository.query.GqParameters.GqParameter;
 import com.github.geequery.springdata.repository.query.GqQueryExecution.CountExecution;
 import com.github.geequery.springdata.repository.query.GqQueryExecution.DeleteExecution;
@@ -288,6 +294,9 @@ public class GqPartTreeQuery extends AbstractGqQuery {
 	@Override
 	protected List<?> getResultList(Object[] values, Pageable page) {
 		Query<?> q = createQuery(values, true);
+		if (page instanceof KeysetPageable) {
+			addKeysetCondition(q, keysetOrders(q), ((KeysetPageable) page).getAfter());
+		}
 		PageLimit range = (page == null) ? null : toRange(page);
 		try {
 			return getSession().select(q, range);
@@ -296,8 +305,104 @@ public class GqPartTreeQuery extends AbstractGqQuery {
 		}
 	}
 
+	@Override
+	protected Stream<?> getResultStream(Object[] values) {
+		Query<?> q = createQuery(values, true);
+		int fetchSize = getQueryMethod().getFetchSize();
+		if (fetchSize > 0) {
+			q.setFetchSize(fetchSize);
+		}
+		try {
+			return toStream(getSession().iteratedSelect((ConditionQuery) q, null));
+		} catch (SQLException e) {
+			throw DbUtils.toRuntimeException(e);
+		}
+	}
+
+	@Override
+	protected Slice<?> getResultSlice(Object[] values, Pageable page) {
+		Query<?> q = createQuery(values, true);
+		List<OrderField> orders = null;
+		if (page instanceof KeysetPageable) {
+			orders = keysetOrders(q);
+			addKeysetCondition(q, orders, ((KeysetPageable) page).getAfter());
+		}
+		PageLimit range = toRange(page);
+		// 多取一条记录，判断是否还有下一页
+		range.setLimit(range.getLimit() + 1);
+		List<?> list;
+		try {
+			list = getSession().select(q, range);
+		} catch (SQLException e) {
+			throw DbUtils.toRuntimeException(e);
+		}
+		int size = page.getPageSize();
+		boolean hasNext = list.size() > size;
+		List<Object> content = new ArrayList<Object>(hasNext ? list.subList(0, size) : list);
+		if (orders != null && hasNext) {
+			Object last = content.get(size - 1);
+			Object[] keys = new Object[orders.size()];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = metadata.getColumnDef(orders.get(i).getField()).getFieldAccessor().get(last);
+			}
+			page = ((KeysetPageable) page).withLast(keys);
+		}
+		return new SliceImpl<Object>(content, page, hasNext);
+	}
+
 	private PageLimit toRange(Pageable pageable) {
-		return new PageLimit(pageable.getOffset() , pageable.getPageSize());
+		// 按键值翻页时由查询条件定位，不使用偏移量
+		long offset = pageable instanceof KeysetPageable ? 0 : pageable.getOffset();
+		return new PageLimit(offset, pageable.getPageSize());
+	}
+
+	/*
+	 * 按键值翻页使用的排序字段。主键不在排序字段中时追加到最后，使顺序唯一
+	 */
+	private List<OrderField> keysetOrders(Query<?> q) {
+		List<OrderField> orders = new ArrayList<OrderField>(q.getOrderBy());
+		for (OrderField order : orders) {
+			if (metadata.getColumnDef(order.getField()) == null) {
+				throw new IllegalArgumentException("Keyset pagination can only be sorted by entity fields, but found: " + order.getField());
+			}
+		}
+		for (ColumnMapping pk : metadata.getPKFields()) {
+			boolean exists = false;
+			for (OrderField order : orders) {
+				exists |= order.getField() == pk.field();
+			}
+			if (!exists) {
+				q.addOrderBy(true, pk.field());
+				orders.add(new OrderField(pk.field(), true));
+			}
+		}
+		if (orders.isEmpty()) {
+			throw new IllegalArgumentException("Keyset pagination requires a sort or a primary key on " + metadata.getName());
+		}
+		return orders;
+	}
+
+	/*
+	 * (a > ?) or (a = ? and b > ?) or (a = ? and b = ? and c > ?)...，降序的字段使用小于
+	 */
+	private void addKeysetCondition(Query<?> q, List<OrderField> orders, Object[] after) {
+		if (after == null) {
+			return;
+		}
+		if (after.length != orders.size()) {
+			throw new IllegalArgumentException("The keyset " + after.length + " does not match the sort " + orders);
+		}
+		Or or = new Or();
+		for (int i = 0; i < orders.size(); i++) {
+			And and = new And();
+			for (int j = 0; j < i; j++) {
+				and.addCondition(QB.eq(orders.get(j).getField(), after[j]));
+			}
+			OrderField order = orders.get(i);
+			and.addCondition(order.isAsc() ? QB.gt(order.getField(), after[i]) : QB.lt(order.getField(), after[i]));
+			or.addCondition(and);
+		}
+		q.addCondition(or);
 	}
 
 	private void setSortToSpec(ConditionQuery spec, Sort sort,
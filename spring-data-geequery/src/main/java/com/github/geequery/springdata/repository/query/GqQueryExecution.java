@@ -28,6 +28,7 @@ import org.springframework.core.convert.support.ConfigurableConversionService;
 import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.repository.query.ParameterAccessor;
 import org.springframework.data.repository.query.Parameters;
 import org.springframework.data.repository.query.ParametersParameterAccessor;
@@ -111,17 +112,39 @@ public abstract class GqQueryExecution {
         }
     }
 
+    /**
+     * Executes the {@link AbstractGqQuery} to return a
+     * {@link java.util.stream.Stream} backed by an open cursor. The stream must
+     * be closed by the caller, or it is closed when the surrounding transaction
+     * completes.
+     */
     static class StreamExecution extends GqQueryExecution {
-        private CollectionExecution ce;
-        protected StreamExecution(CollectionExecution ce) {
-            this.ce = ce;
+        @Override
+        protected Object doExecute(AbstractGqQuery query, Object[] values) {
+            return query.getResultStream(values);
+        }
+    }
+
+    /**
+     * Executes the {@link AbstractGqQuery} to return a
+     * {@link org.springframework.data.domain.Slice}. No count query is issued.
+     */
+    static class SliceExecution extends GqQueryExecution {
+        private final Parameters<?, ?> parameters;
+
+        public SliceExecution(Parameters<?, ?> parameters) {
+            this.parameters = parameters;
         }
 
+        @Override
         protected Object doExecute(AbstractGqQuery query, Object[] values) {
-            @SuppressWarnings("rawtypes")
-            Collection coll=(Collection) ce.doExecute(query, values);
-            //FIXME 由于底层对Stream还没有原生支持，使用这种方式仅仅在形势上满足的Stream的接口，但是没能体现流式非阻塞接口的优点。
-            return coll.stream();
+            ParameterAccessor accessor = new ParametersParameterAccessor(parameters, values);
+            Pageable pageable = accessor.getPageable();
+            if (pageable == null || pageable.isUnpaged()) {
+                List<?> content = query.getResultList(values, null);
+                return new SliceImpl<>(content);
+            }
+            return query.getResultSlice(values, pageable);
         }
     }
 
@@ -35,6 +35,7 @@ import org.springframework.data.repository.query.QueryMethod;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
+import com.github.geequery.springdata.annotation.FetchSize;
 import com.github.geequery.springdata.annotation.FindBy;
 import com.github.geequery.springdata.annotation.Modifying;
 import com.github.geequery.springdata.annotation.Procedure;
@@ -288,6 +289,16 @@ public class GqQueryMethod extends QueryMethod {
 		return AnnotationUtils.findAnnotation(method, Procedure.class) != null;
 	}
 
+	/**
+	 * 通过@FetchSize指定的JDBC fetchSize，未指定时返回0
+	 * 
+	 * @return
+	 */
+	int getFetchSize() {
+		FetchSize fetchSize = AnnotatedElementUtils.findMergedAnnotation(method, FetchSize.class);
+		return fetchSize == null ? 0 : fetchSize.value();
+	}
+
 	/**
 	 * Returns whether we should clear automatically for modifying queries.
 	 * 
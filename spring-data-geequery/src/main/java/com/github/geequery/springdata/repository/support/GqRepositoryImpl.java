@@ -18,12 +18,16 @@ package com.github.geequery.springdata.repository.support;
 import java.io.Serializable;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.persistence.EntityGraph;
 import javax.persistence.EntityManager;
@@ -36,6 +40,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Order;
 import org.springframework.data.querydsl.QSort;
+import org.springframework.data.repository.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -47,6 +52,7 @@ import com.github.geequery.springdata.repository.query.QueryUtils;
 import com.querydsl.core.types.OrderSpecifier;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.PathBuilder;
+import com.querydsl.sql.SQLBindings;
 import com.querydsl.sql.SQLQuery;
 import com.querydsl.sql.SQLQueryFactory;
 
@@ -55,10 +61,13 @@ import jef.database.DbUtils;
 import jef.database.Field;
 import jef.database.IQueryableEntity;
 import jef.database.NativeQuery;
+import jef.database.ORMConfig;
 import jef.database.PojoWrapper;
 import jef.database.QB;
 import jef.database.RecordHolder;
 import jef.database.Session;
+import jef.database.Transaction;
+import jef.database.cache.CountCache;
 import jef.database.dialect.type.ColumnMapping;
 import jef.database.jpa.JefEntityManager;
 import jef.database.jpa.JefEntityManagerFactory;
@@ -69,6 +78,7 @@ import jef.database.query.ConditionQuery;
 import jef.database.query.PKQuery;
 import jef.database.query.Query;
 import jef.database.query.SqlExpression;
+import jef.database.wrapper.executor.DbTask;
 import jef.tools.ArrayUtils;
 import jef.tools.Assert;
 import jef.tools.PageLimit;
@@ -103,20 +113,20 @@ public class GqRepositoryImpl<T, ID extends Serializable> implements GqRepositor
 	}
 
 	@Override
-	public Page<T> findAll(Pageable pageable) {
-		Session s = getSession();
-		try {
-			long total = s.count(q_all);
-			Query<?> q = this.q_all;
-			if (pageable.getSort() != null) {
-				q = QB.create(meta.getMetadata());
+	public Page<T> findAll(final Pageable pageable) {
+		// 查询对象在每次执行时新建，分页查询和count并行时互不影响
+		return page(pageable, new PageQuery<T>() {
+			public List<T> select(Session s) throws SQLException {
+				Query<?> q = QB.create(meta.getMetadata());
 				setSortToSpec(q, pageable.getSort());
+				return s.select(q, toRange(pageable));
 			}
-			List<T> result = s.select(q, toRange(pageable));
-			return new PageImpl<T>(result, pageable, total);
-		} catch (SQLException e) {
-			throw DbUtils.toRuntimeException(e);
-		}
+
+			public long count(Session s, boolean cached) throws SQLException {
+				Query<?> q = QB.create(meta.getMetadata());
+				return cached ? s.countLongCached(q) : s.countLong(q);
+			}
+		});
 	}
 
 	@Override
@@ -277,16 +287,22 @@ public class GqRepositoryImpl<T, ID extends Serializable> implements GqRepositor
 	}
 
 	@Override
-	public Page<T> find(ConditionQuery spec, Pageable pageable) {
-		Session s = getSession();
-		try {
-			long count = s.countLong(spec);
-			setSortToSpec(spec, pageable.getSort());
-			List<T> result = s.select(spec, toRange(pageable));
-			return new PageImpl<T>(result, pageable, count);
-		} catch (SQLException e) {
-			throw DbUtils.toRuntimeException(e);
-		}
+	public Page<T> find(final ConditionQuery spec, final Pageable pageable) {
+		// 排序不影响count。spec由调用者传入且无法复制，分页查询和count在同一线程上先后执行
+		setSortToSpec(spec, pageable.getSort());
+		return page(pageable, new PageQuery<T>() {
+			public List<T> select(Session s) throws SQLException {
+				return s.select(spec, toRange(pageable));
+			}
+
+			public long count(Session s, boolean cached) throws SQLException {
+				return cached ? s.countLongCached(spec) : s.countLong(spec);
+			}
+
+			public boolean isParallel() {
+				return false;
+			}
+		});
 	}
 
 	@Override
@@ -422,9 +438,7 @@ public class GqRepositoryImpl<T, ID extends Serializable> implements GqRepositor
 	public void deleteAll(Iterable<? extends T> entities) {
 		Session s = getSession();
 		try {
-			for (T t : entities) {
-				s.delete(t);
-			}
+			s.batchDeleteByPK(asNonNullList(entities));
 		} catch (SQLException e) {
 			throw DbUtils.toRuntimeException(e);
 		}
@@ -441,13 +455,54 @@ public class GqRepositoryImpl<T, ID extends Serializable> implements GqRepositor
 		}
 	}
 
+	/**
+	 * 效果和逐个调用{@link #save(Object)}相同：数据库中已存在的记录更新，其余的插入。<br>
+	 * 先按主键一次查出已存在的记录，再分别批量更新和批量插入，操作数据库的次数和记录数无关。
+	 * 没有主键或有分表规则的实体无法一次查出已存在的记录，仍逐个合并。
+	 */
 	@Override
 	@Transactional
 	public <S extends T> List<S> saveAll(Iterable<S> entities) {
 		Session s = getSession();
 		try {
 			List<S> result = asList(entities);
-			s.batchInsert(result);
+			ITableMetadata metadata = meta.getMetadata();
+			if (metadata.getPKFields().isEmpty() || metadata.getPartition() != null) {
+				for (S entity : result) {
+					s.merge(entity);
+				}
+				return result;
+			}
+			List<S> inserts = new ArrayList<S>();
+			Map<List<Object>, S> keyed = new LinkedHashMap<List<Object>, S>();
+			for (S entity : result) {
+				List<Object> pk = DbUtils.getPrimaryKeyValue(toEntity(metadata, entity));
+				if (pk == null) {
+					inserts.add(entity);
+				} else {
+					keyed.put(pk, entity);
+				}
+			}
+			List<S> updates = new ArrayList<S>();
+			if (!keyed.isEmpty()) {
+				List<Serializable> ids = new ArrayList<Serializable>(keyed.size());
+				for (List<Object> pk : keyed.keySet()) {
+					ids.add(pk.size() == 1 ? (Serializable) pk.get(0) : pk.toArray(new Serializable[pk.size()]));
+				}
+				for (Object old : s.batchLoad(metadata, ids)) {
+					S entity = keyed.remove(DbUtils.getPKValueSafe(toEntity(metadata, old)));
+					if (entity != null) {
+						updates.add(entity);
+					}
+				}
+				inserts.addAll(keyed.values());
+			}
+			if (!updates.isEmpty()) {
+				s.batchUpdate(updates, null, false);
+			}
+			if (!inserts.isEmpty()) {
+				s.batchInsert(inserts);
+			}
 			return result;
 		} catch (SQLException e) {
 			throw DbUtils.toRuntimeException(e);
@@ -459,7 +514,7 @@ public class GqRepositoryImpl<T, ID extends Serializable> implements GqRepositor
 	public void deleteInBatch(Iterable<T> entities) {
 		Session s = getSession();
 		try {
-			s.batchDelete(asList(entities));
+			s.batchDeleteByPK(asNonNullList(entities));
 		} catch (SQLException e) {
 			throw DbUtils.toRuntimeException(e);
 		}
@@ -497,6 +552,21 @@ public class GqRepositoryImpl<T, ID extends Serializable> implements GqRepositor
 		return list;
 	}
 
+	private static IQueryableEntity toEntity(ITableMetadata metadata, Object entity) {
+		return entity instanceof IQueryableEntity ? (IQueryableEntity) entity : metadata.transfer(entity, false);
+	}
+
+	// 逐个删除时忽略null，批量删除保持一致
+	private <S> List<S> asNonNullList(Iterable<? extends S> entities) {
+		List<S> list = new ArrayList<S>();
+		for (S e : entities) {
+			if (e != null) {
+				list.add(e);
+			}
+		}
+		return list;
+	}
+
 	private List<Serializable> asIdList(Iterable<ID> ids) {
 		List<Serializable> list = new ArrayList<Serializable>();
 		if (this.meta.isComplexPK()) {
@@ -561,6 +631,68 @@ public class GqRepositoryImpl<T, ID extends Serializable> implements GqRepositor
 		return new PageLimit(pageable.getOffset(), pageable.getPageSize());
 	}
 
+	/*
+	 * 分页查询。串行执行时先查询内容，结果不满一页时由偏移量和结果数得出总数，不再执行count。
+	 * 开启DB_PAGE_PARALLEL_COUNT、不在写事务中且查询对象可在两个线程上独立使用时，
+	 * count和分页查询在各自的连接上并行执行，此时count总是执行，结果不满一页时仍以偏移量和结果数为准；
+	 * 已在并行任务中时不再向同一个线程池提交任务，改为串行。
+	 * 配置了DB_PAGE_COUNT_CACHE_TTL时，不在写事务中的count结果短时间缓存。
+	 */
+	private <S> Page<S> page(Pageable pageable, final PageQuery<S> query) {
+		final Session session = getSession();
+		boolean write = session instanceof Transaction && !((Transaction) session).isReadonly();
+		ORMConfig config = ORMConfig.getInstance();
+		final boolean cached = !write && config.getPageCountCacheTtl() > 0;
+		try {
+			if (write || !config.isPageParallelCount() || !query.isParallel() || DbTask.isRunning()) {
+				List<S> content = query.select(session);
+				return PageableExecutionUtils.getPage(content, pageable, () -> {
+					try {
+						return query.count(session, cached);
+					} catch (SQLException e) {
+						throw DbUtils.toRuntimeException(e);
+					}
+				});
+			}
+			final DbClient db = getNoTransactionSession();
+			final AtomicReference<List<S>> content = new AtomicReference<List<S>>();
+			final AtomicLong total = new AtomicLong();
+			List<DbTask> tasks = new ArrayList<DbTask>(2);
+			tasks.add(new DbTask() {
+				@Override
+				public void execute() throws SQLException {
+					content.set(query.select(db));
+				}
+			});
+			tasks.add(new DbTask() {
+				@Override
+				public void execute() throws SQLException {
+					total.set(query.count(db, cached));
+				}
+			});
+			db.getParallelExecutor().execute(tasks);
+			return PageableExecutionUtils.getPage(content.get(), pageable, total::get);
+		} catch (SQLException e) {
+			throw DbUtils.toRuntimeException(e);
+		}
+	}
+
+	/*
+	 * 分页查询的内容和总数，由page()决定在哪个Session上执行
+	 */
+	private interface PageQuery<S> {
+		List<S> select(Session session) throws SQLException;
+
+		long count(Session session, boolean cached) throws SQLException;
+
+		/*
+		 * select和count各自使用独立的查询对象时才能在两个线程上并行执行
+		 */
+		default boolean isParallel() {
+			return true;
+		}
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	@Transactional
@@ -830,13 +962,31 @@ public class GqRepositoryImpl<T, ID extends Serializable> implements GqRepositor
 	}
 
 	@Override
-	public Page<T> findAll(Predicate predicate, Pageable pageable) {
-		SQLQuery<T> q = getSession().sqlFactory().selectFrom((SQLRelationalPath<T>) QueryDSLTables.table(this.meta.getMetadata()))
-				.where(predicate);
-		long total = q.fetchCount();
-		q = getSession().sqlFactory().selectFrom((SQLRelationalPath<T>) QueryDSLTables.table(this.meta.getMetadata())).where(predicate);
-		querydsl.applyPagination(pageable, q);
-		return new PageImpl<T>(q.fetch(), pageable, total);
+	public Page<T> findAll(final Predicate predicate, final Pageable pageable) {
+		final SQLRelationalPath<T> table = (SQLRelationalPath<T>) QueryDSLTables.table(this.meta.getMetadata());
+		return page(pageable, new PageQuery<T>() {
+			public List<T> select(Session s) throws SQLException {
+				SQLQuery<T> q = s.sqlFactory().selectFrom(table).where(predicate);
+				querydsl.applyPagination(pageable, q);
+				return q.fetch();
+			}
+
+			public long count(Session s, boolean cached) throws SQLException {
+				SQLQuery<T> q = s.sqlFactory().selectFrom(table).where(predicate);
+				if (!cached) {
+					return q.fetchCount();
+				}
+				SQLBindings sql = q.getSQL();
+				List<Object> key = Arrays.<Object> asList(table.getTableName(), sql.getSQL(), sql.getNullFriendlyBindings());
+				CountCache cache = getNoTransactionSession().getCountCache();
+				Long total = cache.get(key);
+				if (total == null) {
+					total = q.fetchCount();
+					cache.put(key, total, ORMConfig.getInstance().getPageCountCacheTtl());
+				}
+				return total;
+			}
+		});
 	}
 
 	@Override
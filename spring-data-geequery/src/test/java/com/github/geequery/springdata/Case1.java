@@ -8,6 +8,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.persistence.Column;
 import javax.persistence.OptimisticLockException;
@@ -19,6 +20,7 @@ import org.junit.Test;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.domain.Sort.Order;
@@ -29,6 +31,7 @@ import com.github.geequery.extension.querydsl.QueryDSLTables;
 import com.github.geequery.extension.querydsl.SQLQueryEx;
 import com.github.geequery.extension.querydsl.SQLRelationalPath;
 import com.github.geequery.springdata.Role.RoleType;
+import com.github.geequery.springdata.repository.KeysetPageable;
 import com.github.geequery.springdata.repository.support.Update;
 import com.github.geequery.springdata.test.entity.ComplexFoo;
 import com.github.geequery.springdata.test.entity.Foo;
@@ -84,8 +87,9 @@ public class Case1 extends AbstractJUnit4SpringContextTests implements Initializ
 
 	@Test
 	public void testFooDAOAnnotation() throws SQLException {
-		{
-			foodao.findByWhat("张", 100, "a", DateUtils.today(), "", DateUtils.yesterday(), "hello");
+		// 返回的流持有游标，必须关闭
+		try (Stream<Foo> stream = foodao.findByWhat("张", 100, "a", DateUtils.today(), "", DateUtils.yesterday(), "hello")) {
+			stream.count();
 		}
 	}
 
@@ -571,6 +575,133 @@ public class Case1 extends AbstractJUnit4SpringContextTests implements Initializ
 		complex.someCustomMethod(cf);
 	}
 
+	/**
+	 * 游标方式的流，以及按键值翻页的分片
+	 * 
+	 * @throws SQLException
+	 */
+	@Test
+	public void testStreamAndSlice() throws SQLException {
+		Query<Foo> old = QB.create(Foo.class);
+		old.addCondition(QB.gt(Foo.Field.age, 8999));
+		commonDao.getNoTransactionSession().delete(old);
+		List<Foo> foos = new ArrayList<Foo>();
+		for (int i = 0; i < 25; i++) {
+			Foo foo = new Foo();
+			foo.setAge(9000 + i);
+			// 名称的顺序和插入的顺序相反
+			foo.setName("slice" + (200 - i));
+			foos.add(foo);
+		}
+		commonDao.batchInsert(foos);
+
+		try (Stream<Foo> stream = foodao.findByAgeGreaterThan(8999)) {
+			Assert.assertEquals(25, stream.count());
+		}
+
+		List<String> names = new ArrayList<String>();
+		Slice<Foo> slice = foodao.findByAgeGreaterThan(8999, KeysetPageable.of(10, Sort.by("name")));
+		int count = 1;
+		while (slice.hasNext()) {
+			for (Foo foo : slice) {
+				names.add(foo.getName());
+			}
+			slice = foodao.findByAgeGreaterThan(8999, slice.nextPageable());
+			count++;
+		}
+		for (Foo foo : slice) {
+			names.add(foo.getName());
+		}
+		Assert.assertEquals(3, count);
+		Assert.assertEquals(25, names.size());
+		Assert.assertEquals("slice200", names.get(24));
+		Assert.assertEquals("slice176", names.get(0));
+
+		// 按偏移量的分片
+		slice = foodao.findByAgeGreaterThan(8999, PageRequest.of(2, 10));
+		Assert.assertEquals(5, slice.getNumberOfElements());
+		Assert.assertFalse(slice.hasNext());
+	}
+
+	/**
+	 * 分页时count和查询并行执行，count结果短时间缓存，不满一页时由偏移量得出总数
+	 */
+	@Test
+	public void testParallelPageCount() {
+		ORMConfig.getInstance().setPageParallelCount(true);
+		ORMConfig.getInstance().setPageCountCacheTtl(60000);
+		try {
+			Page<Foo> page = foodao.findAll(PageRequest.of(0, 2));
+			Assert.assertEquals(2, page.getNumberOfElements());
+			Assert.assertEquals(15, page.getTotalElements());
+
+			commonDao.insert(new Foo("新来的"));
+			// 缓存期内总数不变
+			page = foodao.findAll(PageRequest.of(1, 2, Sort.by("id")));
+			Assert.assertEquals(15, page.getTotalElements());
+			// 不满一页时由偏移量得出总数
+			page = foodao.findAll(PageRequest.of(1, 10));
+			Assert.assertEquals(6, page.getNumberOfElements());
+			Assert.assertEquals(16, page.getTotalElements());
+			// 调用者传入的查询对象不能在两个线程上共用，串行执行
+			Query<Foo> spec = QB.create(Foo.class);
+			page = foodao.find(spec, PageRequest.of(2, 3, Sort.by("id")));
+			Assert.assertEquals(3, page.getNumberOfElements());
+			Assert.assertEquals(15, page.getTotalElements());
+			page = foodao.find(spec, PageRequest.of(5, 3, Sort.by("id")));
+			Assert.assertEquals(1, page.getNumberOfElements());
+			Assert.assertEquals(16, page.getTotalElements());
+		} finally {
+			ORMConfig.getInstance().setPageParallelCount(false);
+			ORMConfig.getInstance().setPageCountCacheTtl(0);
+			commonDao.getNoTransactionSession().getCountCache().clear();
+		}
+	}
+
+	@Test
+	public void testSetBasedDelete() {
+		List<Foo> foos = new ArrayList<Foo>();
+		for (int i = 0; i < 30; i++) {
+			foos.add(new Foo("batch" + i));
+		}
+		commonDao.batchInsert(foos);
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Foo foo : foos) {
+			ids.add(foo.getId());
+		}
+		long count = foodao.count();
+		ORMConfig.getInstance().setMaxInConditions(7);
+		try {
+			List<Integer> query = new ArrayList<Integer>(ids);
+			query.add(-1);
+			Assert.assertEquals(30, ((List<Foo>) foodao.findAllById(query)).size());
+
+			List<Foo> deletes = new ArrayList<Foo>(foos.subList(0, 20));
+			deletes.add(null);
+			foodao.deleteAll(deletes);
+			Assert.assertEquals(count - 20, foodao.count());
+			foodao.deleteInBatch(foos.subList(20, 30));
+			Assert.assertEquals(count - 30, foodao.count());
+			Assert.assertTrue(((List<Foo>) foodao.findAllById(ids)).isEmpty());
+		} finally {
+			ORMConfig.getInstance().setMaxInConditions(500);
+		}
+
+		// 复合主键
+		complex.saveAll(Arrays.asList(new ComplexFoo(31, 1), new ComplexFoo(32, 1)));
+		List<ComplexFoo> list = (List<ComplexFoo>) complex.findAllById(Arrays.asList(new int[] { 31, 1 }, new int[] { 32, 1 }, new int[] { 33, 1 }));
+		Assert.assertEquals(2, list.size());
+		// 已存在的记录更新，其余的插入
+		ComplexFoo existing = new ComplexFoo(31, 1);
+		existing.setMessage("updated");
+		complex.saveAll(Arrays.asList(existing, new ComplexFoo(33, 1)));
+		list = (List<ComplexFoo>) complex.findAllById(Arrays.asList(new int[] { 31, 1 }, new int[] { 32, 1 }, new int[] { 33, 1 }));
+		Assert.assertEquals(3, list.size());
+		Assert.assertEquals("updated", complex.findById(new int[] { 31, 1 }).get().getMessage());
+		complex.deleteInBatch(list);
+		Assert.assertTrue(((List<ComplexFoo>) complex.findAllById(Arrays.asList(new int[] { 31, 1 }, new int[] { 32, 1 }, new int[] { 33, 1 }))).isEmpty());
+	}
+
 	/**
 	 * 在使用Spring-data的同时，传统的commondao/Session等方式操作依然可以正常使用
 	 * 
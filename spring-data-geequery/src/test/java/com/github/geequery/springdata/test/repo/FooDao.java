@@ -7,9 +7,11 @@ import java.util.stream.Stream;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.repository.query.Param;
 
 import com.github.geequery.springdata.annotation.Condition;
+import com.github.geequery.springdata.annotation.FetchSize;
 import com.github.geequery.springdata.annotation.FindBy;
 import com.github.geequery.springdata.annotation.IgnoreIf;
 import com.github.geequery.springdata.annotation.Logic;
@@ -77,6 +79,24 @@ public interface FooDao extends GqRepository<Foo, Integer> {
 	
 	
 	Page<Foo> findByAge(int age, Pageable page);
+
+	/**
+	 * 以游标方式流式返回
+	 * 
+	 * @param age
+	 * @return
+	 */
+	@FetchSize(10)
+	Stream<Foo> findByAgeGreaterThan(int age);
+
+	/**
+	 * 按分片返回，不查询总数
+	 * 
+	 * @param age
+	 * @param page
+	 * @return
+	 */
+	Slice<Foo> findByAgeGreaterThan(int age, Pageable page);
 	   
 
 	/**